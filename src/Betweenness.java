@@ -0,0 +1,310 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Betweenness centrality of every Town and Road: how many shortest paths
+ * between other towns pass through it. Towns and roads with high scores are
+ * the ones whose loss would lengthen the most trips.
+ *
+ * Scores are computed with Brandes' algorithm. One shortest path search is
+ * run from each source town, and the dependencies of the towns it reaches
+ * are added up in reverse order of distance. When several shortest paths
+ * join a pair of towns, each counts for an equal share, and parallel roads
+ * of the same length are separate paths. The searches from different
+ * sources are independent. They run in parallel, and each parallel task
+ * adds into its own score arrays, which are summed at the end.
+ *
+ * The exact scores need a search from every town. The sampled scores
+ * search from a random subset of towns and scale the totals up to
+ * estimate the exact ones. The estimate is unbiased, and its error
+ * shrinks as the number of samples grows. Scores count each unordered pair
+ * of towns once.
+ */
+public class Betweenness {
+    private final CompactGraph graph;
+    private final double[] townScore;
+    private final double[] roadScore;
+    private final int sources;
+
+    private Betweenness(CompactGraph graph, Scores totals, int sources, double scale) {
+        this.graph = graph;
+        this.sources = sources;
+        townScore = totals.town;
+        roadScore = totals.road;
+        //each unordered pair was counted once from each end
+        for (int v = 0; v < townScore.length; v++)
+            townScore[v] *= scale / 2;
+        for (int e = 0; e < roadScore.length; e++)
+            roadScore[e] *= scale / 2;
+    }
+
+    /**
+     * Computes the exact scores of a graph in parallel on the common pool
+     * @param graph the graph to score
+     * @return the scores
+     */
+    public static Betweenness compute(Graph graph) {
+        return exact(new CompactGraph(graph), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the exact scores with a search from every town, running the
+     * searches in parallel on the given pool
+     * @param graph the snapshot to score
+     * @param pool the pool to run the searches on
+     * @return the scores
+     */
+    public static Betweenness exact(CompactGraph graph, ForkJoinPool pool) {
+        int n = graph.townCount();
+        return new Betweenness(graph, accumulate(graph, IntStream.range(0, n), pool), n, 1);
+    }
+
+    /**
+     * Estimates the scores from searches started at randomly chosen towns,
+     * running the searches in parallel on the given pool
+     * @param graph the snapshot to score
+     * @param samples number of source towns; if at least the number of
+     * towns, the exact scores are computed
+     * @param seed seed for choosing the towns, so estimates can be repeated
+     * @param pool the pool to run the searches on
+     * @return the estimated scores
+     * @throws IllegalArgumentException if samples is not positive
+     */
+    public static Betweenness sampled(CompactGraph graph, int samples, long seed, ForkJoinPool pool) {
+        if (samples < 1)
+            throw new IllegalArgumentException("Samples must be positive");
+        int n = graph.townCount();
+        if (samples >= n)
+            return exact(graph, pool);
+        //the first samples entries of a partial Fisher-Yates shuffle
+        int[] order = new int[n];
+        for (int v = 0; v < n; v++)
+            order[v] = v;
+        Random random = new Random(seed);
+        for (int i = 0; i < samples; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        Scores totals = accumulate(graph, Arrays.stream(order, 0, samples), pool);
+        return new Betweenness(graph, totals, samples, (double) n / samples);
+    }
+
+    /**
+     * Returns the score of a town: the number of shortest paths between
+     * pairs of other towns that pass through it, with paths tied for
+     * shortest each counting for their share
+     * @param town the town
+     * @return the score, or 0 if the town is not in the snapshot
+     */
+    public double townScore(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? 0 : townScore[v];
+    }
+
+    /**
+     * Returns the score of a road: the number of shortest paths between
+     * pairs of towns that use it, with paths tied for shortest each
+     * counting for their share
+     * @param road the road
+     * @return the score, or 0 if the road is not in the snapshot
+     */
+    public double roadScore(Road road) {
+        int v = graph.indexOf(road.getSource());
+        if (v < 0)
+            return 0;
+        for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++)
+            if (graph.getRoad(graph.arcRoad(arc)).equals(road))
+                return roadScore[graph.arcRoad(arc)];
+        return 0;
+    }
+
+    /**
+     * Returns the towns with the highest scores, highest first
+     * @param limit the most towns to return
+     * @return the towns
+     */
+    public List<Town> topTowns(int limit) {
+        List<Town> result = new ArrayList<>();
+        for (int v : top(townScore, limit))
+            result.add(graph.getTown(v));
+        return result;
+    }
+
+    /**
+     * Returns the roads with the highest scores, highest first
+     * @param limit the most roads to return
+     * @return the roads
+     */
+    public List<Road> topRoads(int limit) {
+        List<Road> result = new ArrayList<>();
+        for (int e : top(roadScore, limit))
+            result.add(graph.getRoad(e));
+        return result;
+    }
+
+    /**
+     * Returns whether the scores are exact rather than estimated
+     * @return true if every town was searched from
+     */
+    public boolean isExact() {
+        return sources == graph.townCount();
+    }
+
+    /**
+     * Returns the number of towns searched from
+     * @return the number of source towns
+     */
+    public int getSourceCount() {
+        return sources;
+    }
+
+    /**
+     * Returns the snapshot these scores were computed on
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /*
+    Indexes of the highest scores, ties broken by index
+     */
+    private static int[] top(double[] score, int limit) {
+        return IntStream.range(0, score.length).boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> -score[i]).thenComparingInt(i -> i))
+                .limit(Math.max(0, limit)).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Scores accumulate(CompactGraph graph, IntStream sources, ForkJoinPool pool) {
+        return pool.submit(() -> sources.parallel()
+                .collect(() -> new Scores(graph), Scores::addSource, Scores::merge)).join();
+    }
+
+    /*
+    The scores summed by one parallel task, along with the arrays it
+    reuses for each of its searches
+     */
+    private static final class Scores {
+        private final CompactGraph graph;
+        final double[] town;
+        final double[] road;
+
+        private final int[] distance;
+        //position of each town in the order the search settled them, or -1
+        private final int[] settledAt;
+        private final int[] settled;
+        private final double[] paths;
+        private final double[] dependency;
+        private final LongHeap heap = new LongHeap(16);
+
+        Scores(CompactGraph graph) {
+            this.graph = graph;
+            int n = graph.townCount();
+            town = new double[n];
+            road = new double[graph.roadCount()];
+            distance = new int[n];
+            settledAt = new int[n];
+            settled = new int[n];
+            paths = new double[n];
+            dependency = new double[n];
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            Arrays.fill(settledAt, -1);
+        }
+
+        /*
+        Adds the dependencies of every town on paths from source
+         */
+        void addSource(int source) {
+            int count = search(source);
+
+            //count shortest paths in settling order; a predecessor is always settled first
+            paths[source] = 1;
+            for (int i = 1; i < count; i++) {
+                int w = settled[i];
+                double total = 0;
+                for (int arc = graph.arcOffset(w); arc < graph.arcOffset(w + 1); arc++)
+                    if (isPredecessor(graph.arcTarget(arc), arc, w))
+                        total += paths[graph.arcTarget(arc)];
+                paths[w] = total;
+            }
+
+            //add up dependencies from the farthest town back towards the source
+            for (int i = count - 1; i > 0; i--) {
+                int w = settled[i];
+                double share = (1 + dependency[w]) / paths[w];
+                for (int arc = graph.arcOffset(w); arc < graph.arcOffset(w + 1); arc++) {
+                    int v = graph.arcTarget(arc);
+                    if (isPredecessor(v, arc, w)) {
+                        double c = paths[v] * share;
+                        dependency[v] += c;
+                        road[graph.arcRoad(arc)] += c;
+                    }
+                }
+                town[w] += dependency[w];
+            }
+
+            for (int i = 0; i < count; i++) {
+                int v = settled[i];
+                distance[v] = Integer.MAX_VALUE;
+                settledAt[v] = -1;
+                paths[v] = 0;
+                dependency[v] = 0;
+            }
+        }
+
+        /*
+        Dijkstra's algorithm from source, recording the order towns are
+        settled in; returns the number of towns reached
+         */
+        private int search(int source) {
+            int count = 0;
+            distance[source] = 0;
+            heap.add(LongHeap.pack(0, source));
+            while (!heap.isEmpty()) {
+                long entry = heap.poll();
+                int u = LongHeap.index(entry);
+                if (settledAt[u] >= 0 || LongHeap.distance(entry) > distance[u])
+                    continue;
+                settledAt[u] = count;
+                settled[count++] = u;
+                for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                    int w = graph.arcTarget(arc);
+                    long candidate = (long) distance[u] + graph.arcWeight(arc);
+                    if (candidate < distance[w]) {
+                        distance[w] = (int) Math.min(candidate, Integer.MAX_VALUE - 1);
+                        heap.add(LongHeap.pack(distance[w], w));
+                    }
+                }
+            }
+            return count;
+        }
+
+        /*
+        Whether the road of an arc from w to v ends a shortest path to w.
+        Requiring v to be settled before w keeps roads of weight 0 from
+        counting both ways.
+         */
+        private boolean isPredecessor(int v, int arc, int w) {
+            return settledAt[v] >= 0 && settledAt[v] < settledAt[w]
+                    && (long) distance[v] + graph.arcWeight(arc) == distance[w];
+        }
+
+        void merge(Scores other) {
+            for (int v = 0; v < town.length; v++)
+                town[v] += other.town[v];
+            for (int e = 0; e < road.length; e++)
+                road[e] += other.road[e];
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BetweennessTest {
+	private static final double EPSILON = 1e-9;
+
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new Graph();
+		town = new Town[6];
+		for (int i = 0; i < town.length; i++) {
+			town[i] = new Town("Town_" + i);
+			graph.addVertex(town[i]);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testChain() {
+		graph.addEdge(town[0], town[1], 3, "Road_1");
+		graph.addEdge(town[1], town[2], 4, "Road_2");
+		graph.addEdge(town[2], town[3], 5, "Road_3");
+		Betweenness scores = Betweenness.compute(graph);
+		assertEquals(0, scores.townScore(town[0]), EPSILON);
+		assertEquals(2, scores.townScore(town[1]), EPSILON);
+		assertEquals(2, scores.townScore(town[2]), EPSILON);
+		assertEquals(3, scores.roadScore(graph.getEdge(town[0], town[1])), EPSILON);
+		assertEquals(4, scores.roadScore(graph.getEdge(town[1], town[2])), EPSILON);
+		assertEquals(0, scores.townScore(town[5]), EPSILON);
+		assertTrue(scores.isExact());
+	}
+
+	@Test
+	public void testTiedPathsShareScore() {
+		graph.addEdge(town[0], town[1], 1, "North_1");
+		graph.addEdge(town[1], town[3], 1, "North_2");
+		graph.addEdge(town[0], town[2], 1, "South_1");
+		graph.addEdge(town[2], town[3], 1, "South_2");
+		graph.addEdge(town[3], town[4], 2, "East_1");
+		graph.addEdge(town[3], town[4], 2, "East_2");
+		Betweenness scores = Betweenness.compute(graph);
+		assertEquals(1, scores.townScore(town[1]), EPSILON);
+		assertEquals(1, scores.townScore(town[2]), EPSILON);
+		assertEquals(3.5, scores.townScore(town[3]), EPSILON);
+		assertEquals(0.5, scores.townScore(town[0]), EPSILON);
+		assertEquals(2, scores.roadScore(graph.roadsBetween(town[3], town[4]).get(0)), EPSILON);
+		assertEquals(2, scores.roadScore(graph.roadsBetween(town[3], town[4]).get(1)), EPSILON);
+		assertEquals(Arrays.asList(town[3]), scores.topTowns(1));
+	}
+
+	@Test
+	public void testParallelMatchesSingleThread() {
+		CompactGraph compact = new CompactGraph(randomGraph(400, 1_200));
+		ForkJoinPool one = new ForkJoinPool(1);
+		ForkJoinPool four = new ForkJoinPool(4);
+		try {
+			Betweenness expected = Betweenness.exact(compact, one);
+			Betweenness actual = Betweenness.exact(compact, four);
+			for (int v = 0; v < compact.townCount(); v++)
+				assertEquals(expected.townScore(compact.getTown(v)), actual.townScore(compact.getTown(v)), 1e-6);
+			for (int e = 0; e < compact.roadCount(); e++)
+				assertEquals(expected.roadScore(compact.getRoad(e)), actual.roadScore(compact.getRoad(e)), 1e-6);
+		} finally {
+			one.shutdown();
+			four.shutdown();
+		}
+	}
+
+	@Test
+	public void testSampledEstimate() {
+		CompactGraph compact = new CompactGraph(randomGraph(400, 1_200));
+		Betweenness exact = Betweenness.exact(compact, ForkJoinPool.commonPool());
+		Betweenness sampled = Betweenness.sampled(compact, 200, 46, ForkJoinPool.commonPool());
+		Betweenness again = Betweenness.sampled(compact, 200, 46, ForkJoinPool.commonPool());
+		assertFalse(sampled.isExact());
+		assertEquals(200, sampled.getSourceCount());
+		double exactTotal = 0;
+		double sampledTotal = 0;
+		for (int v = 0; v < compact.townCount(); v++) {
+			exactTotal += exact.townScore(compact.getTown(v));
+			sampledTotal += sampled.townScore(compact.getTown(v));
+			assertEquals(sampled.townScore(compact.getTown(v)), again.townScore(compact.getTown(v)), 1e-6);
+		}
+		assertEquals(1, sampledTotal / exactTotal, 0.1);
+		assertTrue(exact.topTowns(10).contains(sampled.topTowns(1).get(0)));
+		assertTrue(Betweenness.sampled(compact, 1_000, 46, ForkJoinPool.commonPool()).isExact());
+	}
+
+	private static Graph randomGraph(int towns, int roads) {
+		Town[] t = RandomGraphs.towns(towns);
+		return RandomGraphs.graph(t, RandomGraphs.connected(t, 46, roads - towns + 1, 20, 20));
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The single points of failure of a road network. A bridge is a Road whose
+ * closure would cut some towns off from others, and an articulation point
+ * is a Town whose loss would do the same.
+ *
+ * Both are found with Tarjan's depth-first search in time proportional to
+ * the number of towns plus roads. Each town is numbered in the order the
+ * search reaches it, and its low point is the smallest number reachable
+ * from its subtree by at most one road outside the tree. A tree road is a
+ * bridge if the subtree below it cannot reach above it. A town is an
+ * articulation point if some child's subtree cannot reach above the town,
+ * or, for the town a search starts from, if it has more than one child.
+ *
+ * The search keeps its own stack, so graphs of any size and shape can be
+ * searched without running out of call stack. The road a town was reached
+ * by is skipped by its index rather than by the town at its other end, so
+ * two parallel roads between the same towns are never bridges.
+ */
+public class Biconnectivity {
+    private final Set<Road> bridges;
+    private final Set<Town> articulationPoints;
+
+    private Biconnectivity(Set<Road> bridges, Set<Town> articulationPoints) {
+        this.bridges = Collections.unmodifiableSet(bridges);
+        this.articulationPoints = Collections.unmodifiableSet(articulationPoints);
+    }
+
+    /**
+     * Finds the bridges and articulation points of a graph
+     * @param graph the graph to search
+     * @return the bridges and articulation points
+     */
+    public static Biconnectivity compute(Graph graph) {
+        return compute(new CompactGraph(graph));
+    }
+
+    /**
+     * Finds the bridges and articulation points of a snapshot
+     * @param graph the snapshot to search
+     * @return the bridges and articulation points
+     */
+    public static Biconnectivity compute(CompactGraph graph) {
+        int n = graph.townCount();
+        //order each town was reached in, starting at 1; 0 means not yet reached
+        int[] order = new int[n];
+        int[] low = new int[n];
+        int[] parentRoad = new int[n];
+        //the next arc of each town on the stack still to be followed
+        int[] nextArc = new int[n];
+        int[] stack = new int[n];
+        boolean[] articulation = new boolean[n];
+        Set<Road> bridges = new HashSet<>();
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] != 0)
+                continue;
+            int rootChildren = 0;
+            int top = 0;
+            stack[top++] = root;
+            order[root] = low[root] = ++counter;
+            parentRoad[root] = -1;
+            nextArc[root] = graph.arcOffset(root);
+
+            while (top > 0) {
+                int u = stack[top - 1];
+                if (nextArc[u] < graph.arcOffset(u + 1)) {
+                    int arc = nextArc[u]++;
+                    int e = graph.arcRoad(arc);
+                    if (e == parentRoad[u])
+                        continue;
+                    int w = graph.arcTarget(arc);
+                    if (order[w] == 0) {
+                        order[w] = low[w] = ++counter;
+                        parentRoad[w] = e;
+                        nextArc[w] = graph.arcOffset(w);
+                        stack[top++] = w;
+                        if (u == root)
+                            rootChildren++;
+                    } else {
+                        low[u] = Math.min(low[u], order[w]);
+                    }
+                } else {
+                    //u is finished; pass its low point up to its parent
+                    top--;
+                    if (top == 0)
+                        break;
+                    int parent = stack[top - 1];
+                    low[parent] = Math.min(low[parent], low[u]);
+                    if (low[u] > order[parent])
+                        bridges.add(graph.getRoad(parentRoad[u]));
+                    if (low[u] >= order[parent] && parent != root)
+                        articulation[parent] = true;
+                }
+            }
+            if (rootChildren > 1)
+                articulation[root] = true;
+        }
+
+        Set<Town> points = new HashSet<>();
+        for (int v = 0; v < n; v++)
+            if (articulation[v])
+                points.add(graph.getTown(v));
+        return new Biconnectivity(bridges, points);
+    }
+
+    /**
+     * Returns the roads whose closure would disconnect some towns
+     * @return an unmodifiable set of the bridges
+     */
+    public Set<Road> getBridges() {
+        return bridges;
+    }
+
+    /**
+     * Returns the towns whose loss would disconnect some other towns
+     * @return an unmodifiable set of the articulation points
+     */
+    public Set<Town> getArticulationPoints() {
+        return articulationPoints;
+    }
+
+    /**
+     * Returns whether closing a road would disconnect some towns
+     * @param road the road
+     * @return true if the road is a bridge
+     */
+    public boolean isBridge(Road road) {
+        return bridges.contains(road);
+    }
+
+    /**
+     * Returns whether losing a town would disconnect some other towns
+     * @param town the town
+     * @return true if the town is an articulation point
+     */
+    public boolean isArticulationPoint(Town town) {
+        return articulationPoints.contains(town);
+    }
+}
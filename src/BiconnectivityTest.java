@@ -0,0 +1,118 @@
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class BiconnectivityTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testBridgesAndArticulationPoints() {
+		Biconnectivity result = Biconnectivity.compute(graph);
+		Set<Road> bridges = new HashSet<>();
+		bridges.add(graph.getEdge(town[3], town[7]));
+		bridges.add(graph.getEdge(town[4], town[8]));
+		bridges.add(graph.getEdge(town[6], town[9]));
+		bridges.add(graph.getEdge(town[9], town[10]));
+		assertEquals(bridges, result.getBridges());
+		Set<Town> points = new HashSet<>();
+		points.add(town[3]);
+		points.add(town[8]);
+		points.add(town[9]);
+		points.add(town[10]);
+		assertEquals(points, result.getArticulationPoints());
+		assertFalse(result.isBridge(graph.getEdge(town[1], town[2])));
+		assertFalse(result.isArticulationPoint(town[1]));
+	}
+
+	@Test
+	public void testParallelRoadsAreNotBridges() {
+		assertTrue(Biconnectivity.compute(graph).isBridge(graph.getEdge(town[3], town[7])));
+		graph.addEdge(town[3], town[7], 9, "Road_13");
+		Biconnectivity result = Biconnectivity.compute(graph);
+		assertFalse(result.isBridge(graph.getEdge(town[3], town[7])));
+		assertTrue(result.isArticulationPoint(town[3]));
+	}
+
+	@Test
+	public void testLongChain() {
+		Graph chain = new Graph();
+		int length = 200_000;
+		Town previous = new Town("Town_0");
+		chain.addVertex(previous);
+		for (int i = 1; i < length; i++) {
+			Town next = new Town("Town_" + i);
+			chain.addVertex(next);
+			chain.addEdge(previous, next, 1, "Road_" + i);
+			previous = next;
+		}
+		Biconnectivity result = Biconnectivity.compute(chain);
+		assertEquals(length - 1, result.getBridges().size());
+		assertEquals(length - 2, result.getArticulationPoints().size());
+		assertFalse(result.isArticulationPoint(previous));
+	}
+
+	@Test
+	public void testMatchesRemovingEachRoad() {
+		Town[] t = RandomGraphs.towns(60);
+		Graph sparse = RandomGraphs.graph(t, RandomGraphs.scattered(t, 47, 70, 1));
+		CompactGraph compact = new CompactGraph(sparse);
+		Biconnectivity result = Biconnectivity.compute(compact);
+		int components = components(compact, -1, -1);
+		for (int e = 0; e < compact.roadCount(); e++)
+			assertEquals(components(compact, e, -1) > components, result.isBridge(compact.getRoad(e)));
+		for (int v = 0; v < compact.townCount(); v++)
+			assertEquals(components(compact, -1, v) > components - (compact.degree(v) == 0 ? 1 : 0),
+					result.isArticulationPoint(compact.getTown(v)));
+	}
+
+	/*
+	Counts the connected groups of towns without one road or one town
+	 */
+	private static int components(CompactGraph graph, int skipRoad, int skipTown) {
+		UnionFind groups = new UnionFind(graph.townCount());
+		int count = graph.townCount() - (skipTown < 0 ? 0 : 1);
+		for (int e = 0; e < graph.roadCount(); e++) {
+			int a = graph.roadSource(e);
+			int b = graph.roadDestination(e);
+			if (e != skipRoad && a != skipTown && b != skipTown && groups.union(a, b))
+				count--;
+		}
+		return count;
+	}
+}
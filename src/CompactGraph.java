@@ -0,0 +1,266 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, array-backed snapshot of a Graph. Every Town is given a
+ * dense index from 0 to townCount() - 1 and every Road a dense index from
+ * 0 to roadCount() - 1, so that algorithms which visit the whole graph can
+ * work on primitive arrays instead of the HashSets held by Graph.
+ *
+ * Adjacency is stored in compressed sparse row form: the arcs leaving town
+ * v are the entries arcOffset(v) up to (but not including) arcOffset(v + 1).
+ * Every undirected Road appears as two arcs, one in each direction.
+ *
+ * The snapshot is not updated when the Graph changes; build a new one after
+ * mutating the graph.
+ */
+public class CompactGraph {
+    private final Town[] towns;
+    private final Map<Town, Integer> indexOf;
+
+    private final Road[] roads;
+    private final int[] roadSource;
+    private final int[] roadDestination;
+    private final int[] roadWeight;
+
+    private final int[] arcOffset;
+    private final int[] arcTarget;
+    private final int[] arcRoad;
+    //true if only the fastest road between each pair of towns is kept
+    private final boolean fastestOnly;
+
+    /**
+     * Builds a snapshot of the given graph
+     * @param graph the graph to copy
+     */
+    public CompactGraph(Graph graph) {
+        this(graph.vertexSet().toArray(new Town[0]), graph.edgeSet().toArray(new Road[0]), false);
+    }
+
+    /**
+     * Builds a snapshot of the given graph for shortest path searches, in
+     * which each pair of neighbouring towns is joined by only the fastest
+     * of their roads. A search then relaxes one arc per neighbour however
+     * many parallel roads there are. The road at index e joins the towns
+     * roadSource(e) and roadDestination(e) but may run the other way.
+     * @param graph the graph to copy
+     * @return the snapshot
+     */
+    public static CompactGraph fastestRoads(Graph graph) {
+        List<Road> fastest = new ArrayList<>();
+        for (Map.Entry<Town, Map<Town, ArrayList<Road>>> town : graph.getNeighbors().entrySet())
+            for (Map.Entry<Town, ArrayList<Road>> neighbor : town.getValue().entrySet())
+                //each pair is seen from both ends; take it from the end with the smaller name
+                if (town.getKey().compareTo(neighbor.getKey()) <= 0 && !neighbor.getValue().isEmpty())
+                    fastest.add(neighbor.getValue().get(0));
+        return new CompactGraph(graph.vertexSet().toArray(new Town[0]), fastest.toArray(new Road[0]), true);
+    }
+
+    /**
+     * Returns a copy of this snapshot in which the given roads have their
+     * current weights. Only the road weights are copied; the towns and arcs
+     * are shared, so this is much cheaper than a new snapshot when no town
+     * or road has been added or removed since this one was built. In a
+     * snapshot from fastestRoads, a weight change can also make another
+     * road the fastest between its towns, and that road then takes its
+     * place.
+     * @param graph the graph this snapshot was taken of
+     * @param changed roads of the graph whose weights have changed
+     * @return the updated snapshot
+     */
+    public CompactGraph reweigh(Graph graph, Collection<Road> changed) {
+        CompactGraph copy = new CompactGraph(this, roads.clone(), roadWeight.clone());
+        for (Road road : changed) {
+            int s = indexOf(road.getSource());
+            int d = indexOf(road.getDestination());
+            for (int arc = arcOffset[s]; arc < arcOffset[s + 1]; arc++) {
+                int e = arcRoad[arc];
+                if (arcTarget[arc] != d || (!fastestOnly && !roads[e].equals(road)))
+                    continue;
+                if (fastestOnly) {
+                    //the same end fastestRoads took the pair from
+                    boolean sourceFirst = road.getSource().compareTo(road.getDestination()) <= 0;
+                    copy.roads[e] = sourceFirst ? graph.getEdge(road.getSource(), road.getDestination())
+                            : graph.getEdge(road.getDestination(), road.getSource());
+                }
+                copy.roadWeight[e] = copy.roads[e].getWeight();
+                break;
+            }
+        }
+        return copy;
+    }
+
+    private CompactGraph(CompactGraph base, Road[] roads, int[] roadWeight) {
+        towns = base.towns;
+        indexOf = base.indexOf;
+        this.roads = roads;
+        roadSource = base.roadSource;
+        roadDestination = base.roadDestination;
+        this.roadWeight = roadWeight;
+        arcOffset = base.arcOffset;
+        arcTarget = base.arcTarget;
+        arcRoad = base.arcRoad;
+        fastestOnly = base.fastestOnly;
+    }
+
+    private CompactGraph(Town[] towns, Road[] roads, boolean fastestOnly) {
+        this.fastestOnly = fastestOnly;
+        this.towns = towns;
+        indexOf = new HashMap<>(towns.length * 2);
+        for (int i = 0; i < towns.length; i++)
+            indexOf.put(towns[i], i);
+
+        this.roads = roads;
+        roadSource = new int[roads.length];
+        roadDestination = new int[roads.length];
+        roadWeight = new int[roads.length];
+
+        arcOffset = new int[towns.length + 1];
+        for (int e = 0; e < roads.length; e++) {
+            roadSource[e] = indexOf.get(roads[e].getSource());
+            roadDestination[e] = indexOf.get(roads[e].getDestination());
+            roadWeight[e] = roads[e].getWeight();
+            arcOffset[roadSource[e] + 1]++;
+            arcOffset[roadDestination[e] + 1]++;
+        }
+        for (int v = 0; v < towns.length; v++)
+            arcOffset[v + 1] += arcOffset[v];
+
+        arcTarget = new int[arcOffset[towns.length]];
+        arcRoad = new int[arcTarget.length];
+        int[] next = Arrays.copyOf(arcOffset, towns.length);
+        for (int e = 0; e < roads.length; e++) {
+            int s = roadSource[e];
+            int d = roadDestination[e];
+            arcTarget[next[s]] = d;
+            arcRoad[next[s]++] = e;
+            arcTarget[next[d]] = s;
+            arcRoad[next[d]++] = e;
+        }
+    }
+
+    /**
+     * Returns the number of towns in the snapshot
+     * @return the number of towns
+     */
+    public int townCount() {
+        return towns.length;
+    }
+
+    /**
+     * Returns the number of roads in the snapshot
+     * @return the number of roads
+     */
+    public int roadCount() {
+        return roads.length;
+    }
+
+    /**
+     * Returns the Town with the given index
+     * @param v index of the town
+     * @return the Town with index v
+     */
+    public Town getTown(int v) {
+        return towns[v];
+    }
+
+    /**
+     * Returns the index of the given Town
+     * @param town the town to look up
+     * @return the index of the town, or -1 if it is not in the snapshot
+     */
+    public int indexOf(Town town) {
+        Integer index = indexOf.get(town);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the Road with the given index
+     * @param e index of the road
+     * @return the Road with index e
+     */
+    public Road getRoad(int e) {
+        return roads[e];
+    }
+
+    /**
+     * Returns the index of the town at the source end of a road
+     * @param e index of the road
+     * @return index of the source town
+     */
+    public int roadSource(int e) {
+        return roadSource[e];
+    }
+
+    /**
+     * Returns the index of the town at the destination end of a road
+     * @param e index of the road
+     * @return index of the destination town
+     */
+    public int roadDestination(int e) {
+        return roadDestination[e];
+    }
+
+    /**
+     * Returns the weight of a road
+     * @param e index of the road
+     * @return the weight of the road
+     */
+    public int roadWeight(int e) {
+        return roadWeight[e];
+    }
+
+    /**
+     * Returns the position of the first arc leaving town v. The arcs of v
+     * end at arcOffset(v + 1).
+     * @param v index of the town, or townCount() for the end of the last town
+     * @return the position of the first arc of v
+     */
+    public int arcOffset(int v) {
+        return arcOffset[v];
+    }
+
+    /**
+     * Returns the town an arc leads to
+     * @param arc position of the arc
+     * @return index of the town at the far end of the arc
+     */
+    public int arcTarget(int arc) {
+        return arcTarget[arc];
+    }
+
+    /**
+     * Returns the road an arc belongs to
+     * @param arc position of the arc
+     * @return index of the road
+     */
+    public int arcRoad(int arc) {
+        return arcRoad[arc];
+    }
+
+    /**
+     * Returns the weight of the road an arc belongs to
+     * @param arc position of the arc
+     * @return the weight of the arc
+     */
+    public int arcWeight(int arc) {
+        return roadWeight[arcRoad[arc]];
+    }
+
+    /**
+     * Returns the number of arcs leaving town v
+     * @param v index of the town
+     * @return the degree of v
+     */
+    public int degree(int v) {
+        return arcOffset[v + 1] - arcOffset[v];
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Arrays;
+
+/**
+ * Bounds on the eccentricity of every Town, the length of the shortest path
+ * to the town farthest from it, and from them on the diameter (the largest
+ * eccentricity) and radius (the smallest) of the network. Only towns a town
+ * can reach count towards its eccentricity, and towns without roads are
+ * left out of the radius.
+ *
+ * The bounds come from the BoundingDiameters method of Takes and Kosters,
+ * which needs only a few shortest path searches rather than one from every
+ * town. A search from v gives v's exact eccentricity e, and for every town
+ * w it reaches, at distance d, the triangle inequality bounds w's
+ * eccentricity below by max(d, e - d) and above by e + d. Searches
+ * alternate between the town with the largest upper bound, which is likely
+ * on the periphery and tightens the diameter, and the town with the
+ * smallest lower bound, which is likely central and tightens the radius.
+ * Towns whose bounds have met need no search of their own. On road
+ * networks the diameter and radius are usually exact after a handful of
+ * searches.
+ */
+public class DiameterBounds {
+    private static final int UNKNOWN = Integer.MAX_VALUE;
+
+    private final CompactGraph graph;
+    private final int[] lower;
+    private final int[] upper;
+    private int searches;
+
+    private DiameterBounds(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.townCount();
+        lower = new int[n];
+        upper = new int[n];
+        Arrays.fill(upper, UNKNOWN);
+        for (int v = 0; v < n; v++)
+            if (graph.degree(v) == 0)
+                upper[v] = 0;
+    }
+
+    /**
+     * Bounds the eccentricities of a graph until its diameter and radius
+     * are exact
+     * @param graph the graph to measure
+     * @return the bounds
+     */
+    public static DiameterBounds compute(Graph graph) {
+        return compute(new CompactGraph(graph), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Bounds the eccentricities of a snapshot, stopping when the diameter
+     * and radius are exact or after a number of searches
+     * @param graph the snapshot to measure
+     * @param maxSearches the most shortest path searches to run
+     * @return the bounds
+     */
+    public static DiameterBounds compute(CompactGraph graph, int maxSearches) {
+        DiameterBounds bounds = new DiameterBounds(graph);
+        int[] distance = new int[graph.townCount()];
+        LongHeap heap = new LongHeap(16);
+        while (bounds.searches < maxSearches && !bounds.isExact()) {
+            int v = bounds.next();
+            if (v < 0)
+                break;
+            bounds.update(v, search(graph, v, distance, heap), distance);
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the length of the longest shortest path found so far. The
+     * diameter is at least this.
+     * @return the lower bound on the diameter
+     */
+    public int getDiameterLowerBound() {
+        int best = 0;
+        for (int bound : lower)
+            best = Math.max(best, bound);
+        return best;
+    }
+
+    /**
+     * Returns a length no shortest path can be longer than
+     * @return the upper bound on the diameter, or Integer.MAX_VALUE if some
+     * town has not been bounded
+     */
+    public int getDiameterUpperBound() {
+        int best = 0;
+        for (int bound : upper)
+            best = Math.max(best, bound);
+        return best;
+    }
+
+    /**
+     * Returns a length every town with roads has some town at least this
+     * far away
+     * @return the lower bound on the radius
+     */
+    public int getRadiusLowerBound() {
+        int best = UNKNOWN;
+        for (int v = 0; v < lower.length; v++)
+            if (graph.degree(v) > 0)
+                best = Math.min(best, lower[v]);
+        return best == UNKNOWN ? 0 : best;
+    }
+
+    /**
+     * Returns the smallest eccentricity known to be reached by some town:
+     * that town reaches every town it can within this distance
+     * @return the upper bound on the radius
+     */
+    public int getRadiusUpperBound() {
+        int best = UNKNOWN;
+        boolean anyRoads = false;
+        for (int v = 0; v < upper.length; v++) {
+            if (graph.degree(v) > 0) {
+                anyRoads = true;
+                best = Math.min(best, upper[v]);
+            }
+        }
+        return anyRoads ? best : 0;
+    }
+
+    /**
+     * Returns whether the diameter and radius are known exactly
+     * @return true if both pairs of bounds have met
+     */
+    public boolean isExact() {
+        return getDiameterLowerBound() == getDiameterUpperBound()
+                && getRadiusLowerBound() == getRadiusUpperBound();
+    }
+
+    /**
+     * Returns a lower bound on the eccentricity of a town
+     * @param town the town
+     * @return the lower bound, or 0 if the town is not in the snapshot
+     */
+    public int eccentricityLowerBound(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? 0 : lower[v];
+    }
+
+    /**
+     * Returns an upper bound on the eccentricity of a town
+     * @param town the town
+     * @return the upper bound, or Integer.MAX_VALUE if the town has not been
+     * bounded, or 0 if it is not in the snapshot
+     */
+    public int eccentricityUpperBound(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? 0 : upper[v];
+    }
+
+    /**
+     * Returns the number of shortest path searches run
+     * @return the number of searches
+     */
+    public int getSearchCount() {
+        return searches;
+    }
+
+    /**
+     * Returns the snapshot these bounds were computed on
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /*
+    The town to search from next, alternating between the largest upper
+    bound and the smallest lower bound among towns whose bounds have not
+    met, with ties going to the town with more roads; -1 if every town's
+    eccentricity is known
+     */
+    private int next() {
+        boolean periphery = searches % 2 == 1;
+        int best = -1;
+        for (int v = 0; v < lower.length; v++) {
+            if (lower[v] == upper[v])
+                continue;
+            if (best < 0) {
+                best = v;
+                continue;
+            }
+            int compare = periphery ? Integer.compare(upper[v], upper[best]) : Integer.compare(lower[best], lower[v]);
+            if (compare > 0 || (compare == 0 && graph.degree(v) > graph.degree(best)))
+                best = v;
+        }
+        return best;
+    }
+
+    /*
+    Tightens the bounds of every town the search from v reached
+     */
+    private void update(int v, int eccentricity, int[] distance) {
+        searches++;
+        lower[v] = eccentricity;
+        upper[v] = eccentricity;
+        for (int w = 0; w < distance.length; w++) {
+            int d = distance[w];
+            if (d == UNKNOWN)
+                continue;
+            lower[w] = Math.max(lower[w], Math.max(d, eccentricity - d));
+            upper[w] = (int) Math.min(upper[w], (long) eccentricity + d);
+        }
+    }
+
+    /*
+    Dijkstra's algorithm from source, leaving each town's distance in
+    distance; returns the largest distance reached
+     */
+    private static int search(CompactGraph graph, int source, int[] distance, LongHeap heap) {
+        Arrays.fill(distance, UNKNOWN);
+        distance[source] = 0;
+        int farthest = 0;
+        heap.add(LongHeap.pack(0, source));
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int u = LongHeap.index(entry);
+            if (LongHeap.distance(entry) > distance[u])
+                continue;
+            farthest = Math.max(farthest, distance[u]);
+            for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                int w = graph.arcTarget(arc);
+                long candidate = (long) distance[u] + graph.arcWeight(arc);
+                if (candidate < distance[w]) {
+                    distance[w] = (int) Math.min(candidate, UNKNOWN - 1);
+                    heap.add(LongHeap.pack(distance[w], w));
+                }
+            }
+        }
+        return farthest;
+    }
+}
@@ -0,0 +1,122 @@
+import static org.junit.Assert.*;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class DiameterBoundsTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testChain() {
+		Graph chain = new Graph();
+		Town[] t = new Town[5];
+		for (int i = 0; i < t.length; i++) {
+			t[i] = new Town("Town_" + i);
+			chain.addVertex(t[i]);
+			if (i > 0)
+				chain.addEdge(t[i - 1], t[i], 1, "Road_" + i);
+		}
+		chain.addVertex(new Town("Island"));
+		DiameterBounds bounds = DiameterBounds.compute(chain);
+		assertTrue(bounds.isExact());
+		assertEquals(4, bounds.getDiameterLowerBound());
+		assertEquals(2, bounds.getRadiusUpperBound());
+		assertEquals(0, bounds.eccentricityUpperBound(new Town("Island")));
+	}
+
+	@Test
+	public void testMatchesAllSearches() {
+		CompactGraph compact = new CompactGraph(graph);
+		checkAgainstAllSearches(compact, DiameterBounds.compute(compact, Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void testFewSearchesOnLargeGraph() {
+		Town[] t = RandomGraphs.towns(1_500);
+		Graph large = RandomGraphs.graph(t, RandomGraphs.connected(t, 48, 1_500, 30, 30));
+		CompactGraph compact = new CompactGraph(large);
+		DiameterBounds bounds = DiameterBounds.compute(compact, Integer.MAX_VALUE);
+		checkAgainstAllSearches(compact, bounds);
+		assertTrue(bounds.getSearchCount() < t.length / 10);
+	}
+
+	@Test
+	public void testSearchLimit() {
+		CompactGraph compact = new CompactGraph(graph);
+		DiameterBounds bounds = DiameterBounds.compute(compact, 1);
+		assertEquals(1, bounds.getSearchCount());
+		int diameter = 0;
+		for (int v = 0; v < compact.townCount(); v++) {
+			int eccentricity = eccentricity(compact, v);
+			assertTrue(bounds.eccentricityLowerBound(compact.getTown(v)) <= eccentricity);
+			assertTrue(bounds.eccentricityUpperBound(compact.getTown(v)) >= eccentricity);
+			diameter = Math.max(diameter, eccentricity);
+		}
+		assertTrue(bounds.getDiameterLowerBound() <= diameter);
+		assertTrue(bounds.getDiameterUpperBound() >= diameter);
+	}
+
+	/*
+	Checks the exact diameter and radius, and every town's bounds, against
+	a search from every town
+	 */
+	private static void checkAgainstAllSearches(CompactGraph compact, DiameterBounds bounds) {
+		int diameter = 0;
+		int radius = Integer.MAX_VALUE;
+		for (int v = 0; v < compact.townCount(); v++) {
+			int eccentricity = eccentricity(compact, v);
+			Town town = compact.getTown(v);
+			assertTrue(bounds.eccentricityLowerBound(town) <= eccentricity);
+			assertTrue(bounds.eccentricityUpperBound(town) >= eccentricity);
+			diameter = Math.max(diameter, eccentricity);
+			radius = Math.min(radius, eccentricity);
+		}
+		assertTrue(bounds.isExact());
+		assertEquals(diameter, bounds.getDiameterLowerBound());
+		assertEquals(diameter, bounds.getDiameterUpperBound());
+		assertEquals(radius, bounds.getRadiusLowerBound());
+		assertEquals(radius, bounds.getRadiusUpperBound());
+	}
+
+	private static int eccentricity(CompactGraph compact, int v) {
+		ShortestPathTree tree = ShortestPathTree.dijkstra(compact, compact.getTown(v));
+		int farthest = 0;
+		for (int w = 0; w < compact.townCount(); w++)
+			if (tree.distance(compact.getTown(w)) != Integer.MAX_VALUE)
+				farthest = Math.max(farthest, tree.distance(compact.getTown(w)));
+		return farthest;
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * @author Christian Aguirre
+ */
+
+/**
+ * Answers the length of the shortest path between two towns from a
+ * precomputed index, without searching the graph
+ */
+public interface DistanceOracle {
+    /**
+     * Returns the length of the shortest path between two towns
+     * @param source the first town
+     * @param target the second town
+     * @return the distance, or Integer.MAX_VALUE if there is no path or a
+     * town is not known to the oracle
+     */
+    int distance(Town source, Town target);
+}
@@ -3,37 +3,57 @@
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.Scene;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
+import javafx.stage.Stage;
 
 public class FXMainPane extends VBox {
 	Label addTownLabel, townNameLabel, addRoadLabel, roadNameLabel, selectTownsForRoadLabel, findConnectionLabel, findConnectionFromLabel, toLabel, distLabel;
 	VBox addTownVBox, addRoadVBox, findConnectionVBox, bottomVBox;
 	HBox addTownHBox, addRoadNameHBox, addRoadHBox, addRoadTownsHBox, findConnectionHBox, bottomHBox;
-	Button addTownButton, addRoadButton, findConnectionButton, readFileButton, exitButton;
+	Button addTownButton, addRoadButton, findConnectionButton, readFileButton, exitButton, cancelLoadButton, showMapButton;
+	ProgressBar loadProgressBar;
+	Label loadStatusLabel;
 	Button displayTownsButton, displayRoadsButton;
 	TextField addTownTextField, addRoadTextField, specifyDistanceTextField;
-	TextArea findConnectionTextArea, displayTowns, displayRoads;
+	TextArea findConnectionTextArea;
+	ListView<String> displayTowns, displayRoads;
+	PagedNameList townListItems, roadListItems;
 	ComboBox<String> addSourceTownComboBox, addDestTownComboBox, sourceConnectionComboBox, destConnectionComboBox; 
 	Insets inset, inset2, inset3;
 
 	TownGraphManager graph;
+	//largest number of town names offered by a ComboBox at once
+	private static final int COMPLETION_LIMIT = 50;
+	//number of file lines loaded between progress updates
+	private static final int LOAD_BATCH_SIZE = 2000;
+	private Task<Void> loadTask;
+	//checked by the loading thread after each batch; until that thread has
+	//stopped, only the town ComboBoxes use the graph, through its locked queries
+	private volatile boolean cancelLoading;
 	private Alert alert = new Alert(AlertType.INFORMATION);
+	//the map window, or null while it is closed
+	private Stage mapStage;
+	private GraphMapView mapView;
 	
 	
 	FXMainPane() {
@@ -51,7 +71,9 @@ public class FXMainPane extends VBox {
 		addTownTextField = new TextField();
 		addTownTextField.setPrefColumnCount(10);
 		
-		displayTowns = new TextArea();
+		//only the visible rows of the town list are fetched from the graph
+		townListItems = new PagedNameList(graph::townCount, graph::allTowns);
+		displayTowns = new ListView<>(townListItems);
 		
 		addTownButton = new Button("Add Town");
 		displayTownsButton = new Button("Display Towns");
@@ -95,7 +117,8 @@ public class FXMainPane extends VBox {
 		selectTownsForRoadLabel = new Label("Select Towns the Road Connects");
 		distLabel = new Label("Distance");
 		
-		displayRoads = new TextArea();
+		roadListItems = new PagedNameList(graph::roadCount, graph::allRoads);
+		displayRoads = new ListView<>(roadListItems);
 
 		//ComboBoxes of all towns
 		addSourceTownComboBox = new ComboBox<String>();
@@ -190,45 +213,44 @@ public class FXMainPane extends VBox {
 
 	    findConnectionHBox.setAlignment(Pos.CENTER);
 	    findConnectionVBox.setAlignment(Pos.CENTER);
+
+	    //let the town ComboBoxes complete partially typed names
+	    enableAutocomplete(addSourceTownComboBox);
+	    enableAutocomplete(addDestTownComboBox);
+	    enableAutocomplete(sourceConnectionComboBox);
+	    enableAutocomplete(destConnectionComboBox);
 		
 	    //bottom button area components
 	    bottomHBox = new HBox();
 		readFileButton = new Button("Read File");
 		exitButton =new Button("Exit");
+		showMapButton = new Button("Show Map");
+		cancelLoadButton = new Button("Cancel Loading");
+		cancelLoadButton.setVisible(false);
+		loadProgressBar = new ProgressBar(0);
+		loadProgressBar.setVisible(false);
+		loadStatusLabel = new Label();
 
 		bottomVBox = new VBox();
 		bottomVBox.getChildren().addAll(bottomHBox);
 		bottomVBox.setStyle("-fx-border-color: gray;");
 
-		bottomHBox.getChildren().addAll(readFileButton, exitButton);
+		bottomHBox.getChildren().addAll(readFileButton, loadProgressBar, loadStatusLabel, cancelLoadButton, showMapButton, exitButton);
 		
 		bottomHBox.setAlignment(Pos.CENTER);
 
 		VBox.setMargin(bottomHBox,inset);
 	    HBox.setMargin(readFileButton, inset);
 	    HBox.setMargin(exitButton, inset);
+	    HBox.setMargin(showMapButton, inset);
+	    HBox.setMargin(loadProgressBar, inset);
+	    HBox.setMargin(cancelLoadButton, inset);
 
 		getChildren().addAll(addTown, addRoad, findConnectionVBox, bottomHBox);
 		
 		//event handling for buttons
-		displayTownsButton.setOnAction(event -> {
-			ArrayList<String> towns = graph.allTowns();
-			String result = "";
-			for(String element : towns)
-			{
-				result += element+"\n";
-			}
-			displayTowns.setText(result);
-		});
-		displayRoadsButton.setOnAction(event -> {
-			ArrayList<String> roads = graph.allRoads();
-			String result = "";
-			for(String element : roads)
-			{
-				result += element+"\n";
-			}
-			displayRoads.setText(result);
-		});
+		displayTownsButton.setOnAction(event -> townListItems.refresh());
+		displayRoadsButton.setOnAction(event -> roadListItems.refresh());
 		addRoadButton.setOnAction(event -> {
 			Town town1;
 			Town town2;
@@ -306,6 +328,8 @@ public class FXMainPane extends VBox {
 				findConnectionTextArea.appendText("You can't get there from here");
 			}
 			else {
+				if (mapView != null)
+					mapView.showPath(graph.getPathTowns(town1.getName(), town2.getName()));
 				for (String s : path){
 					result+=s+"\n";
 					//findConnectionTextArea.appendText(s);
@@ -320,6 +344,10 @@ public class FXMainPane extends VBox {
 				e.printStackTrace();
 			}
 		});
+		showMapButton.setOnAction(event -> showMap());
+		cancelLoadButton.setOnAction(event -> {
+			cancelLoading = true;
+		});
 		exitButton.setOnAction(event -> {
        	 	Platform.exit();
        	 	System.exit(0);
@@ -328,40 +356,136 @@ public class FXMainPane extends VBox {
 	}
 	//update the ComboBoxes that contain the town names
 	public void updateComboBoxes() {
-		ArrayList<String> townList = graph.allTowns();
-		for (String town : townList){
-			addDestTownComboBox.getItems().clear();
-			sourceConnectionComboBox.getItems().clear();
-			destConnectionComboBox.getItems().clear();
-			addSourceTownComboBox.getItems().clear();
-		}
-		for (String town : townList){
-			addDestTownComboBox.getItems().addAll(town);
-			sourceConnectionComboBox.getItems().addAll(town);
-			destConnectionComboBox.getItems().addAll(town);
-			addSourceTownComboBox.getItems().addAll(town); 
-		}	
+		for (ComboBox<String> comboBox : townComboBoxes())
+			updateCompletions(comboBox);
+	}
+
+	//make a ComboBox editable and refresh its choices as the user types
+	private void enableAutocomplete(ComboBox<String> comboBox) {
+		comboBox.setEditable(true);
+		comboBox.getEditor().textProperty().addListener((observable, oldText, newText) -> {
+			if (newText == null || newText.equals(comboBox.getValue()))
+				return;
+			updateCompletions(comboBox);
+			if (comboBox.isFocused() && !comboBox.getItems().isEmpty())
+				comboBox.show();
+		});
+	}
+
+	//fill a ComboBox with the first town names matching what has been typed into it
+	private void updateCompletions(ComboBox<String> comboBox) {
+		String prefix = comboBox.getEditor().getText();
+		if (prefix == null)
+			prefix = "";
+		comboBox.getItems().setAll(graph.townsWithPrefix(prefix, COMPLETION_LIMIT));
 	}
 	
-	//Select the file to read the Towns and Roads from
+	//Select the file to read the Towns and Roads from and load it in the background
 	public void readFile() {
 		FileChooser chooser = new FileChooser();
-		File selectedFile = null;
-		try {
-			selectedFile = chooser.showOpenDialog(null);
-			if(selectedFile != null) {
-				graph.populateTownGraph(selectedFile);
-				}
-			updateComboBoxes();
-		} catch (FileNotFoundException e) {
+		File selectedFile = chooser.showOpenDialog(null);
+		if (selectedFile == null)
+			return;
+
+		loadTask = new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				String name = selectedFile.getName().toLowerCase();
+				TownGraphManager.LoadListener listener = (newTowns, bytesRead, totalBytes) -> {
+					updateProgress(bytesRead, totalBytes);
+					if (!newTowns.isEmpty())
+						Platform.runLater(() -> addLoadedTowns(newTowns));
+					return !cancelLoading;
+				};
+				//standard road network formats are read by RoadNetworkIO
+				if (name.endsWith(".gr") || name.endsWith(".csv"))
+					graph.importRoadNetwork(selectedFile, LOAD_BATCH_SIZE, listener);
+				else
+					graph.populateTownGraph(selectedFile, LOAD_BATCH_SIZE, listener);
+				return null;
+			}
+		};
+		loadProgressBar.progressProperty().bind(loadTask.progressProperty());
+		loadTask.setOnSucceeded(event -> finishLoading(cancelLoading ? "Loading cancelled"
+				: "Loaded " + graph.townCount() + " towns"));
+		loadTask.setOnFailed(event -> {
+			Throwable error = loadTask.getException();
+			finishLoading("");
 			alert.setTitle("File Error");
-			alert.setHeaderText("File not found");
+			if (error instanceof FileNotFoundException)
+				alert.setHeaderText("File not found");
+			else
+				alert.setHeaderText("Input error");
 			alert.showAndWait();
+		});
+
+		cancelLoading = false;
+		setLoading(true);
+		loadStatusLabel.setText("Loading " + selectedFile.getName());
+		Thread loader = new Thread(loadTask, "town-graph-loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	//open the map window, or redraw it from the current graph if it is already open
+	private void showMap() {
+		if (mapStage == null) {
+			mapView = new GraphMapView();
+			mapStage = new Stage();
+			mapStage.setTitle("Town Map");
+			mapStage.setScene(new Scene(mapView, 800, 600));
+			mapStage.setOnHidden(event -> {
+				mapView.dispose();
+				mapView = null;
+				mapStage = null;
+			});
+			mapStage.show();
 		}
-		catch (IOException e) {
-			alert.setTitle("File Error");
-			alert.setHeaderText("Input error");
-			alert.showAndWait();
+		mapView.setGraph(new CompactGraph(graph.getGraph()));
+		mapStage.toFront();
+	}
+
+	//merge a batch of newly loaded towns into the ComboBoxes, which stay usable while
+	//loading, without waiting for the loading thread to release the graph
+	private void addLoadedTowns(List<String> newTowns) {
+		for (ComboBox<String> comboBox : townComboBoxes()) {
+			String prefix = comboBox.getEditor().getText();
+			if (prefix == null)
+				prefix = "";
+			ArrayList<String> choices = new ArrayList<>(comboBox.getItems());
+			for (String town : newTowns)
+				if (town.startsWith(prefix))
+					choices.add(town);
+			choices.sort(null);
+			comboBox.getItems().setAll(choices.subList(0, Math.min(choices.size(), COMPLETION_LIMIT)));
 		}
 	}
+
+	private void finishLoading(String status) {
+		setLoading(false);
+		loadProgressBar.progressProperty().unbind();
+		loadStatusLabel.setText(status);
+		loadTask = null;
+		updateComboBoxes();
+	}
+
+	//disable everything that changes the graph or needs all of it while a file is
+	//loading; the town ComboBoxes stay enabled so towns can be picked as they arrive
+	private void setLoading(boolean loading) {
+		readFileButton.setDisable(loading);
+		addTownButton.setDisable(loading);
+		addRoadButton.setDisable(loading);
+		findConnectionButton.setDisable(loading);
+		showMapButton.setDisable(loading);
+		displayTownsButton.setDisable(loading);
+		displayRoadsButton.setDisable(loading);
+		displayTowns.setDisable(loading);
+		displayRoads.setDisable(loading);
+		loadProgressBar.setVisible(loading);
+		cancelLoadButton.setVisible(loading);
+	}
+
+	private List<ComboBox<String>> townComboBoxes() {
+		return List.of(addSourceTownComboBox, addDestTownComboBox, sourceConnectionComboBox, destConnectionComboBox);
+	}
 }
@@ -3,17 +3,38 @@
  */
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Graph implements GraphInterface<Town, Road>{
     private final HashSet<Town> vertices;
     private final HashSet<Road> edges;
     private final Map<String, Town> adjacent;
+    private final SortedNameIndex townNames;
+    private final SortedNameIndex roadNames;
+    /*
+    For each town, the roads to each neighbouring town. The fastest of
+    several parallel roads is always kept first in its list.
+     */
+    private final Map<Town, Map<Town, ArrayList<Road>>> neighbors;
+    //incremented by every change, so snapshots can tell when they are stale
+    private long version;
+    //incremented when towns or roads are added or removed, but not by weight changes
+    private long structureVersion;
+    //roads whose weights changed since the last structural change, oldest first
+    private final List<Road> reweighted = new ArrayList<>();
+    //the snapshot searches run on, rebuilt or patched after the graph changes
+    private volatile Snapshot snapshot;
+    //copied on change, so listeners can be added while a change is being reported
+    private final List<GraphListener> listeners = new CopyOnWriteArrayList<>();
 
 
     public Graph(){
        vertices = new HashSet<>();
        edges = new HashSet<>();
+       neighbors = new HashMap<>();
        adjacent = new HashMap<>();
+       townNames = new SortedNameIndex();
+       roadNames = new SortedNameIndex();
     }
 
     /**
@@ -23,7 +44,8 @@ public class Graph implements GraphInterface<Town, Road>{
      * returns null
      *
      * In undirected graphs, the returned edge may have its source and target
-     * vertices in the opposite order.
+     * vertices in the opposite order. If several parallel roads connect the
+     * two towns, the one with the lowest weight is returned.
      *
      * @param sourceVertex source vertex of the edge.
      * @param destinationVertex target vertex of the edge.
@@ -32,16 +54,33 @@ public class Graph implements GraphInterface<Town, Road>{
      */
     @Override
     public Road getEdge(Town sourceVertex, Town destinationVertex) {
-        if (sourceVertex != null && destinationVertex != null) {
-            for(Road current : getEdges())
-                if (current.contains(sourceVertex) &&
-                        current.contains(destinationVertex))
-                    return current;
-        }
-        return null;
+        List<Road> roads = roadsBetween(sourceVertex, destinationVertex);
+        if (roads.isEmpty())
+            return null;
+        return roads.get(0);
 
     }
 
+    /**
+     * Returns every road directly connecting the two towns, fastest first.
+     * Towns may be joined by several parallel roads with different names.
+     * If either town is null or not in the graph, returns an empty list.
+     *
+     * @param sourceVertex one end of the roads
+     * @param destinationVertex the other end of the roads
+     *
+     * @return an unmodifiable list of the roads between the two towns
+     */
+    public List<Road> roadsBetween(Town sourceVertex, Town destinationVertex) {
+        Map<Town, ArrayList<Road>> adjacentRoads = getNeighbors().get(sourceVertex);
+        if (adjacentRoads != null) {
+            ArrayList<Road> roads = adjacentRoads.get(destinationVertex);
+            if (roads != null)
+                return Collections.unmodifiableList(roads);
+        }
+        return Collections.emptyList();
+    }
+
     /**
      * Creates a new edge in this graph, going from the source vertex to the
      * target vertex, and returns the created edge.
@@ -50,6 +89,9 @@ public class Graph implements GraphInterface<Town, Road>{
      * graph. If they are not found in graph IllegalArgumentException is
      * thrown.
      *
+     * Roads with different names may connect the same two towns. Adding a
+     * road with the same name and towns as an existing road leaves the graph
+     * unchanged and returns null.
      *
      * @param sourceVertex source vertex of the edge.
      * @param destinationVertex target vertex of the edge.
@@ -76,8 +118,14 @@ public class Graph implements GraphInterface<Town, Road>{
         boolean result = getEdges().add(newRoad);
 
 
-            if (result)
+            if (result) {
+                getRoadNames().add(newRoad.getName());
+                link(newRoad);
+                structureChanged();
+                for (GraphListener listener : listeners)
+                    listener.roadAdded(newRoad);
                 return newRoad;
+            }
 
             return null;
 
@@ -107,6 +155,11 @@ public class Graph implements GraphInterface<Town, Road>{
             if (getVertices().contains(v))
                 return false;
             getVertices().add(v);
+            getNeighbors().put(v, new HashMap<>());
+            getTownNames().add(v.getName());
+            structureChanged();
+            for (GraphListener listener : listeners)
+                listener.townAdded(v);
             return true;
         } else
             throw new NullPointerException();
@@ -126,12 +179,7 @@ public class Graph implements GraphInterface<Town, Road>{
      */
     @Override
     public boolean containsEdge(Town sourceVertex, Town destinationVertex) {
-
-        for(Road r : getEdges())
-            if ((sourceVertex.equals(r.getSource()) || sourceVertex.equals(r.getDestination()))
-                    && (destinationVertex.equals(r.getDestination()) || destinationVertex.equals(r.getSource())))
-                return true;
-        return false;
+        return !roadsBetween(sourceVertex, destinationVertex).isEmpty();
     }
 
     /**
@@ -146,11 +194,7 @@ public class Graph implements GraphInterface<Town, Road>{
      */
     @Override
     public boolean containsVertex(Town v) {
-
-        for (Town current : getVertices())
-            if (current.equals(v))
-                return true;
-        return false;
+        return v != null && getVertices().contains(v);
     }
 
     /**
@@ -188,14 +232,9 @@ public class Graph implements GraphInterface<Town, Road>{
         if(!containsVertex(vertex))
             throw new IllegalArgumentException();
 
-        Iterator<Road> iterator = getEdges().iterator();
-
         HashSet<Road> result = new HashSet<>();
-        while(iterator.hasNext()) {
-            Road current = iterator.next();
-            if(current.contains(vertex))
-                result.add(current);
-        }
+        for (ArrayList<Road> roads : getNeighbors().get(vertex).values())
+            result.addAll(roads);
         return result;
     }
 
@@ -218,14 +257,17 @@ public class Graph implements GraphInterface<Town, Road>{
      */
     @Override
     public Road removeEdge(Town sourceVertex, Town destinationVertex, int weight, String description) {
-        Road removedRoad = new Road(sourceVertex, destinationVertex, weight, description);
 
-        for (Road current : getEdges())
+        for (Road current : roadsBetween(sourceVertex, destinationVertex))
             if ((weight > -1 && weight == current.getWeight() || weight == -1)
-                    && current.equals(removedRoad)
                     && ((description == null) || description.equals(current.getName()))) {
 
                 getEdges().remove(current);
+                getRoadNames().remove(current.getName());
+                unlink(current);
+                structureChanged();
+                for (GraphListener listener : listeners)
+                    listener.roadRemoved(current);
 
                 return current;
             }
@@ -250,20 +292,233 @@ public class Graph implements GraphInterface<Town, Road>{
      */
     @Override
     public boolean removeVertex(Town v) {
-        HashSet<Road> edgesToBeRemoved = new HashSet<>();
         if (getVertices().contains(v)) {
             getVertices().remove(v);
-
-            for (Road current : getEdges())
-                if (current.contains(v))
-                    edgesToBeRemoved.add(current);
-            for (Road road : edgesToBeRemoved)
-                getEdges().remove(road);
+            getTownNames().remove(v.getName());
+
+            for (Map.Entry<Town, ArrayList<Road>> entry : getNeighbors().remove(v).entrySet()) {
+                for (Road road : entry.getValue()) {
+                    getEdges().remove(road);
+                    getRoadNames().remove(road.getName());
+                    for (GraphListener listener : listeners)
+                        listener.roadRemoved(road);
+                }
+                Map<Town, ArrayList<Road>> otherEnd = getNeighbors().get(entry.getKey());
+                if (otherEnd != null)
+                    otherEnd.remove(v);
+            }
+            structureChanged();
+            for (GraphListener listener : listeners)
+                listener.townRemoved(v);
             return true;
         }
         return false;
     }
 
+    /**
+     * Adds many vertices at once. The name index is updated once for the
+     * whole batch instead of once per vertex.
+     *
+     * @param towns the vertices to add
+     *
+     * @return the vertices that were not already in the graph, in the order
+     * given
+     *
+     * @throws NullPointerException if any of the vertices is null; the graph
+     * is then left unchanged.
+     */
+    public List<Town> addVertices(Collection<Town> towns) throws NullPointerException {
+        for (Town town : towns)
+            if (town == null)
+                throw new NullPointerException();
+
+        List<Town> added = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Town town : towns) {
+            if (getVertices().add(town)) {
+                getNeighbors().put(town, new HashMap<>());
+                added.add(town);
+                names.add(town.getName());
+            }
+        }
+        if (added.isEmpty())
+            return added;
+        getTownNames().addAll(names);
+        structureChanged();
+        for (Town town : added)
+            for (GraphListener listener : listeners)
+                listener.townAdded(town);
+        return added;
+    }
+
+    /**
+     * Adds many edges at once. Every edge is checked before any is added,
+     * and the name index is updated once for the whole batch. An edge with
+     * the same name and towns as one already in the graph, or earlier in
+     * the batch, is skipped.
+     *
+     * @param roads the edges to add
+     *
+     * @return the edges that were added, in the order given; like addEdge,
+     * the graph keeps its own copies, so these are not the roads passed in
+     *
+     * @throws IllegalArgumentException if a source or target vertex is not
+     * found in the graph; the graph is then left unchanged.
+     * @throws NullPointerException if a road or any of its vertices is null;
+     * the graph is then left unchanged.
+     */
+    public List<Road> addEdges(Collection<Road> roads) throws IllegalArgumentException, NullPointerException {
+        for (Road road : roads) {
+            if (road.getSource() == null || road.getDestination() == null)
+                throw new NullPointerException();
+            if (!containsVertex(road.getSource()) || !containsVertex(road.getDestination()))
+                throw new IllegalArgumentException();
+        }
+
+        List<Road> added = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Road road : roads) {
+            Road newRoad = new Road(road.getSource(), road.getDestination(), road.getWeight(), road.getName());
+            if (getEdges().add(newRoad)) {
+                link(newRoad);
+                added.add(newRoad);
+                names.add(newRoad.getName());
+            }
+        }
+        if (added.isEmpty())
+            return added;
+        getRoadNames().addAll(names);
+        structureChanged();
+        for (Road road : added)
+            for (GraphListener listener : listeners)
+                listener.roadAdded(road);
+        return added;
+    }
+
+    /**
+     * Removes many vertices and all their touching edges at once. Each edge
+     * is found through the neighbour lists of its own vertices, and the name
+     * indexes are updated once for the whole batch.
+     *
+     * @param towns the vertices to remove; those not in the graph and null
+     * are ignored
+     *
+     * @return the vertices that were removed
+     */
+    public List<Town> removeVertices(Collection<Town> towns) {
+        List<Town> removed = new ArrayList<>();
+        List<Road> removedRoads = new ArrayList<>();
+        List<String> removedTownNames = new ArrayList<>();
+        List<String> removedRoadNames = new ArrayList<>();
+        for (Town v : towns) {
+            if (v == null || !getVertices().remove(v))
+                continue;
+            removed.add(v);
+            removedTownNames.add(v.getName());
+            for (Map.Entry<Town, ArrayList<Road>> entry : getNeighbors().remove(v).entrySet()) {
+                for (Road road : entry.getValue()) {
+                    //a road between two removed towns is met twice
+                    if (getEdges().remove(road)) {
+                        removedRoads.add(road);
+                        removedRoadNames.add(road.getName());
+                    }
+                }
+                Map<Town, ArrayList<Road>> otherEnd = getNeighbors().get(entry.getKey());
+                if (otherEnd != null)
+                    otherEnd.remove(v);
+            }
+        }
+        if (removed.isEmpty())
+            return removed;
+        getTownNames().removeAll(removedTownNames);
+        getRoadNames().removeAll(removedRoadNames);
+        structureChanged();
+        for (Road road : removedRoads)
+            for (GraphListener listener : listeners)
+                listener.roadRemoved(road);
+        for (Town town : removed)
+            for (GraphListener listener : listeners)
+                listener.townRemoved(town);
+        return removed;
+    }
+
+    /**
+     * Changes the weight of an edge in place, keeping the same Road object.
+     * Listeners are told through roadWeightChanged, with the old weight,
+     * so caches drop only what the new weight may have made wrong.
+     *
+     * @param sourceVertex source vertex of the edge.
+     * @param destinationVertex target vertex of the edge.
+     * @param description name of the edge
+     * @param weight the new weight
+     *
+     * @return the updated edge, or null if there is no such edge.
+     *
+     * @throws IllegalArgumentException if weight is negative.
+     */
+    public Road updateEdgeWeight(Town sourceVertex, Town destinationVertex, String description, int weight)
+            throws IllegalArgumentException {
+        List<Road> updated = updateEdgeWeights(Collections.singletonList(
+                new Road(sourceVertex, destinationVertex, weight, description)));
+        return updated.isEmpty() ? null : updated.get(0);
+    }
+
+    /**
+     * Changes the weights of many edges at once. Each update is given as a
+     * Road with the towns and name of an edge in the graph and its new
+     * weight. Updates for edges not in the graph are skipped. Listeners
+     * hear about the changes only once all of them have been made.
+     *
+     * @param updates the edges with their new weights
+     *
+     * @return the edges of the graph that were updated
+     *
+     * @throws IllegalArgumentException if a weight is negative; the graph
+     * is then left unchanged.
+     */
+    public List<Road> updateEdgeWeights(Collection<Road> updates) throws IllegalArgumentException {
+        for (Road update : updates)
+            if (update.getWeight() < 0)
+                throw new IllegalArgumentException("Weights cannot be negative: " + update.getWeight());
+
+        List<Road> updated = new ArrayList<>();
+        List<Integer> oldWeights = new ArrayList<>();
+        for (Road update : updates) {
+            Road road = findRoad(update);
+            if (road == null || road.getWeight() == update.getWeight())
+                continue;
+            oldWeights.add(road.getWeight());
+            road.setWeight(update.getWeight());
+            moveFastestFirst(getNeighbors().get(road.getSource()).get(road.getDestination()));
+            if (!road.getSource().equals(road.getDestination()))
+                moveFastestFirst(getNeighbors().get(road.getDestination()).get(road.getSource()));
+            updated.add(road);
+        }
+        if (updated.isEmpty())
+            return updated;
+        version++;
+        reweighted.addAll(updated);
+        if (reweighted.size() > getEdges().size()) {
+            //patching would now cost more than rebuilding the snapshot
+            reweighted.clear();
+            snapshot = null;
+        }
+        for (int i = 0; i < updated.size(); i++)
+            for (GraphListener listener : listeners)
+                listener.roadWeightChanged(updated.get(i), oldWeights.get(i));
+        return updated;
+    }
+
+    /*
+    Returns the graph's own road equal to the given one, or null
+     */
+    private Road findRoad(Road road) {
+        for (Road current : roadsBetween(road.getSource(), road.getDestination()))
+            if (current.equals(road))
+                return current;
+        return null;
+    }
+
     /**
      * Returns a set of the vertices contained in this graph. The set is backed
      * by the graph, so changes to the graph are reflected in the set. If the
@@ -295,17 +550,56 @@ public class Graph implements GraphInterface<Town, Road>{
     @Override
     public ArrayList<String> shortestPath(Town sourceVertex, Town destinationVertex) {
         ArrayList<String> path = new ArrayList<>();
-        dijkstraShortestPath(sourceVertex);
-        Town newTown = destinationVertex;
-        while (!newTown.equals(sourceVertex)) {
-            if (getAdjacent().containsKey(newTown.getName())) {
-                Town parentTown = getAdjacent().get(newTown.getName());
-                Road road = getEdge(parentTown, newTown);
-                path.add(0, parentTown.getName() + " via " + road.getName() + " to " + newTown.getName() + " " + road.getWeight() + " mi");
-                newTown = parentTown;
-            } else
+        CompactGraph snapshot = getSnapshot();
+        SearchWorkspace workspace = search(snapshot, sourceVertex, destinationVertex);
+        if (workspace == null)
+            return path;
+        int v = snapshot.indexOf(destinationVertex);
+        int source = snapshot.indexOf(sourceVertex);
+        while (v != source) {
+            int e = workspace.parentRoad(v);
+            if (e < 0) {
                 path.clear();
+                break;
+            }
+            int parent = snapshot.roadSource(e) == v ? snapshot.roadDestination(e) : snapshot.roadSource(e);
+            Town parentTown = snapshot.getTown(parent);
+            Town newTown = snapshot.getTown(v);
+            Road road = getEdge(parentTown, newTown);
+            path.add(parentTown.getName() + " via " + road.getName() + " to " + newTown.getName() + " " + road.getWeight() + " mi");
+            v = parent;
         }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the towns along the shortest path from sourceVertex to
+     * destinationVertex, in order and including both ends
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @return the towns on the path, or an empty list if there is no path
+     */
+    public ArrayList<Town> shortestPathTowns(Town sourceVertex, Town destinationVertex) {
+        ArrayList<Town> path = new ArrayList<>();
+        CompactGraph snapshot = getSnapshot();
+        SearchWorkspace workspace = search(snapshot, sourceVertex, destinationVertex);
+        if (workspace == null) {
+            if (sourceVertex.equals(destinationVertex))
+                path.add(destinationVertex);
+            return path;
+        }
+        int v = snapshot.indexOf(destinationVertex);
+        int source = snapshot.indexOf(sourceVertex);
+        path.add(snapshot.getTown(v));
+        while (v != source) {
+            int e = workspace.parentRoad(v);
+            if (e < 0)
+                return new ArrayList<>();
+            v = snapshot.roadSource(e) == v ? snapshot.roadDestination(e) : snapshot.roadSource(e);
+            path.add(snapshot.getTown(v));
+        }
+        Collections.reverse(path);
         return path;
     }
 
@@ -318,57 +612,130 @@ public class Graph implements GraphInterface<Town, Road>{
      *
      */
     @Override
-    public void dijkstraShortestPath(Town sourceVertex) {
-        ArrayList<Town> unvisitedTown = new ArrayList<>();
-        HashMap<String, Integer> weight = new HashMap<>();
+    public synchronized void dijkstraShortestPath(Town sourceVertex) {
+        CompactGraph snapshot = getSnapshot();
+        SearchWorkspace workspace = search(snapshot, sourceVertex, null);
         getAdjacent().clear();
-        /*
-        Add unvisited town
-        Add distance (or weight) between each vertex
-        Set adjacent towns from source to null
-         */
-        for (Town town : getVertices()) {
-            unvisitedTown.add(town);
-            weight.put(town.getName(), Integer.MAX_VALUE);
-            getAdjacent().put(town.getName(), null);
+        for (int v = 0; v < snapshot.townCount(); v++) {
+            int e = workspace == null ? -1 : workspace.parentRoad(v);
+            Town parent = e < 0 ? null
+                    : snapshot.getTown(snapshot.roadSource(e) == v ? snapshot.roadDestination(e) : snapshot.roadSource(e));
+            getAdjacent().put(snapshot.getTown(v).getName(), parent);
         }
-        //Start source vertex at 0
-        weight.put(sourceVertex.getName(), 0);
-
-        /*
-        While the unvisited town is not empty
-        For each adjacent town from source and then after check which edge is lower
-         */
-        while (!unvisitedTown.isEmpty()) {
-            int shortestRoad = 0;
-
-            for (int i = 1; i < unvisitedTown.size(); i++) {
-                Town unvisitedVertex = unvisitedTown.get(i);
-
-                //If the weight(edge) of the unvisited town(vertex) is less than the other distance identify for each
-                if (weight.get(unvisitedVertex.getName()) < weight.get(unvisitedTown.get(shortestRoad).getName()))
-                    shortestRoad = i;
-            }
+    }
 
-            Town closestTown = unvisitedTown.remove(shortestRoad);
+    /*
+    Searches from sourceVertex in the calling thread's workspace, stopping
+    at destinationVertex unless it is null. Returns null if either town is
+    not in the graph.
+     */
+    private SearchWorkspace search(CompactGraph snapshot, Town sourceVertex, Town destinationVertex) {
+        int source = snapshot.indexOf(sourceVertex);
+        int target = destinationVertex == null ? -1 : snapshot.indexOf(destinationVertex);
+        if (source < 0 || (destinationVertex != null && target < 0))
+            return null;
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.search(snapshot, source, target);
+        return workspace;
+    }
 
-                /*
-                Get the smallest edge between each vertex from the source then
-                on the next iteration on after find the lowest edge until each vertex has been processed
-                 */
-                for (Road road : edgesOf(closestTown)) {
-                Town neighbor = road.getDestination();
+    /**
+     * Returns an array-backed snapshot of the graph as it is now, holding
+     * only the fastest road between each pair of towns. The same
+     * snapshot is returned until the graph changes, so it is only built
+     * once for any number of searches in between. If only road weights
+     * have changed, the last snapshot is patched with the new weights
+     * instead of being built again.
+     * @return the snapshot for the current version
+     */
+    public CompactGraph getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version)
+            return current.graph;
+        if (current == null || current.structureVersion != structureVersion)
+            current = new Snapshot(version, structureVersion, reweighted.size(), CompactGraph.fastestRoads(this));
+        else
+            current = new Snapshot(version, structureVersion, reweighted.size(), current.graph.reweigh(this,
+                    reweighted.subList(current.reweightedCount, reweighted.size())));
+        snapshot = current;
+        return current.graph;
+    }
 
-                if (neighbor.equals(closestTown))
-                    neighbor = road.getSource();
-                if ((weight.get(closestTown.getName()) + road.getWeight()) < weight.get(neighbor.getName())) {
-                    weight.put(neighbor.getName(), weight.get(closestTown.getName()) + road.getWeight());
-                    getAdjacent().put(neighbor.getName(), closestTown);
-                }
-            }
+    /*
+    A snapshot together with the version it was taken at, published as one
+    object so that readers never pair a snapshot with the wrong version
+     */
+    private static final class Snapshot {
+        final long version;
+        final long structureVersion;
+        //how many of the reweighted roads the snapshot already has
+        final int reweightedCount;
+        final CompactGraph graph;
+
+        Snapshot(long version, long structureVersion, int reweightedCount, CompactGraph graph) {
+            this.version = version;
+            this.structureVersion = structureVersion;
+            this.reweightedCount = reweightedCount;
+            this.graph = graph;
         }
     }
 
+    /*
+    Records a change to the towns or roads, after which the snapshot must
+    be built again
+     */
+    private void structureChanged() {
+        version++;
+        structureVersion++;
+        reweighted.clear();
+    }
+
+    /*
+    Records a new road in the neighbour lists of both its towns, putting it
+    first if it is faster than the roads already there
+     */
+    private void link(Road road) {
+        addNeighbor(road.getSource(), road.getDestination(), road);
+        if (!road.getSource().equals(road.getDestination()))
+            addNeighbor(road.getDestination(), road.getSource(), road);
+    }
+
+    private void addNeighbor(Town town, Town neighbor, Road road) {
+        ArrayList<Road> roads = getNeighbors().get(town).computeIfAbsent(neighbor, key -> new ArrayList<>(1));
+        if (!roads.isEmpty() && road.getWeight() < roads.get(0).getWeight())
+            roads.add(0, road);
+        else
+            roads.add(road);
+    }
+
+    /*
+    Removes a road from the neighbour lists of both its towns, moving the
+    fastest remaining parallel road to the front
+     */
+    private void unlink(Road road) {
+        removeNeighbor(road.getSource(), road.getDestination(), road);
+        if (!road.getSource().equals(road.getDestination()))
+            removeNeighbor(road.getDestination(), road.getSource(), road);
+    }
+
+    private void removeNeighbor(Town town, Town neighbor, Road road) {
+        Map<Town, ArrayList<Road>> adjacentRoads = getNeighbors().get(town);
+        ArrayList<Road> roads = adjacentRoads.get(neighbor);
+        roads.remove(road);
+        if (roads.isEmpty())
+            adjacentRoads.remove(neighbor);
+        else
+            moveFastestFirst(roads);
+    }
+
+    private static void moveFastestFirst(ArrayList<Road> roads) {
+        int fastest = 0;
+        for (int i = 1; i < roads.size(); i++)
+            if (roads.get(i).getWeight() < roads.get(fastest).getWeight())
+                fastest = i;
+        Collections.swap(roads, 0, fastest);
+    }
+
     public HashSet<Road> getEdges() {
         return edges;
     }
@@ -377,9 +744,69 @@ public class Graph implements GraphInterface<Town, Road>{
         return vertices;
     }
 
+    /**
+     * Registers a listener to be told about every change to the graph
+     * @param listener the listener to add
+     */
+    public void addGraphListener(GraphListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about changes
+     * @param listener the listener to remove
+     */
+    public void removeGraphListener(GraphListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns a number that changes whenever a town or road is added or
+     * removed or a weight changes, so that snapshots such as CompactGraph
+     * can be reused until the graph changes
+     * @return the current version of the graph
+     */
+    public long getVersion() {
+        return version;
+    }
+
     public Map<String, Town> getAdjacent() {
         return adjacent;
     }
 
+    public Map<Town, Map<Town, ArrayList<Road>>> getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Returns the names of the towns in this graph, kept in sorted order
+     * as towns are added and removed
+     * @return the sorted index of town names
+     */
+    public SortedNameIndex getTownNames() {
+        return townNames;
+    }
+
+    /**
+     * Returns the names of the roads in this graph, kept in sorted order
+     * as roads are added and removed. A name appears once for every road
+     * that has it.
+     * @return the sorted index of road names
+     */
+    public SortedNameIndex getRoadNames() {
+        return roadNames;
+    }
+
+    /**
+     * Returns up to limit town names starting with the given prefix, in
+     * alphabetical order
+     * @param prefix the text the town names must start with
+     * @param limit the largest number of names to return
+     * @return the matching town names
+     */
+    public List<String> townsWithPrefix(String prefix, int limit) {
+        return getTownNames().withPrefix(prefix, limit);
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/**
+ * @author Christian Aguirre
+ */
+
+/**
+ * Receives every change made to a Graph, after the change has been made.
+ * Used by caches that must forget results the change may have made wrong.
+ * Removing a town reports each of its roads as removed before the town.
+ */
+public interface GraphListener {
+    /**
+     * Called after a town is added
+     * @param town the new town
+     */
+    default void townAdded(Town town) {
+    }
+
+    /**
+     * Called after a town is removed, once its roads have been reported
+     * @param town the removed town
+     */
+    default void townRemoved(Town town) {
+    }
+
+    /**
+     * Called after a road is added
+     * @param road the new road
+     */
+    default void roadAdded(Road road) {
+    }
+
+    /**
+     * Called after a road is removed
+     * @param road the removed road
+     */
+    default void roadRemoved(Road road) {
+    }
+
+    /**
+     * Called after a road's weight is changed. Unless overridden, the
+     * change is reported as the road being removed and added again.
+     * @param road the road, which already has its new weight
+     * @param oldWeight the weight the road had before
+     */
+    default void roadWeightChanged(Road road, int oldWeight) {
+        roadRemoved(road);
+        roadAdded(road);
+    }
+}
@@ -0,0 +1,489 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * An interactive map of a graph that stays responsive with hundreds of
+ * thousands of towns. Drag to pan and scroll to zoom.
+ *
+ * Towns are positioned with a TownLayout and bucketed into grids of
+ * several resolutions. Only grid cells inside the visible area are drawn.
+ * When too many towns are visible to draw one by one, each grid cell is
+ * drawn as a single dot sized by the number of towns in it, and the roads
+ * between cells are merged into one line per pair of cells.
+ *
+ * Towns and roads are rasterized into a pixel buffer on a background
+ * thread; the JavaFX thread only copies the finished buffer into an image
+ * and draws the highlighted path and town names on top.
+ */
+public class GraphMapView extends Pane {
+	//grid resolutions, coarsest first; the last one is also used to cull single towns
+	private static final int[] GRID_SIDES = {8, 32, 128, 512};
+	//draw towns one by one when no more than this many are visible
+	private static final int DETAIL_LIMIT = 30000;
+	//label towns by name when no more than this many are visible
+	private static final int LABEL_LIMIT = 200;
+	//aim for aggregated cells about this many pixels wide
+	private static final double AGGREGATE_CELL_PIXELS = 6;
+
+	private static final int BACKGROUND = 0xFFF8F8F4;
+	private static final int ROAD_COLOR = 0xFF9AA5B1;
+	private static final int TOWN_COLOR = 0xFF1F4E79;
+
+	private final Canvas canvas;
+	private final ExecutorService renderer;
+	private final AtomicLong generation;
+
+	private TownLayout layout;
+	private Grid[] grids;
+	private int[] highlightedPath;
+	private int[] labelledTowns;
+	private WritableImage image;
+	private boolean fitPending;
+	private double scale = 1;
+	private double offsetX, offsetY;
+	private double dragX, dragY;
+
+	/**
+	 * Creates an empty map view
+	 */
+	public GraphMapView() {
+		canvas = new Canvas();
+		getChildren().add(canvas);
+		generation = new AtomicLong();
+		renderer = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "graph-map-renderer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		widthProperty().addListener((observable, oldValue, newValue) -> sizeChanged());
+		heightProperty().addListener((observable, oldValue, newValue) -> sizeChanged());
+
+		setOnMousePressed(event -> {
+			dragX = event.getX();
+			dragY = event.getY();
+		});
+		setOnMouseDragged(event -> {
+			offsetX -= (event.getX() - dragX) / scale;
+			offsetY -= (event.getY() - dragY) / scale;
+			dragX = event.getX();
+			dragY = event.getY();
+			requestRender();
+		});
+		setOnScroll(event -> {
+			double factor = event.getDeltaY() > 0 ? 1.25 : 0.8;
+			double worldX = offsetX + event.getX() / scale;
+			double worldY = offsetY + event.getY() / scale;
+			scale *= factor;
+			offsetX = worldX - event.getX() / scale;
+			offsetY = worldY - event.getY() / scale;
+			requestRender();
+		});
+	}
+
+	private void sizeChanged() {
+		if (fitPending)
+			fitToView();
+		else
+			requestRender();
+	}
+
+	@Override
+	protected void layoutChildren() {
+		canvas.setWidth(getWidth());
+		canvas.setHeight(getHeight());
+	}
+
+	/**
+	 * Lays out and shows a graph. The layout is computed on the background
+	 * thread; the map is drawn once it is ready.
+	 * @param snapshot snapshot of the graph to show, taken on the JavaFX thread
+	 */
+	public void setGraph(CompactGraph snapshot) {
+		renderer.execute(() -> {
+			TownLayout newLayout = TownLayout.compute(snapshot);
+			Grid[] newGrids = new Grid[GRID_SIDES.length];
+			for (int i = 0; i < GRID_SIDES.length; i++)
+				newGrids[i] = new Grid(newLayout, GRID_SIDES[i]);
+			Platform.runLater(() -> {
+				layout = newLayout;
+				grids = newGrids;
+				highlightedPath = null;
+				fitToView();
+			});
+		});
+	}
+
+	/**
+	 * Highlights a path on the map, for example the towns returned by
+	 * TownGraphManager.getPathTowns
+	 * @param townNames names of the towns along the path, in order
+	 */
+	public void showPath(List<String> townNames) {
+		if (layout == null)
+			return;
+		int[] path = new int[townNames.size()];
+		int length = 0;
+		for (String name : townNames) {
+			int v = layout.getGraph().indexOf(new Town(name));
+			if (v >= 0)
+				path[length++] = v;
+		}
+		highlightedPath = Arrays.copyOf(path, length);
+		drawOverlay();
+	}
+
+	/**
+	 * Zooms and pans so that the whole graph is visible
+	 */
+	public void fitToView() {
+		fitPending = layout == null || getWidth() <= 0 || getHeight() <= 0;
+		if (fitPending)
+			return;
+		double spanX = Math.max(layout.getMaxX() - layout.getMinX(), 1e-9);
+		double spanY = Math.max(layout.getMaxY() - layout.getMinY(), 1e-9);
+		scale = 0.95 * Math.min(getWidth() / spanX, getHeight() / spanY);
+		offsetX = (layout.getMinX() + layout.getMaxX()) / 2 - getWidth() / 2 / scale;
+		offsetY = (layout.getMinY() + layout.getMaxY()) / 2 - getHeight() / 2 / scale;
+		requestRender();
+	}
+
+	/**
+	 * Stops the background rendering thread
+	 */
+	public void dispose() {
+		renderer.shutdownNow();
+	}
+
+	/*
+	Queues a render of the current view. Only the newest request is drawn;
+	older requests still waiting are skipped.
+	 */
+	private void requestRender() {
+		if (layout == null)
+			return;
+		int width = (int) getWidth();
+		int height = (int) getHeight();
+		if (width <= 0 || height <= 0)
+			return;
+		long ticket = generation.incrementAndGet();
+		View view = new View(layout, grids, width, height, scale, offsetX, offsetY);
+		renderer.execute(() -> {
+			if (generation.get() != ticket)
+				return;
+			int[] pixels = new int[width * height];
+			int[] labels = view.render(pixels);
+			Platform.runLater(() -> {
+				if (generation.get() != ticket)
+					return;
+				if (image == null || image.getWidth() != width || image.getHeight() != height)
+					image = new WritableImage(width, height);
+				image.getPixelWriter().setPixels(0, 0, width, height,
+						PixelFormat.getIntArgbInstance(), pixels, 0, width);
+				labelledTowns = labels;
+				drawOverlay();
+			});
+		});
+	}
+
+	//draw the last rendered image, then the path and labels, on the JavaFX thread
+	private void drawOverlay() {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		if (image != null)
+			gc.drawImage(image, 0, 0);
+		if (layout == null)
+			return;
+
+		if (labelledTowns != null) {
+			gc.setFill(Color.BLACK);
+			for (int v : labelledTowns)
+				gc.fillText(layout.getGraph().getTown(v).getName(), screenX(v) + 4, screenY(v) - 4);
+		}
+		if (highlightedPath != null && highlightedPath.length > 0) {
+			gc.setStroke(Color.CRIMSON);
+			gc.setLineWidth(3);
+			for (int i = 1; i < highlightedPath.length; i++)
+				gc.strokeLine(screenX(highlightedPath[i - 1]), screenY(highlightedPath[i - 1]),
+						screenX(highlightedPath[i]), screenY(highlightedPath[i]));
+			gc.setFill(Color.CRIMSON);
+			for (int v : highlightedPath)
+				gc.fillOval(screenX(v) - 4, screenY(v) - 4, 8, 8);
+		}
+	}
+
+	private double screenX(int v) {
+		return (layout.x(v) - offsetX) * scale;
+	}
+
+	private double screenY(int v) {
+		return (layout.y(v) - offsetY) * scale;
+	}
+
+	/*
+	Towns bucketed into a square grid over the layout's bounding box, with
+	the centroid of each cell and the roads between cells merged into one
+	entry per pair of cells
+	 */
+	private static class Grid {
+		final int side;
+		final double minX, minY, cellWidth, cellHeight;
+		final int[] cellStart;
+		final int[] towns;
+		final double[] centroidX, centroidY;
+		final long[] cellPairs;
+		final int[] pairRoads;
+
+		Grid(TownLayout layout, int side) {
+			this.side = side;
+			CompactGraph graph = layout.getGraph();
+			int n = graph.townCount();
+			minX = layout.getMinX();
+			minY = layout.getMinY();
+			cellWidth = Math.max(layout.getMaxX() - minX, 1e-9) / side;
+			cellHeight = Math.max(layout.getMaxY() - minY, 1e-9) / side;
+
+			int[] cellOf = new int[n];
+			cellStart = new int[side * side + 1];
+			centroidX = new double[side * side];
+			centroidY = new double[side * side];
+			for (int v = 0; v < n; v++) {
+				int cell = cellAt(layout.x(v), layout.y(v));
+				cellOf[v] = cell;
+				cellStart[cell + 1]++;
+				centroidX[cell] += layout.x(v);
+				centroidY[cell] += layout.y(v);
+			}
+			for (int c = 0; c < side * side; c++) {
+				int count = cellStart[c + 1];
+				if (count > 0) {
+					centroidX[c] /= count;
+					centroidY[c] /= count;
+				}
+				cellStart[c + 1] += cellStart[c];
+			}
+			towns = new int[n];
+			int[] next = Arrays.copyOf(cellStart, side * side);
+			for (int v = 0; v < n; v++)
+				towns[next[cellOf[v]]++] = v;
+
+			long[] pairs = new long[graph.roadCount()];
+			int pairCount = 0;
+			for (int e = 0; e < graph.roadCount(); e++) {
+				int a = cellOf[graph.roadSource(e)];
+				int b = cellOf[graph.roadDestination(e)];
+				if (a != b)
+					pairs[pairCount++] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+			}
+			Arrays.sort(pairs, 0, pairCount);
+			long[] distinct = new long[pairCount];
+			int[] counts = new int[pairCount];
+			int distinctCount = 0;
+			for (int i = 0; i < pairCount; i++) {
+				if (distinctCount == 0 || distinct[distinctCount - 1] != pairs[i])
+					distinct[distinctCount++] = pairs[i];
+				counts[distinctCount - 1]++;
+			}
+			cellPairs = Arrays.copyOf(distinct, distinctCount);
+			pairRoads = Arrays.copyOf(counts, distinctCount);
+		}
+
+		int cellAt(double x, double y) {
+			int column = Math.min(Math.max((int) ((x - minX) / cellWidth), 0), side - 1);
+			int row = Math.min(Math.max((int) ((y - minY) / cellHeight), 0), side - 1);
+			return row * side + column;
+		}
+
+		int count(int cell) {
+			return cellStart[cell + 1] - cellStart[cell];
+		}
+	}
+
+	/*
+	Everything needed to render one frame, captured on the JavaFX thread so
+	that the background thread never reads the view's changing fields
+	 */
+	private static class View {
+		final TownLayout layout;
+		final Grid[] grids;
+		final int width, height;
+		final double scale, offsetX, offsetY;
+
+		View(TownLayout layout, Grid[] grids, int width, int height, double scale, double offsetX, double offsetY) {
+			this.layout = layout;
+			this.grids = grids;
+			this.width = width;
+			this.height = height;
+			this.scale = scale;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+		}
+
+		/*
+		Rasterizes towns and roads into pixels and returns the towns that
+		should be labelled, if few enough are visible
+		 */
+		int[] render(int[] pixels) {
+			Arrays.fill(pixels, BACKGROUND);
+			Grid finest = grids[grids.length - 1];
+			int[] visibleCells = visibleCells(finest);
+			int visibleTowns = 0;
+			for (int cell : visibleCells)
+				visibleTowns += finest.count(cell);
+
+			if (visibleTowns <= DETAIL_LIMIT)
+				return renderTowns(pixels, finest, visibleCells, visibleTowns);
+			renderCells(pixels, chooseGrid());
+			return null;
+		}
+
+		private int[] renderTowns(int[] pixels, Grid grid, int[] visibleCells, int visibleTowns) {
+			CompactGraph graph = layout.getGraph();
+			ArrayList<Integer> labels = visibleTowns <= LABEL_LIMIT ? new ArrayList<>() : null;
+			for (int cell : visibleCells)
+				for (int i = grid.cellStart[cell]; i < grid.cellStart[cell + 1]; i++) {
+					int v = grid.towns[i];
+					for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+						int w = graph.arcTarget(arc);
+						//draw each road once, from whichever end is visible
+						if (w > v || !visible(w))
+							line(pixels, toScreenX(layout.x(v)), toScreenY(layout.y(v)),
+									toScreenX(layout.x(w)), toScreenY(layout.y(w)), ROAD_COLOR);
+					}
+				}
+			for (int cell : visibleCells)
+				for (int i = grid.cellStart[cell]; i < grid.cellStart[cell + 1]; i++) {
+					int v = grid.towns[i];
+					if (visible(v)) {
+						square(pixels, toScreenX(layout.x(v)), toScreenY(layout.y(v)), 2, TOWN_COLOR);
+						if (labels != null)
+							labels.add(v);
+					}
+				}
+			if (labels == null)
+				return null;
+			return labels.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		private void renderCells(int[] pixels, Grid grid) {
+			for (int i = 0; i < grid.cellPairs.length; i++) {
+				int a = (int) (grid.cellPairs[i] >>> 32);
+				int b = (int) grid.cellPairs[i];
+				line(pixels, toScreenX(grid.centroidX[a]), toScreenY(grid.centroidY[a]),
+						toScreenX(grid.centroidX[b]), toScreenY(grid.centroidY[b]), ROAD_COLOR);
+			}
+			for (int cell : visibleCells(grid)) {
+				int count = grid.count(cell);
+				if (count > 0) {
+					int radius = 1 + (31 - Integer.numberOfLeadingZeros(count)) / 2;
+					square(pixels, toScreenX(grid.centroidX[cell]), toScreenY(grid.centroidY[cell]), radius, TOWN_COLOR);
+				}
+			}
+		}
+
+		//the finest grid whose cells are still at least a few pixels wide on screen
+		private Grid chooseGrid() {
+			Grid chosen = grids[0];
+			for (Grid grid : grids)
+				if (Math.min(grid.cellWidth, grid.cellHeight) * scale >= AGGREGATE_CELL_PIXELS)
+					chosen = grid;
+			return chosen;
+		}
+
+		private int[] visibleCells(Grid grid) {
+			int first = grid.cellAt(offsetX, offsetY);
+			int last = grid.cellAt(offsetX + width / scale, offsetY + height / scale);
+			int firstColumn = first % grid.side, firstRow = first / grid.side;
+			int lastColumn = last % grid.side, lastRow = last / grid.side;
+			int[] cells = new int[(lastColumn - firstColumn + 1) * (lastRow - firstRow + 1)];
+			int count = 0;
+			for (int row = firstRow; row <= lastRow; row++)
+				for (int column = firstColumn; column <= lastColumn; column++)
+					cells[count++] = row * grid.side + column;
+			return cells;
+		}
+
+		private boolean visible(int v) {
+			double x = toScreenX(layout.x(v));
+			double y = toScreenY(layout.y(v));
+			return x >= 0 && y >= 0 && x < width && y < height;
+		}
+
+		private double toScreenX(double x) {
+			return (x - offsetX) * scale;
+		}
+
+		private double toScreenY(double y) {
+			return (y - offsetY) * scale;
+		}
+
+		private void square(int[] pixels, double centerX, double centerY, int radius, int color) {
+			int cx = (int) centerX, cy = (int) centerY;
+			for (int y = Math.max(cy - radius, 0); y <= Math.min(cy + radius, height - 1); y++)
+				for (int x = Math.max(cx - radius, 0); x <= Math.min(cx + radius, width - 1); x++)
+					pixels[y * width + x] = color;
+		}
+
+		/*
+		Clips the line to the image (Liang-Barsky) and then draws it with
+		Bresenham's algorithm
+		 */
+		private void line(int[] pixels, double x0, double y0, double x1, double y1, int color) {
+			double dx = x1 - x0, dy = y1 - y0;
+			double t0 = 0, t1 = 1;
+			double[] p = {-dx, dx, -dy, dy};
+			double[] q = {x0, width - 1 - x0, y0, height - 1 - y0};
+			for (int i = 0; i < 4; i++) {
+				if (p[i] == 0) {
+					if (q[i] < 0)
+						return;
+					continue;
+				}
+				double t = q[i] / p[i];
+				if (p[i] < 0)
+					t0 = Math.max(t0, t);
+				else
+					t1 = Math.min(t1, t);
+				if (t0 > t1)
+					return;
+			}
+			int ax = (int) Math.round(x0 + t0 * dx), ay = (int) Math.round(y0 + t0 * dy);
+			int bx = (int) Math.round(x0 + t1 * dx), by = (int) Math.round(y0 + t1 * dy);
+
+			int stepX = ax < bx ? 1 : -1, stepY = ay < by ? 1 : -1;
+			int errorX = Math.abs(bx - ax), errorY = -Math.abs(by - ay);
+			int error = errorX + errorY;
+			while (true) {
+				if (ax >= 0 && ay >= 0 && ax < width && ay < height)
+					pixels[ay * width + ax] = color;
+				if (ax == bx && ay == by)
+					break;
+				int doubled = 2 * error;
+				if (doubled >= errorY) {
+					error += errorY;
+					ax += stepX;
+				}
+				if (doubled <= errorX) {
+					error += errorX;
+					ay += stepY;
+				}
+			}
+		}
+	}
+}
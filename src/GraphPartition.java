@@ -0,0 +1,334 @@
+/**
+ * @author Christian Aguirre
+ */
+
+/**
+ * A split of the towns of a graph into regions of nearly equal size, with
+ * few roads running between regions. Each region can then be searched on
+ * its own, and only the towns at the ends of cut roads, the boundary
+ * towns, connect one region's searches to another's.
+ *
+ * Regions are made by recursive bisection. Each split grows one half
+ * breadth first from a town at the edge of the group, so the half is
+ * compact, then improves the split with Fiduccia-Mattheyses passes that
+ * move towns across wherever that cuts fewer roads, as long as the
+ * halves stay balanced.
+ */
+public class GraphPartition {
+    //passes of boundary refinement per split
+    private static final int REFINE_PASSES = 8;
+    //a pass gives up after this many moves without a smaller cut
+    private static final int MAX_FRUITLESS_MOVES = 200;
+    private static final int GAIN_OFFSET = 1 << 30;
+
+    private final CompactGraph graph;
+    private final int regionCount;
+    private final int[] region;
+    private final int[] cutRoads;
+    private final boolean[] boundary;
+
+    private GraphPartition(CompactGraph graph, int regionCount, int[] region) {
+        this.graph = graph;
+        this.regionCount = regionCount;
+        this.region = region;
+        int cut = 0;
+        for (int e = 0; e < graph.roadCount(); e++)
+            if (region[graph.roadSource(e)] != region[graph.roadDestination(e)])
+                cut++;
+        cutRoads = new int[cut];
+        boundary = new boolean[graph.townCount()];
+        cut = 0;
+        for (int e = 0; e < graph.roadCount(); e++) {
+            int u = graph.roadSource(e);
+            int v = graph.roadDestination(e);
+            if (region[u] != region[v]) {
+                cutRoads[cut++] = e;
+                boundary[u] = true;
+                boundary[v] = true;
+            }
+        }
+    }
+
+    /**
+     * Splits the towns of a snapshot into regions
+     * @param graph the snapshot to split
+     * @param regions number of regions wanted
+     * @return the partition
+     * @throws IllegalArgumentException if regions is not positive
+     */
+    public static GraphPartition compute(CompactGraph graph, int regions) {
+        if (regions < 1)
+            throw new IllegalArgumentException("Number of regions must be positive");
+        int n = graph.townCount();
+        int[] members = new int[n];
+        for (int v = 0; v < n; v++)
+            members[v] = v;
+        Bisection bisection = new Bisection(graph);
+        bisection.split(members, 0, regions);
+        return new GraphPartition(graph, regions, bisection.region);
+    }
+
+    /**
+     * Returns the region of a town
+     * @param v index of the town in the snapshot
+     * @return the region, from 0 to regionCount() - 1
+     */
+    public int region(int v) {
+        return region[v];
+    }
+
+    /**
+     * Returns the region of a town
+     * @param town the town
+     * @return the region, or -1 if the town is not in the snapshot
+     */
+    public int region(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? -1 : region[v];
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Returns the number of towns in a region
+     * @param r the region
+     * @return the number of towns
+     */
+    public int regionSize(int r) {
+        int size = 0;
+        for (int v : region)
+            if (v == r)
+                size++;
+        return size;
+    }
+
+    /**
+     * Returns the roads between towns of different regions
+     * @return indices of the cut roads in the snapshot
+     */
+    public int[] cutRoads() {
+        return cutRoads.clone();
+    }
+
+    /**
+     * Returns whether a town is at the end of a cut road
+     * @param v index of the town in the snapshot
+     * @return true if the town is a boundary town
+     */
+    public boolean isBoundary(int v) {
+        return boundary[v];
+    }
+
+    /**
+     * Returns the snapshot that was split
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /*
+    Recursive bisection over groups of town indices. The arrays are shared
+    by all splits; a group's towns are marked with a fresh stamp so roads
+    leaving the group can be told apart.
+     */
+    private static final class Bisection {
+        private final CompactGraph graph;
+        private final int[] region;
+        private final int[] groupStamp;
+        private final int[] side;
+        private final int[] order;
+        private final int[] visited;
+        private final int[] gain;
+        private int stamp;
+
+        Bisection(CompactGraph graph) {
+            this.graph = graph;
+            int n = graph.townCount();
+            region = new int[n];
+            groupStamp = new int[n];
+            side = new int[n];
+            order = new int[n];
+            visited = new int[n];
+            gain = new int[n];
+        }
+
+        void split(int[] members, int firstRegion, int regions) {
+            if (regions == 1 || members.length <= 1) {
+                for (int v : members)
+                    region[v] = firstRegion;
+                return;
+            }
+            int leftRegions = regions / 2;
+            int target = (int) ((long) members.length * leftRegions / regions);
+            int group = ++stamp;
+            for (int v : members)
+                groupStamp[v] = group;
+
+            grow(members, group, target);
+            refine(members, group, target);
+
+            int leftCount = 0;
+            for (int v : members)
+                if (side[v] == 0)
+                    leftCount++;
+            int[] left = new int[leftCount];
+            int[] right = new int[members.length - leftCount];
+            int l = 0;
+            int r = 0;
+            for (int v : members) {
+                if (side[v] == 0)
+                    left[l++] = v;
+                else
+                    right[r++] = v;
+            }
+            split(left, firstRegion, leftRegions);
+            split(right, firstRegion + leftRegions, regions - leftRegions);
+        }
+
+        /*
+        Puts target towns on side 0, taken breadth first from a town far
+        from the rest, and the others on side 1. A disconnected group is
+        grown one piece after another.
+         */
+        private void grow(int[] members, int group, int target) {
+            for (int v : members)
+                side[v] = 1;
+            int taken = 0;
+            int next = 0;
+            while (taken < target) {
+                while (side[members[next]] == 0)
+                    next++;
+                int start = farthest(members[next], group);
+                int head = 0;
+                int tail = 0;
+                order[tail++] = start;
+                side[start] = 0;
+                taken++;
+                while (head < tail && taken < target) {
+                    int u = order[head++];
+                    for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1) && taken < target; arc++) {
+                        int w = graph.arcTarget(arc);
+                        if (groupStamp[w] == group && side[w] == 1) {
+                            side[w] = 0;
+                            order[tail++] = w;
+                            taken++;
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+        Returns the last town reached by a breadth first search of the
+        group's side 1 towns from v, a town near the edge of v's piece
+         */
+        private int farthest(int v, int group) {
+            int search = ++stamp;
+            int last = v;
+            int head = 0;
+            int tail = 0;
+            order[tail++] = v;
+            visited[v] = search;
+            while (head < tail) {
+                int u = order[head++];
+                last = u;
+                for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                    int w = graph.arcTarget(arc);
+                    if (groupStamp[w] == group && side[w] == 1 && visited[w] != search) {
+                        visited[w] = search;
+                        order[tail++] = w;
+                    }
+                }
+            }
+            return last;
+        }
+
+        /*
+        Fiduccia-Mattheyses refinement. Each pass moves every town across
+        once, always the one that cuts the fewest roads without leaving
+        the sides out of balance, even when that makes the cut worse for a
+        while, and then undoes the moves after the smallest cut seen. Going
+        through worse cuts lets a pass escape splits that no single move
+        improves.
+         */
+        private void refine(int[] members, int group, int target) {
+            int tolerance = Math.max(1, members.length / 50);
+            for (int pass = 0; pass < REFINE_PASSES; pass++) {
+                int lock = ++stamp;
+                LongHeap[] heaps = {new LongHeap(16), new LongHeap(16)};
+                for (int v : members) {
+                    gain[v] = 0;
+                    for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+                        int w = graph.arcTarget(arc);
+                        if (w != v && groupStamp[w] == group)
+                            gain[v] += side[w] == side[v] ? -1 : 1;
+                    }
+                    heaps[side[v]].add(entry(v));
+                }
+
+                int leftCount = 0;
+                for (int v : members)
+                    if (side[v] == 0)
+                        leftCount++;
+                int cutChange = 0;
+                int bestChange = 0;
+                int bestMoves = 0;
+                int moves = 0;
+                while (moves < members.length && moves - bestMoves < MAX_FRUITLESS_MOVES) {
+                    int left = leftCount - 1 >= target - tolerance ? top(heaps[0], lock, 0) : -1;
+                    int right = leftCount + 1 <= target + tolerance ? top(heaps[1], lock, 1) : -1;
+                    if (left < 0 && right < 0)
+                        break;
+                    int v = right < 0 || (left >= 0 && gain[left] >= gain[right]) ? left : right;
+                    if (v == left && right >= 0)
+                        heaps[1].add(entry(right));
+                    else if (v == right && left >= 0)
+                        heaps[0].add(entry(left));
+
+                    visited[v] = lock;
+                    cutChange -= gain[v];
+                    leftCount += side[v] == 0 ? -1 : 1;
+                    side[v] = 1 - side[v];
+                    order[moves++] = v;
+                    for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+                        int w = graph.arcTarget(arc);
+                        if (w == v || groupStamp[w] != group || visited[w] == lock)
+                            continue;
+                        gain[w] += side[w] == side[v] ? -2 : 2;
+                        heaps[side[w]].add(entry(w));
+                    }
+                    if (cutChange < bestChange) {
+                        bestChange = cutChange;
+                        bestMoves = moves;
+                    }
+                }
+                for (int i = moves - 1; i >= bestMoves; i--)
+                    side[order[i]] = 1 - side[order[i]];
+                if (bestChange == 0)
+                    break;
+            }
+        }
+
+        //higher gains come first; the offset keeps keys positive
+        private long entry(int v) {
+            return LongHeap.pack(GAIN_OFFSET - gain[v], v);
+        }
+
+        /*
+        Takes the unmoved town with the highest gain off a side's heap,
+        skipping entries left behind by later gain changes, or returns -1
+         */
+        private int top(LongHeap heap, int lock, int fromSide) {
+            while (!heap.isEmpty()) {
+                long entry = heap.poll();
+                int v = LongHeap.index(entry);
+                if (visited[v] != lock && side[v] == fromSide && GAIN_OFFSET - LongHeap.distance(entry) == gain[v])
+                    return v;
+            }
+            return -1;
+        }
+    }
+}
@@ -121,6 +121,64 @@ public class GraphTest {
 		assertEquals(false, graph.containsVertex(town[2]));
 	}
 
+	@Test
+	public void testParallelRoads() {
+		Graph multigraph = (Graph) graph;
+		assertNotNull(graph.addEdge(town[2], town[11], 4, "Road_12A"));
+		assertNotNull(graph.addEdge(town[11], town[2], 9, "Road_12B"));
+		assertNull(graph.addEdge(town[2], town[11], 4, "Road_12A"));
+		assertEquals(14, graph.edgeSet().size());
+		assertEquals(3, multigraph.roadsBetween(town[2], town[11]).size());
+		assertEquals("Road_12A", graph.getEdge(town[11], town[2]).getName());
+
+		ArrayList<String> path = graph.shortestPath(town[1], town[11]);
+		assertEquals("Town_2 via Road_12A to Town_11 4 mi", path.get(1).trim());
+
+		assertEquals("Road_12A", graph.removeEdge(town[2], town[11], -1, "Road_12A").getName());
+		assertEquals("Road_12", graph.getEdge(town[2], town[11]).getName());
+		assertTrue(graph.containsEdge(town[2], town[11]));
+	}
+
+	@Test
+	public void testBulkEdits() {
+		Graph bulk = (Graph) graph;
+		Town town12 = new Town("Town_12");
+		assertEquals(Arrays.asList(town12), bulk.addVertices(Arrays.asList(town12, town[1], town12)));
+		Road road13 = new Road(town12, town[11], 1, "Road_13");
+		Road road14 = new Road(town12, town[1], 7, "Road_14");
+		assertEquals(Arrays.asList(road13, road14),
+				bulk.addEdges(Arrays.asList(road13, road14, new Road(town[1], town[2], 2, "Road_1"))));
+		assertEquals(14, graph.edgeSet().size());
+		Road stored = graph.getEdge(town12, town[11]);
+		assertNotSame(road13, stored);
+		road13.setWeight(99);
+		assertEquals(1, stored.getWeight());
+		Graph copy = new Graph();
+		copy.addVertices(graph.vertexSet());
+		copy.addEdges(graph.edgeSet());
+		bulk.updateEdgeWeight(town12, town[11], "Road_13", 50);
+		assertEquals(1, copy.getEdge(town12, town[11]).getWeight());
+		assertEquals(Arrays.asList("Road_1", "Road_10", "Road_11", "Road_12", "Road_13"),
+				bulk.getRoadNames().page(0, 5));
+
+		try {
+			bulk.addEdges(Arrays.asList(new Road(town[1], town[3], 1, "Road_15"),
+					new Road(town[1], new Town("Town_99"), 1, "Road_16")));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertFalse(bulk.getRoadNames().asList().contains("Road_15"));
+		}
+
+		assertEquals(Arrays.asList(town[1], town12),
+				bulk.removeVertices(Arrays.asList(town[1], new Town("Town_99"), town12)));
+		assertEquals(10, graph.vertexSet().size());
+		assertEquals(9, graph.edgeSet().size());
+		assertEquals(9, bulk.getRoadNames().size());
+		assertEquals(10, bulk.getTownNames().size());
+		assertFalse(graph.edgesOf(town[11]).contains(road13));
+		assertFalse(graph.containsEdge(town[2], town[1]));
+	}
+
 	@Test
 	public void testVertexSet() {
 		Set<Town> roads = graph.vertexSet();
@@ -0,0 +1,320 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The paths with the fewest roads from one Town to every other Town,
+ * ignoring how long the roads are. Distances here count roads, or hops,
+ * and are found by breadth-first search rather than by Dijkstra's
+ * algorithm.
+ *
+ * The parallel search is direction-optimizing. While the frontier is
+ * small, each frontier town claims its unvisited neighbours (top-down).
+ * Once the roads out of the frontier outnumber a fraction of those out of
+ * the unvisited towns, each unvisited town instead looks for any neighbour
+ * in the frontier and stops at the first (bottom-up), which skips most
+ * roads while the frontier covers much of the graph. It switches back to
+ * top-down when the frontier shrinks again. Each step runs in parallel
+ * when there is enough work.
+ *
+ * When several towns one hop closer to the source neighbour a town, the
+ * path arrives by the road with the lowest index in the snapshot, so both
+ * searches give identical trees.
+ */
+public class HopCountTree {
+    /**
+     * Graphs with at least this many roads are handled by the parallel
+     * search when using compute
+     */
+    public static final int PARALLEL_THRESHOLD = 100_000;
+
+    //steps with less work than this run on the calling thread
+    private static final int PARALLEL_GRAIN = 1024;
+    //go bottom-up once the frontier's roads exceed 1/ALPHA of the unvisited towns' roads
+    private static final int ALPHA = 14;
+    //go back top-down once the frontier holds fewer than 1/BETA of the towns
+    private static final int BETA = 24;
+    private static final int UNVISITED = -1;
+
+    private final CompactGraph graph;
+    private final int source;
+    private final int[] hops;
+    //road each town is reached by, or -1 for the source and unreachable towns
+    private final int[] parentRoad;
+
+    private HopCountTree(CompactGraph graph, int source, int[] level, ForkJoinPool pool) {
+        this.graph = graph;
+        this.source = source;
+        int n = level.length;
+        hops = new int[n];
+        parentRoad = new int[n];
+        forEach(pool, n, v -> {
+            hops[v] = level[v] == UNVISITED ? Integer.MAX_VALUE : level[v];
+            parentRoad[v] = level[v] > 0 ? lowestRoadFrom(v, level[v] - 1, level) : -1;
+        });
+    }
+
+    /**
+     * Computes the fewest-roads tree from a town, searching in parallel on
+     * large graphs
+     * @param graph the graph to search
+     * @param source the town the paths start from
+     * @return the tree
+     * @throws IllegalArgumentException if source is not in the graph
+     */
+    public static HopCountTree compute(Graph graph, Town source) {
+        CompactGraph compact = new CompactGraph(graph);
+        if (compact.roadCount() < PARALLEL_THRESHOLD)
+            return bfs(compact, source);
+        return directionOptimizing(compact, source, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the fewest-roads tree from a town with a plain breadth-first
+     * search on the calling thread
+     * @param graph the snapshot to search
+     * @param source the town the paths start from
+     * @return the tree
+     * @throws IllegalArgumentException if source is not in the snapshot
+     */
+    public static HopCountTree bfs(CompactGraph graph, Town source) {
+        int s = indexOf(graph, source);
+        int[] level = new int[graph.townCount()];
+        Arrays.fill(level, UNVISITED);
+        int[] queue = new int[graph.townCount()];
+        int head = 0;
+        int tail = 0;
+        level[s] = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                int w = graph.arcTarget(arc);
+                if (level[w] == UNVISITED) {
+                    level[w] = level[u] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return new HopCountTree(graph, s, level, null);
+    }
+
+    /**
+     * Computes the fewest-roads tree from a town with a direction-optimizing
+     * breadth-first search, running each step in parallel on the given pool
+     * @param graph the snapshot to search
+     * @param source the town the paths start from
+     * @param pool the pool to run the steps on
+     * @return the tree
+     * @throws IllegalArgumentException if source is not in the snapshot
+     */
+    public static HopCountTree directionOptimizing(CompactGraph graph, Town source, ForkJoinPool pool) {
+        int s = indexOf(graph, source);
+        return new HopCountTree(graph, s, new DirectionOptimizingSearch(graph, s, pool).run(), pool);
+    }
+
+    /**
+     * Returns the number of roads on the path with the fewest roads from the
+     * source to a town
+     * @param town the destination
+     * @return the number of roads, or Integer.MAX_VALUE if the town cannot be
+     * reached or is not in the snapshot
+     */
+    public int hops(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? Integer.MAX_VALUE : hops[v];
+    }
+
+    /**
+     * Returns the town before the given one on the fewest-roads path from
+     * the source
+     * @param town the destination
+     * @return the previous town, or null for the source and for towns that
+     * cannot be reached or are not in the snapshot
+     */
+    public Town predecessor(Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0 || parentRoad[v] < 0)
+            return null;
+        return graph.getTown(other(parentRoad[v], v));
+    }
+
+    /**
+     * Returns the road the fewest-roads path from the source arrives at a
+     * town by
+     * @param town the destination
+     * @return the road, or null for the source and for towns that cannot be
+     * reached or are not in the snapshot
+     */
+    public Road roadTo(Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0 || parentRoad[v] < 0)
+            return null;
+        return graph.getRoad(parentRoad[v]);
+    }
+
+    /**
+     * Returns the path with the fewest roads from the source to a town
+     * @param town the destination
+     * @return the path in the same format as Graph.shortestPath, or an empty
+     * list if there is no path
+     */
+    public ArrayList<String> pathTo(Town town) {
+        ArrayList<String> path = new ArrayList<>();
+        int v = graph.indexOf(town);
+        if (v < 0 || hops[v] == Integer.MAX_VALUE)
+            return path;
+        while (v != source) {
+            int e = parentRoad[v];
+            int parent = other(e, v);
+            path.add(0, graph.getTown(parent).getName() + " via " + graph.getRoad(e).getName() + " to "
+                    + graph.getTown(v).getName() + " " + graph.roadWeight(e) + " mi");
+            v = parent;
+        }
+        return path;
+    }
+
+    public Town getSource() {
+        return graph.getTown(source);
+    }
+
+    /**
+     * Returns the snapshot this tree was computed on
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /*
+    The lowest-indexed road from v to a town at the given level
+     */
+    private int lowestRoadFrom(int v, int parentLevel, int[] level) {
+        int best = Integer.MAX_VALUE;
+        for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++)
+            if (level[graph.arcTarget(arc)] == parentLevel)
+                best = Math.min(best, graph.arcRoad(arc));
+        return best;
+    }
+
+    private int other(int e, int v) {
+        return graph.roadSource(e) == v ? graph.roadDestination(e) : graph.roadSource(e);
+    }
+
+    private static int indexOf(CompactGraph graph, Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0)
+            throw new IllegalArgumentException("Town is not in the graph: " + town);
+        return v;
+    }
+
+    /*
+    Runs action for 0 to size - 1, in parallel on the pool if there is one
+    and enough work
+     */
+    private static void forEach(ForkJoinPool pool, int size, IntConsumer action) {
+        IntStream range = IntStream.range(0, size);
+        if (pool == null || size < PARALLEL_GRAIN)
+            range.forEach(action);
+        else
+            pool.submit(() -> range.parallel().forEach(action)).join();
+    }
+
+    /*
+    The state of one direction-optimizing search. Top-down steps claim
+    towns with compare-and-set, so each joins the next frontier once;
+    bottom-up steps write only the town being examined.
+     */
+    private static final class DirectionOptimizingSearch {
+        private final CompactGraph graph;
+        private final int source;
+        private final ForkJoinPool pool;
+
+        private final AtomicIntegerArray level;
+        private int[] frontier;
+        private int frontierSize;
+        private int[] next;
+        private final AtomicInteger nextSize = new AtomicInteger();
+
+        DirectionOptimizingSearch(CompactGraph graph, int source, ForkJoinPool pool) {
+            this.graph = graph;
+            this.source = source;
+            this.pool = pool;
+            int n = graph.townCount();
+            level = new AtomicIntegerArray(n);
+            for (int v = 0; v < n; v++)
+                level.set(v, UNVISITED);
+            frontier = new int[n];
+            next = new int[n];
+        }
+
+        int[] run() {
+            int n = graph.townCount();
+            level.set(source, 0);
+            frontier[0] = source;
+            frontierSize = 1;
+            long frontierArcs = graph.degree(source);
+            long unvisitedArcs = graph.arcOffset(n) - frontierArcs;
+            boolean bottomUp = false;
+            for (int depth = 0; frontierSize > 0; depth++) {
+                if (!bottomUp && frontierArcs > unvisitedArcs / ALPHA)
+                    bottomUp = true;
+                else if (bottomUp && frontierSize < n / BETA)
+                    bottomUp = false;
+
+                nextSize.set(0);
+                if (bottomUp)
+                    bottomUpStep(depth);
+                else
+                    topDownStep(depth);
+
+                int[] swap = frontier;
+                frontier = next;
+                next = swap;
+                frontierSize = nextSize.get();
+                frontierArcs = 0;
+                for (int i = 0; i < frontierSize; i++)
+                    frontierArcs += graph.degree(frontier[i]);
+                unvisitedArcs -= frontierArcs;
+            }
+            int[] result = new int[n];
+            for (int v = 0; v < n; v++)
+                result[v] = level.get(v);
+            return result;
+        }
+
+        private void topDownStep(int depth) {
+            int[] current = frontier;
+            forEach(pool, frontierSize, i -> {
+                int u = current[i];
+                for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                    int w = graph.arcTarget(arc);
+                    if (level.get(w) == UNVISITED && level.compareAndSet(w, UNVISITED, depth + 1))
+                        next[nextSize.getAndIncrement()] = w;
+                }
+            });
+        }
+
+        private void bottomUpStep(int depth) {
+            forEach(pool, graph.townCount(), v -> {
+                if (level.get(v) != UNVISITED)
+                    return;
+                for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+                    if (level.get(graph.arcTarget(arc)) == depth) {
+                        level.set(v, depth + 1);
+                        next[nextSize.getAndIncrement()] = v;
+                        return;
+                    }
+                }
+            });
+        }
+    }
+}
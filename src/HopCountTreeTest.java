@@ -0,0 +1,116 @@
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HopCountTreeTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testFewestRoads() {
+		HopCountTree tree = HopCountTree.bfs(new CompactGraph(graph), town[1]);
+		assertEquals(0, tree.hops(town[1]));
+		assertEquals(2, tree.hops(town[10]));
+		assertEquals(3, tree.hops(town[9]));
+		assertEquals(4, tree.hops(town[6]));
+		assertEquals(Arrays.asList("Town_1 via Road_3 to Town_5 6 mi", "Town_5 via Road_10 to Town_10 5 mi"),
+				tree.pathTo(town[10]));
+		assertEquals(town[5], tree.predecessor(town[10]));
+		assertNull(tree.roadTo(town[1]));
+		assertEquals(Integer.MAX_VALUE, tree.hops(new Town("Nowhere")));
+	}
+
+	@Test
+	public void testUnreachableTowns() {
+		graph.addVertex(new Town("Island"));
+		HopCountTree tree = HopCountTree.directionOptimizing(new CompactGraph(graph), town[1], ForkJoinPool.commonPool());
+		assertEquals(Integer.MAX_VALUE, tree.hops(new Town("Island")));
+		assertTrue(tree.pathTo(new Town("Island")).isEmpty());
+		assertNull(tree.predecessor(new Town("Island")));
+	}
+
+	@Test
+	public void testDirectionOptimizingMatchesBfs() {
+		Graph large = randomGraph(20_000, 60_000, 40);
+		CompactGraph compact = new CompactGraph(large);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int s = 0; s < compact.townCount(); s += 4999) {
+				HopCountTree expected = HopCountTree.bfs(compact, compact.getTown(s));
+				HopCountTree actual = HopCountTree.directionOptimizing(compact, compact.getTown(s), pool);
+				for (int v = 0; v < compact.townCount(); v++) {
+					Town t = compact.getTown(v);
+					assertEquals(expected.hops(t), actual.hops(t));
+					assertEquals(expected.roadTo(t), actual.roadTo(t));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testHopsMatchUnitWeights() {
+		Graph unit = randomGraph(2_000, 5_000, 1);
+		CompactGraph compact = new CompactGraph(unit);
+		HopCountTree hops = HopCountTree.directionOptimizing(compact, compact.getTown(0), ForkJoinPool.commonPool());
+		ShortestPathTree miles = ShortestPathTree.dijkstra(compact, compact.getTown(0));
+		for (int v = 0; v < compact.townCount(); v++)
+			assertEquals(miles.distance(compact.getTown(v)), hops.hops(compact.getTown(v)));
+	}
+
+	@Test
+	public void testManagerFewestRoadsPath() {
+		TownGraphManager manager = new TownGraphManager();
+		manager.addTown("A");
+		manager.addTown("B");
+		manager.addTown("C");
+		manager.addRoad("A", "B", 1, "Short_1");
+		manager.addRoad("B", "C", 1, "Short_2");
+		manager.addRoad("A", "C", 50, "Long");
+		assertEquals(2, manager.getPath("A", "C").size());
+		assertEquals(Arrays.asList("A via Long to C 50 mi"), manager.getFewestRoadsPath("A", "C"));
+		assertTrue(manager.getFewestRoadsPath("A", "Z").isEmpty());
+		assertNull(manager.getHopCountTree("Z"));
+	}
+
+	private static Graph randomGraph(int towns, int roads, int maxWeight) {
+		Town[] t = RandomGraphs.towns(towns);
+		return RandomGraphs.graph(t, RandomGraphs.connected(t, 45, roads - towns + 1, maxWeight, maxWeight));
+	}
+}
@@ -0,0 +1,322 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index that answers the distance between any two towns by comparing
+ * two short lists instead of searching the graph. Every town gets a label:
+ * a list of hub towns with the distance to each. For any two towns, some
+ * town on a shortest path between them is a hub in both labels, so the
+ * distance is the smallest sum of matching entries.
+ *
+ * The labels are built with pruned landmark labeling. Towns are taken in
+ * order of decreasing number of roads, and a Dijkstra search from each one
+ * adds it as a hub to the towns it reaches, except where the labels built
+ * so far already give the right distance. The search stops there, which
+ * keeps the labels short on road networks.
+ *
+ * All labels are stored together in flat arrays sorted by hub, and each
+ * entry remembers the road it was reached by, so the path itself can be
+ * rebuilt from the Road objects of the snapshot. The index is not updated
+ * when the graph changes; build a new one from a new snapshot.
+ */
+public class HubLabelIndex implements DistanceOracle {
+    private final CompactGraph graph;
+    //hub rank to town index, in the order the hubs were processed
+    private final int[] hubTown;
+
+    //label of town v is the entries labelOffset[v] up to labelOffset[v + 1]
+    private final int[] labelOffset;
+    private final int[] labelHub;
+    private final int[] labelDistance;
+    //the next town and road from an entry's town towards its hub, or -1 at the hub
+    private final int[] labelParent;
+    private final int[] labelRoad;
+
+    /**
+     * Builds the labels for a snapshot
+     * @param graph the snapshot to index
+     */
+    public HubLabelIndex(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.townCount();
+
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++)
+            order[v] = v;
+        Arrays.sort(order, (a, b) -> graph.degree(b) != graph.degree(a)
+                ? Integer.compare(graph.degree(b), graph.degree(a)) : Integer.compare(a, b));
+        hubTown = new int[n];
+        int[] rank = new int[n];
+        for (int k = 0; k < n; k++) {
+            hubTown[k] = order[k];
+            rank[order[k]] = k;
+        }
+
+        LabelBuilder labels = new LabelBuilder(n);
+        int[] rootLabel = new int[n];
+        Arrays.fill(rootLabel, Integer.MAX_VALUE);
+        int[] distance = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        int[] parent = new int[n];
+        int[] parentRoad = new int[n];
+        int[] settled = new int[n];
+        Arrays.fill(settled, -1);
+        int[] touched = new int[n];
+        LongHeap heap = new LongHeap(16);
+
+        for (int k = 0; k < n; k++) {
+            int root = hubTown[k];
+            for (int i = 0; i < labels.size[root]; i++)
+                rootLabel[labels.hub[root][i]] = labels.distance[root][i];
+
+            int touchedCount = 0;
+            distance[root] = 0;
+            parent[root] = -1;
+            parentRoad[root] = -1;
+            touched[touchedCount++] = root;
+            heap.add(LongHeap.pack(0, root));
+            while (!heap.isEmpty()) {
+                long entry = heap.poll();
+                int u = LongHeap.index(entry);
+                int d = LongHeap.distance(entry);
+                if (settled[u] == k || d > distance[u])
+                    continue;
+                settled[u] = k;
+                if (coveredBy(labels, u, rootLabel, d))
+                    continue;
+                labels.add(u, k, d, parent[u], parentRoad[u]);
+
+                for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                    int w = graph.arcTarget(arc);
+                    //towns processed earlier are hubs already and always prune
+                    if (rank[w] < k)
+                        continue;
+                    long candidate = (long) d + graph.arcWeight(arc);
+                    if (candidate < distance[w]) {
+                        if (distance[w] == Integer.MAX_VALUE)
+                            touched[touchedCount++] = w;
+                        distance[w] = (int) Math.min(candidate, Integer.MAX_VALUE - 1);
+                        parent[w] = u;
+                        parentRoad[w] = graph.arcRoad(arc);
+                        heap.add(LongHeap.pack(distance[w], w));
+                    }
+                }
+            }
+
+            for (int i = 0; i < touchedCount; i++)
+                distance[touched[i]] = Integer.MAX_VALUE;
+            for (int i = 0; i < labels.size[root]; i++)
+                rootLabel[labels.hub[root][i]] = Integer.MAX_VALUE;
+        }
+
+        labelOffset = new int[n + 1];
+        for (int v = 0; v < n; v++)
+            labelOffset[v + 1] = labelOffset[v] + labels.size[v];
+        int total = labelOffset[n];
+        labelHub = new int[total];
+        labelDistance = new int[total];
+        labelParent = new int[total];
+        labelRoad = new int[total];
+        for (int v = 0; v < n; v++) {
+            int size = labels.size[v];
+            System.arraycopy(labels.hub[v], 0, labelHub, labelOffset[v], size);
+            System.arraycopy(labels.distance[v], 0, labelDistance, labelOffset[v], size);
+            System.arraycopy(labels.parent[v], 0, labelParent, labelOffset[v], size);
+            System.arraycopy(labels.road[v], 0, labelRoad, labelOffset[v], size);
+        }
+    }
+
+    /*
+    True if the labels built so far already give a distance of at most d
+    between the current root and u
+     */
+    private static boolean coveredBy(LabelBuilder labels, int u, int[] rootLabel, int d) {
+        int[] hubs = labels.hub[u];
+        int[] distances = labels.distance[u];
+        for (int i = 0; i < labels.size[u]; i++) {
+            int toRoot = rootLabel[hubs[i]];
+            if (toRoot != Integer.MAX_VALUE && (long) toRoot + distances[i] <= d)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the length of the shortest path between two towns
+     * @param source index of the first town in the snapshot
+     * @param target index of the second town in the snapshot
+     * @return the distance, or Integer.MAX_VALUE if there is no path
+     */
+    public int distance(int source, int target) {
+        int entry = meetingEntry(source, target);
+        if (entry < 0)
+            return Integer.MAX_VALUE;
+        long sum = (long) labelDistance[entry] + labelDistance[findEntry(target, labelHub[entry])];
+        return (int) Math.min(sum, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Returns the length of the shortest path between two towns
+     * @param source the first town
+     * @param target the second town
+     * @return the distance, or Integer.MAX_VALUE if there is no path or a
+     * town is not in the snapshot
+     */
+    @Override
+    public int distance(Town source, Town target) {
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0 || t < 0)
+            return Integer.MAX_VALUE;
+        return distance(s, t);
+    }
+
+    /**
+     * Returns the roads along a shortest path between two towns
+     * @param source the first town
+     * @param target the second town
+     * @return the roads from source to target, or an empty list if there is
+     * no path, a town is not in the snapshot or the towns are the same
+     */
+    public List<Road> path(Town source, Town target) {
+        List<Road> roads = new ArrayList<>();
+        int s = graph.indexOf(source);
+        int t = graph.indexOf(target);
+        if (s < 0 || t < 0)
+            return roads;
+        int entry = meetingEntry(s, t);
+        if (entry < 0)
+            return roads;
+        int hub = labelHub[entry];
+        walkToHub(s, hub, roads);
+        List<Road> fromTarget = new ArrayList<>();
+        walkToHub(t, hub, fromTarget);
+        Collections.reverse(fromTarget);
+        roads.addAll(fromTarget);
+        return roads;
+    }
+
+    /**
+     * Saves the distances of this index to a file that MappedHubLabels can
+     * open without reading it into memory. Paths are not saved.
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        MappedHubLabels.write(file, graph, labelOffset, labelHub, labelDistance);
+    }
+
+    /**
+     * Returns the total number of label entries, a measure of the memory
+     * the index uses
+     * @return the number of entries over all labels
+     */
+    public int labelEntries() {
+        return labelHub.length;
+    }
+
+    /**
+     * Returns the snapshot this index was built for
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /*
+    Merges the two sorted labels and returns the entry of source's label
+    whose hub gives the shortest distance, or -1 if they share no hub
+     */
+    private int meetingEntry(int source, int target) {
+        int i = labelOffset[source];
+        int iEnd = labelOffset[source + 1];
+        int j = labelOffset[target];
+        int jEnd = labelOffset[target + 1];
+        long best = Long.MAX_VALUE;
+        int bestEntry = -1;
+        while (i < iEnd && j < jEnd) {
+            if (labelHub[i] < labelHub[j]) {
+                i++;
+            } else if (labelHub[i] > labelHub[j]) {
+                j++;
+            } else {
+                long sum = (long) labelDistance[i] + labelDistance[j];
+                if (sum < best) {
+                    best = sum;
+                    bestEntry = i;
+                }
+                i++;
+                j++;
+            }
+        }
+        return bestEntry;
+    }
+
+    private int findEntry(int v, int hub) {
+        int entry = Arrays.binarySearch(labelHub, labelOffset[v], labelOffset[v + 1], hub);
+        if (entry < 0)
+            throw new IllegalStateException("Town " + v + " has no label for hub " + hub);
+        return entry;
+    }
+
+    /*
+    Follows the parent entries from v to the hub, adding each road passed
+    over. Every town on the way was reached by the hub's search without
+    being pruned, so each has an entry for the hub.
+     */
+    private void walkToHub(int v, int hub, List<Road> roads) {
+        int entry = findEntry(v, hub);
+        while (labelParent[entry] >= 0) {
+            roads.add(graph.getRoad(labelRoad[entry]));
+            entry = findEntry(labelParent[entry], hub);
+        }
+    }
+
+    /*
+    Growable per-town labels used while building, flattened afterwards
+     */
+    private static class LabelBuilder {
+        final int[][] hub;
+        final int[][] distance;
+        final int[][] parent;
+        final int[][] road;
+        final int[] size;
+
+        LabelBuilder(int n) {
+            hub = new int[n][];
+            distance = new int[n][];
+            parent = new int[n][];
+            road = new int[n][];
+            size = new int[n];
+            for (int v = 0; v < n; v++) {
+                hub[v] = new int[2];
+                distance[v] = new int[2];
+                parent[v] = new int[2];
+                road[v] = new int[2];
+            }
+        }
+
+        void add(int v, int hubRank, int d, int parentTown, int parentRoad) {
+            if (size[v] == hub[v].length) {
+                int capacity = size[v] * 2;
+                hub[v] = Arrays.copyOf(hub[v], capacity);
+                distance[v] = Arrays.copyOf(distance[v], capacity);
+                parent[v] = Arrays.copyOf(parent[v], capacity);
+                road[v] = Arrays.copyOf(road[v], capacity);
+            }
+            hub[v][size[v]] = hubRank;
+            distance[v][size[v]] = d;
+            parent[v][size[v]] = parentTown;
+            road[v][size[v]] = parentRoad;
+            size[v]++;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class HubLabelIndexTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@Test
+	public void testDistance() {
+		HubLabelIndex index = new HubLabelIndex(new CompactGraph(graph));
+		assertEquals(8, index.distance(town[1], town[11]));
+		assertEquals(8, index.distance(town[11], town[1]));
+		assertEquals(15, index.distance(town[1], town[6]));
+		assertEquals(0, index.distance(town[4], town[4]));
+		assertEquals(Integer.MAX_VALUE, index.distance(town[1], new Town("Town_12")));
+	}
+
+	@Test
+	public void testPath() {
+		HubLabelIndex index = new HubLabelIndex(new CompactGraph(graph));
+		List<Road> path = index.path(town[1], town[6]);
+		String[] names = new String[path.size()];
+		for (int i = 0; i < names.length; i++)
+			names[i] = path.get(i).getName();
+		assertEquals(Arrays.asList("Road_2", "Road_5", "Road_9", "Road_8", "Road_7"), Arrays.asList(names));
+		assertTrue(index.path(town[1], town[1]).isEmpty());
+	}
+
+	@Test
+	public void testDisconnected() {
+		graph.addVertex(new Town("Town_12"));
+		graph.addVertex(new Town("Town_13"));
+		graph.addEdge(new Town("Town_12"), new Town("Town_13"), 1, "Road_13");
+		HubLabelIndex index = new HubLabelIndex(new CompactGraph(graph));
+		assertEquals(Integer.MAX_VALUE, index.distance(town[1], new Town("Town_13")));
+		assertTrue(index.path(town[1], new Town("Town_13")).isEmpty());
+		assertEquals(1, index.distance(new Town("Town_12"), new Town("Town_13")));
+	}
+
+	@Test
+	public void testMatchesAllPairsOnRandomGraph() {
+		Random random = new Random(7);
+		Graph randomGraph = new Graph();
+		int n = 60;
+		Town[] towns = new Town[n];
+		for (int i = 0; i < n; i++) {
+			towns[i] = new Town("T" + i);
+			randomGraph.addVertex(towns[i]);
+		}
+		long[][] expected = new long[n][n];
+		for (long[] row : expected)
+			Arrays.fill(row, Long.MAX_VALUE / 4);
+		for (int i = 0; i < n; i++)
+			expected[i][i] = 0;
+		for (int r = 0; r < 150; r++) {
+			int a = random.nextInt(n);
+			int b = random.nextInt(n);
+			int weight = random.nextInt(20);
+			if (a != b && randomGraph.addEdge(towns[a], towns[b], weight, "R" + r) != null) {
+				expected[a][b] = Math.min(expected[a][b], weight);
+				expected[b][a] = expected[a][b];
+			}
+		}
+		for (int k = 0; k < n; k++)
+			for (int i = 0; i < n; i++)
+				for (int j = 0; j < n; j++)
+					expected[i][j] = Math.min(expected[i][j], expected[i][k] + expected[k][j]);
+
+		HubLabelIndex index = new HubLabelIndex(new CompactGraph(randomGraph));
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				int distance = index.distance(towns[i], towns[j]);
+				if (expected[i][j] >= Long.MAX_VALUE / 4) {
+					assertEquals(Integer.MAX_VALUE, distance);
+					continue;
+				}
+				assertEquals(expected[i][j], distance);
+				long length = 0;
+				Town at = towns[i];
+				for (Road road : index.path(towns[i], towns[j])) {
+					assertTrue(road.contains(at));
+					at = road.getSource().equals(at) ? road.getDestination() : road.getSource();
+					length += road.getWeight();
+				}
+				assertEquals(towns[j], at);
+				assertEquals(expected[i][j], length);
+			}
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of primitive longs. Shortest path searches pack a
+ * distance into the high half of a long and a town index into the low
+ * half, so the smallest long is the closest town and no boxing is needed.
+ * The backing array grows as needed and is kept when the heap is cleared,
+ * so a heap can be reused across searches without allocating.
+ */
+public class LongHeap {
+    private long[] heap;
+    private int size;
+
+    /**
+     * Creates an empty heap
+     * @param initialCapacity number of entries to make room for
+     */
+    public LongHeap(int initialCapacity) {
+        heap = new long[Math.max(initialCapacity, 16)];
+    }
+
+    /**
+     * Packs a distance and a town index into one heap entry
+     * @param distance a non-negative distance
+     * @param index a non-negative index
+     * @return the packed entry
+     */
+    public static long pack(int distance, int index) {
+        return ((long) distance << 32) | index;
+    }
+
+    /**
+     * Returns the distance half of a packed entry
+     * @param entry the packed entry
+     * @return the distance
+     */
+    public static int distance(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Returns the index half of a packed entry
+     * @param entry the packed entry
+     * @return the index
+     */
+    public static int index(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Adds a value to the heap
+     * @param value the value to add
+     */
+    public void add(long value) {
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, size * 2);
+        int child = size++;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (heap[parent] <= value)
+                break;
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = value;
+    }
+
+    /**
+     * Removes and returns the smallest value in the heap
+     * @return the smallest value
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public long poll() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        long result = heap[0];
+        long last = heap[--size];
+        int parent = 0;
+        int half = size >>> 1;
+        while (parent < half) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child])
+                child++;
+            if (last <= heap[child])
+                break;
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = last;
+        return result;
+    }
+
+    /**
+     * Returns true if the heap has no values
+     * @return true if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values in the heap
+     * @return the number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every value, keeping the allocated capacity
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Hub label distances read straight from a file with memory mapping, so the
+ * labels never have to fit in the Java heap. Opening the file only maps
+ * it; pages are read by the operating system as queries touch them, and
+ * several processes opening the same file share one copy in the page
+ * cache. Files are written by HubLabelIndex.save.
+ *
+ * The file holds, after a fixed header, the label offsets, hubs and
+ * distances of every town in the same flat layout HubLabelIndex uses, then
+ * the town names as UTF-8 with an index of towns sorted by name for
+ * looking them up. All numbers are little-endian and every section starts
+ * on an 8 byte boundary.
+ *
+ * Only distances are stored; paths need the graph itself.
+ */
+public class MappedHubLabels implements DistanceOracle, AutoCloseable {
+    private static final int MAGIC = 0x4c425548;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    //files are mapped in pieces, as one mapping cannot exceed 2GB
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final int townCount;
+    private final long offsetsStart;
+    private final long hubsStart;
+    private final long distancesStart;
+    private final long nameOffsetsStart;
+    private final long namesStart;
+    private final long nameOrderStart;
+
+    private MappedHubLabels(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        int count = (int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        chunks = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = i * CHUNK_BYTES;
+            //each piece overlaps the next by 8 bytes so no number is split
+            long length = Math.min(CHUNK_BYTES + 8, size - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (size < HEADER_BYTES || getInt(0) != MAGIC)
+            throw new IOException("Not a hub label file");
+        if (getInt(4) != FORMAT_VERSION)
+            throw new IOException("Unsupported hub label file version " + getInt(4));
+        townCount = getInt(8);
+        offsetsStart = getLong(16);
+        hubsStart = getLong(24);
+        distancesStart = getLong(32);
+        nameOffsetsStart = getLong(40);
+        namesStart = getLong(48);
+        nameOrderStart = getLong(56);
+    }
+
+    /**
+     * Maps a hub label file
+     * @param file a file written by HubLabelIndex.save
+     * @return the oracle
+     * @throws IOException if the file cannot be opened or is not a hub
+     * label file
+     */
+    public static MappedHubLabels open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new MappedHubLabels(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the length of the shortest path between two towns
+     * @param source the first town
+     * @param target the second town
+     * @return the distance, or Integer.MAX_VALUE if there is no path or a
+     * town is not in the file
+     */
+    @Override
+    public int distance(Town source, Town target) {
+        int s = indexOf(source.getName());
+        int t = indexOf(target.getName());
+        if (s < 0 || t < 0)
+            return Integer.MAX_VALUE;
+        return distance(s, t);
+    }
+
+    /**
+     * Returns the length of the shortest path between two towns given by
+     * their index in the file
+     * @param source index of the first town
+     * @param target index of the second town
+     * @return the distance, or Integer.MAX_VALUE if there is no path
+     */
+    public int distance(int source, int target) {
+        long i = getInt(offsetsStart + 4L * source);
+        long iEnd = getInt(offsetsStart + 4L * (source + 1));
+        long j = getInt(offsetsStart + 4L * target);
+        long jEnd = getInt(offsetsStart + 4L * (target + 1));
+        long best = Long.MAX_VALUE;
+        while (i < iEnd && j < jEnd) {
+            int hubI = getInt(hubsStart + 4 * i);
+            int hubJ = getInt(hubsStart + 4 * j);
+            if (hubI < hubJ) {
+                i++;
+            } else if (hubI > hubJ) {
+                j++;
+            } else {
+                best = Math.min(best, (long) getInt(distancesStart + 4 * i) + getInt(distancesStart + 4 * j));
+                i++;
+                j++;
+            }
+        }
+        return best == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.min(best, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Finds a town by name with a binary search of the name index
+     * @param name the town's name
+     * @return the town's index, or -1 if it is not in the file
+     */
+    public int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = townCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int town = getInt(nameOrderStart + 4L * middle);
+            int comparison = compareName(town, key);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return town;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of towns in the file
+     * @return the number of towns
+     */
+    public int townCount() {
+        return townCount;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released by the garbage
+     * collector, so the oracle must not be used after this.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+    Compares a town's stored name with a UTF-8 key, byte by byte as
+    unsigned values, the order the names were sorted in
+     */
+    private int compareName(int town, byte[] key) {
+        long start = namesStart + getLong(nameOffsetsStart + 8L * town);
+        long end = namesStart + getLong(nameOffsetsStart + 8L * (town + 1));
+        int length = (int) (end - start);
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int difference = (getByte(start + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0)
+                return difference;
+        }
+        return length - key.length;
+    }
+
+    private byte getByte(long position) {
+        return chunks[(int) (position / CHUNK_BYTES)].get((int) (position % CHUNK_BYTES));
+    }
+
+    private int getInt(long position) {
+        return chunks[(int) (position / CHUNK_BYTES)].getInt((int) (position % CHUNK_BYTES));
+    }
+
+    private long getLong(long position) {
+        return chunks[(int) (position / CHUNK_BYTES)].getLong((int) (position % CHUNK_BYTES));
+    }
+
+    /*
+    Writes the file for HubLabelIndex.save. It is written under a temporary
+    name and moved into place, so processes that already have the old file
+    mapped keep reading it undisturbed.
+     */
+    static void write(File file, CompactGraph graph, int[] labelOffset, int[] labelHub, int[] labelDistance)
+            throws IOException {
+        int n = graph.townCount();
+        byte[][] names = new byte[n][];
+        long nameBytes = 0;
+        for (int v = 0; v < n; v++) {
+            names[v] = graph.getTown(v).getName().getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[v].length;
+        }
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++)
+            order[v] = v;
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+
+        long offsetsStart = HEADER_BYTES;
+        long hubsStart = align(offsetsStart + 4L * (n + 1));
+        long distancesStart = align(hubsStart + 4L * labelHub.length);
+        long nameOffsetsStart = align(distancesStart + 4L * labelDistance.length);
+        long namesStart = align(nameOffsetsStart + 8L * (n + 1));
+        long nameOrderStart = align(namesStart + nameBytes);
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n).putInt(0);
+            buffer.putLong(offsetsStart).putLong(hubsStart).putLong(distancesStart)
+                    .putLong(nameOffsetsStart).putLong(namesStart).putLong(nameOrderStart);
+            for (int offset : labelOffset)
+                putInt(out, buffer, offset);
+            pad(out, buffer, hubsStart);
+            for (int hub : labelHub)
+                putInt(out, buffer, hub);
+            pad(out, buffer, distancesStart);
+            for (int distance : labelDistance)
+                putInt(out, buffer, distance);
+            pad(out, buffer, nameOffsetsStart);
+            long nameOffset = 0;
+            putLong(out, buffer, 0);
+            for (byte[] name : names) {
+                nameOffset += name.length;
+                putLong(out, buffer, nameOffset);
+            }
+            pad(out, buffer, namesStart);
+            for (byte[] name : names)
+                for (byte b : name)
+                    putByte(out, buffer, b);
+            pad(out, buffer, nameOrderStart);
+            for (int town : order)
+                putInt(out, buffer, town);
+            drain(out, buffer);
+            out.force(true);
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static ByteBuffer putByte(FileChannel out, ByteBuffer buffer, byte value) throws IOException {
+        if (!buffer.hasRemaining())
+            drain(out, buffer);
+        return buffer.put(value);
+    }
+
+    private static ByteBuffer putInt(FileChannel out, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4)
+            drain(out, buffer);
+        return buffer.putInt(value);
+    }
+
+    private static ByteBuffer putLong(FileChannel out, ByteBuffer buffer, long value) throws IOException {
+        if (buffer.remaining() < 8)
+            drain(out, buffer);
+        return buffer.putLong(value);
+    }
+
+    //writes zeros up to the start of the next section
+    private static ByteBuffer pad(FileChannel out, ByteBuffer buffer, long sectionStart) throws IOException {
+        while (out.position() + buffer.position() < sectionStart)
+            putByte(out, buffer, (byte) 0);
+        return buffer;
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+}
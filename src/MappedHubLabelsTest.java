@@ -0,0 +1,99 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MappedHubLabelsTest {
+	private TownGraphManager graph;
+	private String[] town;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new TownGraphManager();
+		  town = new String[12];
+		  file = File.createTempFile("distances", ".hub");
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = "Town_" + i;
+			  graph.addTown(town[i]);
+		  }
+
+		  graph.addRoad(town[1], town[2], 2, "Road_1");
+		  graph.addRoad(town[1], town[3], 4, "Road_2");
+		  graph.addRoad(town[1], town[5], 6, "Road_3");
+		  graph.addRoad(town[3], town[7], 1, "Road_4");
+		  graph.addRoad(town[3], town[8], 2, "Road_5");
+		  graph.addRoad(town[4], town[8], 3, "Road_6");
+		  graph.addRoad(town[6], town[9], 3, "Road_7");
+		  graph.addRoad(town[9], town[10], 4, "Road_8");
+		  graph.addRoad(town[8], town[10], 2, "Road_9");
+		  graph.addRoad(town[5], town[10], 5, "Road_10");
+		  graph.addRoad(town[10], town[11], 3, "Road_11");
+		  graph.addRoad(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph.closeDistanceFile();
+		file.delete();
+	}
+
+	@Test
+	public void testSameDistancesAsIndex() throws Exception {
+		graph.saveDistanceFile(file);
+		try (MappedHubLabels mapped = MappedHubLabels.open(file)) {
+			assertEquals(11, mapped.townCount());
+			for (int i = 1; i < 12; i++)
+				for (int j = 1; j < 12; j++)
+					assertEquals(graph.getDistance(town[i], town[j]),
+							mapped.distance(new Town(town[i]), new Town(town[j])));
+			assertEquals(-1, mapped.indexOf("Town_12"));
+			assertEquals(Integer.MAX_VALUE, mapped.distance(new Town("Town_1"), new Town("Town_12")));
+		}
+	}
+
+	@Test
+	public void testOpenInAnotherManager() throws Exception {
+		graph.saveDistanceFile(file);
+		TownGraphManager other = new TownGraphManager();
+		other.openDistanceFile(file);
+		assertEquals(15, other.getDistance(town[1], town[6]));
+		other.closeDistanceFile();
+		assertEquals(Integer.MAX_VALUE, other.getDistance(town[1], town[6]));
+	}
+
+	@Test
+	public void testUnicodeNames() throws Exception {
+		Random random = new Random(3);
+		String[] names = {"Z\u00fcrich", "\u00c5ngstr\u00f6m", "Town_\u00fc", "Town_A", "Krak\u00f3w", "\u6771\u4eac"};
+		TownGraphManager unicode = new TownGraphManager();
+		for (int i = 1; i < names.length; i++)
+			unicode.addRoad(names[i - 1], names[i], 1 + random.nextInt(5), "Road_" + i);
+		unicode.saveDistanceFile(file);
+		try (MappedHubLabels mapped = MappedHubLabels.open(file)) {
+			for (String a : names)
+				for (String b : names)
+					assertEquals(unicode.getDistance(a, b), mapped.distance(new Town(a), new Town(b)));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAHubLabelFile() throws Exception {
+		try (PrintWriter out = new PrintWriter(file)) {
+			for (int i = 0; i < 20; i++)
+				out.println("Road_1,2;Town_1;Town_2");
+		}
+		MappedHubLabels.open(file);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * The cheapest set of Roads that keeps every Town connected to every other
+ * Town it can reach. If the graph is not connected the result is a minimum
+ * spanning forest, one tree per connected group of towns.
+ *
+ * Two algorithms are provided. Kruskal's algorithm sorts all roads once and
+ * adds them cheapest first, and is the better choice for small and medium
+ * graphs. Boruvka's algorithm repeatedly lets every component pick its
+ * cheapest outgoing road; that search is done in parallel over the roads,
+ * so it scales better on large graphs and multi-core machines.
+ *
+ * Roads of equal weight are ordered by their position in the snapshot, so
+ * both algorithms always return a valid tree even when weights repeat.
+ */
+public class MinimumSpanningTree {
+    /**
+     * Graphs with at least this many roads are handled by the parallel
+     * Boruvka variant when using compute
+     */
+    public static final int PARALLEL_THRESHOLD = 100_000;
+
+    private static final long NO_ROAD = Long.MAX_VALUE;
+
+    private final Set<Road> roads;
+    private final long totalWeight;
+
+    private MinimumSpanningTree(Set<Road> roads, long totalWeight) {
+        this.roads = Collections.unmodifiableSet(roads);
+        this.totalWeight = totalWeight;
+    }
+
+    /**
+     * Computes the minimum spanning tree of the graph, choosing Kruskal's
+     * algorithm or parallel Boruvka depending on the number of roads
+     * @param graph the graph to span
+     * @return the minimum spanning tree
+     */
+    public static MinimumSpanningTree compute(Graph graph) {
+        CompactGraph compact = new CompactGraph(graph);
+        if (compact.roadCount() < PARALLEL_THRESHOLD)
+            return kruskal(compact);
+        return boruvka(compact, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the minimum spanning tree with Kruskal's algorithm
+     * @param graph the graph to span
+     * @return the minimum spanning tree
+     */
+    public static MinimumSpanningTree kruskal(Graph graph) {
+        return kruskal(new CompactGraph(graph));
+    }
+
+    /**
+     * Computes the minimum spanning tree with Boruvka's algorithm, searching
+     * for the cheapest road of each component in parallel on the given pool
+     * @param graph the graph to span
+     * @param pool the pool to run the parallel searches on
+     * @return the minimum spanning tree
+     */
+    public static MinimumSpanningTree boruvka(Graph graph, ForkJoinPool pool) {
+        return boruvka(new CompactGraph(graph), pool);
+    }
+
+    private static MinimumSpanningTree kruskal(CompactGraph graph) {
+        long[] order = new long[graph.roadCount()];
+        for (int e = 0; e < order.length; e++)
+            order[e] = key(graph, e);
+        Arrays.sort(order);
+
+        UnionFind components = new UnionFind(graph.townCount());
+        HashSet<Road> result = new HashSet<>();
+        long total = 0;
+        int needed = graph.townCount() - 1;
+        for (int i = 0; i < order.length && result.size() < needed; i++) {
+            int e = (int) order[i];
+            if (components.union(graph.roadSource(e), graph.roadDestination(e))) {
+                result.add(graph.getRoad(e));
+                total += graph.roadWeight(e);
+            }
+        }
+        return new MinimumSpanningTree(result, total);
+    }
+
+    private static MinimumSpanningTree boruvka(CompactGraph graph, ForkJoinPool pool) {
+        int townCount = graph.townCount();
+        UnionFind components = new UnionFind(townCount);
+        int[] component = new int[townCount];
+        for (int v = 0; v < townCount; v++)
+            component[v] = v;
+        AtomicLongArray cheapest = new AtomicLongArray(townCount);
+
+        HashSet<Road> result = new HashSet<>();
+        long total = 0;
+        boolean merged = true;
+        while (merged) {
+            for (int c = 0; c < townCount; c++)
+                cheapest.set(c, NO_ROAD);
+
+            pool.submit(() -> IntStream.range(0, graph.roadCount()).parallel().forEach(e -> {
+                int a = component[graph.roadSource(e)];
+                int b = component[graph.roadDestination(e)];
+                if (a != b) {
+                    long key = key(graph, e);
+                    lowerTo(cheapest, a, key);
+                    lowerTo(cheapest, b, key);
+                }
+            })).join();
+
+            merged = false;
+            for (int c = 0; c < townCount; c++) {
+                long key = cheapest.get(c);
+                if (key == NO_ROAD)
+                    continue;
+                int e = (int) key;
+                if (components.union(graph.roadSource(e), graph.roadDestination(e))) {
+                    result.add(graph.getRoad(e));
+                    total += graph.roadWeight(e);
+                    merged = true;
+                }
+            }
+            for (int v = 0; v < townCount; v++)
+                component[v] = components.find(v);
+        }
+        return new MinimumSpanningTree(result, total);
+    }
+
+    /*
+    Weight in the high half and road index in the low half, so comparing
+    keys orders roads by weight and breaks ties by index
+     */
+    private static long key(CompactGraph graph, int e) {
+        return ((long) graph.roadWeight(e) << 32) | e;
+    }
+
+    private static void lowerTo(AtomicLongArray cheapest, int component, long key) {
+        long current = cheapest.get(component);
+        while (key < current && !cheapest.compareAndSet(component, current, key))
+            current = cheapest.get(component);
+    }
+
+    /**
+     * Returns the roads of the tree
+     * @return an unmodifiable set of the roads in the tree
+     */
+    public Set<Road> getRoads() {
+        return roads;
+    }
+
+    /**
+     * Returns the sum of the weights of the roads in the tree
+     * @return the total weight of the tree
+     */
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+}
@@ -0,0 +1,82 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MinimumSpanningTreeTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testKruskal() {
+		MinimumSpanningTree tree = MinimumSpanningTree.kruskal(graph);
+		assertEquals(10, tree.getRoads().size());
+		assertEquals(29, tree.getTotalWeight());
+		assertFalse(tree.getRoads().contains(graph.getEdge(town[1], town[5])));
+		assertFalse(tree.getRoads().contains(graph.getEdge(town[2], town[11])));
+	}
+
+	@Test
+	public void testBoruvkaMatchesKruskal() {
+		MinimumSpanningTree kruskal = MinimumSpanningTree.kruskal(graph);
+		MinimumSpanningTree boruvka = MinimumSpanningTree.boruvka(graph, ForkJoinPool.commonPool());
+		assertEquals(kruskal.getTotalWeight(), boruvka.getTotalWeight());
+		assertEquals(names(kruskal), names(boruvka));
+	}
+
+	@Test
+	public void testDisconnectedGraph() {
+		graph.addVertex(new Town("Town_12"));
+		graph.addVertex(new Town("Town_13"));
+		graph.addEdge(new Town("Town_12"), new Town("Town_13"), 7, "Road_13");
+		MinimumSpanningTree tree = MinimumSpanningTree.boruvka(graph, ForkJoinPool.commonPool());
+		assertEquals(11, tree.getRoads().size());
+		assertEquals(36, tree.getTotalWeight());
+	}
+
+	private ArrayList<String> names(MinimumSpanningTree tree) {
+		ArrayList<String> result = new ArrayList<>();
+		for (Road road : tree.getRoads())
+			result.add(road.getName());
+		Collections.sort(result);
+		return result;
+	}
+}
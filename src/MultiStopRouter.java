@@ -0,0 +1,364 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Routes through a list of stops, either in the order given or in an order
+ * chosen to make the whole route short.
+ *
+ * The router searches once from every stop, in parallel, stopping each
+ * search once it has settled all the stops, and keeps only the distance
+ * between every pair of stops. Any number of orders can then be tried
+ * without searching again; only the legs of the route finally chosen are
+ * searched once more to find their roads.
+ *
+ * Choosing the best order is the travelling salesman problem, so the order
+ * is found with heuristics rather than exactly:
+ * - Nearest insertion builds a route by adding the stop closest to the
+ *   route so far, where it adds the least distance.
+ * - 2-opt then reverses stretches of the route.
+ * - Or-opt moves runs of one to three stops elsewhere.
+ * Both repeat while anything makes the route shorter.
+ *
+ * The first stop is always where the route starts.
+ */
+public class MultiStopRouter {
+    //cost of a leg between stops that cannot reach each other
+    private static final long UNREACHABLE = Integer.MAX_VALUE;
+    //longest run of stops Or-opt moves at once
+    private static final int OR_OPT_LENGTH = 3;
+
+    private final CompactGraph graph;
+    private final Town[] stops;
+    //index of each stop in the snapshot
+    private final int[] towns;
+    private final long[][] distance;
+
+    /**
+     * Searches from every stop of a graph in parallel on the common pool
+     * @param graph the graph to route on
+     * @param stops the stops, starting with the first
+     * @throws IllegalArgumentException if a stop is not in the graph or
+     * there are no stops
+     */
+    public MultiStopRouter(Graph graph, List<Town> stops) {
+        this(graph.getSnapshot(), stops, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Searches from every stop of a snapshot in parallel on the given pool
+     * @param graph the snapshot to route on
+     * @param stops the stops, starting with the first
+     * @param pool the pool to run the searches on
+     * @throws IllegalArgumentException if a stop is not in the snapshot or
+     * there are no stops
+     */
+    public MultiStopRouter(CompactGraph graph, List<Town> stops, ForkJoinPool pool) {
+        if (stops.isEmpty())
+            throw new IllegalArgumentException("A route needs at least one stop");
+        for (Town stop : stops)
+            if (graph.indexOf(stop) < 0)
+                throw new IllegalArgumentException("Town is not in the graph: " + stop);
+        this.graph = graph;
+        this.stops = stops.toArray(new Town[0]);
+        int k = this.stops.length;
+        towns = new int[k];
+        for (int i = 0; i < k; i++)
+            towns[i] = graph.indexOf(this.stops[i]);
+        distance = pool.submit(() -> IntStream.range(0, k).parallel()
+                .mapToObj(this::distancesFrom)
+                .toArray(long[][]::new)).join();
+    }
+
+    /*
+    Searches from one stop until every stop is settled and returns the
+    distances to them
+     */
+    private long[] distancesFrom(int from) {
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.search(graph, towns[from], towns);
+        long[] row = new long[towns.length];
+        for (int to = 0; to < towns.length; to++) {
+            int d = workspace.distance(towns[to]);
+            row[to] = d == Integer.MAX_VALUE ? UNREACHABLE : d;
+        }
+        return row;
+    }
+
+    /**
+     * Returns the length of the shortest path between two stops
+     * @param from position of the first stop in the list
+     * @param to position of the second stop in the list
+     * @return the distance, or Integer.MAX_VALUE if there is no path
+     */
+    public long distance(int from, int to) {
+        return distance[from][to];
+    }
+
+    /**
+     * Routes through the stops in the order given
+     * @return the route
+     */
+    public Route ordered() {
+        int[] order = new int[stops.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        return route(order, false);
+    }
+
+    /**
+     * Routes through all the stops in a short order, starting from the
+     * first
+     * @param roundTrip whether the route ends back at the first stop
+     * @return the route
+     */
+    public Route optimized(boolean roundTrip) {
+        int[] order = nearestInsertion(roundTrip);
+        boolean improved = true;
+        while (improved) {
+            improved = twoOpt(order, roundTrip);
+            improved |= orOpt(order, roundTrip);
+        }
+        return route(order, roundTrip);
+    }
+
+    /*
+    Builds a route by adding, each time, the stop nearest to any stop
+    already on it, at the place that adds the least distance
+     */
+    private int[] nearestInsertion(boolean roundTrip) {
+        int k = stops.length;
+        int[] order = new int[k];
+        int size = 1;
+        boolean[] placed = new boolean[k];
+        placed[0] = true;
+        long[] nearest = new long[k];
+        for (int s = 0; s < k; s++)
+            nearest[s] = distance[0][s];
+
+        while (size < k) {
+            int next = -1;
+            for (int s = 0; s < k; s++)
+                if (!placed[s] && (next < 0 || nearest[s] < nearest[next]))
+                    next = s;
+
+            //insert after position best; the end of an open route is a place too
+            int best = size - 1;
+            long bestCost = roundTrip ? insertCost(order[size - 1], next, order[0]) : distance[order[size - 1]][next];
+            for (int p = 0; p < size - 1; p++) {
+                long cost = insertCost(order[p], next, order[p + 1]);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = p;
+                }
+            }
+            System.arraycopy(order, best + 1, order, best + 2, size - best - 1);
+            order[best + 1] = next;
+            size++;
+            placed[next] = true;
+            for (int s = 0; s < k; s++)
+                nearest[s] = Math.min(nearest[s], distance[next][s]);
+        }
+        return order;
+    }
+
+    private long insertCost(int before, int stop, int after) {
+        return distance[before][stop] + distance[stop][after] - distance[before][after];
+    }
+
+    /*
+    Reverses any stretch of the route that makes it shorter, until none
+    does; returns true if anything changed
+     */
+    private boolean twoOpt(int[] order, boolean roundTrip) {
+        int k = order.length;
+        boolean changed = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 1; i < k - 1; i++) {
+                for (int j = i + 1; j < k; j++) {
+                    int before = order[i - 1];
+                    int after = next(order, j, roundTrip);
+                    long removed = distance[before][order[i]] + leg(order[j], after);
+                    long added = distance[before][order[j]] + leg(order[i], after);
+                    if (added < removed) {
+                        reverse(order, i, j);
+                        improved = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /*
+    Moves runs of up to OR_OPT_LENGTH stops, in either direction, to
+    wherever they make the route shortest, until no move helps; returns
+    true if anything changed
+     */
+    private boolean orOpt(int[] order, boolean roundTrip) {
+        int k = order.length;
+        boolean changed = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int length = 1; length <= OR_OPT_LENGTH && !improved; length++) {
+                for (int start = 1; start + length <= k && !improved; start++) {
+                    int end = start + length - 1;
+                    int before = order[start - 1];
+                    int after = next(order, end, roundTrip);
+                    long saved = distance[before][order[start]] + leg(order[end], after) - leg(before, after);
+                    for (int p = 0; p < k && !improved; p++) {
+                        if (p >= start - 1 && p <= end)
+                            continue;
+                        int left = order[p];
+                        int right = next(order, p, roundTrip);
+                        long forward = distance[left][order[start]] + leg(order[end], right) - leg(left, right);
+                        long backward = distance[left][order[end]] + leg(order[start], right) - leg(left, right);
+                        if (Math.min(forward, backward) < saved) {
+                            move(order, start, end, p, backward < forward);
+                            improved = true;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /*
+    The stop after position p, or -1 past the end of an open route
+     */
+    private static int next(int[] order, int p, boolean roundTrip) {
+        if (p + 1 < order.length)
+            return order[p + 1];
+        return roundTrip ? order[0] : -1;
+    }
+
+    /*
+    The length of a leg, or 0 for the missing leg past the end of an open
+    route
+     */
+    private long leg(int from, int to) {
+        return from < 0 || to < 0 ? 0 : distance[from][to];
+    }
+
+    private static void reverse(int[] order, int i, int j) {
+        for (; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    /*
+    Moves order[start..end] to just after position p, reversed if asked
+     */
+    private static void move(int[] order, int start, int end, int p, boolean reversed) {
+        int[] run = Arrays.copyOfRange(order, start, end + 1);
+        if (reversed)
+            reverse(run, 0, run.length - 1);
+        int length = run.length;
+        if (p > end) {
+            System.arraycopy(order, end + 1, order, start, p - end);
+            System.arraycopy(run, 0, order, p - length + 1, length);
+        } else {
+            System.arraycopy(order, p + 1, order, p + 1 + length, start - p - 1);
+            System.arraycopy(run, 0, order, p + 1, length);
+        }
+    }
+
+    /*
+    Stitches the legs of an order together
+     */
+    private Route route(int[] order, boolean roundTrip) {
+        List<Town> visits = new ArrayList<>();
+        ArrayList<String> path = new ArrayList<>();
+        long total = 0;
+        int legs = roundTrip ? order.length : order.length - 1;
+        for (int p = 0; p < order.length; p++)
+            visits.add(stops[order[p]]);
+        if (roundTrip)
+            visits.add(stops[order[0]]);
+        for (int p = 0; p < legs; p++) {
+            int from = order[p];
+            int to = order[(p + 1) % order.length];
+            if (distance[from][to] == UNREACHABLE)
+                return new Route(visits, Integer.MAX_VALUE, new ArrayList<>());
+            total += distance[from][to];
+            path.addAll(legPath(towns[from], towns[to]));
+        }
+        return new Route(visits, total, path);
+    }
+
+    /*
+    Searches again for the roads of one leg, in the format of
+    Graph.shortestPath
+     */
+    private List<String> legPath(int source, int target) {
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+        workspace.search(graph, source, target);
+        List<String> path = new ArrayList<>();
+        for (int v = target; v != source; ) {
+            int e = workspace.parentRoad(v);
+            int parent = graph.roadSource(e) == v ? graph.roadDestination(e) : graph.roadSource(e);
+            path.add(graph.getTown(parent).getName() + " via " + graph.getRoad(e).getName() + " to "
+                    + graph.getTown(v).getName() + " " + graph.roadWeight(e) + " mi");
+            v = parent;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * A route through the stops
+     */
+    public static final class Route {
+        private final List<Town> stops;
+        private final long distance;
+        private final ArrayList<String> path;
+
+        Route(List<Town> stops, long distance, ArrayList<String> path) {
+            this.stops = Collections.unmodifiableList(stops);
+            this.distance = distance;
+            this.path = path;
+        }
+
+        /**
+         * Returns the stops in the order they are visited, ending with the
+         * first stop again on a round trip
+         * @return the stops
+         */
+        public List<Town> getStops() {
+            return stops;
+        }
+
+        /**
+         * Returns the total length of the route
+         * @return the length, or Integer.MAX_VALUE if some stop cannot be
+         * reached from the one before it
+         */
+        public long getDistance() {
+            return distance;
+        }
+
+        /**
+         * Returns every road along the route
+         * @return the path in the same format as Graph.shortestPath, or an
+         * empty list if some stop cannot be reached
+         */
+        public ArrayList<String> getPath() {
+            return path;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MultiStopRouterTest {
+	private TownGraphManager graph;
+	private String[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new TownGraphManager();
+		  town = new String[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = "Town_" + i;
+			  graph.addTown(town[i]);
+		  }
+
+		  graph.addRoad(town[1], town[2], 2, "Road_1");
+		  graph.addRoad(town[1], town[3], 4, "Road_2");
+		  graph.addRoad(town[1], town[5], 6, "Road_3");
+		  graph.addRoad(town[3], town[7], 1, "Road_4");
+		  graph.addRoad(town[3], town[8], 2, "Road_5");
+		  graph.addRoad(town[4], town[8], 3, "Road_6");
+		  graph.addRoad(town[6], town[9], 3, "Road_7");
+		  graph.addRoad(town[9], town[10], 4, "Road_8");
+		  graph.addRoad(town[8], town[10], 2, "Road_9");
+		  graph.addRoad(town[5], town[10], 5, "Road_10");
+		  graph.addRoad(town[10], town[11], 3, "Road_11");
+		  graph.addRoad(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testOrderedWaypoints() {
+		ArrayList<String> expected = new ArrayList<>(graph.getPath(town[2], town[7]));
+		expected.addAll(graph.getPath(town[7], town[6]));
+		assertEquals(expected, graph.getPath(Arrays.asList(town[2], town[7], town[6])));
+		assertEquals(graph.getPath(town[1], town[11]), graph.getPath(Arrays.asList(town[1], town[11])));
+		assertTrue(graph.getPath(Arrays.asList(town[1], "Nowhere")).isEmpty());
+		assertNull(graph.planRoute(Arrays.asList(town[1], "Nowhere"), false));
+	}
+
+	@Test
+	public void testOptimizedRoute() {
+		List<String> stops = Arrays.asList(town[1], town[6], town[7], town[4], town[2], town[5]);
+		List<Town> towns = new ArrayList<>();
+		for (String stop : stops)
+			towns.add(new Town(stop));
+		MultiStopRouter router = new MultiStopRouter(graph.getGraph(), towns);
+
+		MultiStopRouter.Route route = graph.planRoute(stops, false);
+		assertEquals(new Town(town[1]), route.getStops().get(0));
+		assertEquals(new HashSet<>(towns), new HashSet<>(route.getStops()));
+		assertEquals(shortest(router, new int[] {0, 1, 2, 3, 4, 5}, 1, false), route.getDistance());
+		assertEquals(route.getDistance(), walk(route.getPath(), town[1], route.getStops().get(5).getName()));
+
+		MultiStopRouter.Route roundTrip = graph.planRoute(stops, true);
+		assertEquals(7, roundTrip.getStops().size());
+		assertEquals(new Town(town[1]), roundTrip.getStops().get(6));
+		assertEquals(shortest(router, new int[] {0, 1, 2, 3, 4, 5}, 1, true), roundTrip.getDistance());
+		assertEquals(roundTrip.getDistance(), walk(roundTrip.getPath(), town[1], town[1]));
+	}
+
+	@Test
+	public void testUnreachableStop() {
+		graph.addTown("Island");
+		MultiStopRouter.Route route = graph.planRoute(Arrays.asList(town[1], "Island", town[4]), false);
+		assertEquals(Integer.MAX_VALUE, route.getDistance());
+		assertTrue(route.getPath().isEmpty());
+		assertEquals(3, route.getStops().size());
+	}
+
+	@Test
+	public void testOptimizedBeatsGivenOrder() {
+		Graph grid = new Graph();
+		Town[][] cell = new Town[15][15];
+		for (int i = 0; i < 15; i++)
+			for (int j = 0; j < 15; j++) {
+				cell[i][j] = new Town(i + "_" + j);
+				grid.addVertex(cell[i][j]);
+				if (i > 0)
+					grid.addEdge(cell[i - 1][j], cell[i][j], 1, "V" + i + "_" + j);
+				if (j > 0)
+					grid.addEdge(cell[i][j - 1], cell[i][j], 1, "H" + i + "_" + j);
+			}
+		Random random = new Random(49);
+		List<Town> stops = new ArrayList<>();
+		HashSet<Town> chosen = new HashSet<>();
+		while (stops.size() < 40) {
+			Town stop = cell[random.nextInt(15)][random.nextInt(15)];
+			if (chosen.add(stop))
+				stops.add(stop);
+		}
+		MultiStopRouter router = new MultiStopRouter(new CompactGraph(grid), stops, ForkJoinPool.commonPool());
+		MultiStopRouter.Route given = router.ordered();
+		MultiStopRouter.Route optimized = router.optimized(true);
+		assertEquals(41, optimized.getStops().size());
+		assertEquals(new HashSet<>(stops), new HashSet<>(optimized.getStops()));
+		assertTrue(optimized.getDistance() < given.getDistance() / 2);
+		assertEquals(optimized.getDistance(), optimized.getPath().size());
+		for (int i = 0; i < stops.size(); i++)
+			assertEquals(router.distance(0, i), router.distance(i, 0));
+	}
+
+	/*
+	The length of the shortest route trying every order of the stops from
+	position from onwards
+	 */
+	private static long shortest(MultiStopRouter router, int[] order, int from, boolean roundTrip) {
+		if (from == order.length) {
+			long total = roundTrip ? router.distance(order[order.length - 1], order[0]) : 0;
+			for (int p = 1; p < order.length; p++)
+				total += router.distance(order[p - 1], order[p]);
+			return total;
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = from; i < order.length; i++) {
+			int swap = order[from];
+			order[from] = order[i];
+			order[i] = swap;
+			best = Math.min(best, shortest(router, order, from + 1, roundTrip));
+			order[i] = order[from];
+			order[from] = swap;
+		}
+		return best;
+	}
+
+	/*
+	Follows a path, checking each step starts where the last one ended,
+	and returns its length
+	 */
+	private int walk(ArrayList<String> path, String source, String destination) {
+		String at = source;
+		int length = 0;
+		for (String step : path) {
+			String[] words = step.split(" ");
+			assertEquals(at, words[0]);
+			assertNotNull(graph.getRoad(words[0], words[4]));
+			length += Integer.parseInt(words[5]);
+			at = words[4];
+		}
+		assertEquals(destination, at);
+		return length;
+	}
+}
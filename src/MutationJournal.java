@@ -0,0 +1,478 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An append-only log of the changes made to a TownGraphManager, so that
+ * edits survive a restart without reloading the original graph file.
+ *
+ * The journal directory holds a snapshot of the whole graph and a log of
+ * the changes made since that snapshot. Each log record is its length, a
+ * CRC32 of its contents and the contents; a record left half written by a
+ * crash fails its check and is dropped, along with anything after it.
+ *
+ * Changes are handed to a background writer and the caller does not wait
+ * for the disk. The writer takes every record queued since its last write,
+ * writes them together and syncs the file once (group commit), so a burst
+ * of edits costs one sync rather than one per edit. Call flush() to wait
+ * until everything appended so far is on disk.
+ *
+ * Compaction writes a new snapshot and starts an empty log. Both files
+ * carry a generation number, and a log older than the snapshot is ignored,
+ * so a crash part way through compaction never applies a change twice.
+ */
+public class MutationJournal implements AutoCloseable {
+    /**
+     * Number of records after which shouldCompact() returns true, when no
+     * other number is given
+     */
+    public static final int DEFAULT_COMPACT_THRESHOLD = 100_000;
+
+    static final String SNAPSHOT_FILE = "towns.snapshot";
+    static final String LOG_FILE = "towns.journal";
+
+    private static final int SNAPSHOT_MAGIC = 0x54475331;
+    private static final int LOG_MAGIC = 0x54474a31;
+    private static final int LOG_HEADER_BYTES = 12;
+    //largest record accepted when reading, to reject a corrupt length
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private static final byte ADD_TOWN = 1;
+    private static final byte ADD_ROAD = 2;
+    private static final byte DELETE_ROAD = 3;
+    private static final byte DELETE_TOWN = 4;
+
+    private final File directory;
+    private final int compactThreshold;
+    private final Thread writer;
+
+    //guarded by this: records waiting for the writer, and sequence numbers
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private ByteArrayOutputStream writing = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    private long generation;
+    private int recordsSinceSnapshot;
+    private IOException failure;
+    private boolean closed;
+    private RandomAccessFile log;
+
+    private MutationJournal(File directory, int compactThreshold) {
+        this.directory = directory;
+        this.compactThreshold = compactThreshold;
+        this.writer = new Thread(this::writeLoop, "mutation-journal");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the journal in a directory, first replaying the snapshot and
+     * log found there into a manager. The directory is created if needed.
+     * @param directory the journal directory
+     * @param target receives the saved towns and roads
+     * @param compactThreshold number of records after which compaction is
+     * suggested
+     * @return the open journal, ready for appending
+     * @throws IOException if the files cannot be read or created
+     */
+    public static MutationJournal open(File directory, TownGraphManagerInterface target, int compactThreshold)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create journal directory " + directory);
+        MutationJournal journal = new MutationJournal(directory, compactThreshold);
+        journal.recover(target);
+        journal.writer.start();
+        return journal;
+    }
+
+    /**
+     * Opens the journal with the default compaction threshold
+     * @param directory the journal directory
+     * @param target receives the saved towns and roads
+     * @return the open journal
+     * @throws IOException if the files cannot be read or created
+     */
+    public static MutationJournal open(File directory, TownGraphManagerInterface target) throws IOException {
+        return open(directory, target, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * Records that a town was added
+     * @param town name of the town
+     */
+    public void addTown(String town) {
+        append(ADD_TOWN, town, null, 0, null);
+    }
+
+    /**
+     * Records that a road was added, along with its towns if they were new
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param weight length of the road
+     * @param road name of the road
+     */
+    public void addRoad(String town1, String town2, int weight, String road) {
+        append(ADD_ROAD, town1, town2, weight, road);
+    }
+
+    /**
+     * Records that a road was deleted
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param road name of the road
+     */
+    public void deleteRoadConnection(String town1, String town2, String road) {
+        append(DELETE_ROAD, town1, town2, 0, road);
+    }
+
+    /**
+     * Records that a town and its roads were deleted
+     * @param town name of the town
+     */
+    public void deleteTown(String town) {
+        append(DELETE_TOWN, town, null, 0, null);
+    }
+
+    /**
+     * Returns true once enough records have been logged since the last
+     * snapshot that compacting would be worthwhile
+     * @return true if compact() should be called
+     */
+    public synchronized boolean shouldCompact() {
+        return recordsSinceSnapshot >= compactThreshold;
+    }
+
+    /**
+     * Waits until every record appended so far has been written and synced
+     * @throws IOException if the writer has failed
+     */
+    public synchronized void flush() throws IOException {
+        long target = appended;
+        try {
+            while (durable < target && failure == null && !closed)
+                wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the journal", e);
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Replaces the snapshot with the current contents of the graph and
+     * starts a new, empty log. The graph must not change while this runs.
+     * @param graph the graph the journal describes
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void compact(Graph graph) throws IOException {
+        flush();
+        //a failed snapshot is retried after another threshold of records
+        recordsSinceSnapshot = 0;
+        long next = generation + 1;
+        writeSnapshot(graph, next);
+        log.close();
+        try {
+            log = createLog(next);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        generation = next;
+    }
+
+    /**
+     * Flushes the remaining records and stops the writer
+     * @throws IOException if the writer has failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                log.close();
+            }
+        }
+    }
+
+    private synchronized void append(byte operation, String first, String second, int weight, String road) {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(operation);
+            out.writeUTF(first);
+            if (operation == ADD_ROAD || operation == DELETE_ROAD) {
+                out.writeUTF(second);
+                out.writeInt(weight);
+                out.writeUTF(road);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        writeInt(pending, bytes.length);
+        writeInt(pending, (int) crc.getValue());
+        pending.write(bytes, 0, bytes.length);
+        appended++;
+        recordsSinceSnapshot++;
+        notifyAll();
+    }
+
+    /*
+    Background writer: swaps out everything queued, writes it with one call
+    and one sync, then wakes anyone waiting in flush()
+     */
+    private void writeLoop() {
+        while (true) {
+            long batchEnd;
+            RandomAccessFile target;
+            synchronized (this) {
+                try {
+                    while (pending.size() == 0 && !closed)
+                        wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.size() == 0)
+                    return;
+                ByteArrayOutputStream swap = writing;
+                writing = pending;
+                pending = swap;
+                batchEnd = appended;
+                target = log;
+            }
+            try {
+                target.write(writing.toByteArray());
+                target.getFD().sync();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            writing.reset();
+            synchronized (this) {
+                durable = batchEnd;
+                notifyAll();
+            }
+        }
+    }
+
+    /*
+    Loads the snapshot and the log into the target, drops any torn tail
+    from the log and leaves it open at its end for appending
+     */
+    private void recover(TownGraphManagerInterface target) throws IOException {
+        File snapshotFile = new File(directory, SNAPSHOT_FILE);
+        long snapshotGeneration = 0;
+        if (snapshotFile.exists())
+            snapshotGeneration = readSnapshot(snapshotFile, target);
+
+        File logFile = new File(directory, LOG_FILE);
+        long logGeneration = -1;
+        long validEnd = LOG_HEADER_BYTES;
+        if (logFile.length() >= LOG_HEADER_BYTES) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+                if (in.readInt() == LOG_MAGIC)
+                    logGeneration = in.readLong();
+                if (logGeneration == snapshotGeneration)
+                    validEnd = replayLog(in, target);
+            }
+        }
+
+        generation = snapshotGeneration;
+        if (logGeneration == snapshotGeneration) {
+            log = new RandomAccessFile(logFile, "rw");
+            log.setLength(validEnd);
+            log.seek(validEnd);
+        } else {
+            //no log, or one left from before the snapshot was written
+            log = createLog(snapshotGeneration);
+        }
+    }
+
+    private long replayLog(DataInputStream in, TownGraphManagerInterface target) throws IOException {
+        long position = LOG_HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            int checksum;
+            byte[] bytes;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES)
+                    return position;
+                bytes = new byte[length];
+                in.readFully(bytes);
+            } catch (EOFException e) {
+                return position;
+            }
+            crc.reset();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum)
+                return position;
+            apply(new DataInputStream(new ByteArrayInputStream(bytes)), target);
+            recordsSinceSnapshot++;
+            position += 8 + length;
+        }
+    }
+
+    private static void apply(DataInputStream record, TownGraphManagerInterface target) throws IOException {
+        byte operation = record.readByte();
+        String first = record.readUTF();
+        switch (operation) {
+            case ADD_TOWN:
+                target.addTown(first);
+                break;
+            case DELETE_TOWN:
+                target.deleteTown(first);
+                break;
+            case ADD_ROAD:
+            case DELETE_ROAD:
+                String second = record.readUTF();
+                int weight = record.readInt();
+                String road = record.readUTF();
+                if (operation == ADD_ROAD)
+                    target.addRoad(first, second, weight, road);
+                else
+                    target.deleteRoadConnection(first, second, road);
+                break;
+            default:
+                throw new IOException("Unknown journal record " + operation);
+        }
+    }
+
+    /*
+    Writes the snapshot to a temporary file, syncs it and moves it over the
+    old snapshot in one step, so a crash leaves either the old or the new
+     */
+    private void writeSnapshot(Graph graph, long snapshotGeneration) throws IOException {
+        File temporary = new File(directory, SNAPSHOT_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(file, crc)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(snapshotGeneration);
+            out.writeInt(graph.getVertices().size());
+            for (Town town : graph.getVertices())
+                out.writeUTF(town.getName());
+            out.writeInt(graph.getEdges().size());
+            for (Road road : graph.getEdges()) {
+                out.writeUTF(road.getSource().getName());
+                out.writeUTF(road.getDestination().getName());
+                out.writeInt(road.getWeight());
+                out.writeUTF(road.getName());
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temporary.toPath(), new File(directory, SNAPSHOT_FILE).toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long readSnapshot(File snapshotFile, TownGraphManagerInterface target) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(new FileInputStream(snapshotFile))) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("Not a town graph snapshot: " + snapshotFile);
+            long snapshotGeneration = in.readLong();
+            int towns = in.readInt();
+            String[] townNames = new String[towns];
+            for (int i = 0; i < towns; i++)
+                townNames[i] = in.readUTF();
+            int roads = in.readInt();
+            List<Road> roadList = new ArrayList<>(roads);
+            for (int i = 0; i < roads; i++) {
+                Town source = new Town(in.readUTF());
+                Town destination = new Town(in.readUTF());
+                int weight = in.readInt();
+                roadList.add(new Road(source, destination, weight, in.readUTF()));
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(file).readInt() != expected)
+                throw new IOException("Corrupt town graph snapshot: " + snapshotFile);
+
+            //only load once the whole snapshot has been checked
+            if (target instanceof TownGraphManager) {
+                //one bulk call each, as adding names one at a time to the sorted indexes is quadratic
+                TownGraphManager manager = (TownGraphManager) target;
+                manager.addTowns(Arrays.asList(townNames));
+                manager.addRoads(roadList);
+            } else {
+                for (String town : townNames)
+                    target.addTown(town);
+                for (Road road : roadList)
+                    target.addRoad(road.getSource().getName(), road.getDestination().getName(),
+                            road.getWeight(), road.getName());
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /*
+    Creates an empty log for a generation under a temporary name and moves
+    it into place
+     */
+    private RandomAccessFile createLog(long logGeneration) throws IOException {
+        File temporary = new File(directory, LOG_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(LOG_MAGIC);
+            out.writeLong(logGeneration);
+            out.flush();
+            file.getFD().sync();
+        }
+        File logFile = new File(directory, LOG_FILE);
+        Files.move(temporary.toPath(), logFile.toPath(),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        RandomAccessFile opened = new RandomAccessFile(logFile, "rw");
+        opened.seek(opened.length());
+        return opened;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
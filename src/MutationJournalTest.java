@@ -0,0 +1,175 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class MutationJournalTest {
+	private File directory;
+	private TownGraphManager graph;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("journal").toFile();
+		graph = new TownGraphManager();
+		graph.enableJournal(directory);
+		graph.addTown("Town_1");
+		graph.addRoad("Town_1", "Town_2", 2, "Road_1");
+		graph.addRoad("Town_2", "Town_3", 3, "Road_2");
+		graph.addRoad("Town_1", "Town_3", 9, "Road_3");
+		graph.addTown("Town_4");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph.closeJournal();
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testReplayAfterRestart() throws Exception {
+		graph.deleteRoadConnection("Town_1", "Town_3", "Road_3");
+		graph.deleteTown("Town_4");
+		graph.closeJournal();
+
+		TownGraphManager restored = reopen();
+		assertEquals(Arrays.asList("Town_1", "Town_2", "Town_3"), restored.allTowns());
+		assertEquals(Arrays.asList("Road_1", "Road_2"), restored.allRoads());
+		assertEquals("Town_1 via Road_1 to Town_2 2 mi", restored.getPath("Town_1", "Town_3").get(0));
+		restored.closeJournal();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		graph.compactJournal();
+		assertEquals(12, new File(directory, MutationJournal.LOG_FILE).length());
+		graph.deleteTown("Town_1");
+		graph.closeJournal();
+
+		TownGraphManager restored = reopen();
+		assertEquals(Arrays.asList("Town_2", "Town_3", "Town_4"), restored.allTowns());
+		assertEquals(Arrays.asList("Road_2"), restored.allRoads());
+		restored.closeJournal();
+	}
+
+	@Test
+	public void testLargeSnapshotIsRestored() throws Exception {
+		ArrayList<Road> roads = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++)
+			roads.add(new Road(new Town("Bulk_" + i), new Town("Bulk_" + (i + 1)), i % 7 + 1, "Bulk_Road_" + i));
+		graph.addRoads(roads);
+		graph.compactJournal();
+		graph.closeJournal();
+
+		TownGraphManager restored = reopen();
+		ArrayList<String> towns = restored.allTowns();
+		assertEquals(20_005, towns.size());
+		ArrayList<String> sorted = new ArrayList<>(towns);
+		Collections.sort(sorted);
+		assertEquals(sorted, towns);
+		assertEquals(20_003, restored.allRoads().size());
+		assertEquals("Bulk_10 via Bulk_Road_10 to Bulk_11 4 mi", restored.getPath("Bulk_10", "Bulk_11").get(0));
+		restored.closeJournal();
+	}
+
+	@Test
+	public void testTornRecordIsDropped() throws Exception {
+		graph.addTown("Town_5");
+		graph.closeJournal();
+		File log = new File(directory, MutationJournal.LOG_FILE);
+		try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		TownGraphManager restored = reopen();
+		assertEquals(Arrays.asList("Town_1", "Town_2", "Town_3", "Town_4"), restored.allTowns());
+		//later changes are appended after the last good record
+		restored.addTown("Town_6");
+		restored.closeJournal();
+		TownGraphManager again = reopen();
+		assertTrue(again.containsTown("Town_6"));
+		assertFalse(again.containsTown("Town_5"));
+		again.closeJournal();
+	}
+
+	@Test
+	public void testFlushJournal() throws Exception {
+		for (int i = 0; i < 1000; i++)
+			graph.addRoad("Town_1", "Town_" + (i + 10), i, "Road_" + (i + 10));
+		graph.flushJournal();
+		//read what is on disk now, from a copy so the live log is left alone
+		File copied = Files.createTempDirectory("journal").toFile();
+		for (File file : directory.listFiles())
+			Files.copy(file.toPath(), new File(copied, file.getName()).toPath());
+		graph.closeJournal();
+		TownGraphManager copy = new TownGraphManager();
+		copy.enableJournal(copied);
+		assertEquals(1003, copy.allRoads().size());
+		copy.closeJournal();
+		for (File file : copied.listFiles())
+			file.delete();
+		copied.delete();
+	}
+
+	@Test
+	public void testEnableOnLoadedGraph() throws Exception {
+		graph.closeJournal();
+		for (File file : directory.listFiles())
+			file.delete();
+		TownGraphManager loaded = new TownGraphManager();
+		loaded.addRoad("Town_1", "Town_2", 2, "Road_1");
+		loaded.addRoad("Town_2", "Town_3", 3, "Road_2");
+		loaded.enableJournal(directory);
+		loaded.addRoad("Town_3", "Town_4", 4, "Road_3");
+		loaded.closeJournal();
+
+		TownGraphManager restored = reopen();
+		assertEquals(Arrays.asList("Road_1", "Road_2", "Road_3"), restored.allRoads());
+		restored.closeJournal();
+	}
+
+	@Test
+	public void testAutomaticCompactionFailureIsReported() throws Exception {
+		graph.closeJournal();
+		TownGraphManager manager = new TownGraphManager();
+		manager.enableJournal(directory);
+		for (int i = 0; i < MutationJournal.DEFAULT_COMPACT_THRESHOLD - 20; i++)
+			manager.addTown("Extra_" + i);
+		//a directory in the way of the temporary snapshot makes writing it fail
+		File blocker = new File(directory, MutationJournal.SNAPSHOT_FILE + ".tmp");
+		assertTrue(blocker.mkdir());
+		for (int i = 0; i < 20; i++)
+			manager.addTown("More_" + i);
+		try {
+			manager.flushJournal();
+			fail("Expected IOException");
+		} catch (IOException e) {
+			manager.flushJournal();
+		}
+		blocker.delete();
+		manager.closeJournal();
+		TownGraphManager restored = reopen();
+		assertTrue(restored.containsTown("More_19"));
+		restored.closeJournal();
+	}
+
+	private TownGraphManager reopen() throws Exception {
+		TownGraphManager restored = new TownGraphManager();
+		restored.enableJournal(directory);
+		return restored;
+	}
+}
@@ -0,0 +1,809 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A graph of Towns and Roads whose data lives outside the Java heap. Towns
+ * and roads are stored as fixed-size records in direct ByteBuffers, names
+ * are stored as UTF-8 bytes in a separate buffer, and towns are found by
+ * name through an open-addressing hash table that is also kept off-heap.
+ * The garbage collector therefore never has to trace the graph, which
+ * keeps pauses short on maps with tens of millions of roads.
+ *
+ * Town and Road objects are only created when they are handed back to the
+ * caller, for example by getEdge or while iterating edgeSet(). They are
+ * copies; changing them does not change the graph.
+ *
+ * Like Graph, several roads with different names may join the same two
+ * towns; getEdge returns the fastest of them. Only the fastest is kept in
+ * the towns' adjacency lists, with the slower ones chained behind it in
+ * order of weight, so a search relaxes one road per neighbouring town
+ * however many parallel roads there are.
+ *
+ * Records of removed towns and roads are marked dead but their space is
+ * not reused. Each buffer is limited to 2 GB, which allows roughly 67
+ * million roads.
+ */
+public class OffHeapGraph implements GraphInterface<Town, Road> {
+    /*
+    Town record: name offset, name length (-1 once removed), first road in
+    the town's adjacency list (-1 if none), number of roads in that list,
+    which is the number of neighbouring towns
+     */
+    private static final int TOWN_BYTES = 16;
+    private static final int TOWN_NAME_OFFSET = 0;
+    private static final int TOWN_NAME_LENGTH = 4;
+    private static final int TOWN_FIRST_ROAD = 8;
+    private static final int TOWN_DEGREE = 12;
+
+    /*
+    Road record: both towns, weight, name offset, name length (-1 once
+    removed), the next road in each town's adjacency list, and the next
+    slower road joining the same towns (-1 if none). Roads slower than
+    another road between the same towns are in no adjacency list.
+     */
+    private static final int ROAD_BYTES = 32;
+    private static final int ROAD_SOURCE = 0;
+    private static final int ROAD_DESTINATION = 4;
+    private static final int ROAD_WEIGHT = 8;
+    private static final int ROAD_NAME_OFFSET = 12;
+    private static final int ROAD_NAME_LENGTH = 16;
+    private static final int ROAD_NEXT_AT_SOURCE = 20;
+    private static final int ROAD_NEXT_AT_DESTINATION = 24;
+    private static final int ROAD_NEXT_PARALLEL = 28;
+
+    private static final int EMPTY_SLOT = 0;
+    private static final int REMOVED_SLOT = -1;
+
+    private ByteBuffer towns;
+    private ByteBuffer roads;
+    private ByteBuffer names;
+    private ByteBuffer table;
+
+    private int townRecords;
+    private int roadRecords;
+    private int liveTowns;
+    private int liveRoads;
+    private int namesEnd;
+    private int tableSlots;
+    private int usedSlots;
+
+    private int searchSource = -1;
+    private int[] distance;
+    private int[] previousRoad;
+
+    /**
+     * Creates an empty graph with room for a small number of towns and
+     * roads. The buffers grow as needed.
+     */
+    public OffHeapGraph() {
+        this(1024, 1024);
+    }
+
+    /**
+     * Creates an empty graph sized for the expected number of towns and
+     * roads, so that loading a large map does not have to grow the buffers
+     * repeatedly
+     * @param expectedTowns number of towns to make room for
+     * @param expectedRoads number of roads to make room for
+     */
+    public OffHeapGraph(int expectedTowns, int expectedRoads) {
+        expectedTowns = Math.max(expectedTowns, 16);
+        expectedRoads = Math.max(expectedRoads, 16);
+        towns = allocate((long) expectedTowns * TOWN_BYTES);
+        roads = allocate((long) expectedRoads * ROAD_BYTES);
+        names = allocate((long) (expectedTowns + expectedRoads) * 12);
+        tableSlots = Integer.highestOneBit(expectedTowns * 2 - 1) << 1;
+        table = allocate((long) tableSlots * 4);
+    }
+
+    /**
+     * Copies any graph of towns and roads into a new off-heap graph
+     * @param graph the graph to copy
+     * @return the off-heap copy
+     */
+    public static OffHeapGraph copyOf(GraphInterface<Town, Road> graph) {
+        Set<Town> vertices = graph.vertexSet();
+        Set<Road> edges = graph.edgeSet();
+        OffHeapGraph result = new OffHeapGraph(vertices.size(), edges.size());
+        for (Town town : vertices)
+            result.addVertex(town);
+        for (Road road : edges)
+            result.addEdge(road.getSource(), road.getDestination(), road.getWeight(), road.getName());
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes of off-heap memory currently reserved by
+     * this graph
+     * @return the reserved off-heap memory in bytes
+     */
+    public long offHeapBytes() {
+        return (long) towns.capacity() + roads.capacity() + names.capacity() + table.capacity();
+    }
+
+    /**
+     * Returns an edge connecting source vertex to target vertex if such
+     * vertices and such edge exist in this graph. Otherwise, returns
+     * null. If any of the specified vertices is null
+     * returns null
+     *
+     * In undirected graphs, the returned edge may have its source and target
+     * vertices in the opposite order.
+     *
+     * @param sourceVertex source vertex of the edge.
+     * @param destinationVertex target vertex of the edge.
+     *
+     * @return an edge connecting source vertex to target vertex.
+     */
+    @Override
+    public Road getEdge(Town sourceVertex, Town destinationVertex) {
+        if (sourceVertex == null || destinationVertex == null)
+            return null;
+        int road = findRoad(findTown(sourceVertex), findTown(destinationVertex));
+        return road < 0 ? null : materializeRoad(road);
+    }
+
+    /**
+     * Creates a new edge in this graph, going from the source vertex to the
+     * target vertex, and returns the created edge.
+     *
+     * The source and target vertices must already be contained in this
+     * graph. If they are not found in graph IllegalArgumentException is
+     * thrown.
+     *
+     * @param sourceVertex source vertex of the edge.
+     * @param destinationVertex target vertex of the edge.
+     * @param weight weight of the edge
+     * @param description description for edge
+     *
+     * @return The newly created edge if added to the graph, otherwise null.
+     *
+     * @throws IllegalArgumentException if source or target vertices are not
+     * found in the graph.
+     * @throws NullPointerException if any of the specified vertices is null.
+     */
+    @Override
+    public Road addEdge(Town sourceVertex, Town destinationVertex, int weight, String description) {
+        if (sourceVertex == null || destinationVertex == null)
+            throw new NullPointerException();
+        int source = findTown(sourceVertex);
+        int destination = findTown(destinationVertex);
+        if (source < 0 || destination < 0)
+            throw new IllegalArgumentException();
+        if (findRoad(source, destination, -1, description == null ? "" : description) >= 0)
+            return null;
+        int fastest = findRoad(source, destination);
+
+        if ((long) (roadRecords + 1) * ROAD_BYTES > roads.capacity())
+            roads = grow(roads, (long) (roadRecords + 1) * ROAD_BYTES);
+        int road = roadRecords++;
+        int base = road * ROAD_BYTES;
+        byte[] name = description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+        roads.putInt(base + ROAD_SOURCE, source);
+        roads.putInt(base + ROAD_DESTINATION, destination);
+        roads.putInt(base + ROAD_WEIGHT, weight);
+        roads.putInt(base + ROAD_NAME_OFFSET, storeName(name));
+        roads.putInt(base + ROAD_NAME_LENGTH, name.length);
+
+        roads.putInt(base + ROAD_NEXT_PARALLEL, -1);
+
+        if (fastest < 0) {
+            roads.putInt(base + ROAD_NEXT_AT_SOURCE, towns.getInt(source * TOWN_BYTES + TOWN_FIRST_ROAD));
+            towns.putInt(source * TOWN_BYTES + TOWN_FIRST_ROAD, road);
+            addDegree(source, 1);
+            if (destination != source) {
+                roads.putInt(base + ROAD_NEXT_AT_DESTINATION, towns.getInt(destination * TOWN_BYTES + TOWN_FIRST_ROAD));
+                towns.putInt(destination * TOWN_BYTES + TOWN_FIRST_ROAD, road);
+                addDegree(destination, 1);
+            }
+        } else if (weight < weight(fastest)) {
+            //the new road takes the place of the old fastest in both adjacency lists
+            replace(fastest, road, source);
+            if (destination != source)
+                replace(fastest, road, destination);
+            roads.putInt(base + ROAD_NEXT_PARALLEL, fastest);
+        } else {
+            int previous = fastest;
+            while (nextParallel(previous) >= 0 && weight(nextParallel(previous)) <= weight)
+                previous = nextParallel(previous);
+            roads.putInt(base + ROAD_NEXT_PARALLEL, nextParallel(previous));
+            roads.putInt(previous * ROAD_BYTES + ROAD_NEXT_PARALLEL, road);
+        }
+        liveRoads++;
+        searchSource = -1;
+        return new Road(sourceVertex, destinationVertex, weight, description);
+    }
+
+    /**
+     * Adds the specified vertex to this graph if not already present. More
+     * formally, adds the specified vertex, v, to this graph if
+     * this graph contains no vertex u such that
+     * u.equals(v). If this graph already contains such vertex, the call
+     * leaves this graph unchanged and returns false.
+     *
+     * @param v vertex to be added to this graph.
+     *
+     * @return true if this graph did not already contain the specified
+     * vertex.
+     *
+     * @throws NullPointerException if the specified vertex is null.
+     */
+    @Override
+    public boolean addVertex(Town v) {
+        if (v == null)
+            throw new NullPointerException();
+        byte[] name = v.getName().getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        if (findTown(name, hash) >= 0)
+            return false;
+
+        if ((long) (townRecords + 1) * TOWN_BYTES > towns.capacity())
+            towns = grow(towns, (long) (townRecords + 1) * TOWN_BYTES);
+        int town = townRecords++;
+        int base = town * TOWN_BYTES;
+        towns.putInt(base + TOWN_NAME_OFFSET, storeName(name));
+        towns.putInt(base + TOWN_NAME_LENGTH, name.length);
+        towns.putInt(base + TOWN_FIRST_ROAD, -1);
+        towns.putInt(base + TOWN_DEGREE, 0);
+        insertSlot(town, hash);
+        liveTowns++;
+        searchSource = -1;
+        return true;
+    }
+
+    /**
+     * Returns true if and only if this graph contains an edge going
+     * from the source vertex to the target vertex. In undirected graphs the
+     * same result is obtained when source and target are inverted. If any of
+     * the specified vertices does not exist in the graph, or if is
+     * null, returns false.
+     *
+     * @param sourceVertex source vertex of the edge.
+     * @param destinationVertex target vertex of the edge.
+     *
+     * @return true if this graph contains the specified edge.
+     */
+    @Override
+    public boolean containsEdge(Town sourceVertex, Town destinationVertex) {
+        if (sourceVertex == null || destinationVertex == null)
+            return false;
+        return findRoad(findTown(sourceVertex), findTown(destinationVertex)) >= 0;
+    }
+
+    /**
+     * Returns true if this graph contains the specified vertex. If the
+     * specified vertex is null returns false.
+     *
+     * @param v vertex whose presence in this graph is to be tested.
+     *
+     * @return true if this graph contains the specified vertex.
+     */
+    @Override
+    public boolean containsVertex(Town v) {
+        return v != null && findTown(v) >= 0;
+    }
+
+    /**
+     * Returns a set of the edges contained in this graph. The set is backed by
+     * the graph, so changes to the graph are reflected in the set. Roads are
+     * created as the set is iterated. The set cannot be modified directly.
+     *
+     * @return a set of the edges contained in this graph.
+     */
+    @Override
+    public Set<Road> edgeSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Road> iterator() {
+                return new RecordIterator<>(roads, ROAD_BYTES, ROAD_NAME_LENGTH, roadRecords) {
+                    @Override
+                    Road materialize(int record) {
+                        return materializeRoad(record);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return liveRoads;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Road road))
+                    return false;
+                return findRoad(findTown(road.getSource()), findTown(road.getDestination()), -1,
+                        road.getName() == null ? "" : road.getName()) >= 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a set of all edges touching the specified vertex. If no edges
+     * are touching the specified vertex returns an empty set.
+     *
+     * @param vertex the vertex for which a set of touching edges is to be
+     * returned.
+     *
+     * @return a set of all edges touching the specified vertex.
+     *
+     * @throws IllegalArgumentException if vertex is not found in the graph.
+     * @throws NullPointerException if vertex is null.
+     */
+    @Override
+    public Set<Road> edgesOf(Town vertex) {
+        if (vertex == null)
+            throw new NullPointerException();
+        int town = findTown(vertex);
+        if (town < 0)
+            throw new IllegalArgumentException();
+        HashSet<Road> result = new HashSet<>();
+        for (int road = firstRoad(town); road >= 0; road = nextRoad(road, town))
+            for (int parallel = road; parallel >= 0; parallel = nextParallel(parallel))
+                result.add(materializeRoad(parallel));
+        return result;
+    }
+
+    /**
+     * Removes an edge going from source vertex to target vertex, if such
+     * vertices and such edge exist in this graph.
+     *
+     * If weight >- 1 it must be checked
+     * If description != null, it must be checked
+     *
+     * @param sourceVertex source vertex of the edge.
+     * @param destinationVertex target vertex of the edge.
+     * @param weight weight of the edge
+     * @param description description of the edge
+     *
+     * @return The removed edge, or null if no edge removed.
+     */
+    @Override
+    public Road removeEdge(Town sourceVertex, Town destinationVertex, int weight, String description) {
+        if (sourceVertex == null || destinationVertex == null)
+            return null;
+        int road = findRoad(findTown(sourceVertex), findTown(destinationVertex), weight, description);
+        if (road < 0)
+            return null;
+        Road removed = materializeRoad(road);
+        deleteRoad(road);
+        return removed;
+    }
+
+    /**
+     * Removes the specified vertex from this graph including all its touching
+     * edges if present.
+     *
+     * @param v vertex to be removed from this graph, if present.
+     *
+     * @return true if the graph contained the specified vertex;
+     * false otherwise.
+     */
+    @Override
+    public boolean removeVertex(Town v) {
+        if (v == null)
+            return false;
+        byte[] name = v.getName().getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        int slot = findSlot(name, hash);
+        if (slot < 0)
+            return false;
+        int town = table.getInt(slot * 4) - 1;
+        while (firstRoad(town) >= 0)
+            deleteRoad(firstRoad(town));
+        table.putInt(slot * 4, REMOVED_SLOT);
+        towns.putInt(town * TOWN_BYTES + TOWN_NAME_LENGTH, -1);
+        liveTowns--;
+        searchSource = -1;
+        return true;
+    }
+
+    /**
+     * Returns a set of the vertices contained in this graph. The set is backed
+     * by the graph, so changes to the graph are reflected in the set. Towns are
+     * created as the set is iterated. The set cannot be modified directly.
+     *
+     * @return a set view of the vertices contained in this graph.
+     */
+    @Override
+    public Set<Town> vertexSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Town> iterator() {
+                return new RecordIterator<>(towns, TOWN_BYTES, TOWN_NAME_LENGTH, townRecords) {
+                    @Override
+                    Town materialize(int record) {
+                        return new Town(townName(record));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return liveTowns;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Town town && containsVertex(town);
+            }
+        };
+    }
+
+    /**
+     * Find the shortest path from the sourceVertex to the destinationVertex
+     * call the dijkstraShortestPath with the sourceVertex
+     * @param sourceVertex starting vertex
+     * @param destinationVertex ending vertex
+     * @return An arraylist of Strings that describe the path from sourceVertex
+     * to destinationVertex, in the format startVertex "via" Edge "to"
+     * endVertex weight. The list is empty if there is no path.
+     */
+    @Override
+    public ArrayList<String> shortestPath(Town sourceVertex, Town destinationVertex) {
+        ArrayList<String> path = new ArrayList<>();
+        int source = findTown(sourceVertex);
+        int destination = findTown(destinationVertex);
+        if (source < 0 || destination < 0)
+            return path;
+        if (searchSource != source)
+            dijkstraShortestPath(sourceVertex);
+        if (distance[destination] == Integer.MAX_VALUE)
+            return path;
+
+        int town = destination;
+        while (town != source) {
+            int road = previousRoad[town];
+            int parent = otherEnd(road, town);
+            path.add(townName(parent) + " via " + roadName(road) + " to " + townName(town)
+                    + " " + weight(road) + " mi");
+            town = parent;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Dijkstra's Shortest Path Method. The distance to every town and the
+     * road used to reach it are kept in primitive arrays until the graph
+     * is next changed.
+     *
+     * @param sourceVertex the vertex to find the shortest path from
+     */
+    @Override
+    public void dijkstraShortestPath(Town sourceVertex) {
+        int source = findTown(sourceVertex);
+        if (source < 0)
+            throw new IllegalArgumentException();
+        distance = new int[townRecords];
+        previousRoad = new int[townRecords];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(previousRoad, -1);
+
+        LongHeap queue = new LongHeap(64);
+        distance[source] = 0;
+        queue.add(LongHeap.pack(0, source));
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int town = LongHeap.index(entry);
+            int reached = LongHeap.distance(entry);
+            if (reached > distance[town])
+                continue;
+            for (int road = firstRoad(town); road >= 0; road = nextRoad(road, town)) {
+                int neighbor = otherEnd(road, town);
+                long candidate = (long) reached + weight(road);
+                if (candidate < distance[neighbor]) {
+                    distance[neighbor] = (int) candidate;
+                    previousRoad[neighbor] = road;
+                    queue.add(LongHeap.pack((int) candidate, neighbor));
+                }
+            }
+        }
+        searchSource = source;
+    }
+
+    private void deleteRoad(int road) {
+        int base = road * ROAD_BYTES;
+        int source = roads.getInt(base + ROAD_SOURCE);
+        int destination = roads.getInt(base + ROAD_DESTINATION);
+        int fastest = findRoad(source, destination);
+        int next = nextParallel(road);
+        if (fastest != road) {
+            int previous = fastest;
+            while (nextParallel(previous) != road)
+                previous = nextParallel(previous);
+            roads.putInt(previous * ROAD_BYTES + ROAD_NEXT_PARALLEL, next);
+        } else if (next >= 0) {
+            //the next slower road becomes the fastest
+            replace(road, next, source);
+            if (destination != source)
+                replace(road, next, destination);
+        } else {
+            unlink(road, source);
+            addDegree(source, -1);
+            if (destination != source) {
+                unlink(road, destination);
+                addDegree(destination, -1);
+            }
+        }
+        roads.putInt(base + ROAD_NAME_LENGTH, -1);
+        liveRoads--;
+        searchSource = -1;
+    }
+
+    private void unlink(int road, int town) {
+        relink(road, town, nextRoad(road, town));
+    }
+
+    /*
+    Puts replacement where road is in the town's adjacency list
+     */
+    private void replace(int road, int replacement, int town) {
+        roads.putInt(nextField(replacement, town), nextRoad(road, town));
+        relink(road, town, replacement);
+    }
+
+    /*
+    Makes whatever points at road in the town's adjacency list point at
+    other instead
+     */
+    private void relink(int road, int town, int other) {
+        int previous = -1;
+        int current = firstRoad(town);
+        while (current != road) {
+            previous = current;
+            current = nextRoad(current, town);
+        }
+        if (previous < 0)
+            towns.putInt(town * TOWN_BYTES + TOWN_FIRST_ROAD, other);
+        else
+            roads.putInt(nextField(previous, town), other);
+    }
+
+    /*
+    Searches the shorter of the two adjacency lists for the fastest of the
+    parallel roads joining the two towns, the only one the lists hold
+     */
+    private int findRoad(int a, int b) {
+        if (a < 0 || b < 0)
+            return -1;
+        if (degree(b) < degree(a)) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        for (int road = firstRoad(a); road >= 0; road = nextRoad(road, a))
+            if (otherEnd(road, a) == b)
+                return road;
+        return -1;
+    }
+
+    /*
+    Finds a road joining the two towns with the given weight and name,
+    where a weight of -1 or a null name matches any road
+     */
+    private int findRoad(int a, int b, int weight, String name) {
+        for (int road = findRoad(a, b); road >= 0; road = nextParallel(road))
+            if ((weight == -1 || weight(road) == weight) && (name == null || roadName(road).equals(name)))
+                return road;
+        return -1;
+    }
+
+    private int nextParallel(int road) {
+        return roads.getInt(road * ROAD_BYTES + ROAD_NEXT_PARALLEL);
+    }
+
+    private int weight(int road) {
+        return roads.getInt(road * ROAD_BYTES + ROAD_WEIGHT);
+    }
+
+    private int firstRoad(int town) {
+        return towns.getInt(town * TOWN_BYTES + TOWN_FIRST_ROAD);
+    }
+
+    private int nextRoad(int road, int town) {
+        return roads.getInt(nextField(road, town));
+    }
+
+    private int nextField(int road, int town) {
+        int base = road * ROAD_BYTES;
+        return base + (roads.getInt(base + ROAD_SOURCE) == town ? ROAD_NEXT_AT_SOURCE : ROAD_NEXT_AT_DESTINATION);
+    }
+
+    private int otherEnd(int road, int town) {
+        int source = roads.getInt(road * ROAD_BYTES + ROAD_SOURCE);
+        return source == town ? roads.getInt(road * ROAD_BYTES + ROAD_DESTINATION) : source;
+    }
+
+    private int degree(int town) {
+        return towns.getInt(town * TOWN_BYTES + TOWN_DEGREE);
+    }
+
+    private void addDegree(int town, int change) {
+        towns.putInt(town * TOWN_BYTES + TOWN_DEGREE, degree(town) + change);
+    }
+
+    private Road materializeRoad(int road) {
+        int base = road * ROAD_BYTES;
+        return new Road(new Town(townName(roads.getInt(base + ROAD_SOURCE))),
+                new Town(townName(roads.getInt(base + ROAD_DESTINATION))),
+                roads.getInt(base + ROAD_WEIGHT), roadName(road));
+    }
+
+    private String townName(int town) {
+        int base = town * TOWN_BYTES;
+        return readName(towns.getInt(base + TOWN_NAME_OFFSET), towns.getInt(base + TOWN_NAME_LENGTH));
+    }
+
+    private String roadName(int road) {
+        int base = road * ROAD_BYTES;
+        return readName(roads.getInt(base + ROAD_NAME_OFFSET), roads.getInt(base + ROAD_NAME_LENGTH));
+    }
+
+    private String readName(int offset, int length) {
+        byte[] bytes = new byte[length];
+        names.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int storeName(byte[] name) {
+        if ((long) namesEnd + name.length > names.capacity())
+            names = grow(names, (long) namesEnd + name.length);
+        int offset = namesEnd;
+        names.put(offset, name);
+        namesEnd += name.length;
+        return offset;
+    }
+
+    private int findTown(Town town) {
+        if (town == null)
+            return -1;
+        byte[] name = town.getName().getBytes(StandardCharsets.UTF_8);
+        return findTown(name, hash(name));
+    }
+
+    private int findTown(byte[] name, int hash) {
+        int slot = findSlot(name, hash);
+        return slot < 0 ? -1 : table.getInt(slot * 4) - 1;
+    }
+
+    private int findSlot(byte[] name, int hash) {
+        int mask = tableSlots - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int value = table.getInt(slot * 4);
+            if (value == EMPTY_SLOT)
+                return -1;
+            if (value != REMOVED_SLOT && nameEquals(value - 1, name))
+                return slot;
+        }
+    }
+
+    private boolean nameEquals(int town, byte[] name) {
+        int base = town * TOWN_BYTES;
+        if (towns.getInt(base + TOWN_NAME_LENGTH) != name.length)
+            return false;
+        int offset = towns.getInt(base + TOWN_NAME_OFFSET);
+        for (int i = 0; i < name.length; i++)
+            if (names.get(offset + i) != name[i])
+                return false;
+        return true;
+    }
+
+    private void insertSlot(int town, int hash) {
+        if ((usedSlots + 1) * 2L > tableSlots)
+            rehash();
+        int mask = tableSlots - 1;
+        int slot = hash & mask;
+        while (table.getInt(slot * 4) > 0)
+            slot = (slot + 1) & mask;
+        if (table.getInt(slot * 4) == EMPTY_SLOT)
+            usedSlots++;
+        table.putInt(slot * 4, town + 1);
+    }
+
+    /*
+    Rebuilds the hash table without removed slots, doubling it if more
+    than a quarter of the slots hold live towns
+     */
+    private void rehash() {
+        if (liveTowns * 4L > tableSlots)
+            tableSlots *= 2;
+        table = allocate((long) tableSlots * 4);
+        usedSlots = 0;
+        int mask = tableSlots - 1;
+        for (int town = 0; town < townRecords; town++) {
+            int base = town * TOWN_BYTES;
+            int length = towns.getInt(base + TOWN_NAME_LENGTH);
+            if (length < 0)
+                continue;
+            byte[] name = new byte[length];
+            names.get(towns.getInt(base + TOWN_NAME_OFFSET), name);
+            int slot = hash(name) & mask;
+            while (table.getInt(slot * 4) != EMPTY_SLOT)
+                slot = (slot + 1) & mask;
+            table.putInt(slot * 4, town + 1);
+            usedSlots++;
+        }
+    }
+
+    /*
+    FNV-1a over the UTF-8 bytes, with the high bits mixed down so that the
+    low bits used for the table index are well spread
+     */
+    private static int hash(byte[] name) {
+        int hash = 0x811c9dc5;
+        for (byte b : name) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalStateException("Off-heap graph buffer limit of 2 GB reached");
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, long needed) {
+        long capacity = Math.max(needed, Math.min((long) buffer.capacity() * 2, Integer.MAX_VALUE));
+        ByteBuffer larger = allocate(capacity);
+        larger.put(0, buffer, 0, buffer.capacity());
+        return larger;
+    }
+
+    /*
+    Walks a record buffer, skipping records whose name length marks them as
+    removed
+     */
+    private abstract static class RecordIterator<T> implements Iterator<T> {
+        private final ByteBuffer records;
+        private final int recordBytes;
+        private final int lengthField;
+        private final int end;
+        private int next;
+
+        RecordIterator(ByteBuffer records, int recordBytes, int lengthField, int end) {
+            this.records = records;
+            this.recordBytes = recordBytes;
+            this.lengthField = lengthField;
+            this.end = end;
+            advance(0);
+        }
+
+        abstract T materialize(int record);
+
+        private void advance(int from) {
+            next = from;
+            while (next < end && records.getInt(next * recordBytes + lengthField) < 0)
+                next++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T result = materialize(next);
+            advance(next + 1);
+            return result;
+        }
+    }
+}
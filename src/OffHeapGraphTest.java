@@ -0,0 +1,161 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class OffHeapGraphTest {
+	private GraphInterface<Town,Road> graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new OffHeapGraph(4, 4);
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testGetEdge() {
+		Road road = graph.getEdge(town[11], town[2]);
+		assertEquals(new Road(town[2], town[11], 6, "Road_12"), road);
+		assertEquals("Road_12", road.getName());
+		assertEquals(6, road.getWeight());
+		assertNull(graph.getEdge(town[3], town[5]));
+	}
+
+	@Test
+	public void testAddVertex() {
+		Town newTown = new Town("Town_12");
+		assertFalse(graph.containsVertex(newTown));
+		assertTrue(graph.addVertex(newTown));
+		assertFalse(graph.addVertex(new Town("Town_12")));
+		assertTrue(graph.containsVertex(newTown));
+		assertEquals(12, graph.vertexSet().size());
+	}
+
+	@Test
+	public void testEdgeSet() {
+		Set<Road> roads = graph.edgeSet();
+		assertEquals(12, roads.size());
+		ArrayList<String> roadArrayList = new ArrayList<String>();
+		for(Road road : roads)
+			roadArrayList.add(road.getName());
+		Collections.sort(roadArrayList);
+		assertEquals("Road_1", roadArrayList.get(0));
+		assertEquals("Road_10", roadArrayList.get(1));
+		assertEquals("Road_8", roadArrayList.get(10));
+	}
+
+	@Test
+	public void testEdgesOf() {
+		ArrayList<String> roadArrayList = new ArrayList<String>();
+		for(Road road : graph.edgesOf(town[10]))
+			roadArrayList.add(road.getName());
+		Collections.sort(roadArrayList);
+		assertEquals("[Road_10, Road_11, Road_8, Road_9]", roadArrayList.toString());
+	}
+
+	@Test
+	public void testRemoveEdge() {
+		assertNull(graph.removeEdge(town[2], town[11], 5, "Road_12"));
+		assertEquals("Road_12", graph.removeEdge(town[11], town[2], 6, "Road_12").getName());
+		assertFalse(graph.containsEdge(town[2], town[11]));
+		assertEquals(11, graph.edgeSet().size());
+	}
+
+	@Test
+	public void testRemoveVertex() {
+		assertTrue(graph.removeVertex(town[10]));
+		assertFalse(graph.containsVertex(town[10]));
+		assertFalse(graph.containsEdge(town[9], town[10]));
+		assertEquals(8, graph.edgeSet().size());
+		assertEquals(10, graph.vertexSet().size());
+		assertTrue(graph.addVertex(new Town("Town_10")));
+		assertTrue(graph.edgesOf(town[10]).isEmpty());
+	}
+
+	@Test
+	public void testParallelRoads() {
+		int[] weights = {9, 4, 12, 4, 7, 1, 30};
+		for (int i = 0; i < weights.length; i++)
+			assertNotNull(graph.addEdge(i % 2 == 0 ? town[2] : town[11], i % 2 == 0 ? town[11] : town[2],
+					weights[i], "Parallel_" + i));
+		assertNull(graph.addEdge(town[11], town[2], 3, "Parallel_4"));
+		assertEquals(19, graph.edgeSet().size());
+		assertEquals(9, graph.edgesOf(town[11]).size());
+		assertEquals("Parallel_5", graph.getEdge(town[11], town[2]).getName());
+		assertEquals("Town_2 via Parallel_5 to Town_11 1 mi", graph.shortestPath(town[1], town[11]).get(1));
+
+		assertTrue(graph.edgeSet().contains(new Road(town[11], town[2], 0, "Parallel_3")));
+		assertFalse(graph.edgeSet().contains(new Road(town[2], town[11], 4, "Parallel_9")));
+
+		assertNotNull(graph.removeEdge(town[2], town[11], -1, "Parallel_5"));
+		assertEquals(4, graph.getEdge(town[2], town[11]).getWeight());
+		assertNotNull(graph.removeEdge(town[2], town[11], 4, null));
+		assertNotNull(graph.removeEdge(town[2], town[11], 4, null));
+		assertEquals("Road_12", graph.getEdge(town[2], town[11]).getName());
+		assertNotNull(graph.removeEdge(town[11], town[2], -1, "Parallel_6"));
+		assertEquals(15, graph.edgeSet().size());
+		assertEquals("Town_2 via Road_12 to Town_11 6 mi", graph.shortestPath(town[1], town[11]).get(1));
+
+		assertTrue(graph.removeVertex(town[11]));
+		assertEquals(10, graph.edgeSet().size());
+		assertEquals(1, graph.edgesOf(town[2]).size());
+	}
+
+	@Test
+	public void testShortestPath() {
+		ArrayList<String> path = graph.shortestPath(town[1], town[6]);
+		assertEquals(5, path.size());
+		assertEquals("Town_1 via Road_2 to Town_3 4 mi", path.get(0));
+		assertEquals("Town_3 via Road_5 to Town_8 2 mi", path.get(1));
+		assertEquals("Town_8 via Road_9 to Town_10 2 mi", path.get(2));
+		assertEquals("Town_10 via Road_8 to Town_9 4 mi", path.get(3));
+		assertEquals("Town_9 via Road_7 to Town_6 3 mi", path.get(4));
+	}
+
+	@Test
+	public void testCopyOf() {
+		Graph onHeap = new Graph();
+		for (Town t : graph.vertexSet())
+			onHeap.addVertex(t);
+		for (Road r : graph.edgeSet())
+			onHeap.addEdge(r.getSource(), r.getDestination(), r.getWeight(), r.getName());
+		OffHeapGraph copy = OffHeapGraph.copyOf(onHeap);
+		assertEquals(11, copy.vertexSet().size());
+		assertEquals(12, copy.edgeSet().size());
+		assertEquals(onHeap.shortestPath(town[4], town[11]), copy.shortestPath(town[4], town[11]));
+		assertTrue(copy.offHeapBytes() > 0);
+	}
+}
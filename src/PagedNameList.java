@@ -0,0 +1,91 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.IntSupplier;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * A read-only ObservableList of names that fetches its contents one page at
+ * a time. A ListView only asks for the rows it is showing, so only those
+ * pages are ever copied out of the TownGraphManager, and at most
+ * CACHED_PAGES pages are kept.
+ *
+ * The list does not watch the graph. Call refresh() after the graph
+ * changes to pick up the new size and contents.
+ */
+public class PagedNameList extends ObservableListBase<String> {
+	//number of names fetched at once
+	private static final int PAGE_SIZE = 256;
+	//number of pages kept before the least recently used is dropped
+	private static final int CACHED_PAGES = 8;
+
+	private final IntSupplier count;
+	private final BiFunction<Integer, Integer, List<String>> pages;
+	private final Map<Integer, List<String>> cache;
+	private int size;
+
+	/**
+	 * Creates a list backed by paged data
+	 * @param count returns the total number of names
+	 * @param pages returns the names for an offset and a limit
+	 */
+	public PagedNameList(IntSupplier count, BiFunction<Integer, Integer, List<String>> pages) {
+		this.count = count;
+		this.pages = pages;
+		this.cache = new LinkedHashMap<Integer, List<String>>(CACHED_PAGES, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+				return size() > CACHED_PAGES;
+			}
+		};
+		this.size = count.getAsInt();
+	}
+
+	/**
+	 * Returns the name at the given row, fetching its page if needed
+	 * @param index the row
+	 * @return the name, or an empty string if the data has shrunk since the
+	 * last refresh
+	 */
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException(index);
+		int page = index / PAGE_SIZE;
+		List<String> names = cache.computeIfAbsent(page, key -> pages.apply(key * PAGE_SIZE, PAGE_SIZE));
+		int position = index % PAGE_SIZE;
+		return position < names.size() ? names.get(position) : "";
+	}
+
+	/**
+	 * Returns the number of names as of the last refresh
+	 * @return the number of rows
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Drops the cached pages, rereads the number of names and tells any
+	 * ListView showing this list that every row may have changed
+	 */
+	public void refresh() {
+		int oldSize = size;
+		cache.clear();
+		size = count.getAsInt();
+		beginChange();
+		if (oldSize > 0)
+			nextRemove(0, Collections.nCopies(oldSize, ""));
+		if (size > 0)
+			nextAdd(0, size);
+		endChange();
+	}
+}
@@ -0,0 +1,404 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A bounded cache of shortest paths between pairs of towns. Roads are
+ * undirected, so a path is cached once per pair and given in whichever
+ * direction it is asked for.
+ *
+ * Two eviction policies are offered. LRU drops the least recently used
+ * path. TINY_LFU (W-TinyLFU) keeps a small LRU window for new paths; a
+ * path leaving the window only replaces one in the main area if it has
+ * been asked for more often, as counted by a small frequency sketch. That
+ * keeps a few very popular pairs cached through bursts of one-off queries.
+ *
+ * The cache listens to the Graph and forgets exactly the paths a change
+ * may have made wrong: removing a road drops the paths that use it, and
+ * adding a road of length w drops the paths longer than w and the cached
+ * "no path" answers, since only those can be improved by the new road.
+ * A road getting longer only drops the paths that use it; a road getting
+ * shorter also drops the paths it could now improve, as an added road does.
+ */
+public class PathCache implements GraphListener {
+    /**
+     * How the cache chooses what to forget when it is full
+     */
+    public enum Policy {
+        LRU, TINY_LFU
+    }
+
+    //share of the capacity used by the TINY_LFU window and protected area
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final Policy policy;
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+
+    //LRU keeps every path in window; TINY_LFU splits them across all three
+    private final LinkedHashMap<Pair, Path> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Pair, Path> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Pair, Path> protectedPaths = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch frequencies;
+
+    //indexes for invalidation
+    private final Map<Road, Set<Pair>> pathsUsingRoad = new HashMap<>();
+    private final TreeMap<Long, Set<Pair>> pathsByDistance = new TreeMap<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates an empty cache
+     * @param capacity largest number of paths kept
+     * @param policy how to choose paths to forget
+     */
+    public PathCache(int capacity, Policy policy) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.policy = policy;
+        this.windowCapacity = policy == Policy.LRU ? capacity : Math.max(1, (int) (capacity * WINDOW_SHARE));
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * PROTECTED_SHARE);
+        this.frequencies = policy == Policy.LRU ? null : new FrequencySketch(capacity);
+    }
+
+    /**
+     * Returns the cached path between two towns, described from source to
+     * destination in the format of Graph.shortestPath
+     * @param source the starting town
+     * @param destination the ending town
+     * @return the path, which is empty if the towns are not connected, or
+     * null if the pair is not cached
+     */
+    public synchronized ArrayList<String> get(Town source, Town destination) {
+        Pair pair = new Pair(source, destination);
+        if (frequencies != null)
+            frequencies.increment(pair);
+        Path path = window.get(pair);
+        if (path == null && policy == Policy.TINY_LFU)
+            path = findInMain(pair);
+        if (path == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return path.describe(source);
+    }
+
+    /**
+     * Caches the path between two towns
+     * @param towns the towns along the path in order, or an empty list if
+     * they are not connected
+     * @param roads the roads between consecutive towns
+     * @param source the first town, needed when there is no path
+     * @param destination the last town, needed when there is no path
+     * @return the path described from source to destination, as get would
+     */
+    public synchronized ArrayList<String> put(List<Town> towns, List<Road> roads, Town source, Town destination) {
+        Pair pair = new Pair(source, destination);
+        remove(pair);
+        Path path = new Path(towns.toArray(new Town[0]), roads.toArray(new Road[0]));
+        index(pair, path);
+        window.put(pair, path);
+        if (window.size() > windowCapacity) {
+            Map.Entry<Pair, Path> eldest = window.entrySet().iterator().next();
+            window.remove(eldest.getKey());
+            if (policy == Policy.LRU)
+                evict(eldest.getKey(), eldest.getValue());
+            else
+                admit(eldest.getKey(), eldest.getValue());
+        }
+        return path.describe(source);
+    }
+
+    /**
+     * Forgets every path
+     */
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedPaths.clear();
+        pathsUsingRoad.clear();
+        pathsByDistance.clear();
+    }
+
+    @Override
+    public synchronized void roadAdded(Road road) {
+        for (Set<Pair> pairs : new ArrayList<>(pathsByDistance.tailMap((long) road.getWeight(), false).values()))
+            for (Pair pair : new ArrayList<>(pairs))
+                invalidate(pair);
+    }
+
+    @Override
+    public synchronized void roadRemoved(Road road) {
+        Set<Pair> pairs = pathsUsingRoad.get(road);
+        if (pairs != null)
+            for (Pair pair : new ArrayList<>(pairs))
+                invalidate(pair);
+    }
+
+    @Override
+    public synchronized void roadWeightChanged(Road road, int oldWeight) {
+        roadRemoved(road);
+        if (road.getWeight() < oldWeight)
+            roadAdded(road);
+    }
+
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedPaths.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of paths dropped to make room for others
+     * @return the number of evictions
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of paths dropped because the graph changed
+     * @return the number of invalidations
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Returns the share of lookups that found a cached path
+     * @return the hit rate from 0 to 1, or 0 before any lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /*
+    Looks in the main area, promoting a path found in probation to the
+    protected area and demoting the protected area's eldest if it is full
+     */
+    private Path findInMain(Pair pair) {
+        Path path = protectedPaths.get(pair);
+        if (path != null)
+            return path;
+        path = probation.remove(pair);
+        if (path == null)
+            return null;
+        protectedPaths.put(pair, path);
+        if (protectedPaths.size() > protectedCapacity) {
+            Iterator<Map.Entry<Pair, Path>> eldest = protectedPaths.entrySet().iterator();
+            Map.Entry<Pair, Path> demoted = eldest.next();
+            eldest.remove();
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+        return path;
+    }
+
+    /*
+    Decides whether a path leaving the window replaces the main area's next
+    victim, keeping whichever has been asked for more often
+     */
+    private void admit(Pair candidate, Path path) {
+        if (probation.size() + protectedPaths.size() < capacity - windowCapacity) {
+            probation.put(candidate, path);
+            return;
+        }
+        LinkedHashMap<Pair, Path> victims = probation.isEmpty() ? protectedPaths : probation;
+        if (victims.isEmpty()) {
+            evict(candidate, path);
+            return;
+        }
+        Map.Entry<Pair, Path> victim = victims.entrySet().iterator().next();
+        if (frequencies.estimate(candidate) > frequencies.estimate(victim.getKey())) {
+            victims.remove(victim.getKey());
+            evict(victim.getKey(), victim.getValue());
+            probation.put(candidate, path);
+        } else {
+            evict(candidate, path);
+        }
+    }
+
+    private void evict(Pair pair, Path path) {
+        unindex(pair, path);
+        evictions++;
+    }
+
+    private void invalidate(Pair pair) {
+        if (remove(pair))
+            invalidations++;
+    }
+
+    private boolean remove(Pair pair) {
+        Path path = window.remove(pair);
+        if (path == null)
+            path = probation.remove(pair);
+        if (path == null)
+            path = protectedPaths.remove(pair);
+        if (path == null)
+            return false;
+        unindex(pair, path);
+        return true;
+    }
+
+    private void index(Pair pair, Path path) {
+        for (Road road : path.roads)
+            pathsUsingRoad.computeIfAbsent(road, key -> new HashSet<>()).add(pair);
+        pathsByDistance.computeIfAbsent(path.distance, key -> new HashSet<>()).add(pair);
+    }
+
+    private void unindex(Pair pair, Path path) {
+        for (Road road : path.roads) {
+            Set<Pair> pairs = pathsUsingRoad.get(road);
+            if (pairs != null && pairs.remove(pair) && pairs.isEmpty())
+                pathsUsingRoad.remove(road);
+        }
+        Set<Pair> pairs = pathsByDistance.get(path.distance);
+        if (pairs != null && pairs.remove(pair) && pairs.isEmpty())
+            pathsByDistance.remove(path.distance);
+    }
+
+    /*
+    An unordered pair of towns, equal to the same towns in either order
+     */
+    private static final class Pair {
+        final Town first;
+        final Town second;
+
+        Pair(Town a, Town b) {
+            boolean ordered = a.getName().compareTo(b.getName()) <= 0;
+            first = ordered ? a : b;
+            second = ordered ? b : a;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pair))
+                return false;
+            Pair other = (Pair) o;
+            return first.equals(other.first) && second.equals(other.second);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * first.hashCode() + second.hashCode();
+        }
+    }
+
+    /*
+    A cached path; a path with no towns means the pair is not connected
+     */
+    private static final class Path {
+        final Town[] towns;
+        final Road[] roads;
+        final long distance;
+
+        Path(Town[] towns, Road[] roads) {
+            this.towns = towns;
+            this.roads = roads;
+            long sum = 0;
+            for (Road road : roads)
+                sum += road.getWeight();
+            this.distance = towns.length == 0 ? Long.MAX_VALUE : sum;
+        }
+
+        ArrayList<String> describe(Town source) {
+            ArrayList<String> lines = new ArrayList<>(roads.length);
+            for (int i = 0; i < roads.length; i++)
+                lines.add(towns[i].getName() + " via " + roads[i].getName() + " to " + towns[i + 1].getName()
+                        + " " + roads[i].getWeight() + " mi");
+            if (towns.length > 0 && !towns[0].equals(source)) {
+                lines.clear();
+                for (int i = roads.length - 1; i >= 0; i--)
+                    lines.add(towns[i + 1].getName() + " via " + roads[i].getName() + " to " + towns[i].getName()
+                            + " " + roads[i].getWeight() + " mi");
+            }
+            return lines;
+        }
+    }
+
+    /*
+    Count-min sketch of how often each pair has been asked for. Counts stop
+    at 15 and are all halved after a number of lookups, so the sketch
+    follows changes in what is popular.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9e3779b9, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+
+        private final int[] counts;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            //a few counters per cached path keeps collisions between pairs rare
+            int width = Integer.highestOneBit(Math.max(capacity, 16) * 16 - 1);
+            counts = new int[DEPTH * width];
+            mask = width - 1;
+            sampleSize = 10 * capacity;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int slot = row * (mask + 1) + index(hash, row);
+                if (counts[slot] < MAX_COUNT) {
+                    counts[slot]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] >>>= 1;
+                additions /= 2;
+            }
+        }
+
+        int estimate(Object key) {
+            int hash = key.hashCode();
+            int estimate = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++)
+                estimate = Math.min(estimate, counts[row * (mask + 1) + index(hash, row)]);
+            return estimate;
+        }
+
+        private int index(int hash, int row) {
+            int mixed = (hash ^ (hash >>> 16)) * SEEDS[row];
+            mixed ^= mixed >>> 15;
+            return mixed & mask;
+        }
+    }
+}
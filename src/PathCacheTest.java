@@ -0,0 +1,153 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PathCacheTest {
+	private TownGraphManager graph;
+	private String[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new TownGraphManager();
+		  town = new String[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = "Town_" + i;
+			  graph.addTown(town[i]);
+		  }
+
+		  graph.addRoad(town[1], town[2], 2, "Road_1");
+		  graph.addRoad(town[1], town[3], 4, "Road_2");
+		  graph.addRoad(town[1], town[5], 6, "Road_3");
+		  graph.addRoad(town[3], town[7], 1, "Road_4");
+		  graph.addRoad(town[3], town[8], 2, "Road_5");
+		  graph.addRoad(town[4], town[8], 3, "Road_6");
+		  graph.addRoad(town[6], town[9], 3, "Road_7");
+		  graph.addRoad(town[9], town[10], 4, "Road_8");
+		  graph.addRoad(town[8], town[10], 2, "Road_9");
+		  graph.addRoad(town[5], town[10], 5, "Road_10");
+		  graph.addRoad(town[10], town[11], 3, "Road_11");
+		  graph.addRoad(town[2], town[11], 6, "Road_12");
+		  graph.enablePathCache(100, PathCache.Policy.TINY_LFU);
+	}
+
+	@Test
+	public void testSymmetricHits() {
+		ArrayList<String> forward = graph.getPath(town[1], town[10]);
+		assertEquals("Town_1 via Road_2 to Town_3 4 mi", forward.get(0));
+		ArrayList<String> backward = graph.getPath(town[10], town[1]);
+		assertEquals(Arrays.asList("Town_10 via Road_9 to Town_8 2 mi", "Town_8 via Road_5 to Town_3 2 mi",
+				"Town_3 via Road_2 to Town_1 4 mi"), backward);
+		assertEquals(forward, graph.getPath(town[1], town[10]));
+		PathCache cache = graph.getPathCache();
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2.0 / 3, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void testRemovingUsedRoadInvalidates() {
+		graph.getPath(town[1], town[10]);
+		graph.getPath(town[1], town[2]);
+		graph.deleteRoadConnection(town[8], town[10], "Road_9");
+		assertEquals(1, graph.getPathCache().getInvalidationCount());
+		assertEquals(1, graph.getPathCache().size());
+		assertEquals("Town_1 via Road_3 to Town_5 6 mi", graph.getPath(town[1], town[10]).get(0));
+	}
+
+	@Test
+	public void testAddingRoadInvalidatesLongerPaths() {
+		graph.getPath(town[1], town[2]);
+		graph.getPath(town[1], town[6]);
+		graph.addRoad(town[1], town[6], 5, "Road_13");
+		assertEquals(1, graph.getPathCache().size());
+		assertEquals(Arrays.asList("Town_1 via Road_13 to Town_6 5 mi"), graph.getPath(town[1], town[6]));
+	}
+
+	@Test
+	public void testUnreachableIsCachedUntilConnected() {
+		graph.addRoad("Town_12", "Town_13", 1, "Road_13");
+		assertTrue(graph.getPath(town[1], "Town_12").isEmpty());
+		assertTrue(graph.getPath("Town_12", town[1]).isEmpty());
+		assertEquals(1, graph.getPathCache().getHitCount());
+		graph.addRoad(town[11], "Town_12", 50, "Road_14");
+		assertEquals("Town_11 via Road_14 to Town_12 50 mi", graph.getPath(town[1], "Town_12").get(2));
+	}
+
+	@Test
+	public void testWeightChangesInvalidateOnlyAffectedPaths() {
+		graph.addRoad("Town_12", "Town_13", 1, "Road_13");
+		for (int i = 2; i < 12; i++)
+			graph.getPath(town[1], town[i]);
+		graph.getPath("Town_12", "Town_13");
+		assertEquals(11, graph.getPathCache().size());
+
+		assertTrue(graph.updateRoadWeight("Town_12", "Town_13", "Road_13", 2));
+		assertEquals(10, graph.getPathCache().size());
+		assertEquals(1, graph.getPathCache().getInvalidationCount());
+
+		assertTrue(graph.updateRoadWeight(town[1], town[3], "Road_2", 9));
+		assertEquals(Arrays.asList("Town_1 via Road_2 to Town_3 9 mi"), graph.getPath(town[1], town[3]));
+		assertEquals("Town_1 via Road_2 to Town_3 9 mi", graph.getPath(town[1], town[7]).get(0));
+		assertEquals("Town_1 via Road_2 to Town_3 9 mi", graph.getPath(town[1], town[4]).get(0));
+		assertEquals(Arrays.asList("Town_1 via Road_3 to Town_5 6 mi", "Town_5 via Road_10 to Town_10 5 mi"),
+				graph.getPath(town[1], town[10]));
+
+		assertTrue(graph.updateRoadWeight(town[10], town[11], "Road_11", 1));
+		assertEquals(Arrays.asList("Town_1 via Road_1 to Town_2 2 mi", "Town_2 via Road_12 to Town_11 6 mi",
+				"Town_11 via Road_11 to Town_10 1 mi"), graph.getPath(town[1], town[10]));
+	}
+
+	@Test
+	public void testDeletingTownInvalidates() {
+		graph.getPath(town[1], town[6]);
+		graph.deleteTown(town[9]);
+		assertEquals(0, graph.getPathCache().size());
+		assertTrue(graph.getPath(town[1], town[6]).isEmpty());
+	}
+
+	@Test
+	public void testLruEviction() {
+		PathCache cache = new PathCache(2, PathCache.Policy.LRU);
+		Town[] towns = new Town[5];
+		for (int i = 0; i < 5; i++)
+			towns[i] = new Town("T" + i);
+		cache.put(Collections.emptyList(), Collections.emptyList(), towns[0], towns[1]);
+		cache.put(Collections.emptyList(), Collections.emptyList(), towns[0], towns[2]);
+		assertNotNull(cache.get(towns[1], towns[0]));
+		cache.put(Collections.emptyList(), Collections.emptyList(), towns[0], towns[3]);
+		assertNull(cache.get(towns[0], towns[2]));
+		assertNotNull(cache.get(towns[0], towns[1]));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testTinyLfuKeepsPopularPairs() {
+		PathCache cache = new PathCache(100, PathCache.Policy.TINY_LFU);
+		Town hub = new Town("Hub");
+		Town[] popular = new Town[50];
+		for (int i = 0; i < popular.length; i++) {
+			popular[i] = new Town("Popular_" + i);
+			for (int r = 0; r < 5; r++)
+				if (cache.get(hub, popular[i]) == null)
+					cache.put(Collections.emptyList(), Collections.emptyList(), hub, popular[i]);
+		}
+		for (int i = 0; i < 1000; i++) {
+			Town once = new Town("Once_" + i);
+			if (cache.get(hub, once) == null)
+				cache.put(Collections.emptyList(), Collections.emptyList(), hub, once);
+		}
+		for (Town town : popular)
+			assertNotNull(cache.get(hub, town));
+		assertTrue(cache.size() <= 100);
+	}
+}
@@ -0,0 +1,344 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Answers a stream of path requests with a stream of paths. The processor
+ * subscribes to a publisher of requests, runs each one with getPath on an
+ * executor, and publishes the results to a single subscriber.
+ *
+ * At most maxInFlight requests are taken from upstream and not yet handed
+ * to the subscriber, counting both those being searched and those that
+ * are finished and waiting for the subscriber to ask for them. Upstream is
+ * asked for one more request each time a result is delivered, so a slow
+ * subscriber slows the publisher down rather than letting results pile
+ * up. Up to maxInFlight searches run at once. Results are delivered in the
+ * order they finish, which need not be the order of the requests; each
+ * result carries its request.
+ */
+public class PathQueryProcessor implements Flow.Processor<PathQueryProcessor.Request, PathQueryProcessor.Result> {
+    private final TownGraphManager manager;
+    private final int maxInFlight;
+    private final Executor executor;
+
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super Result> downstream;
+    //results finished but not yet delivered, oldest first
+    private final ArrayDeque<Result> ready = new ArrayDeque<>();
+    //requests received but not yet delivered as results
+    private int inFlight;
+    private long demand;
+    private boolean upstreamDone;
+    private Throwable error;
+    private boolean cancelled;
+    private boolean terminated;
+    //one thread at a time delivers results; others leave their work to it
+    private boolean draining;
+    private boolean missed;
+
+    /**
+     * Creates a processor
+     * @param manager the graph to search
+     * @param maxInFlight the most requests taken but not yet delivered
+     * @param executor runs the searches
+     */
+    public PathQueryProcessor(TownGraphManager manager, int maxInFlight, Executor executor) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        this.manager = manager;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+    }
+
+    /**
+     * Connects the subscriber that receives the results. A processor has
+     * only one; any later subscriber is sent an IllegalStateException.
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+        boolean accepted;
+        synchronized (this) {
+            accepted = downstream == null;
+            if (accepted)
+                downstream = subscriber;
+        }
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A PathQueryProcessor has only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {
+                requestResults(n);
+            }
+
+            public void cancel() {
+                cancelResults();
+            }
+        });
+        start();
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        start();
+    }
+
+    @Override
+    public void onNext(Request request) {
+        synchronized (this) {
+            if (cancelled)
+                return;
+            inFlight++;
+        }
+        try {
+            executor.execute(() -> finish(request));
+        } catch (RejectedExecutionException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            if (error == null)
+                error = throwable;
+            upstreamDone = true;
+            ready.clear();
+            inFlight = 0;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    /*
+    Asks upstream for the first requests once both ends are connected
+     */
+    private void start() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            if (upstream == null || downstream == null)
+                return;
+            subscription = upstream;
+        }
+        subscription.request(maxInFlight);
+    }
+
+    private void finish(Request request) {
+        Result result;
+        try {
+            ArrayList<String> path = request.getProfile() == null
+                    ? manager.getPath(request.getSource(), request.getDestination())
+                    : manager.getPath(request.getSource(), request.getDestination(), request.getProfile());
+            result = new Result(request, path);
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        synchronized (this) {
+            ready.add(result);
+        }
+        drain();
+    }
+
+    /*
+    Ends the stream with an error, dropping any results not yet delivered,
+    and stops taking requests
+     */
+    private void fail(Throwable throwable) {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            if (error == null)
+                error = throwable;
+            upstreamDone = true;
+            ready.clear();
+            inFlight = 0;
+            subscription = upstream;
+        }
+        if (subscription != null)
+            subscription.cancel();
+        drain();
+    }
+
+    private void requestResults(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("Requests must be positive: " + n));
+            return;
+        }
+        synchronized (this) {
+            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+        drain();
+    }
+
+    private void cancelResults() {
+        Flow.Subscription subscription;
+        synchronized (this) {
+            cancelled = true;
+            ready.clear();
+            subscription = upstream;
+        }
+        if (subscription != null)
+            subscription.cancel();
+    }
+
+    /*
+    Delivers results while the subscriber wants them, asking upstream for
+    one request per result, and ends the stream once every request is
+    answered. Subscriber methods are called outside the lock.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                missed = true;
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Result next = null;
+            Flow.Subscription subscription = null;
+            Throwable failure = null;
+            boolean complete = false;
+            synchronized (this) {
+                if (cancelled || terminated || downstream == null) {
+                    draining = false;
+                    return;
+                }
+                if (error != null) {
+                    failure = error;
+                    terminated = true;
+                } else if (demand > 0 && !ready.isEmpty()) {
+                    next = ready.poll();
+                    demand--;
+                    inFlight--;
+                    if (!upstreamDone)
+                        subscription = upstream;
+                } else if (upstreamDone && inFlight == 0) {
+                    complete = true;
+                    terminated = true;
+                } else if (missed) {
+                    missed = false;
+                    continue;
+                } else {
+                    draining = false;
+                    return;
+                }
+            }
+            if (failure != null) {
+                downstream.onError(failure);
+                return;
+            }
+            if (complete) {
+                downstream.onComplete();
+                return;
+            }
+            downstream.onNext(next);
+            if (subscription != null)
+                subscription.request(1);
+        }
+    }
+
+    /**
+     * A request for the shortest path between two towns
+     */
+    public static final class Request {
+        private final String source;
+        private final String destination;
+        private final String profile;
+
+        /**
+         * Creates a request measured by distance, or by the active weight
+         * profile if one is set
+         * @param source name of the starting town
+         * @param destination name of the ending town
+         */
+        public Request(String source, String destination) {
+            this(source, destination, null);
+        }
+
+        /**
+         * Creates a request measured with a weight profile
+         * @param source name of the starting town
+         * @param destination name of the ending town
+         * @param profile name of the weight profile, or null for getPath's
+         * default
+         */
+        public Request(String source, String destination, String profile) {
+            this.source = source;
+            this.destination = destination;
+            this.profile = profile;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public String getProfile() {
+            return profile;
+        }
+
+        @Override
+        public String toString() {
+            return source + " to " + destination + (profile == null ? "" : " by " + profile);
+        }
+    }
+
+    /**
+     * The answer to a request
+     */
+    public static final class Result {
+        private final Request request;
+        private final ArrayList<String> path;
+
+        Result(Request request, ArrayList<String> path) {
+            this.request = request;
+            this.path = path;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        /**
+         * Returns the path in the same format as getPath
+         * @return the roads along the path, or an empty list if there is
+         * no path
+         */
+        public ArrayList<String> getPath() {
+            return path;
+        }
+    }
+}
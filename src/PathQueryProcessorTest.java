@@ -0,0 +1,175 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PathQueryProcessorTest {
+	private static final Executor DIRECT = Runnable::run;
+
+	private TownGraphManager graph;
+	private String[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new TownGraphManager();
+		Town[] towns = RandomGraphs.towns(80);
+		town = new String[towns.length];
+		for (int i = 0; i < towns.length; i++)
+			town[i] = towns[i].getName();
+		graph.addRoads(RandomGraphs.connected(towns, 44, 80, 20, 40));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testResultsMatchGetPath() throws Exception {
+		Collector collector = new Collector(Long.MAX_VALUE);
+		Map<String, ArrayList<String>> expected = new HashMap<>();
+		try (SubmissionPublisher<PathQueryProcessor.Request> requests = new SubmissionPublisher<>()) {
+			graph.getPaths(requests, 8).subscribe(collector);
+			for (int s = 0; s < town.length; s += 3)
+				for (int t = 0; t < town.length; t += 5) {
+					expected.put(town[s] + " to " + town[t], graph.getPath(town[s], town[t]));
+					requests.submit(new PathQueryProcessor.Request(town[s], town[t]));
+				}
+		}
+		assertTrue(collector.done.await(30, TimeUnit.SECONDS));
+		assertNull(collector.error);
+		assertEquals(expected.size(), collector.results.size());
+		for (PathQueryProcessor.Result result : collector.results)
+			assertEquals(expected.get(result.getRequest().toString()), result.getPath());
+	}
+
+	@Test
+	public void testSlowSubscriberHoldsBackRequests() {
+		CountingPublisher requests = new CountingPublisher();
+		Collector collector = new Collector(2);
+		graph.getPaths(requests, 4, DIRECT).subscribe(collector);
+		assertEquals(2, collector.results.size());
+		assertEquals(6, requests.requested);
+		collector.subscription.request(3);
+		assertEquals(5, collector.results.size());
+		assertEquals(9, requests.requested);
+		collector.subscription.cancel();
+		assertTrue(requests.cancelled);
+	}
+
+	@Test
+	public void testCompletesAfterLastResult() {
+		CountingPublisher requests = new CountingPublisher();
+		requests.limit = 5;
+		Collector collector = new Collector(3);
+		graph.getPaths(requests, 2, DIRECT).subscribe(collector);
+		assertEquals(1, collector.done.getCount());
+		collector.subscription.request(10);
+		assertEquals(0, collector.done.getCount());
+		assertEquals(5, collector.results.size());
+		assertNull(collector.error);
+	}
+
+	@Test
+	public void testFailedSearchEndsStream() {
+		CountingPublisher requests = new CountingPublisher();
+		requests.profile = "time";
+		Collector collector = new Collector(10);
+		graph.getPaths(requests, 3, DIRECT).subscribe(collector);
+		assertTrue(collector.error instanceof IllegalArgumentException);
+		assertTrue(collector.results.isEmpty());
+		assertTrue(requests.cancelled);
+
+		Collector second = new Collector(1);
+		PathQueryProcessor processor = new PathQueryProcessor(graph, 1, DIRECT);
+		processor.subscribe(new Collector(1));
+		processor.subscribe(second);
+		assertTrue(second.error instanceof IllegalStateException);
+	}
+
+	/*
+	Emits requests as soon as they are asked for, on the asking thread,
+	counting how many were asked for
+	 */
+	private class CountingPublisher implements Flow.Publisher<PathQueryProcessor.Request> {
+		long requested;
+		long limit = Long.MAX_VALUE;
+		String profile;
+		boolean cancelled;
+		private long emitted;
+		private boolean emitting;
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super PathQueryProcessor.Request> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				public void request(long n) {
+					requested += n;
+					if (emitting)
+						return;
+					emitting = true;
+					while (!cancelled && emitted < Math.min(requested, limit)) {
+						subscriber.onNext(new PathQueryProcessor.Request(town[(int) (emitted % town.length)],
+								town[(int) (emitted * 7 % town.length)], profile));
+						emitted++;
+					}
+					emitting = false;
+					if (emitted == limit && !cancelled) {
+						cancelled = true;
+						subscriber.onComplete();
+					}
+				}
+
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+
+	private static class Collector implements Flow.Subscriber<PathQueryProcessor.Result> {
+		final List<PathQueryProcessor.Result> results = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(1);
+		final long initial;
+		Flow.Subscription subscription;
+		volatile Throwable error;
+
+		Collector(long initial) {
+			this.initial = initial;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initial);
+		}
+
+		@Override
+		public void onNext(PathQueryProcessor.Result item) {
+			results.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+Seeded random road networks shared by the tests that check an algorithm
+against a simpler one on a graph too large to build by hand
+ */
+class RandomGraphs {
+	private RandomGraphs() {
+	}
+
+	/*
+	Towns named Town_0 up to Town_(count - 1)
+	 */
+	static Town[] towns(int count) {
+		Town[] towns = new Town[count];
+		for (int i = 0; i < count; i++)
+			towns[i] = new Town("Town_" + i);
+		return towns;
+	}
+
+	/*
+	A random spanning tree of roads Tree_1 up to Tree_(n - 1), so every town
+	can be reached, followed by extraRoads roads Road_0, Road_1, ... between
+	random towns. Tree roads weigh from 1 to treeWeight and the others from
+	1 to roadWeight.
+	 */
+	static List<Road> connected(Town[] towns, long seed, int extraRoads, int treeWeight, int roadWeight) {
+		Random random = new Random(seed);
+		List<Road> roads = new ArrayList<>();
+		for (int i = 1; i < towns.length; i++)
+			roads.add(new Road(towns[random.nextInt(i)], towns[i], 1 + random.nextInt(treeWeight), "Tree_" + i));
+		addRandomRoads(random, towns, extraRoads, roadWeight, roads);
+		return roads;
+	}
+
+	/*
+	Roads Road_0, Road_1, ... between random towns, weighing from 1 to
+	maxWeight, with no tree, so some towns may be cut off
+	 */
+	static List<Road> scattered(Town[] towns, long seed, int count, int maxWeight) {
+		List<Road> roads = new ArrayList<>();
+		addRandomRoads(new Random(seed), towns, count, maxWeight, roads);
+		return roads;
+	}
+
+	/*
+	A graph of the towns and roads, added one at a time
+	 */
+	static Graph graph(Town[] towns, List<Road> roads) {
+		Graph graph = new Graph();
+		for (Town town : towns)
+			graph.addVertex(town);
+		for (Road road : roads)
+			graph.addEdge(road.getSource(), road.getDestination(), road.getWeight(), road.getName());
+		return graph;
+	}
+
+	private static void addRandomRoads(Random random, Town[] towns, int count, int maxWeight, List<Road> roads) {
+		for (int i = 0; i < count; i++)
+			roads.add(new Road(towns[random.nextInt(towns.length)], towns[random.nextInt(towns.length)],
+					1 + random.nextInt(maxWeight), "Road_" + i));
+	}
+}
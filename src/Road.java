@@ -2,11 +2,14 @@
  * @author Christian Aguirre
  */
 
+import java.util.Objects;
+
 public class Road implements Comparable<Road>{
     private final Town source;
     private final Town destination;
     private final String name;
-    private final int weight;
+    //changed only by Graph, which keeps its fastest-first road lists in order
+    private int weight;
 
     /**
      *
@@ -97,28 +100,40 @@ public class Road implements Comparable<Road>{
         return weight;
     }
 
+    /*
+    Sets the distance of the road. Weight is not part of equals or
+    hashCode, so the road stays in the same place in any HashSet.
+     */
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     /**
      * Returns true if each of the ends of the road r is the same
-     * as the ends of this road. Remember that a road that goes from
-     * point A to point B is the same as a road that goes from point B
-     * to point A.
+     * as the ends of this road and both roads have the same name. Remember
+     * that a road that goes from point A to point B is the same as a road
+     * that goes from point B to point A. Two differently named roads between
+     * the same towns are parallel roads, not the same road.
      * @param o Road object to compare it to
      * @return true if equal, false otherwise
      */
     @Override
     public boolean equals(Object o) {
         if(o instanceof Road road)
-            return (road.contains(this.getSource()) && road.contains(this.getDestination()));
+            return (road.contains(this.getSource()) && road.contains(this.getDestination()))
+                    && Objects.equals(road.getName(), this.getName());
         return false;
     }
 
     /**
      * Returns the hash code of the road, which is based on its two towns added together
+     * and its name
      * @return the hash code of the road, which is based on its two towns added together
+     * and its name
      */
     @Override
     public int hashCode() {
-        return getSource().hashCode() + getDestination().hashCode();
+        return getSource().hashCode() + getDestination().hashCode() + 31 * Objects.hashCode(getName());
     }
 
 
@@ -0,0 +1,475 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes road networks in common file formats, one line at a
+ * time so that a file never has to fit in memory. Readers hand the roads
+ * they find to a RoadConsumer in chunks, which lets a graph take each
+ * chunk with one bulk call:
+ *
+ * DIMACS shortest path files (.gr): "p sp n m" gives the number of towns
+ * and arcs, and each "a u v w" line is an arc from town u to town v of
+ * length w, with towns numbered from 1. Road networks list every road once
+ * in each direction; both arcs become one Road named "Road_u_v" with the
+ * smaller number first. Lines starting with "c" are comments.
+ *
+ * DIMACS coordinate files (.co): each "v id x y" line gives the position of
+ * a town.
+ *
+ * CSV edge lists (.csv): each line is "town1,town2,weight,road". The road
+ * name may be left out, in which case one is made from the town names. A
+ * first line starting with "source," is taken as a header. Fields holding
+ * commas or quotes are quoted as usual.
+ *
+ * DIMACS files only number towns. When writing, the name of each town is
+ * saved in a "c town id name" comment, and the readers use these comments
+ * when they are present, so names survive a round trip. Road names do not.
+ */
+public class RoadNetworkIO {
+    private static final String TOWN_COMMENT = "c town ";
+    //lines read between chunks by the readers that add to a graph directly
+    private static final int CHUNK_SIZE = 10_000;
+
+    private RoadNetworkIO() {
+    }
+
+    /**
+     * Receives the roads a reader finds, a chunk at a time
+     */
+    public interface RoadConsumer {
+        /**
+         * Called after each chunk of lines, and once more when the file has
+         * been read completely
+         * @param roads the roads found since the last call, which may be
+         * empty; their towns are not added to any graph yet
+         * @param bytesRead approximate number of bytes of the file read so far
+         * @param totalBytes size of the file in bytes
+         * @return true to keep reading, false to stop
+         */
+        boolean roadsRead(List<Road> roads, long bytesRead, long totalBytes);
+    }
+
+    /**
+     * Adds the roads of a DIMACS .gr file to a graph. Of several arcs
+     * between the same towns only the shortest is kept.
+     * @param file the file to read
+     * @param graph the graph to add towns and roads to
+     * @return the number of roads added
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static int readDimacs(File file, GraphInterface<Town, Road> graph) throws IOException {
+        int[] added = {0};
+        readDimacs(file, CHUNK_SIZE, (roads, bytesRead, totalBytes) -> {
+            added[0] += addAll(graph, roads);
+            return true;
+        });
+        return added[0];
+    }
+
+    /**
+     * Reads the roads of a DIMACS .gr file. Of several arcs between the
+     * same towns only the shortest is kept, so no road is final until the
+     * whole file has been read: while reading, the consumer is called with
+     * no roads, so it can follow progress or stop, and the roads are then
+     * handed over in chunks of the same size.
+     * @param file the file to read
+     * @param chunkSize number of lines, and then of roads, between calls
+     * @param consumer receives the roads
+     * @return true if the whole file was read, false if the consumer stopped
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static boolean readDimacs(File file, int chunkSize, RoadConsumer consumer) throws IOException {
+        long totalBytes = file.length();
+        //the shortest road between each pair of towns, keyed by its name
+        Map<String, Road> shortest = new LinkedHashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            Fields fields = new Fields();
+            Map<Integer, String> names = new HashMap<>();
+            Town[] towns = null;
+            long bytesRead = 0;
+            int lineNumber = 0;
+            int linesInChunk = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                bytesRead += line.length() + 1;
+                try {
+                    if (line.startsWith(TOWN_COMMENT)) {
+                        readTownComment(line, fields, names);
+                    } else if (line.startsWith("p")) {
+                        fields.reset(line);
+                        fields.next();
+                        fields.next();
+                        towns = new Town[fields.nextInt() + 1];
+                    } else if (line.startsWith("a")) {
+                        if (towns == null)
+                            throw new IOException("Arc before problem line at line " + lineNumber + " of " + file);
+                        fields.reset(line);
+                        fields.next();
+                        int u = fields.nextInt();
+                        int v = fields.nextInt();
+                        int weight = fields.nextInt();
+                        String name = "Road_" + Math.min(u, v) + "_" + Math.max(u, v);
+                        Road road = shortest.get(name);
+                        if (road == null)
+                            shortest.put(name, new Road(town(towns, names, u), town(towns, names, v), weight, name));
+                        else if (weight < road.getWeight())
+                            road.setWeight(weight);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Bad line " + lineNumber + " of " + file + ": " + line, e);
+                }
+                if (++linesInChunk >= chunkSize) {
+                    linesInChunk = 0;
+                    if (!consumer.roadsRead(Collections.emptyList(), Math.min(bytesRead, totalBytes), totalBytes))
+                        return false;
+                }
+            }
+        }
+
+        List<Road> chunk = new ArrayList<>();
+        for (Road road : shortest.values()) {
+            chunk.add(road);
+            if (chunk.size() >= chunkSize) {
+                if (!consumer.roadsRead(chunk, totalBytes, totalBytes))
+                    return false;
+                chunk = new ArrayList<>();
+            }
+        }
+        consumer.roadsRead(chunk, totalBytes, totalBytes);
+        return true;
+    }
+
+    /**
+     * Writes a graph as a DIMACS .gr file. Towns are numbered by their
+     * index in the snapshot plus one, and every road is written as an arc
+     * in each direction.
+     * @param graph snapshot of the graph to write
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeDimacs(CompactGraph graph, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println("p sp " + graph.townCount() + " " + 2L * graph.roadCount());
+            writeTownComments(graph, out);
+            for (int e = 0; e < graph.roadCount(); e++) {
+                int u = graph.roadSource(e) + 1;
+                int v = graph.roadDestination(e) + 1;
+                int weight = graph.roadWeight(e);
+                out.println("a " + u + " " + v + " " + weight);
+                out.println("a " + v + " " + u + " " + weight);
+            }
+            if (out.checkError())
+                throw new IOException("Error writing " + file);
+        }
+    }
+
+    /**
+     * Reads a DIMACS .co file and places the towns of a layout at the
+     * positions it gives. Towns that are not in the layout are skipped.
+     * @param file the file to read
+     * @param layout the layout to update
+     * @return the number of towns placed
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static int readCoordinates(File file, TownLayout layout) throws IOException {
+        int placed = 0;
+        CompactGraph graph = layout.getGraph();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            Fields fields = new Fields();
+            Map<Integer, String> names = new HashMap<>();
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                try {
+                    if (line.startsWith(TOWN_COMMENT)) {
+                        readTownComment(line, fields, names);
+                    } else if (line.startsWith("v")) {
+                        fields.reset(line);
+                        fields.next();
+                        int id = fields.nextInt();
+                        double x = Double.parseDouble(fields.next());
+                        double y = Double.parseDouble(fields.next());
+                        int v = graph.indexOf(new Town(names.getOrDefault(id, Integer.toString(id))));
+                        if (v >= 0) {
+                            //DIMACS y grows northwards, the screen's grows downwards
+                            layout.setPosition(v, x, -y);
+                            placed++;
+                        }
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("Bad line " + lineNumber + " of " + file + ": " + line, e);
+                }
+            }
+        }
+        layout.recomputeBounds();
+        return placed;
+    }
+
+    /**
+     * Writes the positions of a layout as a DIMACS .co file, numbering the
+     * towns the same way as writeDimacs does for the same snapshot
+     * @param layout the layout to write
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCoordinates(TownLayout layout, File file) throws IOException {
+        CompactGraph graph = layout.getGraph();
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println("p aux sp co " + graph.townCount());
+            writeTownComments(graph, out);
+            for (int v = 0; v < graph.townCount(); v++)
+                out.println("v " + (v + 1) + " " + layout.x(v) + " " + -layout.y(v));
+            if (out.checkError())
+                throw new IOException("Error writing " + file);
+        }
+    }
+
+    /**
+     * Adds the roads of a CSV edge list to a graph
+     * @param file the file to read
+     * @param graph the graph to add towns and roads to
+     * @return the number of roads added
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static int readCsv(File file, GraphInterface<Town, Road> graph) throws IOException {
+        int[] added = {0};
+        readCsv(file, CHUNK_SIZE, (roads, bytesRead, totalBytes) -> {
+            added[0] += addAll(graph, roads);
+            return true;
+        });
+        return added[0];
+    }
+
+    /**
+     * Reads the roads of a CSV edge list
+     * @param file the file to read
+     * @param chunkSize number of lines between calls to the consumer
+     * @param consumer receives the roads
+     * @return true if the whole file was read, false if the consumer stopped
+     * @throws IOException if the file cannot be read or is not valid
+     */
+    public static boolean readCsv(File file, int chunkSize, RoadConsumer consumer) throws IOException {
+        long totalBytes = file.length();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            List<String> fields = new ArrayList<>();
+            List<Road> chunk = new ArrayList<>();
+            long bytesRead = 0;
+            int lineNumber = 0;
+            int linesInChunk = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                bytesRead += line.length() + 1;
+                if (!line.isBlank() && !(lineNumber == 1 && line.startsWith("source,"))) {
+                    splitCsv(line, fields);
+                    if (fields.size() < 3)
+                        throw new IOException("Bad line " + lineNumber + " of " + file + ": " + line);
+                    Town source = new Town(fields.get(0));
+                    Town destination = new Town(fields.get(1));
+                    int weight;
+                    try {
+                        weight = Integer.parseInt(fields.get(2).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Bad weight on line " + lineNumber + " of " + file + ": " + line, e);
+                    }
+                    String road = fields.size() > 3 ? fields.get(3) : source.getName() + "-" + destination.getName();
+                    chunk.add(new Road(source, destination, weight, road));
+                }
+                if (++linesInChunk >= chunkSize) {
+                    linesInChunk = 0;
+                    if (!consumer.roadsRead(chunk, Math.min(bytesRead, totalBytes), totalBytes))
+                        return false;
+                    chunk = new ArrayList<>();
+                }
+            }
+            consumer.roadsRead(chunk, totalBytes, totalBytes);
+            return true;
+        }
+    }
+
+    /**
+     * Writes every road of a graph to a CSV edge list, with a header line.
+     * Towns without roads are not written.
+     * @param graph the graph to write
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCsv(GraphInterface<Town, Road> graph, File file) throws IOException {
+        writeCsv(graph.edgeSet(), file);
+    }
+
+    /**
+     * Writes roads to a CSV edge list, with a header line
+     * @param roads the roads to write
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeCsv(Collection<Road> roads, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+            out.println("source,target,weight,name");
+            for (Road road : roads)
+                out.println(quote(road.getSource().getName()) + "," + quote(road.getDestination().getName()) + ","
+                        + road.getWeight() + "," + quote(road.getName()));
+            if (out.checkError())
+                throw new IOException("Error writing " + file);
+        }
+    }
+
+    /*
+    Returns the town numbered id, naming it the first time it is seen
+     */
+    private static Town town(Town[] towns, Map<Integer, String> names, int id) {
+        Town town = towns[id];
+        if (town == null) {
+            town = new Town(names.getOrDefault(id, Integer.toString(id)));
+            towns[id] = town;
+        }
+        return town;
+    }
+
+    /*
+    Adds roads and their towns to a graph, with one bulk call for each if
+    it is a Graph, and returns the number of roads added
+     */
+    private static int addAll(GraphInterface<Town, Road> graph, List<Road> roads) {
+        if (graph instanceof Graph) {
+            Graph bulk = (Graph) graph;
+            List<Town> towns = new ArrayList<>(roads.size() * 2);
+            for (Road road : roads) {
+                towns.add(road.getSource());
+                towns.add(road.getDestination());
+            }
+            bulk.addVertices(towns);
+            return bulk.addEdges(roads).size();
+        }
+        int added = 0;
+        for (Road road : roads) {
+            graph.addVertex(road.getSource());
+            graph.addVertex(road.getDestination());
+            if (graph.addEdge(road.getSource(), road.getDestination(), road.getWeight(), road.getName()) != null)
+                added++;
+        }
+        return added;
+    }
+
+    private static void readTownComment(String line, Fields fields, Map<Integer, String> names) {
+        fields.reset(line);
+        fields.next();
+        fields.next();
+        int id = fields.nextInt();
+        names.put(id, fields.rest());
+    }
+
+    private static void writeTownComments(CompactGraph graph, PrintWriter out) {
+        for (int v = 0; v < graph.townCount(); v++)
+            out.println(TOWN_COMMENT + (v + 1) + " " + graph.getTown(v).getName());
+    }
+
+    /*
+    Splits one CSV line into fields, reusing the given list
+     */
+    private static void splitCsv(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    private static String quote(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    /*
+    Splits a line into fields separated by spaces or tabs without using
+    regular expressions or creating an array for every line
+     */
+    private static class Fields {
+        private String line;
+        private int position;
+
+        void reset(String line) {
+            this.line = line;
+            this.position = 0;
+        }
+
+        String next() {
+            skipSpaces();
+            int start = position;
+            while (position < line.length() && !Character.isWhitespace(line.charAt(position)))
+                position++;
+            if (start == position)
+                throw new ArrayIndexOutOfBoundsException("Missing field");
+            return line.substring(start, position);
+        }
+
+        int nextInt() {
+            skipSpaces();
+            int start = position;
+            boolean negative = position < line.length() && line.charAt(position) == '-';
+            if (negative)
+                position++;
+            int value = 0;
+            while (position < line.length() && !Character.isWhitespace(line.charAt(position))) {
+                int digit = line.charAt(position++) - '0';
+                if (digit < 0 || digit > 9)
+                    throw new NumberFormatException("Not a number: " + line.substring(start));
+                if (value > (Integer.MAX_VALUE - digit) / 10)
+                    throw new NumberFormatException("Number too large: " + line.substring(start));
+                value = value * 10 + digit;
+            }
+            if (position == start + (negative ? 1 : 0))
+                throw new NumberFormatException("Missing number");
+            return negative ? -value : value;
+        }
+
+        String rest() {
+            skipSpaces();
+            return line.substring(position);
+        }
+
+        private void skipSpaces() {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position)))
+                position++;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class RoadNetworkIOTest {
+	private Graph graph;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  file = File.createTempFile("network", ".tmp");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+	}
+
+	@Test
+	public void testReadDimacs() throws Exception {
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("c a small road network");
+			out.println("p sp 4 7");
+			out.println("a 1 2 5");
+			out.println("a 2 1 5");
+			out.println("a 2 3 4");
+			out.println("a 3 2 4");
+			out.println("a 3 4 1");
+			out.println("a 4 3 1");
+			out.println("a 4 3 7");
+		}
+		assertEquals(3, RoadNetworkIO.readDimacs(file, graph));
+		assertEquals(4, graph.vertexSet().size());
+		assertEquals(3, graph.edgeSet().size());
+		assertEquals("Road_1_2", graph.getEdge(new Town("2"), new Town("1")).getName());
+		assertEquals(1, graph.getEdge(new Town("3"), new Town("4")).getWeight());
+	}
+
+	@Test
+	public void testDimacsRoundTripKeepsTownNames() throws Exception {
+		graph.addVertex(new Town("Town_A"));
+		graph.addVertex(new Town("Town B"));
+		graph.addVertex(new Town("Town_C"));
+		graph.addEdge(new Town("Town_A"), new Town("Town B"), 3, "Road_1");
+		graph.addEdge(new Town("Town B"), new Town("Town_C"), 2, "Road_2");
+		RoadNetworkIO.writeDimacs(new CompactGraph(graph), file);
+
+		Graph copy = new Graph();
+		assertEquals(2, RoadNetworkIO.readDimacs(file, copy));
+		assertEquals(graph.vertexSet(), copy.vertexSet());
+		assertEquals(3, copy.getEdge(new Town("Town_A"), new Town("Town B")).getWeight());
+		assertEquals(Arrays.asList("Town_A via " + copy.getEdge(new Town("Town_A"), new Town("Town B")).getName()
+				+ " to Town B 3 mi"), copy.shortestPath(new Town("Town_A"), new Town("Town B")));
+	}
+
+	@Test
+	public void testCsvRoundTrip() throws Exception {
+		graph.addVertex(new Town("Aguirre, Christian"));
+		graph.addVertex(new Town("Town_2"));
+		graph.addEdge(new Town("Aguirre, Christian"), new Town("Town_2"), 4, "Road \"A\"");
+		graph.addEdge(new Town("Aguirre, Christian"), new Town("Town_2"), 6, "Road_B");
+		RoadNetworkIO.writeCsv(graph, file);
+
+		Graph copy = new Graph();
+		assertEquals(2, RoadNetworkIO.readCsv(file, copy));
+		assertEquals(graph.vertexSet(), copy.vertexSet());
+		assertEquals(graph.edgeSet(), copy.edgeSet());
+		assertEquals("Road \"A\"", copy.getEdge(new Town("Town_2"), new Town("Aguirre, Christian")).getName());
+	}
+
+	@Test
+	public void testReadCsvWithoutRoadNames() throws Exception {
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("Town_1,Town_2,5");
+			out.println();
+			out.println("Town_2,Town_3,2");
+		}
+		assertEquals(2, RoadNetworkIO.readCsv(file, graph));
+		assertEquals("Town_1-Town_2", graph.getEdge(new Town("Town_1"), new Town("Town_2")).getName());
+	}
+
+	@Test
+	public void testReadInChunks() throws Exception {
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("p sp 5 8");
+			for (int i = 1; i < 5; i++) {
+				out.println("a " + i + " " + (i + 1) + " " + (10 + i));
+				out.println("a " + (i + 1) + " " + i + " " + i);
+			}
+		}
+		ArrayList<Integer> sizes = new ArrayList<>();
+		assertTrue(RoadNetworkIO.readDimacs(file, 3, (roads, bytesRead, totalBytes) -> {
+			sizes.add(roads.size());
+			assertTrue(bytesRead <= totalBytes);
+			return true;
+		}));
+		assertEquals(Arrays.asList(0, 0, 0, 3, 1), sizes);
+		assertEquals(4, RoadNetworkIO.readDimacs(file, graph));
+		assertEquals(2, graph.getEdge(new Town("3"), new Town("2")).getWeight());
+		assertFalse(RoadNetworkIO.readDimacs(file, 3, (roads, bytesRead, totalBytes) -> roads.isEmpty()));
+
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("source,target,weight,name");
+			for (int i = 0; i < 5; i++)
+				out.println("Town_" + i + ",Town_" + (i + 1) + "," + i + ",Road_" + i);
+		}
+		ArrayList<String> names = new ArrayList<>();
+		assertFalse(RoadNetworkIO.readCsv(file, 2, (roads, bytesRead, totalBytes) -> {
+			for (Road road : roads)
+				names.add(road.getName());
+			return names.size() < 3;
+		}));
+		assertEquals(Arrays.asList("Road_0", "Road_1", "Road_2"), names);
+	}
+
+	@Test(expected = java.io.IOException.class)
+	public void testBadArc() throws Exception {
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("p sp 2 1");
+			out.println("a 1 3 5");
+		}
+		RoadNetworkIO.readDimacs(file, graph);
+	}
+
+	@Test
+	public void testCoordinates() throws Exception {
+		graph.addVertex(new Town("Town_1"));
+		graph.addVertex(new Town("Town_2"));
+		graph.addEdge(new Town("Town_1"), new Town("Town_2"), 1, "Road_1");
+		CompactGraph snapshot = new CompactGraph(graph);
+		TownLayout layout = TownLayout.compute(snapshot);
+		layout.setPosition(0, 10, 20);
+		layout.setPosition(1, -5, 7);
+		RoadNetworkIO.writeCoordinates(layout, file);
+
+		TownLayout other = TownLayout.compute(snapshot);
+		assertEquals(2, RoadNetworkIO.readCoordinates(file, other));
+		assertEquals(10, other.x(0), 1e-9);
+		assertEquals(20, other.y(0), 1e-9);
+		assertEquals(-5, other.getMinX(), 1e-9);
+		assertEquals(10, other.getMaxX(), 1e-9);
+	}
+}
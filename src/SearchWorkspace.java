@@ -0,0 +1,146 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Arrays;
+
+/**
+ * The arrays one Dijkstra search works in, kept by each thread and reused
+ * for every search it runs, so that repeated searches allocate nothing.
+ *
+ * Instead of clearing the arrays before each search, every search takes a
+ * new stamp, and a town's distance and parent road are only valid if its
+ * stamp matches. Towns the previous search touched therefore look
+ * unreached without being visited again. The arrays grow when a graph
+ * with more towns is searched and are otherwise kept.
+ */
+public class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private int[] distance = new int[0];
+    private int[] parentRoad = new int[0];
+    //stamp of the search that last reached each town
+    private int[] reached = new int[0];
+    //stamp of the search that has each town as one of its targets
+    private int[] wanted = new int[0];
+    private int stamp;
+    private final LongHeap heap = new LongHeap(16);
+
+    /**
+     * Returns the calling thread's workspace
+     * @return the workspace
+     */
+    public static SearchWorkspace forCurrentThread() {
+        return WORKSPACE.get();
+    }
+
+    /**
+     * Runs Dijkstra's algorithm on a snapshot from source, stopping as soon
+     * as target is settled. Any earlier search's results are discarded.
+     * @param graph the snapshot to search
+     * @param source index of the town to search from
+     * @param target index of the town to stop at, or -1 to reach every town
+     */
+    public void search(CompactGraph graph, int source, int target) {
+        start(graph, source);
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int u = LongHeap.index(entry);
+            int d = LongHeap.distance(entry);
+            if (d > distance[u])
+                continue;
+            if (u == target)
+                break;
+            relax(graph, u, d);
+        }
+    }
+
+    /**
+     * Runs Dijkstra's algorithm on a snapshot from source, stopping as soon
+     * as every one of the targets is settled, or no more towns can be
+     * reached. Any earlier search's results are discarded.
+     * @param graph the snapshot to search
+     * @param source index of the town to search from
+     * @param targets indexes of the towns to stop at; repeats are allowed
+     */
+    public void search(CompactGraph graph, int source, int[] targets) {
+        start(graph, source);
+        int remaining = 0;
+        for (int t : targets)
+            if (wanted[t] != stamp) {
+                wanted[t] = stamp;
+                remaining++;
+            }
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int u = LongHeap.index(entry);
+            int d = LongHeap.distance(entry);
+            if (d > distance[u])
+                continue;
+            if (wanted[u] == stamp && --remaining == 0)
+                break;
+            relax(graph, u, d);
+        }
+    }
+
+    /**
+     * Returns the distance the last search found to a town. If the search
+     * stopped at a target, only the target's distance is final.
+     * @param v index of the town
+     * @return the distance, or Integer.MAX_VALUE if the town was not reached
+     */
+    public int distance(int v) {
+        return reached[v] == stamp ? distance[v] : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the road the last search reached a town by
+     * @param v index of the town
+     * @return index of the road, or -1 for the source and towns not reached
+     */
+    public int parentRoad(int v) {
+        return reached[v] == stamp ? parentRoad[v] : -1;
+    }
+
+    /*
+    Makes room for the graph, takes a new stamp and queues the source
+     */
+    private void start(CompactGraph graph, int source) {
+        int n = graph.townCount();
+        if (reached.length < n) {
+            int capacity = Math.max(n, reached.length * 2);
+            distance = new int[capacity];
+            parentRoad = new int[capacity];
+            reached = new int[capacity];
+            wanted = new int[capacity];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            //the stamp wrapped around, so old stamps could match again
+            Arrays.fill(reached, 0);
+            Arrays.fill(wanted, 0);
+            stamp = 1;
+        }
+        heap.clear();
+        reach(source, 0, -1);
+        heap.add(LongHeap.pack(0, source));
+    }
+
+    private void relax(CompactGraph graph, int u, int d) {
+        for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+            int w = graph.arcTarget(arc);
+            long candidate = (long) d + graph.arcWeight(arc);
+            if (candidate < distance(w)) {
+                int capped = (int) Math.min(candidate, Integer.MAX_VALUE - 1);
+                reach(w, capped, graph.arcRoad(arc));
+                heap.add(LongHeap.pack(capped, w));
+            }
+        }
+    }
+
+    private void reach(int v, int d, int road) {
+        reached[v] = stamp;
+        distance[v] = d;
+        parentRoad[v] = road;
+    }
+}
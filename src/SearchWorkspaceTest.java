@@ -0,0 +1,178 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class SearchWorkspaceTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		town = RandomGraphs.towns(300);
+		graph = RandomGraphs.graph(town, RandomGraphs.connected(town, 50, 400, 20, 40));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testReusedWorkspaceForgetsEarlierSearches() {
+		CompactGraph compact = graph.getSnapshot();
+		SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+		assertSame(workspace, SearchWorkspace.forCurrentThread());
+		for (int s = 0; s < compact.townCount(); s += 37) {
+			ShortestPathTree tree = ShortestPathTree.dijkstra(compact, compact.getTown(s));
+			workspace.search(compact, s, -1);
+			for (int v = 0; v < compact.townCount(); v++)
+				assertEquals(tree.distance(compact.getTown(v)), workspace.distance(v));
+			assertEquals(-1, workspace.parentRoad(s));
+		}
+
+		Graph small = new Graph();
+		Town a = new Town("A");
+		Town b = new Town("B");
+		small.addVertex(a);
+		small.addVertex(b);
+		small.addVertex(new Town("C"));
+		small.addEdge(a, b, 4, "AB");
+		CompactGraph smallCompact = small.getSnapshot();
+		workspace.search(smallCompact, smallCompact.indexOf(a), -1);
+		assertEquals(4, workspace.distance(smallCompact.indexOf(b)));
+		assertEquals(Integer.MAX_VALUE, workspace.distance(smallCompact.indexOf(new Town("C"))));
+	}
+
+	@Test
+	public void testSearchStopsOnceTargetsAreSettled() {
+		CompactGraph compact = graph.getSnapshot();
+		int source = compact.indexOf(town[0]);
+		ShortestPathTree tree = ShortestPathTree.dijkstra(compact, town[0]);
+		int[] targets = new int[5];
+		for (int i = 0; i < targets.length; i++)
+			targets[i] = compact.indexOf(town[10 + 7 * i]);
+		targets[4] = targets[0];
+		SearchWorkspace workspace = SearchWorkspace.forCurrentThread();
+		workspace.search(compact, source, targets);
+		int farthest = 0;
+		for (int target : targets) {
+			assertEquals(tree.distance(compact.getTown(target)), workspace.distance(target));
+			farthest = Math.max(farthest, workspace.distance(target));
+		}
+		int unreached = 0;
+		for (int v = 0; v < compact.townCount(); v++) {
+			if (workspace.distance(v) == Integer.MAX_VALUE)
+				unreached++;
+			else
+				assertTrue(tree.distance(compact.getTown(v)) <= workspace.distance(v));
+			if (tree.distance(compact.getTown(v)) > farthest)
+				assertTrue(workspace.distance(v) > farthest);
+		}
+		assertTrue(unreached > 0);
+	}
+
+	@Test
+	public void testSnapshotFollowsVersion() {
+		CompactGraph first = graph.getSnapshot();
+		assertSame(first, graph.getSnapshot());
+		graph.shortestPath(town[0], town[1]);
+		assertSame(first, graph.getSnapshot());
+		graph.addEdge(town[0], town[1], 1, "Shortcut");
+		CompactGraph second = graph.getSnapshot();
+		assertNotSame(first, second);
+		//Tree_1 already joins the two towns, so the shortcut takes its place
+		assertEquals(first.roadCount(), second.roadCount());
+		assertEquals(1, graph.shortestPath(town[0], town[1]).size());
+	}
+
+	@Test
+	public void testParallelRoadsAddNoArcs() {
+		Town hub = new Town("Hub");
+		graph.addVertex(hub);
+		for (int i = 0; i < town.length; i += 3)
+			graph.addEdge(hub, town[i], 50, "Spoke_" + i);
+		CompactGraph before = graph.getSnapshot();
+		int arcs = before.degree(before.indexOf(hub));
+
+		for (int i = 0; i < town.length; i += 3)
+			for (int j = 0; j < 20; j++)
+				graph.addEdge(town[i], hub, 60 - j * 3, "Spoke_" + i + "_" + j);
+		CompactGraph after = graph.getSnapshot();
+		int v = after.indexOf(hub);
+		assertEquals(arcs, after.degree(v));
+		assertEquals(before.roadCount(), after.roadCount());
+		for (int arc = after.arcOffset(v); arc < after.arcOffset(v + 1); arc++)
+			assertEquals(3, after.arcWeight(arc));
+		assertEquals("Hub via Spoke_0_19 to Town_0 3 mi", graph.shortestPath(hub, town[0]).get(0));
+	}
+
+	@Test
+	public void testWeightChangesPatchSnapshot() throws Exception {
+		graph.addEdge(town[0], town[1], 2, "Fast");
+		CompactGraph first = graph.getSnapshot();
+		graph.updateEdgeWeight(town[0], town[1], "Fast", 90);
+		CompactGraph second = graph.getSnapshot();
+		assertNotSame(first, second);
+		assertEquals(first.roadCount(), second.roadCount());
+		int v = second.indexOf(town[0]);
+		for (int arc = second.arcOffset(v); arc < second.arcOffset(v + 1); arc++)
+			if (second.getTown(second.arcTarget(arc)).equals(town[1]))
+				assertEquals("Tree_1", second.getRoad(second.arcRoad(arc)).getName());
+
+		Random random = new Random(43);
+		for (int round = 0; round < 30; round++) {
+			ArrayList<Road> updates = new ArrayList<>();
+			for (Road road : graph.edgeSet())
+				if (random.nextInt(10) == 0)
+					updates.add(new Road(road.getSource(), road.getDestination(), 1 + random.nextInt(40), road.getName()));
+			graph.updateEdgeWeights(updates);
+			ShortestPathTree tree = ShortestPathTree.dijkstra(new CompactGraph(graph), town[round]);
+			for (int t = 0; t < town.length; t += 17) {
+				ArrayList<Town> towns = graph.shortestPathTowns(town[round], town[t]);
+				int length = 0;
+				for (int i = 1; i < towns.size(); i++)
+					length += graph.getEdge(towns.get(i - 1), towns.get(i)).getWeight();
+				assertEquals(tree.distance(town[t]), length);
+			}
+		}
+	}
+
+	@Test
+	public void testPathsMatchTreesAcrossThreads() throws Exception {
+		CompactGraph compact = graph.getSnapshot();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ArrayList<Future<?>> results = new ArrayList<>();
+			for (int s = 0; s < town.length; s += 23) {
+				Town source = town[s];
+				results.add(executor.submit(() -> {
+					ShortestPathTree tree = ShortestPathTree.dijkstra(compact, source);
+					for (int t = 0; t < town.length; t += 11) {
+						ArrayList<Town> towns = graph.shortestPathTowns(source, town[t]);
+						assertEquals(source, towns.get(0));
+						assertEquals(town[t], towns.get(towns.size() - 1));
+						int length = 0;
+						for (int i = 1; i < towns.size(); i++)
+							length += graph.getEdge(towns.get(i - 1), towns.get(i)).getWeight();
+						assertEquals(tree.distance(town[t]), length);
+						assertEquals(towns.size() - 1, graph.shortestPath(source, town[t]).size());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results)
+				result.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A worker process that holds one region of a sharded graph and answers
+ * searches within it for a ShardedRouter. It is started as
+ *
+ *     java ShardWorker roads.csv boundary.txt
+ *
+ * where roads.csv holds the roads inside the region, as written by
+ * RoadNetworkIO.writeCsv, and boundary.txt names the region's boundary
+ * towns, one per line.
+ *
+ * Requests arrive one per line on standard input, with fields separated
+ * by tabs, and each answer ends with a line holding only "end":
+ *
+ *     table           distances between all pairs of boundary towns,
+ *                     as "a TAB b TAB distance" lines
+ *     reach TAB town  distances from a town to the boundary towns, as
+ *                     "boundary TAB distance" lines
+ *     path TAB a TAB b  the distance on the first line, or -1 if there is
+ *                     no path, then the path in Graph.shortestPath format
+ *     quit            ends the process
+ *
+ * "ready" is written once the region is loaded. Town names must not hold
+ * tabs or line breaks.
+ */
+public class ShardWorker {
+    private final CompactGraph graph;
+    private final List<Town> boundary;
+    //the last tree searched, as paths and reaches often start from the same town
+    private ShortestPathTree lastTree;
+
+    /**
+     * Creates a worker for a region
+     * @param region the towns and roads of the region
+     * @param boundary the region's boundary towns
+     */
+    public ShardWorker(Graph region, List<Town> boundary) {
+        for (Town town : boundary)
+            region.addVertex(town);
+        this.graph = new CompactGraph(region);
+        this.boundary = boundary;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java ShardWorker roads.csv boundary.txt");
+            System.exit(2);
+        }
+        Graph region = new Graph();
+        RoadNetworkIO.readCsv(new File(args[0]), region);
+        List<Town> boundary = new ArrayList<>();
+        for (String name : Files.readAllLines(new File(args[1]).toPath(), StandardCharsets.UTF_8))
+            if (!name.isEmpty())
+                boundary.add(new Town(name));
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        new ShardWorker(region, boundary).serve(in, out);
+    }
+
+    /**
+     * Answers requests until "quit" or the end of the input
+     * @param in the requests
+     * @param out where answers are written
+     * @throws IOException if reading fails
+     */
+    public void serve(BufferedReader in, PrintWriter out) throws IOException {
+        out.println("ready");
+        out.flush();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals("quit")) {
+            String[] fields = line.split("\t");
+            switch (fields[0]) {
+                case "table":
+                    table(out);
+                    break;
+                case "reach":
+                    reach(new Town(fields[1]), out);
+                    break;
+                case "path":
+                    path(new Town(fields[1]), new Town(fields[2]), out);
+                    break;
+                default:
+                    System.err.println("Unknown request: " + line);
+            }
+            out.println("end");
+            out.flush();
+        }
+    }
+
+    private void table(PrintWriter out) {
+        for (int i = 0; i < boundary.size(); i++) {
+            ShortestPathTree tree = tree(boundary.get(i));
+            for (int j = i + 1; j < boundary.size(); j++) {
+                int distance = tree.distance(boundary.get(j));
+                if (distance != Integer.MAX_VALUE)
+                    out.println(boundary.get(i).getName() + "\t" + boundary.get(j).getName() + "\t" + distance);
+            }
+        }
+    }
+
+    private void reach(Town town, PrintWriter out) {
+        if (graph.indexOf(town) < 0)
+            return;
+        ShortestPathTree tree = tree(town);
+        for (Town b : boundary) {
+            int distance = tree.distance(b);
+            if (distance != Integer.MAX_VALUE)
+                out.println(b.getName() + "\t" + distance);
+        }
+    }
+
+    private void path(Town source, Town destination, PrintWriter out) {
+        if (graph.indexOf(source) < 0) {
+            out.println(source.equals(destination) ? 0 : -1);
+            return;
+        }
+        ShortestPathTree tree = tree(source);
+        int distance = tree.distance(destination);
+        if (distance == Integer.MAX_VALUE) {
+            out.println(-1);
+            return;
+        }
+        out.println(distance);
+        for (String step : tree.pathTo(destination))
+            out.println(step);
+    }
+
+    private ShortestPathTree tree(Town source) {
+        if (lastTree == null || !lastTree.getSource().equals(source))
+            lastTree = ShortestPathTree.dijkstra(graph, source);
+        return lastTree;
+    }
+}
@@ -0,0 +1,401 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds shortest paths in a graph split into regions, each held by its own
+ * ShardWorker process, so no single process needs the whole graph for
+ * searching. The workers run on this machine and talk to the router over
+ * their standard input and output.
+ *
+ * writeRegions splits a graph and writes a directory the router and its
+ * workers start from:
+ *
+ *     region-r.csv       the roads inside region r, read by its worker
+ *     region-r.boundary  the boundary towns of region r, one per line
+ *     cut.csv            the cut roads, which run between regions
+ *     towns.regions      the number of regions on the first line, then
+ *                        "town TAB region" for every town
+ *
+ * The router reads only the last three. It keeps the region of every town
+ * and a small overlay graph of the boundary towns: the cut roads, and for
+ * each region the distance between every pair of its boundary towns, asked
+ * from its worker once at start. A query asks the source's and
+ * destination's workers how far those towns are from their boundary towns,
+ * searches the overlay in between, and then asks the workers for the
+ * pieces of the path inside each region it passes through and joins them
+ * with the cut roads.
+ */
+public class ShardedRouter implements AutoCloseable {
+    private static final long UNREACHED = Long.MAX_VALUE;
+    static final String REGIONS_FILE = "towns.regions";
+    static final String CUT_FILE = "cut.csv";
+
+    private final int regionCount;
+    //region of every town, by name
+    private final Map<String, Integer> regionOf = new HashMap<>();
+    private final Process[] workers;
+    private final BufferedReader[] fromWorker;
+    private final PrintWriter[] toWorker;
+
+    //boundary towns are numbered 0 to overlayTown.size() - 1 in the overlay
+    private final List<String> overlayTown = new ArrayList<>();
+    private final Map<String, Integer> overlayIndex = new HashMap<>();
+    private final List<Road> cutRoads = new ArrayList<>();
+    //arcs of each overlay town as {target, weight, cut road}; the cut road is -1 inside a region
+    private final List<List<int[]>> overlayArcs = new ArrayList<>();
+
+    /**
+     * Splits a graph into regions and writes them to a directory for a
+     * ShardedRouter and its workers. Only this call needs the whole graph.
+     * @param graph the graph to split
+     * @param shards number of regions
+     * @param directory where the regions are written
+     * @throws IOException if the files cannot be written
+     */
+    public static void writeRegions(Graph graph, int shards, File directory) throws IOException {
+        CompactGraph compact = graph.getSnapshot();
+        GraphPartition partition = GraphPartition.compute(compact, shards);
+        List<List<Road>> inside = new ArrayList<>();
+        List<List<String>> boundary = new ArrayList<>();
+        for (int r = 0; r < shards; r++) {
+            inside.add(new ArrayList<>());
+            boundary.add(new ArrayList<>());
+        }
+        List<Road> cut = new ArrayList<>();
+        for (int e = 0; e < compact.roadCount(); e++) {
+            int r = partition.region(compact.roadSource(e));
+            if (r == partition.region(compact.roadDestination(e)))
+                inside.get(r).add(compact.getRoad(e));
+            else
+                cut.add(compact.getRoad(e));
+        }
+        for (int v = 0; v < compact.townCount(); v++)
+            if (partition.isBoundary(v))
+                boundary.get(partition.region(v)).add(compact.getTown(v).getName());
+
+        for (int r = 0; r < shards; r++) {
+            RoadNetworkIO.writeCsv(inside.get(r), roadsFile(directory, r));
+            Files.write(boundaryFile(directory, r).toPath(), boundary.get(r), StandardCharsets.UTF_8);
+        }
+        RoadNetworkIO.writeCsv(cut, new File(directory, CUT_FILE));
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+                new File(directory, REGIONS_FILE).toPath(), StandardCharsets.UTF_8))) {
+            out.println(shards);
+            for (int v = 0; v < compact.townCount(); v++)
+                out.println(compact.getTown(v).getName() + "\t" + partition.region(v));
+            if (out.checkError())
+                throw new IOException("Error writing " + REGIONS_FILE);
+        }
+    }
+
+    /**
+     * Starts a worker process for each region written to a directory by
+     * writeRegions, and builds the overlay
+     * @param directory the directory holding the regions
+     * @throws IOException if the files cannot be read or a worker does not
+     * start
+     */
+    public ShardedRouter(File directory) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(new File(directory, REGIONS_FILE).toPath(),
+                StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (line == null)
+                throw new IOException("Empty region index in " + directory);
+            regionCount = Integer.parseInt(line.trim());
+            while ((line = in.readLine()) != null) {
+                int tab = line.lastIndexOf('\t');
+                regionOf.put(line.substring(0, tab), Integer.parseInt(line.substring(tab + 1)));
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IOException("Bad region index in " + directory, e);
+        }
+
+        for (int r = 0; r < regionCount; r++)
+            for (String name : Files.readAllLines(boundaryFile(directory, r).toPath(), StandardCharsets.UTF_8))
+                if (!name.isEmpty()) {
+                    overlayIndex.put(name, overlayTown.size());
+                    overlayTown.add(name);
+                    overlayArcs.add(new ArrayList<>());
+                }
+        RoadNetworkIO.readCsv(new File(directory, CUT_FILE), Integer.MAX_VALUE, (roads, bytesRead, totalBytes) -> {
+            cutRoads.addAll(roads);
+            return true;
+        });
+        for (int c = 0; c < cutRoads.size(); c++) {
+            Road road = cutRoads.get(c);
+            int a = overlayIndex.get(road.getSource().getName());
+            int b = overlayIndex.get(road.getDestination().getName());
+            overlayArcs.get(a).add(new int[] {b, road.getWeight(), c});
+            overlayArcs.get(b).add(new int[] {a, road.getWeight(), c});
+        }
+
+        workers = new Process[regionCount];
+        fromWorker = new BufferedReader[regionCount];
+        toWorker = new PrintWriter[regionCount];
+        try {
+            for (int r = 0; r < regionCount; r++)
+                start(r, directory);
+            for (int r = 0; r < regionCount; r++)
+                readTable(r);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the shortest path between two towns
+     * @param source the starting town
+     * @param destination the ending town
+     * @return the path in the same format as Graph.shortestPath, or an empty
+     * list if there is no path
+     * @throws IOException if a worker cannot be reached
+     */
+    public synchronized ArrayList<String> getPath(Town source, Town destination) throws IOException {
+        ArrayList<String> path = new ArrayList<>();
+        Route route = search(source, destination);
+        if (route == null || route.distance == UNREACHED)
+            return path;
+        if (route.direct != null)
+            return route.direct;
+
+        List<Integer> chain = new ArrayList<>();
+        for (int b = route.exit; b >= 0; b = route.parent[b])
+            chain.add(0, b);
+        path.addAll(piece(route.sourceRegion, source.getName(), overlayTown.get(chain.get(0))));
+        for (int i = 1; i < chain.size(); i++) {
+            String a = overlayTown.get(chain.get(i - 1));
+            String b = overlayTown.get(chain.get(i));
+            int cut = route.parentRoad[chain.get(i)];
+            if (cut >= 0)
+                path.add(a + " via " + cutRoads.get(cut).getName() + " to " + b + " "
+                        + cutRoads.get(cut).getWeight() + " mi");
+            else
+                path.addAll(piece(regionOf.get(a), a, b));
+        }
+        path.addAll(piece(route.destinationRegion, overlayTown.get(route.exit), destination.getName()));
+        return path;
+    }
+
+    /**
+     * Returns the length of the shortest path between two towns
+     * @param source the first town
+     * @param destination the second town
+     * @return the distance, or Integer.MAX_VALUE if there is no path or a
+     * town is not in the graph
+     * @throws IOException if a worker cannot be reached
+     */
+    public synchronized int distance(Town source, Town destination) throws IOException {
+        Route route = search(source, destination);
+        if (route == null || route.distance == UNREACHED)
+            return Integer.MAX_VALUE;
+        return (int) Math.min(route.distance, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Returns the number of regions, and so of worker processes
+     * @return the number of regions
+     */
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Returns the region a town was placed in
+     * @param town the town
+     * @return the region, or -1 if the town is not in the graph
+     */
+    public int getRegion(Town town) {
+        return regionOf.getOrDefault(town.getName(), -1);
+    }
+
+    /**
+     * Stops the worker processes
+     */
+    @Override
+    public synchronized void close() {
+        for (int r = 0; r < workers.length; r++) {
+            if (workers[r] == null)
+                continue;
+            toWorker[r].println("quit");
+            toWorker[r].flush();
+            try {
+                if (!workers[r].waitFor(5, TimeUnit.SECONDS))
+                    workers[r].destroyForcibly();
+            } catch (InterruptedException e) {
+                workers[r].destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            workers[r] = null;
+        }
+    }
+
+    /*
+    Starts the worker of a region, with this program's own Java and class
+    path
+     */
+    private void start(int r, File directory) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "ShardWorker", roadsFile(directory, r).getPath(), boundaryFile(directory, r).getPath());
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        workers[r] = builder.start();
+        fromWorker[r] = new BufferedReader(new InputStreamReader(workers[r].getInputStream(), StandardCharsets.UTF_8));
+        toWorker[r] = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(workers[r].getOutputStream(), StandardCharsets.UTF_8)));
+        String ready = fromWorker[r].readLine();
+        if (!"ready".equals(ready))
+            throw new IOException("Worker for region " + r + " did not start");
+    }
+
+    private void readTable(int r) throws IOException {
+        for (String line : request(r, "table")) {
+            String[] fields = line.split("\t");
+            int a = overlayIndex.get(fields[0]);
+            int b = overlayIndex.get(fields[1]);
+            int distance = Integer.parseInt(fields[2]);
+            overlayArcs.get(a).add(new int[] {b, distance, -1});
+            overlayArcs.get(b).add(new int[] {a, distance, -1});
+        }
+    }
+
+    /*
+    Searches the overlay from the source's boundary distances to the
+    destination's. Returns null if a town is not in the graph.
+     */
+    private Route search(Town source, Town destination) throws IOException {
+        Integer sourceRegion = regionOf.get(source.getName());
+        Integer destinationRegion = regionOf.get(destination.getName());
+        if (sourceRegion == null || destinationRegion == null)
+            return null;
+        Route route = new Route(overlayTown.size(), sourceRegion, destinationRegion);
+        if (source.equals(destination)) {
+            route.distance = 0;
+            route.direct = new ArrayList<>();
+            return route;
+        }
+        if (route.sourceRegion == route.destinationRegion) {
+            List<String> answer = request(route.sourceRegion, "path\t" + source.getName() + "\t" + destination.getName());
+            long distance = Long.parseLong(answer.get(0));
+            if (distance >= 0) {
+                route.distance = distance;
+                route.direct = new ArrayList<>(answer.subList(1, answer.size()));
+            }
+        }
+
+        long[] distance = route.overlayDistance;
+        LongHeap heap = new LongHeap(16);
+        for (Map.Entry<Integer, Integer> entry : reach(route.sourceRegion, source).entrySet()) {
+            distance[entry.getKey()] = entry.getValue();
+            heap.add(LongHeap.pack(entry.getValue(), entry.getKey()));
+        }
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int u = LongHeap.index(entry);
+            if (LongHeap.distance(entry) > distance[u])
+                continue;
+            for (int[] arc : overlayArcs.get(u)) {
+                long candidate = distance[u] + arc[1];
+                if (candidate < distance[arc[0]] && candidate < Integer.MAX_VALUE) {
+                    distance[arc[0]] = candidate;
+                    route.parent[arc[0]] = u;
+                    route.parentRoad[arc[0]] = arc[2];
+                    heap.add(LongHeap.pack((int) candidate, arc[0]));
+                }
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : reach(route.destinationRegion, destination).entrySet()) {
+            int b = entry.getKey();
+            if (distance[b] != UNREACHED && distance[b] + entry.getValue() < route.distance) {
+                route.distance = distance[b] + entry.getValue();
+                route.exit = b;
+                route.direct = null;
+            }
+        }
+        return route;
+    }
+
+    //distances from a town to its region's boundary towns, by overlay index
+    private Map<Integer, Integer> reach(int region, Town town) throws IOException {
+        Map<Integer, Integer> result = new HashMap<>();
+        for (String line : request(region, "reach\t" + town.getName())) {
+            String[] fields = line.split("\t");
+            result.put(overlayIndex.get(fields[0]), Integer.parseInt(fields[1]));
+        }
+        return result;
+    }
+
+    //the steps of the shortest path between two towns of one region
+    private List<String> piece(int region, String from, String to) throws IOException {
+        if (from.equals(to))
+            return new ArrayList<>();
+        List<String> answer = request(region, "path\t" + from + "\t" + to);
+        if (Long.parseLong(answer.get(0)) < 0)
+            throw new IOException("Worker for region " + region + " has no path it reported before");
+        return answer.subList(1, answer.size());
+    }
+
+    private static File roadsFile(File directory, int r) {
+        return new File(directory, "region-" + r + ".csv");
+    }
+
+    private static File boundaryFile(File directory, int r) {
+        return new File(directory, "region-" + r + ".boundary");
+    }
+
+    private List<String> request(int region, String request) throws IOException {
+        toWorker[region].println(request);
+        toWorker[region].flush();
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = fromWorker[region].readLine()) != null && !line.equals("end"))
+            lines.add(line);
+        if (line == null)
+            throw new IOException("Worker for region " + region + " stopped");
+        return lines;
+    }
+
+    /*
+    The result of one overlay search
+     */
+    private static final class Route {
+        final int sourceRegion;
+        final int destinationRegion;
+        final long[] overlayDistance;
+        final int[] parent;
+        final int[] parentRoad;
+        long distance = UNREACHED;
+        //boundary town the path leaves the overlay at, or -1 if it stays in one region
+        int exit = -1;
+        //the whole path when it stays in the source's region
+        ArrayList<String> direct;
+
+        Route(int overlaySize, int sourceRegion, int destinationRegion) {
+            this.sourceRegion = sourceRegion;
+            this.destinationRegion = destinationRegion;
+            overlayDistance = new long[overlaySize];
+            Arrays.fill(overlayDistance, UNREACHED);
+            parent = new int[overlaySize];
+            Arrays.fill(parent, -1);
+            parentRoad = new int[overlaySize];
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ShardedRouterTest {
+	private File directory;
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("shards").toFile();
+		town = RandomGraphs.towns(120);
+		graph = RandomGraphs.graph(town, RandomGraphs.connected(town, 41, 120, 20, 40));
+		graph.addVertex(new Town("Island"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testPartitionIsBalanced() {
+		CompactGraph compact = new CompactGraph(graph);
+		GraphPartition partition = GraphPartition.compute(compact, 4);
+		int total = 0;
+		for (int r = 0; r < 4; r++) {
+			assertTrue(Math.abs(partition.regionSize(r) - compact.townCount() / 4) <= 4);
+			total += partition.regionSize(r);
+		}
+		assertEquals(compact.townCount(), total);
+		for (int e : partition.cutRoads()) {
+			assertNotEquals(partition.region(compact.roadSource(e)), partition.region(compact.roadDestination(e)));
+			assertTrue(partition.isBoundary(compact.roadSource(e)));
+		}
+	}
+
+	@Test
+	public void testPartitionCutsGridOnce() {
+		Graph grid = new Graph();
+		Town[][] cell = new Town[10][10];
+		for (int i = 0; i < 10; i++)
+			for (int j = 0; j < 10; j++) {
+				cell[i][j] = new Town(i + "_" + j);
+				grid.addVertex(cell[i][j]);
+				if (i > 0)
+					grid.addEdge(cell[i - 1][j], cell[i][j], 1, "V" + i + "_" + j);
+				if (j > 0)
+					grid.addEdge(cell[i][j - 1], cell[i][j], 1, "H" + i + "_" + j);
+			}
+		GraphPartition partition = GraphPartition.compute(new CompactGraph(grid), 2);
+		assertTrue(Math.abs(partition.regionSize(0) - 50) <= 2);
+		assertEquals(10, partition.cutRoads().length);
+	}
+
+	@Test
+	public void testWorkerAnswersRequests() throws Exception {
+		Graph region = new Graph();
+		Town a = new Town("A");
+		Town b = new Town("B");
+		Town c = new Town("C");
+		region.addVertex(a);
+		region.addVertex(b);
+		region.addVertex(c);
+		region.addEdge(a, b, 2, "AB");
+		region.addEdge(b, c, 3, "BC");
+		ShardWorker worker = new ShardWorker(region, Arrays.asList(a, c));
+		StringWriter answers = new StringWriter();
+		worker.serve(new BufferedReader(new StringReader("table\nreach\tB\npath\tA\tC\nquit\n")),
+				new PrintWriter(answers));
+		assertEquals(Arrays.asList("ready", "A\tC\t5", "end", "A\t2", "C\t3", "end",
+				"5", "A via AB to B 2 mi", "B via BC to C 3 mi", "end"),
+				Arrays.asList(answers.toString().split("\\R")));
+	}
+
+	@Test
+	public void testShardedPathsMatchWholeGraph() throws Exception {
+		CompactGraph compact = new CompactGraph(graph);
+		ShardedRouter.writeRegions(graph, 3, directory);
+		try (ShardedRouter router = new ShardedRouter(directory)) {
+			assertEquals(3, router.getRegionCount());
+			assertTrue(router.getRegion(town[5]) >= 0);
+			assertEquals(-1, router.getRegion(new Town("Nowhere")));
+			for (int s = 0; s < town.length; s += 17) {
+				ShortestPathTree tree = ShortestPathTree.dijkstra(compact, town[s]);
+				for (int t = 0; t < town.length; t += 7) {
+					ArrayList<String> path = router.getPath(town[s], town[t]);
+					assertEquals(tree.distance(town[t]), router.distance(town[s], town[t]));
+					assertEquals(tree.distance(town[t]), walk(path, town[s], town[t]));
+				}
+			}
+			assertTrue(router.getPath(town[0], new Town("Island")).isEmpty());
+			assertEquals(Integer.MAX_VALUE, router.distance(town[0], new Town("Island")));
+			assertTrue(router.getPath(town[0], new Town("Nowhere")).isEmpty());
+		}
+	}
+
+	@Test
+	public void testManagerOpensRouterFromRegionFiles() throws Exception {
+		TownGraphManager manager = new TownGraphManager();
+		for (Road road : graph.edgeSet())
+			manager.addRoad(road.getSource().getName(), road.getDestination().getName(), road.getWeight(),
+					road.getName());
+		try (ShardedRouter router = manager.openShardedRouter(2, directory)) {
+			assertTrue(new File(directory, ShardedRouter.REGIONS_FILE).exists());
+			assertTrue(new File(directory, ShardedRouter.CUT_FILE).exists());
+			for (int t = 0; t < town.length; t += 13)
+				assertEquals(manager.getDistance(town[3].getName(), town[t].getName()),
+						router.distance(town[3], town[t]));
+		}
+	}
+
+	/*
+	Follows a path, checking each step starts where the last one ended and
+	uses a real road, and returns its length
+	 */
+	private int walk(ArrayList<String> path, Town source, Town destination) {
+		String at = source.getName();
+		int length = 0;
+		for (String step : path) {
+			String[] words = step.split(" ");
+			assertEquals(at, words[0]);
+			Road road = graph.getEdge(new Town(words[0]), new Town(words[4]));
+			assertNotNull(road);
+			length += Integer.parseInt(words[5]);
+			at = words[4];
+		}
+		assertEquals(destination.getName(), at);
+		return length;
+	}
+}
@@ -0,0 +1,410 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * The shortest paths from one Town to every other Town, as the distance to
+ * each town and the road it is reached by. This is what
+ * Graph.dijkstraShortestPath computes, kept in arrays so that a whole tree
+ * can be searched once and queried for many destinations.
+ *
+ * Two algorithms are provided. Dijkstra's algorithm settles one town at a
+ * time. Delta-stepping groups towns into buckets of distances delta wide
+ * and relaxes the roads of a whole bucket in parallel: roads no longer than
+ * delta, which may reach towns in the same bucket, are relaxed repeatedly
+ * until the bucket stops changing, and the longer roads once afterwards.
+ * With many cores it finishes large trees much sooner.
+ *
+ * Both give the same distances. When several shortest paths lead to a
+ * town, both choose the one arriving by the road with the lowest index in
+ * the snapshot, so the trees are identical too.
+ */
+public class ShortestPathTree {
+    /**
+     * Graphs with at least this many roads are handled by parallel
+     * delta-stepping when using compute
+     */
+    public static final int PARALLEL_THRESHOLD = 100_000;
+
+    //buckets smaller than this are relaxed on the calling thread
+    private static final int PARALLEL_GRAIN = 1024;
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final CompactGraph graph;
+    private final int source;
+    private final int[] distance;
+    //road each town is reached by, or -1 for the source and unreachable towns
+    private final int[] parentRoad;
+
+    private ShortestPathTree(CompactGraph graph, int source, long[] keys) {
+        this.graph = graph;
+        this.source = source;
+        int n = keys.length;
+        distance = new int[n];
+        parentRoad = new int[n];
+        for (int v = 0; v < n; v++) {
+            distance[v] = keys[v] == UNREACHED ? Integer.MAX_VALUE : distanceOf(keys[v]);
+            parentRoad[v] = keys[v] == UNREACHED || v == source ? -1 : roadOf(keys[v]);
+        }
+    }
+
+    /**
+     * Computes the tree of shortest paths from a town, choosing Dijkstra's
+     * algorithm or parallel delta-stepping depending on the number of roads
+     * @param graph the graph to search
+     * @param source the town the paths start from
+     * @return the shortest path tree
+     * @throws IllegalArgumentException if source is not in the graph
+     */
+    public static ShortestPathTree compute(Graph graph, Town source) {
+        CompactGraph compact = new CompactGraph(graph);
+        if (compact.roadCount() < PARALLEL_THRESHOLD)
+            return dijkstra(compact, source);
+        return deltaStepping(compact, source, defaultDelta(compact), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the tree of shortest paths from a town with Dijkstra's
+     * algorithm
+     * @param graph the snapshot to search
+     * @param source the town the paths start from
+     * @return the shortest path tree
+     * @throws IllegalArgumentException if source is not in the snapshot
+     */
+    public static ShortestPathTree dijkstra(CompactGraph graph, Town source) {
+        int s = indexOf(graph, source);
+        long[] keys = new long[graph.townCount()];
+        Arrays.fill(keys, UNREACHED);
+        keys[s] = key(0, 0);
+        LongHeap heap = new LongHeap(16);
+        heap.add(LongHeap.pack(0, s));
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int u = LongHeap.index(entry);
+            int d = LongHeap.distance(entry);
+            if (d > distanceOf(keys[u]))
+                continue;
+            for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                int w = graph.arcTarget(arc);
+                long candidate = key(d + (long) graph.arcWeight(arc), graph.arcRoad(arc));
+                if (w != s && candidate < keys[w]) {
+                    boolean shorter = distanceOf(candidate) < distanceOf(keys[w]);
+                    keys[w] = candidate;
+                    if (shorter)
+                        heap.add(LongHeap.pack(distanceOf(candidate), w));
+                }
+            }
+        }
+        return new ShortestPathTree(graph, s, keys);
+    }
+
+    /**
+     * Computes the tree of shortest paths from a town with delta-stepping,
+     * relaxing the roads of each bucket in parallel on the given pool
+     * @param graph the snapshot to search
+     * @param source the town the paths start from
+     * @param delta width of a bucket; roads up to this long are relaxed
+     * within a bucket, longer ones after it
+     * @param pool the pool to run the relaxations on
+     * @return the shortest path tree
+     * @throws IllegalArgumentException if source is not in the snapshot or
+     * delta is not positive
+     */
+    public static ShortestPathTree deltaStepping(CompactGraph graph, Town source, int delta, ForkJoinPool pool) {
+        if (delta < 1)
+            throw new IllegalArgumentException("Delta must be positive");
+        return new DeltaStepping(graph, indexOf(graph, source), delta, pool).run();
+    }
+
+    /**
+     * Returns a bucket width that suits the graph: the average road weight,
+     * so a town's light roads mostly lead into the next bucket or two
+     * @param graph the snapshot to search
+     * @return the bucket width
+     */
+    public static int defaultDelta(CompactGraph graph) {
+        if (graph.roadCount() == 0)
+            return 1;
+        long total = 0;
+        for (int e = 0; e < graph.roadCount(); e++)
+            total += graph.roadWeight(e);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, total / graph.roadCount()));
+    }
+
+    /**
+     * Returns the length of the shortest path from the source to a town
+     * @param town the destination
+     * @return the distance, or Integer.MAX_VALUE if the town cannot be
+     * reached or is not in the snapshot
+     */
+    public int distance(Town town) {
+        int v = graph.indexOf(town);
+        return v < 0 ? Integer.MAX_VALUE : distance[v];
+    }
+
+    /**
+     * Returns the town before the given one on the shortest path from the
+     * source
+     * @param town the destination
+     * @return the previous town, or null for the source and for towns that
+     * cannot be reached or are not in the snapshot
+     */
+    public Town predecessor(Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0 || parentRoad[v] < 0)
+            return null;
+        return graph.getTown(other(parentRoad[v], v));
+    }
+
+    /**
+     * Returns the road the shortest path from the source arrives at a town by
+     * @param town the destination
+     * @return the road, or null for the source and for towns that cannot be
+     * reached or are not in the snapshot
+     */
+    public Road roadTo(Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0 || parentRoad[v] < 0)
+            return null;
+        return graph.getRoad(parentRoad[v]);
+    }
+
+    /**
+     * Returns the shortest path from the source to a town
+     * @param town the destination
+     * @return the path in the same format as Graph.shortestPath, or an empty
+     * list if there is no path
+     */
+    public ArrayList<String> pathTo(Town town) {
+        ArrayList<String> path = new ArrayList<>();
+        int v = graph.indexOf(town);
+        if (v < 0 || distance[v] == Integer.MAX_VALUE)
+            return path;
+        while (v != source) {
+            int e = parentRoad[v];
+            int parent = other(e, v);
+            path.add(0, graph.getTown(parent).getName() + " via " + graph.getRoad(e).getName() + " to "
+                    + graph.getTown(v).getName() + " " + graph.roadWeight(e) + " mi");
+            v = parent;
+        }
+        return path;
+    }
+
+    public Town getSource() {
+        return graph.getTown(source);
+    }
+
+    /**
+     * Returns the snapshot this tree was computed on
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    private int other(int e, int v) {
+        return graph.roadSource(e) == v ? graph.roadDestination(e) : graph.roadSource(e);
+    }
+
+    private static int indexOf(CompactGraph graph, Town town) {
+        int v = graph.indexOf(town);
+        if (v < 0)
+            throw new IllegalArgumentException("Town is not in the graph: " + town);
+        return v;
+    }
+
+    /*
+    Distance in the high half and the road arrived by in the low half, so
+    comparing keys orders paths by length and breaks ties by road index.
+    Distances too long for an int are capped just below unreachable.
+     */
+    private static long key(long distance, int road) {
+        return (Math.min(distance, Integer.MAX_VALUE - 1) << 32) | road;
+    }
+
+    private static int distanceOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int roadOf(long key) {
+        return (int) key;
+    }
+
+    /*
+    The state of one delta-stepping search. Keys are lowered with
+    compare-and-set, so any number of threads can relax roads into the same
+    town. A town whose distance drops is added once per phase to the list
+    of changed towns, which is sorted into buckets between phases.
+     */
+    private static final class DeltaStepping {
+        private final CompactGraph graph;
+        private final int source;
+        private final int delta;
+        private final ForkJoinPool pool;
+
+        private final AtomicLongArray keys;
+        private final AtomicIntegerArray changedPhase;
+        private final int[] changed;
+        private final AtomicInteger changedCount = new AtomicInteger();
+        private int phase;
+
+        //towns waiting in each bucket; entries whose distance has moved on are skipped
+        private final TreeMap<Integer, IntList> buckets = new TreeMap<>();
+        private final int[] frontierBucket;
+        private final int[] settledBucket;
+
+        DeltaStepping(CompactGraph graph, int source, int delta, ForkJoinPool pool) {
+            this.graph = graph;
+            this.source = source;
+            this.delta = delta;
+            this.pool = pool;
+            int n = graph.townCount();
+            keys = new AtomicLongArray(n);
+            for (int v = 0; v < n; v++)
+                keys.set(v, UNREACHED);
+            changedPhase = new AtomicIntegerArray(n);
+            changed = new int[n];
+            frontierBucket = new int[n];
+            settledBucket = new int[n];
+            Arrays.fill(frontierBucket, -1);
+            Arrays.fill(settledBucket, -1);
+        }
+
+        ShortestPathTree run() {
+            keys.set(source, key(0, 0));
+            bucket(0).add(source);
+            IntList frontier = new IntList();
+            IntList settled = new IntList();
+            while (!buckets.isEmpty()) {
+                int current = buckets.firstKey();
+                IntList waiting = buckets.remove(current);
+                frontier.clear();
+                settled.clear();
+                collect(waiting, current, frontier, settled);
+                while (frontier.size > 0) {
+                    relax(frontier, true);
+                    waiting = sortChanged(current);
+                    frontier.clear();
+                    if (waiting != null)
+                        collect(waiting, current, frontier, settled);
+                }
+                relax(settled, false);
+                sortChanged(current);
+            }
+            long[] result = new long[graph.townCount()];
+            for (int v = 0; v < result.length; v++)
+                result[v] = keys.get(v);
+            return new ShortestPathTree(graph, source, result);
+        }
+
+        /*
+        Moves the towns of a bucket that really belong to it into the
+        frontier, each once per pass, and remembers them for the long roads
+         */
+        private void collect(IntList waiting, int current, IntList frontier, IntList settled) {
+            int pass = phase;
+            for (int i = 0; i < waiting.size; i++) {
+                int v = waiting.values[i];
+                if (distanceOf(keys.get(v)) / delta != current || frontierBucket[v] == pass)
+                    continue;
+                frontierBucket[v] = pass;
+                frontier.add(v);
+                if (settledBucket[v] != current) {
+                    settledBucket[v] = current;
+                    settled.add(v);
+                }
+            }
+        }
+
+        /*
+        Relaxes the short or the long roads out of every town in the list,
+        in parallel when there are enough of them
+         */
+        private void relax(IntList towns, boolean light) {
+            phase++;
+            changedCount.set(0);
+            IntStream range = IntStream.range(0, towns.size);
+            if (towns.size < PARALLEL_GRAIN) {
+                range.forEach(i -> relaxFrom(towns.values[i], light));
+            } else {
+                pool.submit(() -> range.parallel().forEach(i -> relaxFrom(towns.values[i], light))).join();
+            }
+        }
+
+        private void relaxFrom(int u, boolean light) {
+            long d = distanceOf(keys.get(u));
+            for (int arc = graph.arcOffset(u); arc < graph.arcOffset(u + 1); arc++) {
+                int weight = graph.arcWeight(arc);
+                if ((weight <= delta) != light)
+                    continue;
+                int w = graph.arcTarget(arc);
+                if (w != source && lowerTo(w, key(d + weight, graph.arcRoad(arc))))
+                    markChanged(w);
+            }
+        }
+
+        /*
+        Lowers a town's key, returning true if its distance got shorter.
+        A lower key with the same distance only changes the road used.
+         */
+        private boolean lowerTo(int w, long candidate) {
+            long current = keys.get(w);
+            while (candidate < current) {
+                if (keys.compareAndSet(w, current, candidate))
+                    return distanceOf(candidate) < distanceOf(current);
+                current = keys.get(w);
+            }
+            return false;
+        }
+
+        private void markChanged(int w) {
+            int seen = changedPhase.get(w);
+            if (seen != phase && changedPhase.compareAndSet(w, seen, phase))
+                changed[changedCount.getAndIncrement()] = w;
+        }
+
+        /*
+        Puts the towns changed by the last phase into their buckets and
+        returns the current bucket's new towns, or null if there are none
+         */
+        private IntList sortChanged(int current) {
+            int count = changedCount.get();
+            for (int i = 0; i < count; i++) {
+                int w = changed[i];
+                bucket(distanceOf(keys.get(w)) / delta).add(w);
+            }
+            return buckets.remove(current);
+        }
+
+        private IntList bucket(int index) {
+            return buckets.computeIfAbsent(index, key -> new IntList());
+        }
+    }
+
+    /*
+    A growable list of ints
+     */
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ShortestPathTreeTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+
+		  graph.addEdge(town[1], town[2], 2, "Road_1");
+		  graph.addEdge(town[1], town[3], 4, "Road_2");
+		  graph.addEdge(town[1], town[5], 6, "Road_3");
+		  graph.addEdge(town[3], town[7], 1, "Road_4");
+		  graph.addEdge(town[3], town[8], 2, "Road_5");
+		  graph.addEdge(town[4], town[8], 3, "Road_6");
+		  graph.addEdge(town[6], town[9], 3, "Road_7");
+		  graph.addEdge(town[9], town[10], 4, "Road_8");
+		  graph.addEdge(town[8], town[10], 2, "Road_9");
+		  graph.addEdge(town[5], town[10], 5, "Road_10");
+		  graph.addEdge(town[10], town[11], 3, "Road_11");
+		  graph.addEdge(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testDijkstraMatchesGraph() {
+		ShortestPathTree tree = ShortestPathTree.dijkstra(new CompactGraph(graph), town[1]);
+		for (int i = 2; i < 12; i++)
+			assertEquals(graph.shortestPath(town[1], town[i]), tree.pathTo(town[i]));
+		assertEquals(8, tree.distance(town[10]));
+		assertEquals(town[8], tree.predecessor(town[10]));
+		assertNull(tree.predecessor(town[1]));
+		assertTrue(tree.pathTo(town[1]).isEmpty());
+	}
+
+	@Test
+	public void testDeltaSteppingMatchesDijkstra() {
+		CompactGraph compact = new CompactGraph(graph);
+		ShortestPathTree dijkstra = ShortestPathTree.dijkstra(compact, town[4]);
+		for (int delta = 1; delta <= 7; delta++) {
+			ShortestPathTree stepping = ShortestPathTree.deltaStepping(compact, town[4], delta, ForkJoinPool.commonPool());
+			for (int i = 1; i < 12; i++) {
+				assertEquals(dijkstra.distance(town[i]), stepping.distance(town[i]));
+				assertEquals(dijkstra.roadTo(town[i]), stepping.roadTo(town[i]));
+			}
+		}
+	}
+
+	@Test
+	public void testUnreachableTowns() {
+		Town island = new Town("Town_12");
+		Town pier = new Town("Town_13");
+		graph.addVertex(island);
+		graph.addVertex(pier);
+		graph.addEdge(island, pier, 1, "Road_13");
+		ShortestPathTree tree = ShortestPathTree.deltaStepping(new CompactGraph(graph), town[1], 3,
+				ForkJoinPool.commonPool());
+		assertEquals(Integer.MAX_VALUE, tree.distance(island));
+		assertNull(tree.predecessor(pier));
+		assertTrue(tree.pathTo(pier).isEmpty());
+		assertEquals(Integer.MAX_VALUE, tree.distance(new Town("Town_99")));
+	}
+
+	@Test
+	public void testLargeGraphInParallel() {
+		Town[] towns = RandomGraphs.towns(3000);
+		Graph large = RandomGraphs.graph(towns, RandomGraphs.connected(towns, 40, 6000, 20, 50));
+
+		CompactGraph compact = new CompactGraph(large);
+		ShortestPathTree dijkstra = ShortestPathTree.dijkstra(compact, towns[0]);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		//a very wide bucket puts every town in one frontier, relaxed in parallel
+		for (int delta : new int[] {ShortestPathTree.defaultDelta(compact), 100_000}) {
+			ShortestPathTree parallel = ShortestPathTree.deltaStepping(compact, towns[0], delta, pool);
+			for (Town t : towns) {
+				assertEquals(dijkstra.distance(t), parallel.distance(t));
+				assertEquals(dijkstra.roadTo(t), parallel.roadTo(t));
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testManager() {
+		TownGraphManager manager = new TownGraphManager();
+		manager.addTown("A");
+		manager.addTown("B");
+		manager.addTown("C");
+		manager.addRoad("A", "B", 3, "AB");
+		manager.addRoad("B", "C", 4, "BC");
+		ShortestPathTree tree = manager.getShortestPathTree("A");
+		assertEquals(7, tree.distance(new Town("C")));
+		ArrayList<String> path = tree.pathTo(new Town("C"));
+		assertEquals(manager.getPath("A", "C"), path);
+		assertNull(manager.getShortestPathTree("D"));
+	}
+}
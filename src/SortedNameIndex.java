@@ -0,0 +1,167 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list of names kept in sorted order as names are added and removed. The
+ * names are held in a single sorted array, so a name is found with a binary
+ * search and all names sharing a prefix sit next to each other. The same
+ * name may be added more than once.
+ */
+public class SortedNameIndex {
+    private final ArrayList<String> names;
+    private final List<String> view;
+
+    /**
+     * Creates an empty index
+     */
+    public SortedNameIndex() {
+        names = new ArrayList<>();
+        view = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Adds a name to the index
+     * @param name the name to add
+     */
+    public void add(String name) {
+        names.add(lowerBound(name), name);
+    }
+
+    /**
+     * Adds many names at once. The new names are sorted and merged into the
+     * index in one pass, which is much faster than adding them one by one
+     * when there are many.
+     * @param added the names to add
+     */
+    public void addAll(Collection<String> added) {
+        if (added.isEmpty())
+            return;
+        String[] sorted = added.toArray(new String[0]);
+        Arrays.sort(sorted);
+        ArrayList<String> merged = new ArrayList<>(names.size() + sorted.length);
+        int i = 0;
+        int j = 0;
+        while (i < names.size() || j < sorted.length) {
+            if (j == sorted.length || (i < names.size() && names.get(i).compareTo(sorted[j]) <= 0))
+                merged.add(names.get(i++));
+            else
+                merged.add(sorted[j++]);
+        }
+        names.clear();
+        names.addAll(merged);
+    }
+
+    /**
+     * Removes one occurrence of each of many names in a single pass over
+     * the index
+     * @param removed the names to remove; a name given twice is removed twice
+     * @return the number of names removed
+     */
+    public int removeAll(Collection<String> removed) {
+        if (removed.isEmpty())
+            return 0;
+        String[] sorted = removed.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            while (j < sorted.length && sorted[j].compareTo(name) < 0)
+                j++;
+            if (j < sorted.length && sorted[j].equals(name))
+                j++;
+            else
+                names.set(kept++, name);
+        }
+        int count = names.size() - kept;
+        names.subList(kept, names.size()).clear();
+        return count;
+    }
+
+    /**
+     * Removes one occurrence of a name from the index
+     * @param name the name to remove
+     * @return true if the name was in the index, false otherwise
+     */
+    public boolean remove(String name) {
+        int index = lowerBound(name);
+        if (index < names.size() && names.get(index).equals(name)) {
+            names.remove(index);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns up to limit names that start with the given prefix, in sorted
+     * order. The cost depends on the number of names returned, not on the
+     * size of the index.
+     * @param prefix the text the names must start with
+     * @param limit the largest number of names to return
+     * @return the first names in sorted order that start with prefix
+     */
+    public List<String> withPrefix(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<>(Math.min(limit, 16));
+        for (int i = lowerBound(prefix); i < names.size() && result.size() < limit; i++) {
+            String name = names.get(i);
+            if (!name.startsWith(prefix))
+                break;
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Returns one page of names in sorted order. Only the names on the
+     * requested page are copied.
+     * @param offset position of the first name on the page
+     * @param limit the largest number of names on the page
+     * @return the names from offset up to offset + limit, fewer if the
+     * index ends first
+     */
+    public List<String> page(int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), names.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), names.size());
+        return new ArrayList<>(names.subList(from, to));
+    }
+
+    /**
+     * Returns the number of names in the index
+     * @return the number of names
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Returns a read-only view of the names in sorted order. The view is
+     * backed by the index, so later changes to the index show through it.
+     * @return the sorted names
+     */
+    public List<String> asList() {
+        return view;
+    }
+
+    /*
+    Position of the first name that is not less than key
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = names.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (names.get(middle).compareTo(key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
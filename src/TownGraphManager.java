@@ -2,21 +2,48 @@
  * @author Christian Aguirre
  */
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToIntFunction;
 
 import java.util.Iterator;
-import java.util.Scanner;
 
 import static java.lang.Integer.*;
 
 public class TownGraphManager implements TownGraphManagerInterface{
+    //lines of a file added to the graph together while loading
+    private static final int LOAD_CHUNK = 10_000;
 
     private Graph graph;
+    //every change to the graph, its profiles, cache or journal holds this exclusively; every read shares it
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //log of changes to the graph, or null if changes are not being saved
+    private MutationJournal journal;
+    //the last automatic compaction failure not yet reported by flushJournal
+    private final AtomicReference<IOException> compactionFailure = new AtomicReference<>();
+    //extra road weights, and the graph version they were last brought up to date with
+    private WeightProfiles weightProfiles;
+    private long weightProfilesVersion;
+    //distance index, and the graph version it was built for
+    private HubLabelIndex hubLabels;
+    private long hubLabelsVersion;
+    //distances mapped from a saved file, used instead of hubLabels when open
+    private MappedHubLabels distanceFile;
+    //recent getPath answers, or null if paths are not cached
+    private PathCache pathCache;
 
     public TownGraphManager() {
         graph = new Graph();
@@ -37,26 +64,59 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean addRoad(String town1, String town2, int weight, String roadName) {
-        Town source = new Town(town1);
-        Town destination = new Town(town2);
-        getGraph().addVertex(source);
-        getGraph().addVertex(destination);
-        Road result = getGraph().addEdge(source, destination, weight, roadName);
-        return result != null;
+        lock.writeLock().lock();
+        try {
+            Town source = new Town(town1);
+            Town destination = new Town(town2);
+            getGraph().addVertex(source);
+            getGraph().addVertex(destination);
+            Road result = getGraph().addEdge(source, destination, weight, roadName);
+            if (result != null && journal != null) {
+                journal.addRoad(town1, town2, weight, roadName);
+            }
+            return result != null;
+        } finally {
+            unlockWrite();
+        }
     }
 
     /**
-     * Returns the name of the road that both towns are connected through
+     * Returns the name of the road that both towns are connected through.
+     * If several parallel roads connect them, the fastest one is returned.
      * @param town1 name of town 1 (lastname, firstname)
      * @param town2 name of town 2 (lastname, firstname)
      * @return name of road if town 1 and town2 are in the same road, returns null if not
      */
     @Override
     public String getRoad(String town1, String town2) {
-        Road result = getGraph().getEdge(new Town(town1), new Town(town2));
-        if(result == null)
-            return null;
-        return result.getName();
+        lock.readLock().lock();
+        try {
+            Road result = getGraph().getEdge(new Town(town1), new Town(town2));
+            if(result == null)
+                return null;
+            return result.getName();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of all roads directly connecting two towns, fastest
+     * first
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @return the names of the roads between the towns, empty if there are none
+     */
+    public ArrayList<String> getRoads(String town1, String town2) {
+        lock.readLock().lock();
+        try {
+            ArrayList<String> result = new ArrayList<>();
+            for (Road road : getGraph().roadsBetween(new Town(town1), new Town(town2)))
+                result.add(road.getName());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -66,7 +126,16 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean addTown(String v) {
-        return getGraph().addVertex(new Town(v));
+        lock.writeLock().lock();
+        try {
+            boolean added = getGraph().addVertex(new Town(v));
+            if (added && journal != null) {
+                journal.addTown(v);
+            }
+            return added;
+        } finally {
+            unlockWrite();
+        }
     }
 
     /**
@@ -76,15 +145,20 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public Town getTown(String name) {
-        Set<Town> vertices = getGraph().vertexSet();
-        Iterator<Town> iterator = vertices.iterator();
-        Town target = new Town(name);
-        while(iterator.hasNext()) {
-            Town current = iterator.next();
-            if(current.equals(target))
-                return current;
+        lock.readLock().lock();
+        try {
+            Set<Town> vertices = getGraph().vertexSet();
+            Iterator<Town> iterator = vertices.iterator();
+            Town target = new Town(name);
+            while(iterator.hasNext()) {
+                Town current = iterator.next();
+                if(current.equals(target))
+                    return current;
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
     }
 
     /**
@@ -94,7 +168,12 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean containsTown(String v) {
-        return getGraph().containsVertex(new Town(v));
+        lock.readLock().lock();
+        try {
+            return getGraph().containsVertex(new Town(v));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -105,9 +184,14 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean containsRoadConnection(String town1, String town2) {
-        Town source = new Town(town1);
-        Town destination = new Town(town2);
-        return getGraph().containsEdge(source, destination);
+        lock.readLock().lock();
+        try {
+            Town source = new Town(town1);
+            Town destination = new Town(town2);
+            return getGraph().containsEdge(source, destination);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -116,12 +200,52 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public ArrayList<String> allRoads() {
-        Set<Road> roads = getGraph().edgeSet();
-        ArrayList<String> result = new ArrayList<>();
-        for(Road r: roads)
-            result.add(r.getName());
-        Collections.sort(result);
-        return result;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(getGraph().getRoadNames().asList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of road names in sorted order, copying only the
+     * names on that page
+     * @param offset position of the first road name on the page
+     * @param limit the largest number of road names on the page
+     * @return the road names on the requested page
+     */
+    public List<String> allRoads(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return getGraph().getRoadNames().page(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a read-only view of all road names in sorted order. The view
+     * is backed by the graph and reflects later changes. It is not guarded
+     * by the manager's lock, so only use it while no other thread changes
+     * the graph; allRoads returns a copy that is safe to keep.
+     * @return the sorted road names
+     */
+    public List<String> roadNames() {
+        return getGraph().getRoadNames().asList();
+    }
+
+    /**
+     * Returns the number of roads in the graph
+     * @return the number of roads
+     */
+    public int roadCount() {
+        lock.readLock().lock();
+        try {
+            return getGraph().getRoadNames().size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -133,13 +257,18 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean deleteRoadConnection(String town1, String town2, String road) {
-        Town source = new Town(town1);
-        Town destination = new Town(town2);
-        Road target = getGraph().getEdge(source, destination);
-        if(target == null)
-            return false;
-        getGraph().removeEdge(source, destination, target.getWeight(), road);
-        return true;
+        lock.writeLock().lock();
+        try {
+            Town source = new Town(town1);
+            Town destination = new Town(town2);
+            boolean removed = getGraph().removeEdge(source, destination, -1, road) != null;
+            if (removed && journal != null) {
+                journal.deleteRoadConnection(town1, town2, road);
+            }
+            return removed;
+        } finally {
+            unlockWrite();
+        }
     }
 
     /**
@@ -149,7 +278,159 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public boolean deleteTown(String v) {
-        return getGraph().removeVertex(new Town(v));
+        lock.writeLock().lock();
+        try {
+            boolean removed = getGraph().removeVertex(new Town(v));
+            if (removed && journal != null) {
+                journal.deleteTown(v);
+            }
+            return removed;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * Adds many towns at once. The graph's index of town names is updated
+     * once for the whole batch, which is much faster than calling addTown
+     * for each town.
+     * @param towns names of the towns to add
+     * @return the number of towns added; towns already in the graph are
+     * skipped
+     */
+    public int addTowns(Collection<String> towns) {
+        lock.writeLock().lock();
+        try {
+            List<Town> newTowns = new ArrayList<>(towns.size());
+            for (String town : towns)
+                newTowns.add(new Town(town));
+            List<Town> added = getGraph().addVertices(newTowns);
+            if (!added.isEmpty() && journal != null) {
+                for (Town town : added)
+                    journal.addTown(town.getName());
+            }
+            return added.size();
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * Adds many roads at once, and any of their towns that are new. The
+     * graph's indexes are updated once for the whole batch, which is much
+     * faster than calling addRoad for each road.
+     * @param roads the roads to add
+     * @return the number of roads added; roads already in the graph are
+     * skipped
+     */
+    public int addRoads(Collection<Road> roads) {
+        return addRoads(roads, null, true);
+    }
+
+    /**
+     * Deletes many towns, and all their roads, at once
+     * @param towns names of the towns to delete
+     * @return the number of towns deleted; names of towns not in the graph
+     * are skipped
+     */
+    public int deleteTowns(Collection<String> towns) {
+        lock.writeLock().lock();
+        try {
+            List<Town> doomed = new ArrayList<>(towns.size());
+            for (String town : towns)
+                doomed.add(new Town(town));
+            List<Town> removed = getGraph().removeVertices(doomed);
+            if (!removed.isEmpty() && journal != null) {
+                for (Town town : removed)
+                    journal.deleteTown(town.getName());
+            }
+            return removed.size();
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * Changes the weight of a road, for example to reflect traffic. Cached
+     * paths and indexes that depend on the road are brought up to date.
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param road the road name
+     * @param weight the new weight
+     * @return true if the road exists
+     * @throws IllegalArgumentException if weight is negative
+     */
+    public boolean updateRoadWeight(String town1, String town2, String road, int weight) {
+        lock.writeLock().lock();
+        try {
+            Road update = new Road(new Town(town1), new Town(town2), weight, road);
+            if (!getGraph().roadsBetween(update.getSource(), update.getDestination()).contains(update))
+                return false;
+            updateRoadWeights(Collections.singletonList(update));
+            return true;
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /**
+     * Changes the weights of many roads at once. Each update is a Road with
+     * the towns and name of a road in the graph and its new weight. No
+     * query sees some of the updates without the others.
+     * @param updates the roads with their new weights
+     * @return the number of roads whose weight changed
+     * @throws IllegalArgumentException if a weight is negative
+     */
+    public int updateRoadWeights(Collection<Road> updates) {
+        lock.writeLock().lock();
+        try {
+            long before = getGraph().getVersion();
+            List<Road> updated = getGraph().updateEdgeWeights(updates);
+            if (!updated.isEmpty())
+                distancesChanged(updated, before);
+            if (!updated.isEmpty() && journal != null) {
+                //the journal has no weight record; replaying a delete and an add gives the same graph
+                for (Road road : updated) {
+                    String source = road.getSource().getName();
+                    String destination = road.getDestination().getName();
+                    journal.deleteRoadConnection(source, destination, road.getName());
+                    journal.addRoad(source, destination, road.getWeight(), road.getName());
+                }
+            }
+            return updated.size();
+        } finally {
+            unlockWrite();
+        }
+    }
+
+    /*
+    Adds roads and their towns in two bulk calls, recording the names of
+    new towns if newTowns is not null. Roads left out of the journal must
+    be saved by compacting it afterwards.
+     */
+    private int addRoads(Collection<Road> roads, List<String> newTowns, boolean journaled) {
+        lock.writeLock().lock();
+        try {
+            List<Town> towns = new ArrayList<>(roads.size() * 2);
+            for (Road road : roads) {
+                towns.add(road.getSource());
+                towns.add(road.getDestination());
+            }
+            List<Town> addedTowns = getGraph().addVertices(towns);
+            List<Road> added = getGraph().addEdges(roads);
+            if (newTowns != null)
+                for (Town town : addedTowns)
+                    newTowns.add(town.getName());
+            if (journaled && journal != null && !added.isEmpty()) {
+                //replaying a road adds its towns, so towns need no records of their own
+                for (Road road : added)
+                    journal.addRoad(road.getSource().getName(), road.getDestination().getName(),
+                            road.getWeight(), road.getName());
+            }
+            return added.size();
+        } finally {
+            unlockWrite();
+        }
     }
 
     /**
@@ -158,13 +439,68 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public ArrayList<String> allTowns() {
-        Set<Town> towns = getGraph().vertexSet();
-        ArrayList<String> result = new ArrayList<>();
-        for(Town t: towns)
-            result.add(t.getName());
-        Collections.sort(result);
-        return result;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(getGraph().getTownNames().asList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of town names in alphabetical order, copying only
+     * the names on that page
+     * @param offset position of the first town name on the page
+     * @param limit the largest number of town names on the page
+     * @return the town names on the requested page
+     */
+    public List<String> allTowns(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return getGraph().getTownNames().page(offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
+    /**
+     * Returns a read-only view of all town names in alphabetical order. The
+     * view is backed by the graph and reflects later changes. It is not
+     * guarded by the manager's lock, so only use it while no other thread
+     * changes the graph; allTowns returns a copy that is safe to keep.
+     * @return the sorted town names
+     */
+    public List<String> townNames() {
+        return getGraph().getTownNames().asList();
+    }
+
+    /**
+     * Returns the number of towns in the graph
+     * @return the number of towns
+     */
+    public int townCount() {
+        lock.readLock().lock();
+        try {
+            return getGraph().getTownNames().size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit town names that start with the given prefix, in
+     * alphabetical order, for completing partially typed town names
+     * @param prefix the text typed so far
+     * @param limit the largest number of names to return
+     * @return the matching town names
+     */
+    public List<String> townsWithPrefix(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return getGraph().townsWithPrefix(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -176,12 +512,26 @@ public class TownGraphManager implements TownGraphManagerInterface{
      */
     @Override
     public ArrayList<String> getPath(String town1, String town2) {
+        lock.readLock().lock();
+        try {
+            String profile = activeWeightProfile();
+            if (!profile.equals(WeightProfiles.DISTANCE))
+                return getPath(town1, town2, profile);
+            return distancePath(town1, town2);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private ArrayList<String> distancePath(String town1, String town2) {
         Town source = new Town(town1);
         Town destination = new Town(town2);
         if(getGraph().containsVertex(source) &&
                 getGraph().containsVertex(destination) &&
                  !getGraph().edgesOf(source).isEmpty() &&
                 !getGraph().edgesOf(destination).isEmpty()) {
+            if (pathCache != null)
+                return cachedPath(source, destination);
             ArrayList<String> result = getGraph().shortestPath(source, destination);
             if(result == null)
                 return new ArrayList<>();
@@ -190,7 +540,747 @@ public class TownGraphManager implements TownGraphManagerInterface{
         return new ArrayList<>();
     }
 
+    /**
+     * Returns the length of the shortest path between two towns. If a
+     * distance file is open, the answer comes from the file, even for towns
+     * that are not loaded into this graph. Otherwise the first call after
+     * the graph changes builds a hub label index, which makes the following
+     * calls very fast.
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @return the distance, or Integer.MAX_VALUE if there is no path or a
+     * town does not exist
+     */
+    public int getDistance(String town1, String town2) {
+        lock.readLock().lock();
+        try {
+            DistanceOracle oracle = distanceFile != null ? distanceFile : getHubLabels();
+            return oracle.distance(new Town(town1), new Town(town2));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the hub label index for the current graph, rebuilding it if
+     * towns or roads have changed since it was built
+     * @return the index
+     */
+    public synchronized HubLabelIndex getHubLabels() {
+        if (hubLabels == null || hubLabelsVersion != getGraph().getVersion()) {
+            hubLabels = new HubLabelIndex(new CompactGraph(getGraph()));
+            hubLabelsVersion = getGraph().getVersion();
+        }
+        return hubLabels;
+    }
+
+    /**
+     * Saves the distances between all towns of the current graph to a file
+     * that openDistanceFile can use, in this or another program
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void saveDistanceFile(File file) throws IOException {
+        lock.readLock().lock();
+        try {
+            getHubLabels().save(file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Answers getDistance from a file saved by saveDistanceFile. The file is
+     * memory mapped rather than read, so opening it is nearly instant and
+     * programs using the same file share it in memory. Changes made to this
+     * graph afterwards are not reflected until the file is closed.
+     * @param file the file to open
+     * @throws IOException if the file cannot be opened or is not valid
+     */
+    public void openDistanceFile(File file) throws IOException {
+        lock.writeLock().lock();
+        try {
+            MappedHubLabels opened = MappedHubLabels.open(file);
+            closeDistanceFile();
+            distanceFile = opened;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops using the distance file, so getDistance follows the graph again
+     * @throws IOException if the file cannot be closed
+     */
+    public void closeDistanceFile() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (distanceFile != null) {
+                try {
+                    distanceFile.close();
+                } finally {
+                    distanceFile = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+    Answers a path from the cache, or finds and caches it
+     */
+    private ArrayList<String> cachedPath(Town source, Town destination) {
+        ArrayList<String> cached = pathCache.get(source, destination);
+        if (cached != null)
+            return cached;
+        ArrayList<Town> towns = getGraph().shortestPathTowns(source, destination);
+        ArrayList<Road> roads = new ArrayList<>();
+        for (int i = 1; i < towns.size(); i++)
+            roads.add(getGraph().getEdge(towns.get(i - 1), towns.get(i)));
+        return pathCache.put(towns, roads, source, destination);
+    }
+
+    /**
+     * Starts caching getPath answers. The cache follows changes to the
+     * graph, dropping only the answers a change may have made wrong. Any
+     * cache already in use is replaced.
+     * @param capacity largest number of town pairs kept
+     * @param policy how to choose pairs to forget when the cache is full
+     */
+    public void enablePathCache(int capacity, PathCache.Policy policy) {
+        lock.writeLock().lock();
+        try {
+            disablePathCache();
+            pathCache = new PathCache(capacity, policy);
+            getGraph().addGraphListener(pathCache);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops caching getPath answers
+     */
+    public void disablePathCache() {
+        lock.writeLock().lock();
+        try {
+            if (pathCache != null) {
+                getGraph().removeGraphListener(pathCache);
+                pathCache = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the path cache, for example to read its hit rate
+     * @return the cache, or null if paths are not cached
+     */
+    public PathCache getPathCache() {
+        lock.readLock().lock();
+        try {
+            return pathCache;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the shortest route through several towns in the order given
+     * @param stops names of the towns, in the order to visit them
+     * @return the roads along the route, in the same format as getPath, or
+     * an empty list if a town does not exist or cannot be reached
+     */
+    public ArrayList<String> getPath(List<String> stops) {
+        MultiStopRouter router = multiStopRouter(stops);
+        return router == null ? new ArrayList<>() : router.ordered().getPath();
+    }
+
+    /**
+     * Plans a short route through several towns, choosing the order to
+     * visit them in. The route starts at the first town.
+     * @param stops names of the towns, starting with the first
+     * @param roundTrip whether the route ends back at the first town
+     * @return the route, or null if a town does not exist
+     */
+    public MultiStopRouter.Route planRoute(List<String> stops, boolean roundTrip) {
+        MultiStopRouter router = multiStopRouter(stops);
+        return router == null ? null : router.optimized(roundTrip);
+    }
+
+    private MultiStopRouter multiStopRouter(List<String> stops) {
+        lock.readLock().lock();
+        try {
+            List<Town> towns = new ArrayList<>();
+            for (String stop : stops) {
+                Town town = new Town(stop);
+                if (!getGraph().containsVertex(town))
+                    return null;
+                towns.add(town);
+            }
+            return towns.isEmpty() ? null : new MultiStopRouter(getGraph(), towns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the shortest path from town 1 to town 2 measured with a
+     * weight profile
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param profile name of the weight profile
+     * @return the roads along the path with their weights in the profile,
+     * or an empty list if there is no path
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public ArrayList<String> getPath(String town1, String town2, String profile) {
+        lock.readLock().lock();
+        try {
+            if (profile.equals(WeightProfiles.DISTANCE))
+                return distancePath(town1, town2);
+            return getWeightProfiles().shortestPath(profile, new Town(town1), new Town(town2));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+    Returns the weight profiles, first carrying them over to the current
+    graph if towns or roads have changed since they were last used. Callers
+    must hold the lock, and the write lock to change a profile; the monitor
+    only keeps readers from carrying the profiles over at the same time.
+     */
+    synchronized WeightProfiles getWeightProfiles() {
+        if (weightProfiles == null)
+            weightProfiles = new WeightProfiles(new CompactGraph(getGraph()));
+        else if (weightProfilesVersion != getGraph().getVersion())
+            weightProfiles = weightProfiles.rebase(new CompactGraph(getGraph()));
+        weightProfilesVersion = getGraph().getVersion();
+        return weightProfiles;
+    }
+
+    /**
+     * Adds a weight profile in which every road starts at its distance
+     * @param profile name of the profile, such as "time"
+     * @param unit unit shown after weights in paths, such as "min"
+     * @return true if the profile was added, false if it already exists
+     */
+    public boolean defineWeightProfile(String profile, String unit) {
+        lock.writeLock().lock();
+        try {
+            return getWeightProfiles().defineProfile(profile, unit);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Chooses the weight profile getPath uses
+     * @param profile name of the profile
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public void setActiveWeightProfile(String profile) {
+        lock.writeLock().lock();
+        try {
+            getWeightProfiles().setActiveProfile(profile);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the weight of a road in a profile other than distance
+     * @param profile name of the profile
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @param roadName name of the road
+     * @param weight the new weight
+     * @return true if the road was found
+     * @throws IllegalArgumentException if there is no such profile or it is
+     * the distance profile
+     */
+    public boolean setRoadWeight(String profile, String town1, String town2, String roadName, int weight) {
+        lock.writeLock().lock();
+        try {
+            for (Road road : getGraph().roadsBetween(new Town(town1), new Town(town2)))
+                if (road.getName().equals(roadName))
+                    return getWeightProfiles().setWeight(profile, road, weight);
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the weights of many roads in a profile other than distance at
+     * once. Each update is a Road with the towns and name of a road in the
+     * graph and its new weight in the profile.
+     * @param profile name of the profile
+     * @param updates the roads with their new weights
+     * @return the number of roads found
+     * @throws IllegalArgumentException if there is no such profile, it is
+     * the distance profile, or a weight is negative; the profile is then
+     * left unchanged
+     */
+    public int setRoadWeights(String profile, Collection<Road> updates) {
+        lock.writeLock().lock();
+        try {
+            return getWeightProfiles().setWeights(profile, updates);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes the weight of every road in a profile other than distance,
+     * for example travel time from distance and speed limit
+     * @param profile name of the profile
+     * @param weightOfRoad gives the new weight of a road
+     * @throws IllegalArgumentException if there is no such profile, it is
+     * the distance profile, or a weight is negative
+     */
+    public void setRoadWeights(String profile, ToIntFunction<Road> weightOfRoad) {
+        lock.writeLock().lock();
+        try {
+            WeightProfiles profiles = getWeightProfiles();
+            CompactGraph snapshot = profiles.getGraph();
+            profiles.updateWeights(profile, e -> weightOfRoad.applyAsInt(snapshot.getRoad(e)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+    Copies new road weights into the distance profile, so that a weight
+    change does not carry the profiles over to a new snapshot. Profiles
+    that were already out of date are left for getWeightProfiles.
+     */
+    private synchronized void distancesChanged(List<Road> updated, long versionBefore) {
+        if (weightProfiles == null || weightProfilesVersion != versionBefore)
+            return;
+        weightProfiles.distancesChanged(updated);
+        weightProfilesVersion = getGraph().getVersion();
+    }
+
+    private synchronized String activeWeightProfile() {
+        return weightProfiles == null ? WeightProfiles.DISTANCE : weightProfiles.getActiveProfile();
+    }
+
+    /**
+     * Returns the names of the towns along the shortest path from town 1 to
+     * town 2, for drawing the path on a map
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @return the town names in order, or an empty list if there is no path
+     */
+    public ArrayList<String> getPathTowns(String town1, String town2) {
+        lock.readLock().lock();
+        try {
+            Town source = new Town(town1);
+            Town destination = new Town(town2);
+            ArrayList<String> result = new ArrayList<>();
+            if (getGraph().containsVertex(source) && getGraph().containsVertex(destination)) {
+                for (Town town : getGraph().shortestPathTowns(source, destination))
+                    result.add(town.getName());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Answers a stream of path requests with a stream of paths, searching
+     * up to maxInFlight at a time on the common fork/join pool. See
+     * PathQueryProcessor for how the two streams are paced.
+     * @param requests the requests
+     * @param maxInFlight the most requests taken but not yet delivered
+     * @return the results, in the order they finish
+     */
+    public Flow.Publisher<PathQueryProcessor.Result> getPaths(Flow.Publisher<PathQueryProcessor.Request> requests,
+                                                              int maxInFlight) {
+        return getPaths(requests, maxInFlight, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Answers a stream of path requests with a stream of paths
+     * @param requests the requests
+     * @param maxInFlight the most requests taken but not yet delivered
+     * @param executor runs the searches
+     * @return the results, in the order they finish
+     */
+    public Flow.Publisher<PathQueryProcessor.Result> getPaths(Flow.Publisher<PathQueryProcessor.Request> requests,
+                                                              int maxInFlight, Executor executor) {
+        PathQueryProcessor processor = new PathQueryProcessor(this, maxInFlight, executor);
+        requests.subscribe(processor);
+        return processor;
+    }
+
+    /**
+     * Adds the towns and roads of a road network file to the graph. The
+     * format is chosen by the file extension: ".gr" for DIMACS shortest path
+     * files and ".csv" for CSV edge lists; see RoadNetworkIO. If a journal
+     * is enabled it is compacted afterwards, which saves the whole import
+     * at once instead of one record per road.
+     * @param file the file to read
+     * @return the number of roads added
+     * @throws IOException if the file cannot be read or is not valid
+     * @throws IllegalArgumentException if the extension is not recognized
+     */
+    public int importRoadNetwork(File file) throws IOException {
+        return importRoadNetwork(file, LOAD_CHUNK, null);
+    }
+
+    /**
+     * Adds the towns and roads of a road network file to the graph,
+     * reporting to the listener after every batchSize lines. Each batch is
+     * added with one bulk call under the write lock, so queries can run
+     * between batches. A DIMACS file is read completely before any road is
+     * added, since an arc later in the file may shorten a road; until then
+     * the listener is told of no new towns.
+     *
+     * If the listener asks to stop, the towns and roads loaded so far stay
+     * in the graph.
+     * @param file the file to read
+     * @param batchSize number of lines, and for DIMACS files then of roads,
+     * between progress reports
+     * @param listener receives the towns added by each batch, or null
+     * @return the number of roads added
+     * @throws IOException if the file cannot be read or is not valid
+     * @throws IllegalArgumentException if the extension is not recognized
+     */
+    public int importRoadNetwork(File file, int batchSize, LoadListener listener) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (!name.endsWith(".gr") && !name.endsWith(".csv"))
+            throw new IllegalArgumentException("Unknown road network format: " + file);
+        int[] added = {0};
+        RoadNetworkIO.RoadConsumer consumer = (roads, bytesRead, totalBytes) -> {
+            List<String> newTowns = new ArrayList<>();
+            for (int from = 0; from < roads.size(); from += LOAD_CHUNK)
+                added[0] += addRoads(roads.subList(from, Math.min(roads.size(), from + LOAD_CHUNK)), newTowns, false);
+            return listener == null || listener.batchLoaded(newTowns, bytesRead, totalBytes);
+        };
+        try {
+            if (name.endsWith(".gr"))
+                RoadNetworkIO.readDimacs(file, batchSize, consumer);
+            else
+                RoadNetworkIO.readCsv(file, batchSize, consumer);
+        } catch (IOException | RuntimeException e) {
+            //the roads added so far stay, so they still need saving
+            try {
+                compactJournal();
+            } catch (IOException compactionError) {
+                e.addSuppressed(compactionError);
+            }
+            throw e;
+        }
+        compactJournal();
+        return added[0];
+    }
+
+    /**
+     * Writes the graph to a road network file, in the format chosen by the
+     * file extension as for importRoadNetwork
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the extension is not recognized
+     */
+    public void exportRoadNetwork(File file) throws IOException {
+        lock.readLock().lock();
+        try {
+            String name = file.getName().toLowerCase();
+            if (name.endsWith(".gr"))
+                RoadNetworkIO.writeDimacs(new CompactGraph(getGraph()), file);
+            else if (name.endsWith(".csv"))
+                RoadNetworkIO.writeCsv(getGraph(), file);
+            else
+                throw new IllegalArgumentException("Unknown road network format: " + file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts saving every change to the graph in a journal directory, so the
+     * graph can be rebuilt after a restart without reloading the original
+     * file. Towns and roads already saved in the directory are loaded first.
+     * If the graph already had towns, a snapshot of it is saved straight
+     * away, so they are restored along with later changes.
+     * @param directory the journal directory, created if needed
+     * @throws IOException if the journal cannot be read or created
+     * @throws IllegalStateException if a journal is already enabled
+     */
+    public void enableJournal(File directory) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journal != null)
+                throw new IllegalStateException("Journal already enabled");
+            boolean loaded = !getGraph().getVertices().isEmpty();
+            journal = MutationJournal.open(directory, this);
+            //the log only holds changes, so towns loaded before it started need a snapshot
+            if (loaded) {
+                try {
+                    journal.compact(getGraph());
+                } catch (IOException e) {
+                    journal.close();
+                    journal = null;
+                    throw e;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until every change made so far has been saved to disk.
+     * Does nothing if no journal is enabled.
+     * @throws IOException if the journal could not be written, or if a
+     * compaction started automatically after a change has failed since the
+     * last call
+     */
+    public void flushJournal() throws IOException {
+        lock.readLock().lock();
+        try {
+            IOException failure = compactionFailure.getAndSet(null);
+            if (failure != null)
+                throw failure;
+            if (journal != null)
+                journal.flush();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves a snapshot of the whole graph and empties the journal, so a
+     * restart has fewer changes to replay. This also happens automatically
+     * after many changes. Queries can run meanwhile, but changes wait.
+     * Does nothing if no journal is enabled.
+     * @throws IOException if the snapshot could not be written
+     */
+    public void compactJournal() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (journal != null)
+                journal.compact(getGraph());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves any remaining changes and stops journaling
+     * @throws IOException if the journal could not be written
+     */
+    public void closeJournal() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } finally {
+                    journal = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+    Releases the write lock. If the journal is due for compaction, this
+    first downgrades to the read lock and writes the snapshot under it, so
+    queries carry on while the snapshot is written and only changes wait.
+    A failed compaction is kept for flushJournal to report.
+     */
+    private void unlockWrite() {
+        if (journal == null || lock.getWriteHoldCount() > 1 || !journal.shouldCompact()) {
+            lock.writeLock().unlock();
+            return;
+        }
+        lock.readLock().lock();
+        lock.writeLock().unlock();
+        try {
+            journal.compact(getGraph());
+        } catch (IOException e) {
+            compactionFailure.set(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the cheapest set of roads that keeps all connected towns
+     * connected, along with its total weight
+     * @return the minimum spanning tree (or forest) of the graph
+     */
+    public MinimumSpanningTree getMinimumSpanningTree() {
+        lock.readLock().lock();
+        try {
+            return MinimumSpanningTree.compute(getGraph());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the roads and towns whose loss would cut some towns off from
+     * others
+     * @return the bridges and articulation points of the graph
+     */
+    public Biconnectivity getBiconnectivity() {
+        lock.readLock().lock();
+        try {
+            return Biconnectivity.compute(getGraph());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bounds the diameter, radius and town eccentricities of the graph with
+     * a few shortest path searches rather than one from every town
+     * @param maxSearches the most searches to run; the diameter and radius
+     * are exact if the bounds meet first
+     * @return the bounds
+     */
+    public DiameterBounds estimateDiameter(int maxSearches) {
+        lock.readLock().lock();
+        try {
+            return DiameterBounds.compute(new CompactGraph(getGraph()), maxSearches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the shortest paths from a town to every other town, searched
+     * in parallel on large graphs
+     * @param town name of the town the paths start from
+     * @return the shortest path tree, or null if the town does not exist
+     */
+    public ShortestPathTree getShortestPathTree(String town) {
+        lock.readLock().lock();
+        try {
+            Town source = new Town(town);
+            if (!getGraph().containsVertex(source))
+                return null;
+            return ShortestPathTree.compute(getGraph(), source);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the paths with the fewest roads from a town to every other
+     * town, regardless of their length
+     * @param town name of the town the paths start from
+     * @return the tree, or null if the town does not exist
+     */
+    public HopCountTree getHopCountTree(String town) {
+        lock.readLock().lock();
+        try {
+            Town source = new Town(town);
+            if (!getGraph().containsVertex(source))
+                return null;
+            return HopCountTree.compute(getGraph(), source);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
+    /**
+     * Returns the path from town 1 to town 2 that uses the fewest roads,
+     * regardless of their length
+     * @param town1 name of town 1 (lastname, firstname)
+     * @param town2 name of town 2 (lastname, firstname)
+     * @return the roads along the path, in the same format as getPath, or an
+     * empty list if there is no path or a town does not exist
+     */
+    public ArrayList<String> getFewestRoadsPath(String town1, String town2) {
+        lock.readLock().lock();
+        try {
+            HopCountTree tree = getHopCountTree(town1);
+            return tree == null ? new ArrayList<>() : tree.pathTo(new Town(town2));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every town and road by how many shortest paths between other
+     * towns pass through it, searching from every town in parallel
+     * @return the exact scores
+     */
+    public Betweenness getBetweenness() {
+        lock.readLock().lock();
+        try {
+            return Betweenness.compute(getGraph());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates the betweenness scores from searches started at randomly
+     * chosen towns, for graphs too large to search from every town
+     * @param samples number of towns to search from
+     * @param seed seed for choosing the towns
+     * @return the estimated scores
+     * @throws IllegalArgumentException if samples is not positive
+     */
+    public Betweenness estimateBetweenness(int samples, long seed) {
+        lock.readLock().lock();
+        try {
+            return Betweenness.sampled(new CompactGraph(getGraph()), samples, seed, ForkJoinPool.commonPool());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the current graph into regions and starts a worker process
+     * for each, to route on the graph from this and other threads without
+     * any one process searching all of it. The router does not follow
+     * later changes to the graph and must be closed when no longer needed.
+     * It holds only the region of each town and the boundary towns, not
+     * the graph.
+     * @param shards number of regions and worker processes
+     * @param directory where the regions are written for the workers
+     * @return the router
+     * @throws IOException if the regions cannot be written or a worker does
+     * not start
+     */
+    public ShardedRouter openShardedRouter(int shards, File directory) throws IOException {
+        lock.readLock().lock();
+        try {
+            ShardedRouter.writeRegions(getGraph(), shards, directory);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ShardedRouter(directory);
+    }
+
+
+
+    /**
+     * Receives progress reports while populateTownGraph loads a file
+     */
+    public interface LoadListener {
+        /**
+         * Called after each batch of lines has been added to the graph, and
+         * once more when the file has been read completely
+         * @param newTowns names of the towns added by this batch
+         * @param bytesRead approximate number of bytes of the file read so far
+         * @param totalBytes size of the file in bytes
+         * @return true to keep loading, false to stop after this batch
+         */
+        boolean batchLoaded(List<String> newTowns, long bytesRead, long totalBytes);
+    }
 
     /**
      * Populates the graph with the roads provided
@@ -200,35 +1290,76 @@ public class TownGraphManager implements TownGraphManagerInterface{
      * @throws FileNotFoundException - If file not found
      */
     public void populateTownGraph(File fileName) throws FileNotFoundException {
-        try (Scanner inFile = new Scanner(new File(String.valueOf(fileName)))) {
+        try {
+            populateTownGraph(fileName, Integer.MAX_VALUE, null);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            String source;
-            while (inFile.hasNext()) {
-                String currentLine = inFile.nextLine();
+    /**
+     * Populates the graph with the roads provided in a file, reporting to
+     * the listener after every batchSize lines. Each line has the form
+     * "road,weight;town1;town2"; blank lines are skipped. The file is read
+     * one line at a time, so it never has to fit in memory.
+     *
+     * If the listener asks to stop, the towns and roads loaded so far stay
+     * in the graph.
+     * @param fileName the file to read
+     * @param batchSize number of lines between progress reports
+     * @param listener receives the towns added by each batch, or null
+     * @throws FileNotFoundException if the file is not found
+     * @throws IOException if the file cannot be read
+     */
+    public void populateTownGraph(File fileName, int batchSize, LoadListener listener) throws IOException {
+        long totalBytes = fileName.length();
+        try (BufferedReader inFile = new BufferedReader(new FileReader(fileName))) {
+            ArrayList<String> newTowns = new ArrayList<>();
+            ArrayList<Road> pending = new ArrayList<>();
+            long bytesRead = 0;
+            int linesInBatch = 0;
+            String currentLine;
+            while ((currentLine = inFile.readLine()) != null) {
+                bytesRead += currentLine.length() + 1;
+                if (!currentLine.isBlank())
+                    pending.add(parseLine(currentLine));
+                if (pending.size() >= LOAD_CHUNK) {
+                    addRoads(pending, newTowns, true);
+                    pending.clear();
+                }
 
+                if (++linesInBatch >= batchSize && listener != null) {
+                    addRoads(pending, newTowns, true);
+                    pending.clear();
+                    linesInBatch = 0;
+                    if (!listener.batchLoaded(newTowns, Math.min(bytesRead, totalBytes), totalBytes))
+                        return;
+                    newTowns = new ArrayList<>();
+                }
+            }
+            addRoads(pending, newTowns, true);
+            if (listener != null)
+                listener.batchLoaded(newTowns, totalBytes, totalBytes);
+        }
+    }
 
-                source = currentLine.substring(currentLine.indexOf(';') + 1);
-                source = source.substring(0, source.indexOf(';'));
+    /*
+    Reads the road described by one line of a graph file
+     */
+    private static Road parseLine(String currentLine) {
+        String source = currentLine.substring(currentLine.indexOf(';') + 1);
+        source = source.substring(0, source.indexOf(';'));
 
-                String destination = currentLine.substring(currentLine.indexOf(';') + 1);
-                destination = destination.substring(destination.indexOf(';') + 1);
+        String destination = currentLine.substring(currentLine.indexOf(';') + 1);
+        destination = destination.substring(destination.indexOf(';') + 1);
 
 
-                Town sourceTown = new Town(source);
-                Town destinationTown = new Town(destination);
-                if (!getGraph().containsVertex(sourceTown))
-                    getGraph().addVertex(sourceTown);
-                if (!getGraph().containsVertex(destinationTown))
-                    getGraph().addVertex(destinationTown);
-                String name = currentLine.substring(0, currentLine.indexOf(','));
-                int weight = parseInt(currentLine.substring(currentLine.indexOf(',') + 1,
-                        currentLine.indexOf(';')));
-                if (!getGraph().containsEdge(sourceTown, destinationTown))
-                    getGraph().addEdge(sourceTown, destinationTown, weight, name);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        String name = currentLine.substring(0, currentLine.indexOf(','));
+        int weight = parseInt(currentLine.substring(currentLine.indexOf(',') + 1,
+                currentLine.indexOf(';')));
+        return new Road(new Town(source), new Town(destination), weight, name);
     }
 
-}
\ No newline at end of file
+}
@@ -3,7 +3,10 @@
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
@@ -44,6 +47,22 @@ public class TownGraphManagerTest {
 		graph = null;
 	}
 
+	@Test
+	public void testAddRoadsAndDeleteTowns() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		Town town12 = new Town("Town_12");
+		assertEquals(2, manager.addRoads(Arrays.asList(new Road(town12, new Town(town[11]), 1, "Road_13"),
+				new Road(town12, new Town("Town_13"), 2, "Road_14"),
+				new Road(new Town(town[1]), new Town(town[2]), 2, "Road_1"))));
+		assertEquals(13, graph.allTowns().size());
+		assertEquals("Road_13", graph.getRoad("Town_11", "Town_12"));
+
+		assertEquals(2, manager.deleteTowns(Arrays.asList("Town_12", "Town_13", "Town_99")));
+		assertEquals(11, graph.allTowns().size());
+		assertEquals(12, graph.allRoads().size());
+		assertFalse(graph.containsRoadConnection("Town_11", "Town_12"));
+	}
+
 	@Test
 	public void testAddRoad() {
 		ArrayList<String> roads = graph.allRoads();
@@ -80,6 +99,9 @@ public class TownGraphManagerTest {
 		graph.addTown("Town_12");
 		ArrayList<String> path = graph.getPath(town[1],"Town_12");
 		assertFalse(path.size() > 0);
+		graph.addRoad("Town_12", "Town_13", 1, "Road_13");
+		path = graph.getPath(town[1],"Town_12");
+		assertFalse(path.size() > 0);
 	}
 
 
@@ -113,6 +135,69 @@ public class TownGraphManagerTest {
 		assertEquals(false, graph.containsRoadConnection(town[2], town[11]));
 	}
 
+	@Test
+	public void testParallelRoadConnection() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		assertTrue(graph.addRoad(town[2], town[11], 1, "Road_13"));
+		assertEquals("Road_13", graph.getRoad(town[11], town[2]));
+		assertEquals(Arrays.asList("Road_13", "Road_12"), manager.getRoads(town[2], town[11]));
+		assertEquals(13, graph.allRoads().size());
+		assertFalse(graph.deleteRoadConnection(town[2], town[11], "Road_14"));
+		assertTrue(graph.deleteRoadConnection(town[2], town[11], "Road_13"));
+		assertEquals("Road_12", graph.getRoad(town[2], town[11]));
+	}
+
+	@Test
+	public void testPopulateTownGraphInBatches() throws Exception {
+		File file = File.createTempFile("towns", ".txt");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("Road_A,5;Town_A;Town_B");
+			out.println("Road_B,3;Town_B;Town_C");
+			out.println();
+			out.println("Road_C,4;Town_A;Town_C");
+		}
+		TownGraphManager manager = new TownGraphManager();
+		ArrayList<String> loaded = new ArrayList<>();
+		int[] batches = {0};
+		manager.populateTownGraph(file, 2, (newTowns, bytesRead, totalBytes) -> {
+			loaded.addAll(newTowns);
+			batches[0]++;
+			assertTrue(bytesRead <= totalBytes);
+			return true;
+		});
+		assertEquals(Arrays.asList("Town_A", "Town_B", "Town_C"), loaded);
+		assertEquals(3, batches[0]);
+		assertEquals(3, manager.allRoads().size());
+
+		TownGraphManager cancelled = new TownGraphManager();
+		cancelled.populateTownGraph(file, 1, (newTowns, bytesRead, totalBytes) -> false);
+		assertEquals(Arrays.asList("Road_A"), cancelled.allRoads());
+	}
+
+	@Test
+	public void testImportRoadNetworkInBatches() throws Exception {
+		File file = File.createTempFile("towns", ".csv");
+		file.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(file)) {
+			out.println("source,target,weight,name");
+			out.println("Town_A,Town_B,5,Road_A");
+			out.println("Town_B,Town_C,3,Road_B");
+			out.println("Town_A,Town_C,4,Road_C");
+		}
+		TownGraphManager manager = new TownGraphManager();
+		ArrayList<String> loaded = new ArrayList<>();
+		assertEquals(3, manager.importRoadNetwork(file, 2, (newTowns, bytesRead, totalBytes) -> {
+			loaded.addAll(newTowns);
+			return true;
+		}));
+		assertEquals(Arrays.asList("Town_A", "Town_B", "Town_C"), loaded);
+
+		TownGraphManager cancelled = new TownGraphManager();
+		assertEquals(1, cancelled.importRoadNetwork(file, 2, (newTowns, bytesRead, totalBytes) -> false));
+		assertEquals(Arrays.asList("Road_A"), cancelled.allRoads());
+	}
+
 	@Test
 	public void testDeleteTown() {
 		assertEquals(true, graph.containsTown("Town_2"));
@@ -130,6 +215,39 @@ public class TownGraphManagerTest {
 		assertEquals("Town_8", roads.get(9));
 	}
 
+	@Test
+	public void testAllTownsPage() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		assertEquals(Arrays.asList("Town_11", "Town_2", "Town_3"), manager.allTowns(2, 3));
+		assertEquals(Arrays.asList("Town_8", "Town_9"), manager.allTowns(9, 5));
+		assertTrue(manager.allTowns(20, 5).isEmpty());
+		graph.deleteTown(town[11]);
+		assertEquals(Arrays.asList("Town_2", "Town_3", "Town_4"), manager.allTowns(2, 3));
+		assertEquals(10, manager.townCount());
+	}
+
+	@Test
+	public void testAllRoadsPage() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		assertEquals(Arrays.asList("Road_1", "Road_10"), manager.allRoads(0, 2));
+		graph.deleteRoadConnection(town[1], town[5], "Road_3");
+		assertEquals(Arrays.asList("Road_2", "Road_4"), manager.allRoads(4, 2));
+		graph.deleteTown(town[10]);
+		assertEquals(Arrays.asList("Road_1", "Road_12", "Road_2"), manager.roadNames().subList(0, 3));
+		assertEquals(7, manager.roadCount());
+	}
+
+	@Test
+	public void testTownsWithPrefix() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		assertEquals(Arrays.asList("Town_1", "Town_10", "Town_11"), manager.townsWithPrefix("Town_1", 5));
+		assertEquals(Arrays.asList("Town_1", "Town_10"), manager.townsWithPrefix("Town_1", 2));
+		graph.deleteTown(town[10]);
+		graph.addTown("Town_12");
+		assertEquals(Arrays.asList("Town_1", "Town_11", "Town_12"), manager.townsWithPrefix("Town_1", 5));
+		assertTrue(manager.townsWithPrefix("Village", 5).isEmpty());
+	}
+
 	@Test
 	public void testGetPath() {
 		ArrayList<String> path = graph.getPath(town[1],town[11]);
@@ -164,4 +282,24 @@ public class TownGraphManagerTest {
 
 	}
 
+	@Test
+	public void testGetPathTowns() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		ArrayList<String> path = manager.getPathTowns(town[1],town[10]);
+		assertEquals(Arrays.asList(town[1], town[3], town[8], town[10]), path);
+		graph.addTown("Town_12");
+		assertTrue(manager.getPathTowns(town[1], "Town_12").isEmpty());
+		assertTrue(manager.getPathTowns(town[1], "Town_13").isEmpty());
+	}
+
+	@Test
+	public void testGetDistance() {
+		TownGraphManager manager = (TownGraphManager) graph;
+		assertEquals(8, manager.getDistance(town[1], town[11]));
+		graph.addRoad(town[1], town[11], 3, "Road_13");
+		assertEquals(3, manager.getDistance(town[11], town[1]));
+		graph.addTown("Town_12");
+		assertEquals(Integer.MAX_VALUE, manager.getDistance(town[1], "Town_12"));
+	}
+
 }
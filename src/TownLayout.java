@@ -0,0 +1,268 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.Arrays;
+
+/**
+ * Positions for drawing the towns of a graph on a map. Towns carry no
+ * coordinates of their own, so positions are derived from the road
+ * network with high-dimensional embedding: the number of roads from each
+ * town to a few well spread pivot towns is recorded, and those distance
+ * vectors are projected onto their two principal axes. Towns that are
+ * close in the network end up close on the map. The cost is one
+ * breadth-first search per pivot, so it scales to very large graphs.
+ *
+ * Separate groups of connected towns may overlap on the map.
+ */
+public class TownLayout {
+    /**
+     * Number of pivot towns used when none is given
+     */
+    public static final int DEFAULT_PIVOTS = 30;
+
+    private static final int POWER_ITERATIONS = 100;
+
+    private final CompactGraph graph;
+    private final double[] x;
+    private final double[] y;
+    private double minX, maxX, minY, maxY;
+
+    private TownLayout(CompactGraph graph, double[] x, double[] y) {
+        this.graph = graph;
+        this.x = x;
+        this.y = y;
+        recomputeBounds();
+    }
+
+    /**
+     * Computes a layout using the default number of pivots
+     * @param graph snapshot of the graph to lay out
+     * @return the layout
+     */
+    public static TownLayout compute(CompactGraph graph) {
+        return compute(graph, DEFAULT_PIVOTS);
+    }
+
+    /**
+     * Computes a layout
+     * @param graph snapshot of the graph to lay out
+     * @param pivots number of pivot towns to measure distances from
+     * @return the layout
+     */
+    public static TownLayout compute(CompactGraph graph, int pivots) {
+        int n = graph.townCount();
+        int k = Math.max(Math.min(pivots, n), 0);
+        double[][] distances = new double[k][];
+
+        /*
+        Farthest-first pivot choice: each new pivot is the town farthest
+        from all pivots chosen so far
+         */
+        int[] closest = new int[n];
+        Arrays.fill(closest, Integer.MAX_VALUE);
+        int pivot = 0;
+        for (int p = 0; p < k; p++) {
+            int[] hops = hopDistances(graph, pivot);
+            int farthestReached = 0;
+            for (int v = 0; v < n; v++)
+                if (hops[v] != Integer.MAX_VALUE)
+                    farthestReached = Math.max(farthestReached, hops[v]);
+            double[] column = new double[n];
+            double mean = 0;
+            for (int v = 0; v < n; v++) {
+                column[v] = hops[v] == Integer.MAX_VALUE ? farthestReached + 1 : hops[v];
+                mean += column[v];
+                closest[v] = Math.min(closest[v], hops[v]);
+            }
+            mean /= n;
+            for (int v = 0; v < n; v++)
+                column[v] -= mean;
+            distances[p] = column;
+
+            int next = 0;
+            for (int v = 1; v < n; v++)
+                if (closest[v] > closest[next])
+                    next = v;
+            pivot = next;
+        }
+
+        double[][] covariance = new double[k][k];
+        for (int i = 0; i < k; i++)
+            for (int j = i; j < k; j++) {
+                double sum = 0;
+                for (int v = 0; v < n; v++)
+                    sum += distances[i][v] * distances[j][v];
+                covariance[i][j] = sum;
+                covariance[j][i] = sum;
+            }
+
+        double[] first = principalAxis(covariance, null);
+        double[] second = principalAxis(covariance, first);
+        double[] x = project(distances, first, n);
+        double[] y = project(distances, second, n);
+        spreadIfFlat(x, 0);
+        spreadIfFlat(y, 1);
+        return new TownLayout(graph, x, y);
+    }
+
+    /*
+    Breadth-first search counting roads from the source to every town
+     */
+    private static int[] hopDistances(CompactGraph graph, int source) {
+        int[] hops = new int[graph.townCount()];
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        int[] queue = new int[graph.townCount()];
+        int head = 0;
+        int tail = 0;
+        hops[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+                int w = graph.arcTarget(arc);
+                if (hops[w] == Integer.MAX_VALUE) {
+                    hops[w] = hops[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return hops;
+    }
+
+    /*
+    Power iteration for the dominant eigenvector of a symmetric matrix,
+    kept orthogonal to an already found eigenvector if one is given
+     */
+    private static double[] principalAxis(double[][] matrix, double[] orthogonalTo) {
+        int k = matrix.length;
+        double[] vector = new double[k];
+        for (int i = 0; i < k; i++)
+            vector[i] = 1.0 + i;
+        for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+            if (orthogonalTo != null) {
+                double dot = 0;
+                for (int i = 0; i < k; i++)
+                    dot += vector[i] * orthogonalTo[i];
+                for (int i = 0; i < k; i++)
+                    vector[i] -= dot * orthogonalTo[i];
+            }
+            double[] next = new double[k];
+            for (int i = 0; i < k; i++)
+                for (int j = 0; j < k; j++)
+                    next[i] += matrix[i][j] * vector[j];
+            double length = 0;
+            for (double value : next)
+                length += value * value;
+            length = Math.sqrt(length);
+            if (length == 0)
+                return next;
+            for (int i = 0; i < k; i++)
+                next[i] /= length;
+            vector = next;
+        }
+        return vector;
+    }
+
+    private static double[] project(double[][] distances, double[] axis, int n) {
+        double[] result = new double[n];
+        for (int p = 0; p < axis.length; p++)
+            for (int v = 0; v < n; v++)
+                result[v] += distances[p][v] * axis[p];
+        return result;
+    }
+
+    /*
+    Towns with nothing to tell them apart, such as a graph with no roads,
+    would all land on one point; spread them out in a grid instead
+     */
+    private static void spreadIfFlat(double[] axis, int dimension) {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (double value : axis) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (axis.length < 2 || max - min > 1e-9)
+            return;
+        int side = (int) Math.ceil(Math.sqrt(axis.length));
+        for (int v = 0; v < axis.length; v++)
+            axis[v] = dimension == 0 ? v % side : v / side;
+    }
+
+    /**
+     * Places a town at a known position, for example coordinates read from
+     * a map file, replacing the computed position. The bounds are widened
+     * to include the new position but are not shrunk; see recomputeBounds.
+     * @param v index of the town in the snapshot
+     * @param townX horizontal position
+     * @param townY vertical position
+     */
+    public void setPosition(int v, double townX, double townY) {
+        x[v] = townX;
+        y[v] = townY;
+        minX = Math.min(minX, townX);
+        maxX = Math.max(maxX, townX);
+        minY = Math.min(minY, townY);
+        maxY = Math.max(maxY, townY);
+    }
+
+    /**
+     * Recomputes the bounds from the current positions. setPosition only
+     * widens the bounds, so call this after moving many towns.
+     */
+    public void recomputeBounds() {
+        minX = minY = Double.MAX_VALUE;
+        maxX = maxY = -Double.MAX_VALUE;
+        for (int v = 0; v < x.length; v++) {
+            minX = Math.min(minX, x[v]);
+            maxX = Math.max(maxX, x[v]);
+            minY = Math.min(minY, y[v]);
+            maxY = Math.max(maxY, y[v]);
+        }
+        if (x.length == 0)
+            minX = maxX = minY = maxY = 0;
+    }
+
+    /**
+     * Returns the snapshot this layout was computed for
+     * @return the graph snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the horizontal position of a town
+     * @param v index of the town in the snapshot
+     * @return the x coordinate
+     */
+    public double x(int v) {
+        return x[v];
+    }
+
+    /**
+     * Returns the vertical position of a town
+     * @param v index of the town in the snapshot
+     * @return the y coordinate
+     */
+    public double y(int v) {
+        return y[v];
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+}
@@ -0,0 +1,65 @@
+
+
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TownLayoutTest {
+	private Graph graph;
+	private Town[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new Graph();
+		  town = new Town[11];
+
+		  //a path of ten towns
+		  for (int i = 1; i < 11; i++) {
+			  town[i] = new Town("Town_" + i);
+			  graph.addVertex(town[i]);
+		  }
+		  for (int i = 1; i < 10; i++)
+			  graph.addEdge(town[i], town[i + 1], 1, "Road_" + i);
+	}
+
+	@Test
+	public void testNeighborsAreCloserThanEnds() {
+		CompactGraph snapshot = new CompactGraph(graph);
+		TownLayout layout = TownLayout.compute(snapshot);
+		int first = snapshot.indexOf(town[1]);
+		int second = snapshot.indexOf(town[2]);
+		int last = snapshot.indexOf(town[10]);
+		assertTrue(distance(layout, first, second) < distance(layout, first, last));
+		for (int v = 0; v < snapshot.townCount(); v++) {
+			assertTrue(layout.x(v) >= layout.getMinX() && layout.x(v) <= layout.getMaxX());
+			assertTrue(layout.y(v) >= layout.getMinY() && layout.y(v) <= layout.getMaxY());
+		}
+	}
+
+	@Test
+	public void testTownsWithoutRoadsAreSpreadOut() {
+		Graph empty = new Graph();
+		for (int i = 0; i < 9; i++)
+			empty.addVertex(new Town("Town_" + i));
+		TownLayout layout = TownLayout.compute(new CompactGraph(empty));
+		assertTrue(layout.getMaxX() > layout.getMinX());
+		assertTrue(layout.getMaxY() > layout.getMinY());
+	}
+
+	@Test
+	public void testSetPosition() {
+		TownLayout layout = TownLayout.compute(new CompactGraph(graph));
+		layout.setPosition(0, 1000, -1000);
+		assertEquals(1000, layout.x(0), 0);
+		assertEquals(-1000, layout.y(0), 0);
+		assertEquals(1000, layout.getMaxX(), 0);
+		assertEquals(-1000, layout.getMinY(), 0);
+	}
+
+	private double distance(TownLayout layout, int a, int b) {
+		return Math.hypot(layout.x(a) - layout.x(b), layout.y(a) - layout.y(b));
+	}
+}
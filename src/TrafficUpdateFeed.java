@@ -0,0 +1,240 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Applies a stream of road weight changes, such as travel times from a
+ * traffic service, to a TownGraphManager in batches. Any number of threads
+ * may submit updates; one background thread applies them.
+ *
+ * Updates wait until a batch is full or the oldest has waited maxDelay
+ * milliseconds. While an update waits, a newer one for the same road
+ * replaces it, so a road reported many times a second is changed only
+ * once per batch, and the number of waiting updates never exceeds the
+ * number of roads. Each batch is applied with updateRoadWeights, so path
+ * queries see all of a batch or none of it, and cached paths are brought
+ * up to date as part of the same change.
+ *
+ * If applying a batch fails, the background thread stops, and submit,
+ * flush and close throw an IllegalStateException carrying the failure,
+ * so no caller believes later updates were applied.
+ */
+public class TrafficUpdateFeed implements AutoCloseable {
+    private final TownGraphManager manager;
+    private final int maxBatch;
+    private final long maxDelay;
+    private final Thread applier;
+
+    //waiting updates by road, oldest first; Road equality ignores weight
+    private final LinkedHashMap<Road, Update> pending = new LinkedHashMap<>();
+    private long oldestPendingTime;
+    private long submitted;
+    private long coalesced;
+    private long batches;
+    //true while a batch taken from pending is being applied
+    private boolean applying;
+    private boolean flushRequested;
+    private boolean closed;
+    //why the background thread stopped early, reported to every later call
+    private RuntimeException failure;
+
+    /**
+     * Starts a feed
+     * @param manager the graph to update
+     * @param maxBatch largest number of roads changed in one batch
+     * @param maxDelay longest time in milliseconds an update waits for a
+     * batch to fill
+     */
+    public TrafficUpdateFeed(TownGraphManager manager, int maxBatch, long maxDelay) {
+        if (maxBatch < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.manager = manager;
+        this.maxBatch = maxBatch;
+        this.maxDelay = maxDelay;
+        applier = new Thread(this::applyBatches, "traffic-updates");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * Queues a new weight for a road. Updates for roads that are not in the
+     * graph when their batch is applied are ignored.
+     * @param town1 name of town 1
+     * @param town2 name of town 2
+     * @param road the road name
+     * @param weight the new weight
+     * @throws IllegalArgumentException if weight is negative
+     * @throws IllegalStateException if the feed has been closed, or an
+     * earlier batch could not be applied
+     */
+    public synchronized void submit(String town1, String town2, String road, int weight) {
+        if (weight < 0)
+            throw new IllegalArgumentException("Weights cannot be negative: " + weight);
+        checkFailure();
+        if (closed)
+            throw new IllegalStateException("Feed is closed");
+        Road update = new Road(new Town(town1), new Town(town2), weight, road);
+        if (pending.isEmpty())
+            oldestPendingTime = System.currentTimeMillis();
+        //removing first moves the road to the end, keeping pending in submission order
+        if (pending.remove(update) != null)
+            coalesced++;
+        pending.put(update, new Update(update, ++submitted));
+        if (pending.size() >= maxBatch || pending.size() == 1)
+            notifyAll();
+    }
+
+    /**
+     * Waits until every update submitted before this call has been applied
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IllegalStateException if a batch could not be applied
+     */
+    public synchronized void flush() throws InterruptedException {
+        long target = submitted;
+        flushRequested = true;
+        notifyAll();
+        while (failure == null && applier.isAlive()
+                && (applying || (!pending.isEmpty() && firstSequence() <= target)))
+            wait();
+        checkFailure();
+    }
+
+    /**
+     * Returns the number of updates submitted
+     * @return the number of updates
+     */
+    public synchronized long getSubmittedCount() {
+        return submitted;
+    }
+
+    /**
+     * Returns the number of updates replaced by a newer one for the same
+     * road before they were applied
+     * @return the number of coalesced updates
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * Returns the number of batches applied
+     * @return the number of batches
+     */
+    public synchronized long getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Applies the updates still waiting and stops the background thread.
+     * If interrupted while waiting, returns early with the interrupt
+     * status set, and the thread finishes the updates on its own.
+     * @throws IllegalStateException if a batch could not be applied
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            applier.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            checkFailure();
+        }
+    }
+
+    private void applyBatches() {
+        while (true) {
+            List<Road> batch;
+            synchronized (this) {
+                try {
+                    while (!closed && !due())
+                        waitForBatch();
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pending.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                batch = takeBatch();
+                applying = true;
+            }
+            RuntimeException error = null;
+            try {
+                manager.updateRoadWeights(batch);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                synchronized (this) {
+                    applying = false;
+                    if (error == null)
+                        batches++;
+                    else
+                        failure = error;
+                    notifyAll();
+                }
+            }
+            if (error != null)
+                return;
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null)
+            throw new IllegalStateException("Traffic updates stopped: " + failure.getMessage(), failure);
+    }
+
+    private boolean due() {
+        return !pending.isEmpty() && (flushRequested || pending.size() >= maxBatch
+                || System.currentTimeMillis() - oldestPendingTime >= maxDelay);
+    }
+
+    private void waitForBatch() throws InterruptedException {
+        if (pending.isEmpty())
+            wait();
+        else
+            wait(Math.max(1, maxDelay - (System.currentTimeMillis() - oldestPendingTime)));
+    }
+
+    private long firstSequence() {
+        return pending.values().iterator().next().sequence;
+    }
+
+    /*
+    Takes up to maxBatch waiting updates, oldest first
+     */
+    private List<Road> takeBatch() {
+        List<Road> batch = new ArrayList<>(Math.min(pending.size(), maxBatch));
+        Iterator<Update> oldest = pending.values().iterator();
+        while (oldest.hasNext() && batch.size() < maxBatch) {
+            batch.add(oldest.next().road);
+            oldest.remove();
+        }
+        if (pending.isEmpty())
+            flushRequested = false;
+        oldestPendingTime = System.currentTimeMillis();
+        return batch;
+    }
+
+    /*
+    The newest weight for a road, numbered in the order it was submitted
+     */
+    private static final class Update {
+        final Road road;
+        final long sequence;
+
+        Update(Road road, long sequence) {
+            this.road = road;
+            this.sequence = sequence;
+        }
+    }
+}
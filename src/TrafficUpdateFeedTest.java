@@ -0,0 +1,148 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TrafficUpdateFeedTest {
+	private TownGraphManager graph;
+	private String[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new TownGraphManager();
+		  town = new String[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = "Town_" + i;
+			  graph.addTown(town[i]);
+		  }
+
+		  graph.addRoad(town[1], town[2], 2, "Road_1");
+		  graph.addRoad(town[1], town[3], 4, "Road_2");
+		  graph.addRoad(town[1], town[5], 6, "Road_3");
+		  graph.addRoad(town[3], town[7], 1, "Road_4");
+		  graph.addRoad(town[3], town[8], 2, "Road_5");
+		  graph.addRoad(town[4], town[8], 3, "Road_6");
+		  graph.addRoad(town[6], town[9], 3, "Road_7");
+		  graph.addRoad(town[9], town[10], 4, "Road_8");
+		  graph.addRoad(town[8], town[10], 2, "Road_9");
+		  graph.addRoad(town[5], town[10], 5, "Road_10");
+		  graph.addRoad(town[10], town[11], 3, "Road_11");
+		  graph.addRoad(town[2], town[11], 6, "Road_12");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		graph = null;
+	}
+
+	@Test
+	public void testUpdateRoadWeight() {
+		assertEquals(8, graph.getDistance(town[1], town[11]));
+		assertTrue(graph.updateRoadWeight(town[11], town[2], "Road_12", 20));
+		assertFalse(graph.updateRoadWeight(town[2], town[11], "Road_99", 1));
+		assertEquals(11, graph.getDistance(town[1], town[11]));
+		assertEquals(Arrays.asList("Town_1 via Road_2 to Town_3 4 mi", "Town_3 via Road_5 to Town_8 2 mi",
+				"Town_8 via Road_9 to Town_10 2 mi", "Town_10 via Road_11 to Town_11 3 mi"),
+				graph.getPath(town[1], town[11]));
+	}
+
+	@Test
+	public void testCachedPathsFollowWeights() {
+		graph.enablePathCache(10, PathCache.Policy.LRU);
+		ArrayList<String> before = graph.getPath(town[1], town[10]);
+		assertEquals("Town_8 via Road_9 to Town_10 2 mi", before.get(2));
+		graph.updateRoadWeight(town[8], town[10], "Road_9", 9);
+		assertEquals(Arrays.asList("Town_1 via Road_3 to Town_5 6 mi", "Town_5 via Road_10 to Town_10 5 mi"),
+				graph.getPath(town[1], town[10]));
+		graph.updateRoadWeight(town[8], town[10], "Road_9", 1);
+		assertEquals("Town_8 via Road_9 to Town_10 1 mi", graph.getPath(town[1], town[10]).get(2));
+	}
+
+	@Test
+	public void testFeedCoalescesUpdates() throws Exception {
+		try (TrafficUpdateFeed feed = new TrafficUpdateFeed(graph, 100, 60_000)) {
+			for (int weight = 1; weight <= 50; weight++)
+				feed.submit(town[2], town[11], "Road_12", weight);
+			feed.submit(town[1], town[2], "Road_1", 7);
+			feed.flush();
+			assertEquals(51, feed.getSubmittedCount());
+			assertEquals(49, feed.getCoalescedCount());
+			assertEquals(1, feed.getBatchCount());
+			assertEquals(7, graph.getDistance(town[1], town[2]));
+			assertEquals(50, graph.getGraph().getEdge(new Town(town[2]), new Town(town[11])).getWeight());
+		}
+	}
+
+	@Test
+	public void testFeedAppliesFullBatches() throws Exception {
+		TrafficUpdateFeed feed = new TrafficUpdateFeed(graph, 2, 60_000);
+		feed.submit(town[1], town[2], "Road_1", 3);
+		feed.submit(town[1], town[3], "Road_2", 5);
+		feed.submit(town[1], town[5], "Road_3", 7);
+		feed.close();
+		assertEquals(2, feed.getBatchCount());
+		assertEquals(7, graph.getDistance(town[1], town[5]));
+		try {
+			feed.submit(town[1], town[2], "Road_1", 3);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals(3, graph.getDistance(town[1], town[2]));
+		}
+	}
+
+	@Test
+	public void testFailedBatchIsReported() throws Exception {
+		TownGraphManager failing = new TownGraphManager() {
+			@Override
+			public int updateRoadWeights(Collection<Road> updates) {
+				throw new IllegalStateException("Journal is closed");
+			}
+		};
+		TrafficUpdateFeed feed = new TrafficUpdateFeed(failing, 1, 60_000);
+		feed.submit(town[1], town[2], "Road_1", 3);
+		try {
+			feed.flush();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Journal is closed", e.getCause().getMessage());
+		}
+		try {
+			feed.submit(town[1], town[2], "Road_1", 4);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals("Journal is closed", e.getCause().getMessage());
+		}
+		try {
+			feed.close();
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			assertEquals(0, feed.getBatchCount());
+		}
+	}
+
+	@Test
+	public void testCacheAndProfilesChangeWhileFeedRuns() throws Exception {
+		graph.defineWeightProfile("time", "min");
+		try (TrafficUpdateFeed feed = new TrafficUpdateFeed(graph, 1, 60_000)) {
+			for (int i = 0; i < 2_000; i++) {
+				feed.submit(town[2], town[11], "Road_12", 1 + i % 20);
+				graph.enablePathCache(10, i % 2 == 0 ? PathCache.Policy.LRU : PathCache.Policy.TINY_LFU);
+				assertTrue(graph.setRoadWeight("time", town[1], town[2], "Road_1", 1 + i % 7));
+				assertFalse(graph.getPath(town[1], town[11]).isEmpty());
+				assertFalse(graph.getPath(town[1], town[11], "time").isEmpty());
+			}
+			feed.flush();
+		}
+		assertEquals(20, graph.getGraph().getEdge(new Town(town[2]), new Town(town[11])).getWeight());
+		assertEquals(Arrays.asList("Town_1 via Road_2 to Town_3 4 mi", "Town_3 via Road_5 to Town_8 2 mi",
+				"Town_8 via Road_9 to Town_10 2 mi", "Town_10 via Road_11 to Town_11 3 mi"),
+				graph.getPath(town[1], town[11]));
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * @author Christian Aguirre
+ */
+
+/**
+ * Disjoint-set forest over the integers 0 to size - 1, using union by size
+ * and path halving.
+ */
+public class UnionFind {
+    private final int[] parent;
+    private final int[] size;
+
+    /**
+     * Creates a forest in which every element is its own set
+     * @param size number of elements
+     */
+    public UnionFind(int size) {
+        parent = new int[size];
+        this.size = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            this.size[i] = 1;
+        }
+    }
+
+    /**
+     * Returns the representative of the set containing x
+     * @param x an element
+     * @return the representative element of x's set
+     */
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Merges the sets containing x and y
+     * @param x an element
+     * @param y another element
+     * @return true if the sets were merged, false if x and y were already
+     * in the same set
+     */
+    public boolean union(int x, int y) {
+        int rootX = find(x);
+        int rootY = find(y);
+        if (rootX == rootY)
+            return false;
+        if (size[rootX] < size[rootY]) {
+            int temp = rootX;
+            rootX = rootY;
+            rootY = temp;
+        }
+        parent[rootY] = rootX;
+        size[rootX] += size[rootY];
+        return true;
+    }
+}
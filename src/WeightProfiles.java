@@ -0,0 +1,333 @@
+/**
+ * @author Christian Aguirre
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Several sets of road weights for one snapshot of a graph, such as
+ * distance, travel time and toll cost. Each profile is a primitive array
+ * indexed by the road's index in the CompactGraph, so switching profiles
+ * or rewriting a whole profile never touches the Road objects or rebuilds
+ * the graph.
+ *
+ * The DISTANCE profile always holds the roads' own weights and cannot be
+ * changed here. Other profiles start as a copy of it.
+ */
+public class WeightProfiles {
+    /**
+     * Name of the profile holding the roads' own weights
+     */
+    public static final String DISTANCE = "distance";
+
+    private final CompactGraph graph;
+    private final Map<String, int[]> weights;
+    private final Map<String, String> units;
+    private String active;
+    //built on first use; most callers work with road indices directly
+    private Map<Road, Integer> roadIndex;
+
+    /**
+     * Creates the profiles for a snapshot, with only the DISTANCE profile
+     * @param graph the snapshot
+     */
+    public WeightProfiles(CompactGraph graph) {
+        this.graph = graph;
+        this.weights = new LinkedHashMap<>();
+        this.units = new HashMap<>();
+        int[] distance = new int[graph.roadCount()];
+        for (int e = 0; e < distance.length; e++)
+            distance[e] = graph.roadWeight(e);
+        weights.put(DISTANCE, distance);
+        units.put(DISTANCE, "mi");
+        active = DISTANCE;
+    }
+
+    /**
+     * Carries these profiles over to a newer snapshot of the same graph.
+     * Roads found in both snapshots keep their weights in every profile;
+     * roads that are new get their own weight in every profile.
+     * @param newGraph the newer snapshot
+     * @return the profiles for the newer snapshot
+     */
+    public WeightProfiles rebase(CompactGraph newGraph) {
+        WeightProfiles result = new WeightProfiles(newGraph);
+        int[] oldIndex = new int[newGraph.roadCount()];
+        for (int e = 0; e < oldIndex.length; e++) {
+            Integer old = indexOf(newGraph.getRoad(e));
+            oldIndex[e] = old == null ? -1 : old;
+        }
+        for (Map.Entry<String, int[]> profile : weights.entrySet()) {
+            if (profile.getKey().equals(DISTANCE))
+                continue;
+            int[] copy = result.weights.get(DISTANCE).clone();
+            for (int e = 0; e < copy.length; e++)
+                if (oldIndex[e] >= 0)
+                    copy[e] = profile.getValue()[oldIndex[e]];
+            result.weights.put(profile.getKey(), copy);
+            result.units.put(profile.getKey(), units.get(profile.getKey()));
+        }
+        result.active = active;
+        return result;
+    }
+
+    /**
+     * Copies the current weights of the given roads into the DISTANCE
+     * profile, so that weight changes need no new snapshot. The snapshot's
+     * own road weights are left as they were when it was built.
+     * @param roads roads whose weights have changed
+     */
+    public void distancesChanged(Collection<Road> roads) {
+        int[] distance = weights.get(DISTANCE);
+        for (Road road : roads) {
+            Integer e = indexOf(road);
+            if (e != null)
+                distance[e] = road.getWeight();
+        }
+    }
+
+    /**
+     * Adds a profile, starting with every road at its distance. Does nothing
+     * if the profile already exists.
+     * @param name name of the profile
+     * @param unit unit shown after weights in paths, such as "min"
+     * @return true if the profile was added
+     */
+    public boolean defineProfile(String name, String unit) {
+        if (weights.containsKey(name))
+            return false;
+        weights.put(name, weights.get(DISTANCE).clone());
+        units.put(name, unit);
+        return true;
+    }
+
+    /**
+     * Removes a profile. If it was active, DISTANCE becomes active.
+     * @param name name of the profile
+     * @return true if the profile was removed
+     * @throws IllegalArgumentException if name is DISTANCE
+     */
+    public boolean removeProfile(String name) {
+        checkWritable(name);
+        units.remove(name);
+        if (name.equals(active))
+            active = DISTANCE;
+        return weights.remove(name) != null;
+    }
+
+    /**
+     * Returns the names of the profiles, in the order they were defined
+     * @return the profile names
+     */
+    public Set<String> profileNames() {
+        return weights.keySet();
+    }
+
+    /**
+     * Makes a profile the one used when no profile is named
+     * @param name name of the profile
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public void setActiveProfile(String name) {
+        profile(name);
+        active = name;
+    }
+
+    public String getActiveProfile() {
+        return active;
+    }
+
+    /**
+     * Returns the unit of a profile's weights
+     * @param name name of the profile
+     * @return the unit
+     */
+    public String getUnit(String name) {
+        profile(name);
+        return units.get(name);
+    }
+
+    /**
+     * Returns the weight of a road in a profile
+     * @param name name of the profile
+     * @param e index of the road in the snapshot
+     * @return the weight
+     */
+    public int weight(String name, int e) {
+        return profile(name)[e];
+    }
+
+    /**
+     * Sets the weight of one road in a profile
+     * @param name name of the profile
+     * @param road the road
+     * @param weight the new weight, not negative
+     * @return true if the road is in the snapshot
+     */
+    public boolean setWeight(String name, Road road, int weight) {
+        checkWritable(name);
+        checkWeight(weight);
+        Integer e = indexOf(road);
+        if (e == null)
+            return false;
+        profile(name)[e] = weight;
+        return true;
+    }
+
+    /**
+     * Sets the weights of many roads in a profile at once. Each road
+     * carries its new weight.
+     * @param name name of the profile
+     * @param roads the roads with their new weights
+     * @return the number of roads found in the snapshot
+     * @throws IllegalArgumentException if a weight is negative; the profile
+     * is then left unchanged
+     */
+    public int setWeights(String name, Collection<Road> roads) {
+        checkWritable(name);
+        int[] profile = profile(name);
+        for (Road road : roads)
+            checkWeight(road.getWeight());
+        int found = 0;
+        for (Road road : roads) {
+            Integer e = indexOf(road);
+            if (e != null) {
+                profile[e] = road.getWeight();
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Sets the weights of many roads in a profile at once
+     * @param name name of the profile
+     * @param roads indices of the roads in the snapshot
+     * @param newWeights the new weights, in the same order
+     */
+    public void updateWeights(String name, int[] roads, int[] newWeights) {
+        checkWritable(name);
+        if (roads.length != newWeights.length)
+            throw new IllegalArgumentException("Road and weight counts differ");
+        int[] profile = profile(name);
+        for (int weight : newWeights)
+            checkWeight(weight);
+        for (int i = 0; i < roads.length; i++)
+            profile[roads[i]] = newWeights[i];
+    }
+
+    /**
+     * Recomputes every weight of a profile from the road's index, for
+     * example travel time from distance and speed limit
+     * @param name name of the profile
+     * @param weightOfRoad gives the new weight for a road index
+     */
+    public void updateWeights(String name, IntUnaryOperator weightOfRoad) {
+        checkWritable(name);
+        int[] profile = profile(name);
+        for (int e = 0; e < profile.length; e++) {
+            int weight = weightOfRoad.applyAsInt(e);
+            checkWeight(weight);
+            profile[e] = weight;
+        }
+    }
+
+    /**
+     * Finds the shortest path between two towns using a profile's weights
+     * @param name name of the profile
+     * @param sourceVertex starting town
+     * @param destinationVertex ending town
+     * @return the path in the same format as Graph.shortestPath, with the
+     * profile's weight and unit after each road, or an empty list if there
+     * is no path
+     */
+    public ArrayList<String> shortestPath(String name, Town sourceVertex, Town destinationVertex) {
+        int[] profile = profile(name);
+        String unit = units.get(name);
+        ArrayList<String> path = new ArrayList<>();
+        int source = graph.indexOf(sourceVertex);
+        int target = graph.indexOf(destinationVertex);
+        if (source < 0 || target < 0 || source == target)
+            return path;
+
+        int n = graph.townCount();
+        int[] distance = new int[n];
+        int[] parentRoad = new int[n];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        distance[source] = 0;
+        LongHeap heap = new LongHeap(16);
+        heap.add(LongHeap.pack(0, source));
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int v = LongHeap.index(entry);
+            if (LongHeap.distance(entry) > distance[v])
+                continue;
+            if (v == target)
+                break;
+            for (int arc = graph.arcOffset(v); arc < graph.arcOffset(v + 1); arc++) {
+                int w = graph.arcTarget(arc);
+                int e = graph.arcRoad(arc);
+                long candidate = (long) distance[v] + profile[e];
+                if (candidate < distance[w]) {
+                    distance[w] = (int) Math.min(candidate, Integer.MAX_VALUE - 1);
+                    parentRoad[w] = e;
+                    heap.add(LongHeap.pack(distance[w], w));
+                }
+            }
+        }
+        if (distance[target] == Integer.MAX_VALUE)
+            return path;
+
+        for (int v = target; v != source; ) {
+            int e = parentRoad[v];
+            int parent = graph.roadSource(e) == v ? graph.roadDestination(e) : graph.roadSource(e);
+            path.add(graph.getTown(parent).getName() + " via " + graph.getRoad(e).getName() + " to "
+                    + graph.getTown(v).getName() + " " + profile[e] + " " + unit);
+            v = parent;
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Returns the snapshot these profiles belong to
+     * @return the snapshot
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    private int[] profile(String name) {
+        int[] profile = weights.get(name);
+        if (profile == null)
+            throw new IllegalArgumentException("No weight profile named " + name);
+        return profile;
+    }
+
+    private Integer indexOf(Road road) {
+        if (roadIndex == null) {
+            roadIndex = new HashMap<>(graph.roadCount() * 2);
+            for (int e = 0; e < graph.roadCount(); e++)
+                roadIndex.put(graph.getRoad(e), e);
+        }
+        return roadIndex.get(road);
+    }
+
+    private static void checkWritable(String name) {
+        if (DISTANCE.equals(name))
+            throw new IllegalArgumentException("The distance profile follows the road weights");
+    }
+
+    private static void checkWeight(int weight) {
+        if (weight < 0)
+            throw new IllegalArgumentException("Weights cannot be negative: " + weight);
+    }
+}
@@ -0,0 +1,123 @@
+
+
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class WeightProfilesTest {
+	private TownGraphManager graph;
+	private String[] town;
+
+	@Before
+	public void setUp() throws Exception {
+		  graph = new TownGraphManager();
+		  town = new String[12];
+
+		  for (int i = 1; i < 12; i++) {
+			  town[i] = "Town_" + i;
+			  graph.addTown(town[i]);
+		  }
+
+		  graph.addRoad(town[1], town[2], 2, "Road_1");
+		  graph.addRoad(town[1], town[3], 4, "Road_2");
+		  graph.addRoad(town[1], town[5], 6, "Road_3");
+		  graph.addRoad(town[3], town[7], 1, "Road_4");
+		  graph.addRoad(town[3], town[8], 2, "Road_5");
+		  graph.addRoad(town[4], town[8], 3, "Road_6");
+		  graph.addRoad(town[6], town[9], 3, "Road_7");
+		  graph.addRoad(town[9], town[10], 4, "Road_8");
+		  graph.addRoad(town[8], town[10], 2, "Road_9");
+		  graph.addRoad(town[5], town[10], 5, "Road_10");
+		  graph.addRoad(town[10], town[11], 3, "Road_11");
+		  graph.addRoad(town[2], town[11], 6, "Road_12");
+	}
+
+	@Test
+	public void testDistanceProfileMatchesGetPath() {
+		WeightProfiles profiles = graph.getWeightProfiles();
+		assertEquals(graph.getPath(town[1], town[6]),
+				profiles.shortestPath(WeightProfiles.DISTANCE, new Town(town[1]), new Town(town[6])));
+	}
+
+	@Test
+	public void testSwitchProfiles() {
+		assertTrue(graph.defineWeightProfile("time", "min"));
+		assertFalse(graph.defineWeightProfile("time", "min"));
+		assertTrue(graph.setRoadWeight("time", town[3], town[8], "Road_5", 20));
+		assertFalse(graph.setRoadWeight("time", town[3], town[8], "Road_6", 20));
+
+		ArrayList<String> path = graph.getPath(town[1], town[10], "time");
+		assertEquals(Arrays.asList("Town_1 via Road_3 to Town_5 6 min", "Town_5 via Road_10 to Town_10 5 min"), path);
+		assertEquals("Town_1 via Road_2 to Town_3 4 mi", graph.getPath(town[1], town[10]).get(0));
+
+		graph.setActiveWeightProfile("time");
+		assertEquals(path, graph.getPath(town[1], town[10]));
+		assertEquals("Town_1 via Road_2 to Town_3 4 mi", graph.getPath(town[1], town[10], WeightProfiles.DISTANCE).get(0));
+	}
+
+	@Test
+	public void testBulkUpdate() {
+		graph.defineWeightProfile("toll", "$");
+		graph.setRoadWeights("toll", road -> 1);
+		ArrayList<String> path = graph.getPath(town[1], town[11], "toll");
+		assertEquals(2, path.size());
+		assertEquals(1, graph.setRoadWeights("toll", Arrays.asList(
+				new Road(new Town(town[1]), new Town(town[2]), 50, "Road_1"),
+				new Road(new Town(town[1]), new Town(town[2]), 50, "Road_99"))));
+		path = graph.getPath(town[1], town[11], "toll");
+		assertEquals(Arrays.asList("Town_1 via Road_3 to Town_5 1 $", "Town_5 via Road_10 to Town_10 1 $",
+				"Town_10 via Road_11 to Town_11 1 $"), path);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBulkUpdateIsReadOnlyForDistance() {
+		graph.setRoadWeights(WeightProfiles.DISTANCE, road -> 1);
+	}
+
+	@Test
+	public void testProfilesSurviveGraphChanges() {
+		graph.defineWeightProfile("time", "min");
+		graph.setRoadWeight("time", town[1], town[2], "Road_1", 30);
+		graph.addRoad(town[4], town[11], 7, "Road_13");
+		graph.deleteRoadConnection(town[1], town[5], "Road_3");
+		WeightProfiles profiles = graph.getWeightProfiles();
+		CompactGraph snapshot = profiles.getGraph();
+		assertEquals(12, snapshot.roadCount());
+		for (int e = 0; e < snapshot.roadCount(); e++) {
+			String name = snapshot.getRoad(e).getName();
+			int expected = name.equals("Road_1") ? 30 : snapshot.roadWeight(e);
+			assertEquals(name, expected, profiles.weight("time", e));
+		}
+	}
+
+	@Test
+	public void testWeightChangesKeepProfiles() {
+		graph.defineWeightProfile("time", "min");
+		graph.setRoadWeight("time", town[1], town[2], "Road_1", 3);
+		WeightProfiles profiles = graph.getWeightProfiles();
+		assertTrue(graph.updateRoadWeight(town[1], town[2], "Road_1", 11));
+		assertSame(profiles, graph.getWeightProfiles());
+		assertEquals(graph.getPath(town[1], town[11]),
+				profiles.shortestPath(WeightProfiles.DISTANCE, new Town(town[1]), new Town(town[11])));
+		assertEquals("Town_1 via Road_1 to Town_2 3 min", graph.getPath(town[1], town[2], "time").get(0));
+
+		graph.addRoad(town[4], town[11], 7, "Road_13");
+		assertNotSame(profiles, graph.getWeightProfiles());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDistanceProfileIsReadOnly() {
+		graph.setRoadWeight(WeightProfiles.DISTANCE, town[1], town[2], "Road_1", 30);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownProfile() {
+		graph.getPath(town[1], town[2], "scenic");
+	}
+}